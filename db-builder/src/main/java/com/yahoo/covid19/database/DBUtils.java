@@ -10,4 +10,5 @@ public class DBUtils {
     public static final String DB_NAME = "covid19";
     public static final String DB_DIR_NAME = DB_NAME;
     public static final String DB_FILE_NAME = DB_NAME + ".mv.db";
+    public static final String SERIES_FILE_NAME = DB_NAME + ".series";
 }
@@ -16,32 +16,48 @@ import java.util.Date;
 import java.util.zip.GZIPInputStream;
 
 /**
- * Fetches the Yahoo Knowledge Graph data
+ * Fetches the Yahoo Knowledge Graph data. When the archive can be opened again, an incremental build that falls
+ * back to a full build, or is verified by one, reads it again instead of keeping every data file on disk.
  */
 @Slf4j
 public class DataFetcher {
 
+    /**
+     * Opens the archive.
+     */
+    public interface ArchiveSource {
+        InputStream open() throws IOException;
+    }
+
     protected final DatabaseBuilder databaseBuilder;
     protected final InputStream archiveInputStream;
+    private final ArchiveSource archiveSource;
     private Date lastModifiedDate;
 
     public DataFetcher(InputStream archiveInputStream, DatabaseBuilder databaseBuilder) {
         this.databaseBuilder = databaseBuilder;
         this.archiveInputStream = archiveInputStream;
+        this.archiveSource = null;
+        this.lastModifiedDate = new Date(0);    // Initialize to Jan 01, 1970;
+    }
+
+    /**
+     * @param archiveSource Opens the archive, once for the build and again for a full build if one is needed.
+     */
+    public DataFetcher(ArchiveSource archiveSource, DatabaseBuilder databaseBuilder) {
+        this.databaseBuilder = databaseBuilder;
+        this.archiveInputStream = null;
+        this.archiveSource = archiveSource;
         this.lastModifiedDate = new Date(0);    // Initialize to Jan 01, 1970;
     }
 
     public void fetchDataAndProcess() {
         log.info("Started processing data from the repository");
-        try(TarArchiveInputStream tarInputStream = new TarArchiveInputStream(
-                    new GZIPInputStream(this.archiveInputStream))) {
-            TarArchiveEntry tarArchiveEntry = tarInputStream.getNextTarEntry();
-            while (tarArchiveEntry != null) {
-                databaseBuilder.processInputStream(tarArchiveEntry.getName(), tarInputStream);
-                Date fileDate = tarArchiveEntry.getLastModifiedDate();
-                lastModifiedDate = lastModifiedDate.before(fileDate) ? fileDate : lastModifiedDate;
-                tarArchiveEntry = tarInputStream.getNextTarEntry();
+        try {
+            if (archiveSource != null) {
+                databaseBuilder.setInputReplay(builder -> readArchive(archiveSource.open(), builder));
             }
+            readArchive(archiveSource == null ? archiveInputStream : archiveSource.open(), databaseBuilder);
             databaseBuilder.setLastModifiedDate(lastModifiedDate);
             databaseBuilder.build();
             log.info("Completed processing data from the repository");
@@ -50,4 +66,16 @@ public class DataFetcher {
             throw new IllegalStateException(e);
         }
     }
+
+    private void readArchive(InputStream archive, DatabaseBuilder builder) throws IOException {
+        try (TarArchiveInputStream tarInputStream = new TarArchiveInputStream(new GZIPInputStream(archive))) {
+            TarArchiveEntry tarArchiveEntry = tarInputStream.getNextTarEntry();
+            while (tarArchiveEntry != null) {
+                builder.processInputStream(tarArchiveEntry.getName(), tarInputStream);
+                Date fileDate = tarArchiveEntry.getLastModifiedDate();
+                lastModifiedDate = lastModifiedDate.before(fileDate) ? fileDate : lastModifiedDate;
+                tarArchiveEntry = tarInputStream.getNextTarEntry();
+            }
+        }
+    }
 }
@@ -10,7 +10,9 @@ import com.yahoo.covid19.database.models.LatestHealthRecords;
 import com.yahoo.covid19.database.models.HistoricalHealthRecords;
 import com.yahoo.covid19.database.models.Insertable;
 import com.yahoo.covid19.database.models.Metadata;
+import com.yahoo.covid19.database.models.PlaceHierarchy;
 import com.yahoo.covid19.database.models.Places;
+import com.yahoo.covid19.database.models.SourceFiles;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -18,6 +20,9 @@ import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Options;
 
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteStreams;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonSyntaxException;
@@ -27,25 +32,41 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.cli.ParseException;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
-import java.util.HashSet;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -56,15 +77,22 @@ import java.util.stream.Collectors;
 @Slf4j
 public class DatabaseBuilder {
 
-    public static final SimpleDateFormat REFERENCE_DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd", Locale.ENGLISH);
-    public static final SimpleDateFormat DB_DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    // SimpleDateFormat is not thread safe, so every parse thread gets its own copy.
+    public static final ThreadLocal<SimpleDateFormat> REFERENCE_DATE_FORMAT =
+            ThreadLocal.withInitial(() -> utcDateFormat("yyyy-MM-dd"));
+    public static final ThreadLocal<SimpleDateFormat> DB_DATE_FORMAT =
+            ThreadLocal.withInitial(() -> utcDateFormat("yyyy-MM-dd HH:mm:ss"));
 
-    static {
-        REFERENCE_DATE_FORMAT.setTimeZone(TimeZone.getTimeZone("UTC"));
-        DB_DATE_FORMAT.setTimeZone(TimeZone.getTimeZone("UTC"));
+    private static SimpleDateFormat utcDateFormat(String pattern) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat(pattern, Locale.ENGLISH);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return dateFormat;
     }
 
     private static final String JDBC_DRIVER = "org.h2.Driver";
+    public static final int DEFAULT_BATCH_SIZE = 0;
+    private static final int BULK_LOAD_CACHE_SIZE_KB = 128 * 1024;
+    private static final int DEFAULT_CACHE_SIZE_KB = 16 * 1024;
     private static final String DATA_RESOURCE_FILE = "covid-19-data.tar.gz";
 
     private static final String CREATE_PLACE = "CREATE TABLE IF NOT EXISTS place\n" +
@@ -78,8 +106,9 @@ public class DatabaseBuilder {
             "    latitude DOUBLE NOT NULL,\n" +
             "    population BIGINT DEFAULT NULL,\n" +
             "    PRIMARY KEY (id)\n" +
-            ");\n" +
-            "CREATE INDEX placeWikiIdx ON place (wikiId);\n" +
+            ");\n";
+
+    private static final String CREATE_PLACE_INDEXES = "CREATE INDEX placeWikiIdx ON place (wikiId);\n" +
             "CREATE INDEX placeLabelIdx ON place (label);\n ";
 
     private static final String CREATE_RELATIONSHIPS = "CREATE TABLE IF NOT EXISTS relationship_hierarchy\n" +
@@ -112,7 +141,9 @@ public class DatabaseBuilder {
             "    avgWeeklyConfirmedCases DOUBLE DEFAULT NULL,\n" +
             "    avgWeeklyRecoveredCases DOUBLE DEFAULT NULL,\n" +
             "    PRIMARY KEY (id)\n" +
-            ");\n" +
+            ");\n";
+
+    private static final String CREATE_HEALTH_RECORDS_INDEXES =
             "CREATE INDEX healthRecordsRegionIdIdx ON health_records (regionId);\n" +
             "CREATE INDEX healthRecordsDateIdIdx ON health_records (referenceDate);";
 
@@ -132,7 +163,9 @@ public class DatabaseBuilder {
             "    totalRecoveredCases BIGINT DEFAULT NULL,\n" +
             "    totalTestedCases BIGINT DEFAULT NULL,\n" +
             "    PRIMARY KEY (id)\n" +
-            ");\n" +
+            ");\n";
+
+    private static final String CREATE_LATEST_HEALTH_RECORDS_INDEXES =
             "CREATE INDEX latestHealthRecordsRegionIdIdx ON latest_health_records (regionId);";
 
     private static final String CREATE_METADATA = "CREATE TABLE IF NOT EXISTS metadata\n" +
@@ -143,21 +176,148 @@ public class DatabaseBuilder {
             "    publishedDate TIMESTAMP NOT NULL\n" +
             ");";
 
+    private static final String CREATE_SOURCE_FILES = "CREATE TABLE IF NOT EXISTS source_files\n" +
+            "(\n" +
+            "    fileName VARCHAR(255) NOT NULL,\n" +
+            "    contentHash VARCHAR(64) NOT NULL,\n" +
+            "    totalRecords BIGINT NOT NULL,\n" +
+            "    minReferenceDate VARCHAR(10) DEFAULT NULL,\n" +
+            "    maxReferenceDate VARCHAR(10) DEFAULT NULL,\n" +
+            "    PRIMARY KEY (fileName)\n" +
+            ");";
+
+    // Primary key of every table, used to compare an incremental build with a full build row by row.
+    private static final Map<String, String> TABLE_KEYS = new LinkedHashMap<>();
+    static {
+        TABLE_KEYS.put("place", "id");
+        TABLE_KEYS.put("relationship_hierarchy", "childId, parentId");
+        TABLE_KEYS.put(HistoricalHealthRecords.TABLE_NAME, "id");
+        TABLE_KEYS.put(LatestHealthRecords.TABLE_NAME, "id");
+        TABLE_KEYS.put("metadata", "id");
+        TABLE_KEYS.put(SourceFiles.TABLE_NAME, "fileName");
+        TABLE_KEYS.put(HealthRollups.TABLE_NAME, "id");
+        TABLE_KEYS.put(PlaceAncestors.TABLE_NAME, "placeId, ancestorId");
+    }
+
     private Map<String, Insertable> foreignKeyMap;
 
     public final static String PATH_SEPARATOR = System.getProperty("file.separator");
     private Gson gson;
+    private boolean reflectiveDecoding = false;
     List<Insertable> insertables;
-    List<Insertable> invalidInsertables = new ArrayList<>();
+    private final Map<ErrorCodes, Integer> invalidRecordCounts = new EnumMap<>(ErrorCodes.class);
     private File outputDirectory;
     private long totalInputRecords = 0;
     private long totalDuplicateRecords = 0;
     private final double invalid_threshold;
     private final boolean failOnThresholdError;
     private Date lastModifiedDate = new Date();
+    private String healthRecordsStartDate;
+    private String healthRecordsEndDate;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private long writeStartTime;
+    private boolean bulkLoad = false;
+
+    // Wall clock time of each build phase in milliseconds, in the order they ran.
+    private final Map<String, Long> phaseTimes = new LinkedHashMap<>();
+    private long readStartTime;
+
+    // Parallel parsing state. Files are parsed on the pool and merged back in the order they were read.
+    private int parseThreads = 1;
+    private ForkJoinPool parsePool;
+    private final Deque<ForkJoinTask<ParsedFile>> pendingFiles = new ArrayDeque<>();
+
+    // Streaming mode state
+    private boolean streaming = false;
+    private DBConnector streamingConnector;
+    private final RecordKeys streamedIds = new RecordKeys();
+    private final List<SpooledFile> spooledFiles = new ArrayList<>();
+
+    // Region ids and the text fields repeated by every health record share one String instance per value.
+    private final StringDictionary regionIds = new StringDictionary();
+    private final StringDictionary recordValues = new StringDictionary();
+
+    // Manifest of the data files read by this build, keyed by the file name inside the archive.
+    private final Map<String, SourceFiles> sourceFiles = new LinkedHashMap<>();
+
+    // Incremental build state. previousManifest is null unless a previous database was given.
+    private File previousDatabase;
+    private Map<String, SourceFiles> previousManifest;
+    private final List<SourceFiles> unchangedFiles = new ArrayList<>();
+    private boolean verifyIncremental = false;
+    // Reads the data files again for a full build, when the incremental one is not possible or is verified.
+    // Without it, every data file is kept on disk in read order for that purpose.
+    private InputReplay inputReplay;
+    private final List<SpooledFile> inputFiles = new ArrayList<>();
+
+    /**
+     * Reads every data file of the build again, such as from the archive they came from.
+     */
+    public interface InputReplay {
+        /**
+         * Hands every data file to the builder with {@link #processInputStream}, in the original order.
+         */
+        void replay(DatabaseBuilder builder) throws IOException;
+    }
+
+    /**
+     * The records parsed from one data file by a parse thread.
+     */
+    private static class ParsedFile {
+        private final SourceFiles source;
+        private final List<Insertable> rows = new ArrayList<>();
+        private long totalLines = 0;
+
+        ParsedFile(SourceFiles source) {
+            this.source = source;
+        }
+    }
+
+    /**
+     * The ids of the records accepted so far, per table. Health record ids are name based UUIDs and are kept as
+     * pairs of longs. Other ids are coded by a dictionary, which is cheap as those tables are small.
+     */
+    private static class RecordKeys {
+        private final Map<String, LongPairHashSet> keysByTable = new HashMap<>();
+        private final StringDictionary textIds = new StringDictionary();
+
+        /**
+         * @return true if no record of the table had this id yet.
+         */
+        boolean add(Object id, String tableName) {
+            LongPairHashSet keys = keysByTable.computeIfAbsent(tableName, name -> new LongPairHashSet());
+            if (id instanceof UUID) {
+                UUID uuid = (UUID) id;
+                return keys.add(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+            }
+            // Version 3 UUIDs never have a zero high half, so the codes cannot clash with them.
+            return keys.add(0, textIds.intern(String.valueOf(id)));
+        }
+    }
+
+    /**
+     * A data file that was parked on disk to be read again later.
+     */
+    private static class SpooledFile {
+        private final String fileName;
+        private final Class<? extends Insertable> tableType;
+        private final File file;
+        private final SourceFiles source;
+
+        SpooledFile(String fileName, Class<? extends Insertable> tableType, File file, SourceFiles source) {
+            this.fileName = fileName;
+            this.tableType = tableType;
+            this.file = file;
+            this.source = source;
+        }
+    }
 
     public class DBConnector implements Closeable {
         private Connection connection = null;
+        // One cached insert statement per SQL string (i.e. per table) for the batched write path.
+        private final Map<String, PreparedStatement> batchStatements = new LinkedHashMap<>();
+        private int pendingRows = 0;
+        private long rowsWritten = 0;
 
         public DBConnector() throws SQLException {
             close();
@@ -197,7 +357,7 @@ public class DatabaseBuilder {
         }
 
         public Object executePreparedStatement(PreparedStatement preparedStatement, Function<ResultSet, Object> function) throws SQLException {
-            log.info("Running SQL: {}", preparedStatement);
+            log.trace("Running SQL: {}", preparedStatement);
             boolean hasResult = preparedStatement.execute();
 
             if (hasResult) {
@@ -208,9 +368,87 @@ public class DatabaseBuilder {
             return null;
         }
 
+        /**
+         * Executes a single insert outside of a batch.
+         * @param preparedStatement The insert statement with its parameters filled in.
+         * @throws SQLException
+         */
+        public void executeInsert(PreparedStatement preparedStatement) throws SQLException {
+            executePreparedStatement(preparedStatement);
+            rowsWritten += 1;
+        }
+
+        /**
+         * Returns the cached insert statement for the given SQL, preparing it on first use.
+         * Auto-commit is turned off so that rows are committed once per batch.
+         * @param sqlQueryStr The insert SQL.
+         * @return A reusable prepared statement.
+         * @throws SQLException
+         */
+        public PreparedStatement getBatchStatement(String sqlQueryStr) throws SQLException {
+            PreparedStatement statement = batchStatements.get(sqlQueryStr);
+            if (statement == null) {
+                if (connection == null) {
+                    throw new IllegalStateException("DB Connection error");
+                }
+                connection.setAutoCommit(false);
+                statement = connection.prepareStatement(sqlQueryStr);
+                batchStatements.put(sqlQueryStr, statement);
+            }
+            return statement;
+        }
+
+        /**
+         * Adds the current parameters of a cached statement to the batch and flushes once the batch is full.
+         * @param preparedStatement A statement returned by {@link #getBatchStatement(String)}.
+         * @throws SQLException
+         */
+        public void addBatch(PreparedStatement preparedStatement) throws SQLException {
+            log.trace("Batching SQL: {}", preparedStatement);
+            preparedStatement.addBatch();
+            pendingRows += 1;
+            if (pendingRows >= batchSize) {
+                executeBatches();
+            }
+        }
+
+        /**
+         * Executes every pending batch and commits.
+         * @throws SQLException
+         */
+        public void executeBatches() throws SQLException {
+            if (pendingRows == 0) {
+                return;
+            }
+            for (PreparedStatement statement : batchStatements.values()) {
+                statement.executeBatch();
+            }
+            connection.commit();
+            rowsWritten += pendingRows;
+            pendingRows = 0;
+        }
+
+        /**
+         * Commits the open transaction. Only needed once a batch statement has turned auto-commit off.
+         * @throws SQLException
+         */
+        public void commit() throws SQLException {
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        }
+
+        public long getRowsWritten() {
+            return rowsWritten;
+        }
+
         @Override
         public void close() {
             try {
+                for (PreparedStatement statement : batchStatements.values()) {
+                    statement.close();
+                }
+                batchStatements.clear();
                 if (connection != null) {
                     connection.close();
                 }
@@ -229,37 +467,228 @@ public class DatabaseBuilder {
     public DatabaseBuilder(File outputDirectory, double invalid_threshold, boolean failOnThresholdError) {
         this.outputDirectory = outputDirectory;
         insertables = new ArrayList<>();
-        gson = new GsonBuilder().registerTypeAdapter(Date.class, new GsonUTCDateAdapter()).create();
+        gson = createGson(false);
         this.invalid_threshold = invalid_threshold;
         this.failOnThresholdError = failOnThresholdError;
     }
 
+    /**
+     * Creates the Gson instance that decodes the input lines.
+     * @param reflective true to bind records through reflection instead of the streaming decoders.
+     */
+    public static Gson createGson(boolean reflective) {
+        GsonBuilder builder = new GsonBuilder().registerTypeAdapter(Date.class, new GsonUTCDateAdapter());
+        if (!reflective) {
+            builder.registerTypeAdapter(Places.class, new PlacesTypeAdapter())
+                    .registerTypeAdapter(LatestHealthRecords.class,
+                            new HealthRecordsTypeAdapter<>(LatestHealthRecords::new))
+                    .registerTypeAdapter(HistoricalHealthRecords.class,
+                            new HealthRecordsTypeAdapter<>(HistoricalHealthRecords::new));
+        }
+        return builder.create();
+    }
+
+    /**
+     * Switches back to Gson's reflective binding of the input records.
+     * @param reflectiveDecoding true to bind records through reflection instead of the streaming decoders.
+     */
+    public void setReflectiveDecoding(boolean reflectiveDecoding) {
+        this.reflectiveDecoding = reflectiveDecoding;
+        gson = createGson(reflectiveDecoding);
+    }
+
     public void setLastModifiedDate(Date lastModifiedDate) {
         this.lastModifiedDate = lastModifiedDate;
     }
 
+    /**
+     * Enables streaming mode. Health records are validated and inserted as soon as they are read instead of
+     * being held in memory until {@link #build()}. Files that arrive before region-metadata.json are spooled
+     * to disk and replayed once the places are loaded.
+     * @param streaming true to stream records into the database.
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Sets the number of threads used to parse the daily health record files. Parsed files are merged back
+     * in the order they were read, so the database contents do not depend on the number of threads.
+     * @param parseThreads Number of parse threads. 1 parses on the calling thread.
+     */
+    public void setParseThreads(int parseThreads) {
+        this.parseThreads = parseThreads;
+        if (parsePool != null) {
+            parsePool.shutdown();
+        }
+        parsePool = parseThreads > 1 ? new ForkJoinPool(parseThreads) : null;
+    }
+
+    /**
+     * Sets how many rows are sent to H2 per JDBC batch and commit.
+     * @param batchSize Rows per batch. Zero or less executes and auto-commits every insert on its own.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Enables bulk-load mode. The tables are created without their secondary indexes, which are built once
+     * after all rows are written, followed by ANALYZE. Incremental builds write into an existing schema and
+     * are not affected.
+     * @param bulkLoad true to defer index creation.
+     */
+    public void setBulkLoad(boolean bulkLoad) {
+        this.bulkLoad = bulkLoad;
+    }
+
+    /**
+     * Enables incremental builds. The data files are compared with the manifest (source_files table) of the
+     * previous database by content hash; only new, changed and removed files are applied on top of a copy of
+     * it. Falls back to a full build when the previous database has no manifest, region-metadata.json
+     * changed or a file to apply shares a reference date with an unchanged file. Incremental builds do not
+     * stream.
+     * @param previousDatabase Directory holding the previous database.
+     */
+    public void setPreviousDatabase(File previousDatabase) {
+        this.previousDatabase = previousDatabase;
+        this.previousManifest = readManifest(previousDatabase);
+    }
+
+    /**
+     * Lets the full build of an incremental one read the data files again from their source, instead of keeping
+     * them all on disk while the incremental build runs.
+     * @param inputReplay Reads the data files again.
+     */
+    public void setInputReplay(InputReplay inputReplay) {
+        this.inputReplay = inputReplay;
+    }
+
+    /**
+     * Rebuilds the database from scratch after an incremental build and fails if the two differ.
+     * @param verifyIncremental true to verify incremental builds.
+     */
+    public void setVerifyIncremental(boolean verifyIncremental) {
+        this.verifyIncremental = verifyIncremental;
+    }
+
     public void build() {
         TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
-        Metadata metadata = new Metadata(insertables, lastModifiedDate);
-        insertables.add(metadata);
-        processInsertables();
+        drainParsedFiles();
+        if (parsePool != null) {
+            parsePool.shutdown();
+        }
+        phaseTimes.put("read", readStartTime == 0 ? 0 : System.currentTimeMillis() - readStartTime);
+
+        if (previousManifest != null && canBuildIncrementally()) {
+            buildIncrementally();
+            validate();
+            if (verifyIncremental) {
+                verifyIncrementalBuild();
+            }
+            deleteInputFiles();
+            logPhases();
+            return;
+        }
+        if (previousManifest != null) {
+            // A full build creates the tables, so it cannot run on top of the previous database. The files are
+            // read again in their original order, so the same duplicate records are dropped as in any full build.
+            try {
+                Files.deleteIfExists(new File(outputDirectory, DBUtils.DB_FILE_NAME).toPath());
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            newFullBuilder(outputDirectory, failOnThresholdError).build();
+            deleteInputFiles();
+            return;
+        }
+
+        Metadata metadata = new Metadata(healthRecordsStartDate, healthRecordsEndDate, lastModifiedDate);
+        if (isStreaming()) {
+            finishStreaming(metadata);
+        } else {
+            insertables.add(metadata);
+            insertables.addAll(sourceFiles.values());
+            processInsertables();
+        }
+        validate();
+        logPhases();
+    }
+
+    private void validate() {
+        long start = System.currentTimeMillis();
         validateDbRecordCount();
+        phaseTimes.put("validate", System.currentTimeMillis() - start);
+    }
+
+    private void logPhases() {
+        String phases = phaseTimes.entrySet().stream()
+                .map(phase -> phase.getKey() + " " + phase.getValue() + " ms")
+                .collect(Collectors.joining(", "));
+        log.info("Build phases: {}. Database file size: {} bytes", phases,
+                new File(outputDirectory, DBUtils.DB_FILE_NAME).length());
+
+        // The sum of the pool peaks, which bounds the peak of the whole heap from above.
+        long peakHeap = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .mapToLong(pool -> pool.getPeakUsage().getUsed())
+                .sum();
+        long collections = 0;
+        long collectionTime = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collections += Math.max(0, collector.getCollectionCount());
+            collectionTime += Math.max(0, collector.getCollectionTime());
+        }
+        log.info("Peak heap: {} MB. GC: {} collections in {} ms", peakHeap / (1024 * 1024), collections,
+                collectionTime);
     }
 
     public void processInputStream(String fileName, InputStream inputStream) {
+        if (readStartTime == 0) {
+            readStartTime = System.currentTimeMillis();
+        }
+        Class<? extends Insertable> tableType;
+        if (fileName.endsWith("region-metadata.json")) {
+            tableType = Places.class;
+        } else if (fileName.matches(".*/data/by-region-\\d{4}-\\d{2}-\\d{2}\\.json")) {
+            tableType = HistoricalHealthRecords.class;
+        } else if (fileName.endsWith("by-region-latest.json")) {
+            tableType = LatestHealthRecords.class;
+        } else {
+            return;
+        }
+
         try {
-            if (fileName.endsWith("region-metadata.json")) {
-                log.info("Processing Data File: {}", fileName);
-                BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-                processInsertable(Places.class, reader);
-            } else if (fileName.matches(".*/data/by-region-\\d{4}-\\d{2}-\\d{2}\\.json")) {
-                log.info("Processing Data File: {}", fileName);
-                BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-                processInsertable(HistoricalHealthRecords.class, reader);
-            } else if (fileName.endsWith("by-region-latest.json")) {
-                log.info("Processing Data File: {}", fileName);
-                BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-                processInsertable(LatestHealthRecords.class, reader);
+            SourceFiles source = new SourceFiles(getSourceFileName(fileName));
+            sourceFiles.put(source.getFileName(), source);
+            if (previousManifest == null) {
+                processFile(fileName, tableType, inputStream, source);
+                return;
+            }
+
+            // The file is hashed on its way to disk, and only read again if it changed. Without an input
+            // replay, it stays there for a full build; with one, only one file is on disk at a time.
+            HashingInputStream hashingInputStream = new HashingInputStream(Hashing.sha256(), inputStream);
+            File spoolFile = spool(hashingInputStream);
+            try {
+                source.setContentHash(hashingInputStream.hash().toString());
+                if (inputReplay == null) {
+                    inputFiles.add(new SpooledFile(fileName, tableType, spoolFile, null));
+                }
+                SourceFiles previous = previousManifest.get(source.getFileName());
+                if (tableType != Places.class && previous != null
+                        && previous.getContentHash().equals(source.getContentHash())) {
+                    log.info("Skipping Unchanged Data File: {}", fileName);
+                    unchangedFiles.add(source);
+                    return;
+                }
+                try (InputStream spooledInputStream = new FileInputStream(spoolFile)) {
+                    processFile(fileName, tableType, spooledInputStream, source);
+                }
+            } finally {
+                if (inputReplay != null) {
+                    spoolFile.delete();
+                }
             }
         } catch (IOException e) {
             log.error(e.getMessage());
@@ -267,34 +696,632 @@ public class DatabaseBuilder {
         }
     }
 
+    private void processFile(String fileName, Class<? extends Insertable> tableType, InputStream inputStream,
+                             SourceFiles source) throws IOException {
+        HashingInputStream hashingInputStream = new HashingInputStream(Hashing.sha256(), inputStream);
+        if (tableType == Places.class) {
+            // Keep the records in read order.
+            drainParsedFiles();
+            log.info("Processing Data File: {}", fileName);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(hashingInputStream));
+            processInsertable(tableType, reader, source);
+            if (isStreaming()) {
+                loadPlaces();
+            }
+        } else {
+            processOrSpool(fileName, tableType, hashingInputStream, source);
+        }
+        source.setContentHash(hashingInputStream.hash().toString());
+    }
+
     public void processInsertable(Class<? extends Insertable> tableType, BufferedReader reader) throws IOException {
+        processInsertable(tableType, reader, null);
+    }
+
+    private void processInsertable(Class<? extends Insertable> tableType, BufferedReader reader, SourceFiles source)
+            throws IOException {
         String line;
         do {
             line = reader.readLine();
             if (line != null) {
                 totalInputRecords += 1;
+                if (source != null) {
+                    source.setTotalRecords(source.getTotalRecords() + 1);
+                }
             }
-            try {
-                Insertable row = gson.fromJson(line, tableType);
-                if (row == null) {
-                    log.error("Invalid {} Row: {}", tableType.getName(), line);
-                    continue;
+            Insertable row = parseLine(tableType, line);
+            if (row != null) {
+                acceptRow(row, source);
+            }
+        } while (line != null);
+    }
+
+    private Insertable parseLine(Class<? extends Insertable> tableType, String line) {
+        try {
+            Insertable row = reflectiveDecoding ? null : scanLine(tableType, line);
+            if (row == null) {
+                row = gson.fromJson(line, tableType);
+            }
+            if (row == null) {
+                log.error("Invalid {} Row: {}", tableType.getName(), line);
+            }
+            return row;
+        } catch (JsonSyntaxException e) {
+            log.error("Invalid {} Row: {} Reason: {}", tableType.getName(), line, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Decodes the health records, which make up nearly all of the input, without going through Gson.
+     * @return The record, or null if the line has to be decoded by Gson.
+     */
+    private static Insertable scanLine(Class<? extends Insertable> tableType, String line) {
+        if (tableType == HistoricalHealthRecords.class) {
+            return HealthRecordsScanner.scan(line, HistoricalHealthRecords::new);
+        }
+        if (tableType == LatestHealthRecords.class) {
+            return HealthRecordsScanner.scan(line, LatestHealthRecords::new);
+        }
+        return null;
+    }
+
+    private void acceptRow(Insertable row, SourceFiles source) {
+        if (row instanceof LatestHealthRecords) {
+            LatestHealthRecords record = (LatestHealthRecords) row;
+            record.setRegionId(regionIds.canonical(record.getRegionId()));
+            record.setLabel(recordValues.canonical(record.getLabel()));
+            record.setReferenceDate(recordValues.canonical(record.getReferenceDate()));
+            record.setDataSource(recordValues.canonical(record.getDataSource()));
+            String referenceDate = record.getReferenceDate();
+            trackReferenceDate(referenceDate);
+            if (source != null) {
+                source.trackReferenceDate(referenceDate);
+            }
+        }
+        if (isStreaming() && foreignKeyMap != null) {
+            insertStreaming(row);
+        } else {
+            insertables.add(row);
+        }
+    }
+
+    /**
+     * Reads a data file into memory and hands it to the parse pool.
+     * Only a bounded number of files are buffered ahead of the merge.
+     */
+    private void submitParse(Class<? extends Insertable> tableType, InputStream inputStream, SourceFiles source)
+            throws IOException {
+        byte[] contents = ByteStreams.toByteArray(inputStream);
+        pendingFiles.add(parsePool.submit(() -> parseFile(tableType, contents, source)));
+        while (pendingFiles.size() > parseThreads * 2) {
+            mergeParsedFile(pendingFiles.poll().join());
+        }
+    }
+
+    /**
+     * Runs on a parse thread. Gson is thread safe and the record ids (name based UUIDs) are computed here
+     * so the merging thread only has to validate and insert.
+     */
+    private ParsedFile parseFile(Class<? extends Insertable> tableType, byte[] contents, SourceFiles source) {
+        ParsedFile parsedFile = new ParsedFile(source);
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(contents)))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                parsedFile.totalLines += 1;
+                Insertable row = parseLine(tableType, line);
+                if (row != null) {
+                    row.getId();
+                    parsedFile.rows.add(row);
                 }
-                insertables.add(row);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return parsedFile;
+    }
+
+    private void mergeParsedFile(ParsedFile parsedFile) {
+        totalInputRecords += parsedFile.totalLines;
+        if (parsedFile.source != null) {
+            parsedFile.source.setTotalRecords(parsedFile.source.getTotalRecords() + parsedFile.totalLines);
+        }
+        parsedFile.rows.forEach(row -> acceptRow(row, parsedFile.source));
+    }
+
+    private void drainParsedFiles() {
+        while (!pendingFiles.isEmpty()) {
+            mergeParsedFile(pendingFiles.poll().join());
+        }
+    }
+
+    private void processOrSpool(String fileName, Class<? extends Insertable> tableType, InputStream inputStream,
+                                SourceFiles source) throws IOException {
+        if (isStreaming() && foreignKeyMap == null) {
+            log.info("Spooling Data File until places are loaded: {}", fileName);
+            File spoolFile = File.createTempFile(DBUtils.DB_NAME + "-spool-", ".json");
+            spoolFile.deleteOnExit();
+            Files.copy(inputStream, spoolFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            spooledFiles.add(new SpooledFile(fileName, tableType, spoolFile, source));
+            return;
+        }
+
+        log.info("Processing Data File: {}", fileName);
+        if (parsePool != null) {
+            submitParse(tableType, inputStream, source);
+            return;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
+        processInsertable(tableType, reader, source);
+    }
+
+    private void trackReferenceDate(String currentDate) {
+        if (currentDate == null) {
+            return;
+        }
+        if (healthRecordsStartDate == null || healthRecordsStartDate.compareTo(currentDate) > 0) {
+            healthRecordsStartDate = currentDate;
+        }
+        if (healthRecordsEndDate == null || healthRecordsEndDate.compareTo(currentDate) < 0) {
+            healthRecordsEndDate = currentDate;
+        }
+    }
 
-            } catch (JsonSyntaxException e) {
-                log.error("Invalid {} Row: {} Reason: {}", tableType.getName(), line, e.getMessage());
-                continue;
+    private boolean isStreaming() {
+        return streaming && previousManifest == null;
+    }
+
+    /**
+     * The archive prefixes every entry with the repository name and commit, so the manifest is keyed by the
+     * path below it.
+     */
+    private static String getSourceFileName(String fileName) {
+        return fileName.substring(fileName.indexOf('/') + 1);
+    }
+
+    private static File spool(InputStream inputStream) throws IOException {
+        File spoolFile = File.createTempFile(DBUtils.DB_NAME + "-spool-", ".json");
+        spoolFile.deleteOnExit();
+        Files.copy(inputStream, spoolFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return spoolFile;
+    }
+
+    /**
+     * Reads the source_files table of a previous database.
+     * @return The manifest keyed by file name. Empty if the database or its manifest does not exist.
+     */
+    private static Map<String, SourceFiles> readManifest(File databaseDirectory) {
+        Map<String, SourceFiles> manifest = new HashMap<>();
+        String jdbcUrl = "jdbc:h2:" + databaseDirectory + PATH_SEPARATOR + DBUtils.DB_NAME + ";IFEXISTS=TRUE";
+        try {
+            Class.forName(JDBC_DRIVER);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+        try (Connection connection = DriverManager.getConnection(jdbcUrl, "", "");
+             PreparedStatement statement = connection.prepareStatement("SELECT fileName, contentHash, "
+                     + "totalRecords, minReferenceDate, maxReferenceDate FROM " + SourceFiles.TABLE_NAME);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                SourceFiles source = new SourceFiles(resultSet.getString(1));
+                source.setContentHash(resultSet.getString(2));
+                source.setTotalRecords(resultSet.getLong(3));
+                source.setMinReferenceDate(resultSet.getString(4));
+                source.setMaxReferenceDate(resultSet.getString(5));
+                manifest.put(source.getFileName(), source);
             }
-        } while (line != null);
+        } catch (SQLException e) {
+            log.warn("No manifest in previous database {}, doing a full build. Reason: {}",
+                    databaseDirectory, e.getMessage());
+        }
+        return manifest;
+    }
+
+    private boolean canBuildIncrementally() {
+        SourceFiles places = sourceFiles.values().stream()
+                .filter(source -> source.getFileName().endsWith("region-metadata.json"))
+                .findFirst()
+                .orElse(null);
+        SourceFiles previousPlaces = places == null ? null : previousManifest.get(places.getFileName());
+        if (previousPlaces == null || !previousPlaces.getContentHash().equals(places.getContentHash())) {
+            log.info("Places changed since the previous build, doing a full build.");
+            return false;
+        }
+        return !hasOverlappingDates();
+    }
+
+    /**
+     * The rows of a changed or removed file are deleted by the reference dates it covers, and health record ids
+     * are derived from the region and the date. Both only hold if no unchanged file shares a date with a file
+     * that is applied: its rows would be deleted with the applied file, or clash with the applied rows.
+     * @return true if an unchanged file shares a date with a new, changed or removed file.
+     */
+    private boolean hasOverlappingDates() {
+        List<SourceFiles> unchanged = new ArrayList<>();
+        List<SourceFiles> applied = new ArrayList<>();
+        for (SourceFiles previous : previousManifest.values()) {
+            SourceFiles current = sourceFiles.get(previous.getFileName());
+            if (current != null && previous.getContentHash().equals(current.getContentHash())) {
+                unchanged.add(previous);
+            } else {
+                applied.add(previous);
+            }
+        }
+        for (SourceFiles current : sourceFiles.values()) {
+            SourceFiles previous = previousManifest.get(current.getFileName());
+            if (previous == null || !previous.getContentHash().equals(current.getContentHash())) {
+                applied.add(current);
+            }
+        }
+
+        for (SourceFiles appliedFile : applied) {
+            for (SourceFiles unchangedFile : unchanged) {
+                if (isDailyFile(appliedFile) && isDailyFile(unchangedFile)
+                        && appliedFile.getMinReferenceDate().compareTo(unchangedFile.getMaxReferenceDate()) <= 0
+                        && unchangedFile.getMinReferenceDate().compareTo(appliedFile.getMaxReferenceDate()) <= 0) {
+                    log.info("{} shares reference dates with the unchanged {}, doing a full build.",
+                            appliedFile.getFileName(), unchangedFile.getFileName());
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the file holds dated rows of the health_records table.
+     */
+    private static boolean isDailyFile(SourceFiles source) {
+        return source.getMinReferenceDate() != null
+                && !source.getFileName().endsWith("by-region-latest.json")
+                && !source.getFileName().endsWith("region-metadata.json");
+    }
+
+    /**
+     * Creates a builder that reads every data file of this build from scratch, in the order this one read them.
+     * @param directory The directory to build in.
+     * @param failOnError true to fail the build when too many records are invalid.
+     */
+    private DatabaseBuilder newFullBuilder(File directory, boolean failOnError) {
+        DatabaseBuilder fullBuilder = new DatabaseBuilder(directory, invalid_threshold, failOnError);
+        fullBuilder.setBatchSize(batchSize);
+        fullBuilder.setBulkLoad(bulkLoad);
+        fullBuilder.setStreaming(streaming);
+        fullBuilder.setReflectiveDecoding(reflectiveDecoding);
+        fullBuilder.setParseThreads(parseThreads);
+        fullBuilder.setLastModifiedDate(lastModifiedDate);
+        try {
+            if (inputReplay != null) {
+                log.info("Reading the data files again for a full build in {}", directory);
+                inputReplay.replay(fullBuilder);
+                return fullBuilder;
+            }
+            for (SpooledFile inputFile : inputFiles) {
+                try (InputStream inputStream = new FileInputStream(inputFile.file)) {
+                    fullBuilder.processInputStream(inputFile.fileName, inputStream);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return fullBuilder;
+    }
+
+    private void deleteInputFiles() {
+        inputFiles.forEach(inputFile -> inputFile.file.delete());
+        inputFiles.clear();
     }
 
+    /**
+     * Applies the new, changed and removed files on top of a copy of the previous database. Unchanged files
+     * keep their rows and contribute their manifest totals.
+     */
+    private void buildIncrementally() {
+        log.info("Building incrementally on top of {}", previousDatabase);
+        for (SourceFiles unchangedFile : unchangedFiles) {
+            SourceFiles previous = previousManifest.get(unchangedFile.getFileName());
+            unchangedFile.setTotalRecords(previous.getTotalRecords());
+            unchangedFile.setMinReferenceDate(previous.getMinReferenceDate());
+            unchangedFile.setMaxReferenceDate(previous.getMaxReferenceDate());
+            totalInputRecords += previous.getTotalRecords();
+            trackReferenceDate(previous.getMinReferenceDate());
+            trackReferenceDate(previous.getMaxReferenceDate());
+        }
+
+        try {
+            outputDirectory.mkdirs();
+            Path previousFile = new File(previousDatabase, DBUtils.DB_FILE_NAME).toPath();
+            Path outputFile = new File(outputDirectory, DBUtils.DB_FILE_NAME).toPath();
+            if (!Files.exists(outputFile) || !Files.isSameFile(previousFile, outputFile)) {
+                Files.copy(previousFile, outputFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        buildForeignKeyValidatorMap();
+        try (DBConnector connector = newDBConnector()) {
+            for (SourceFiles previous : previousManifest.values()) {
+                SourceFiles current = sourceFiles.get(previous.getFileName());
+                if (current == null || !previous.getContentHash().equals(current.getContentHash())) {
+                    deleteRecords(connector, previous);
+                }
+            }
+            for (SourceFiles current : sourceFiles.values()) {
+                SourceFiles previous = previousManifest.get(current.getFileName());
+                if (previous == null || !previous.getContentHash().equals(current.getContentHash())) {
+                    deleteRecords(connector, current);
+                }
+            }
+            connector.executeSQLQuery("DELETE FROM metadata;");
+            connector.executeSQLQuery("DELETE FROM " + SourceFiles.TABLE_NAME + ";");
+
+            // Places are unchanged and already in the database; they are only needed for the foreign keys.
+            insertables.removeIf(insertable -> insertable.getTableName().equals(Places.TABLE_NAME));
+            insertables.add(new Metadata(healthRecordsStartDate, healthRecordsEndDate, lastModifiedDate));
+            insertables.addAll(sourceFiles.values());
+
+            writeStartTime = System.currentTimeMillis();
+            RecordKeys idSet = new RecordKeys();
+            for (Insertable insertable : insertables) {
+                if (isInsertable(insertable, idSet)) {
+                    insertable.getForiegnKeyFields(foreignKeyMap);
+                    insertRecord(connector, insertable);
+                }
+            }
+            connector.executeBatches();
+            logWriteRate(connector);
+
+            // The previous database may predate the rollups and the ancestors.
+            connector.executeSQLQuery(HealthRollups.CREATE_HEALTH_ROLLUPS);
+            connector.executeSQLQuery(HealthRollups.CREATE_HEALTH_ROLLUPS_INDEXES);
+            connector.executeSQLQuery(PlaceAncestors.CREATE_PLACE_ANCESTORS);
+            connector.executeSQLQuery(PlaceAncestors.CREATE_PLACE_ANCESTORS_INDEXES);
+            buildRollups(connector);
+            buildAncestors(connector);
+            writeSeries(connector);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Deletes the rows that were read from a data file, by the reference dates it covers. No unchanged file
+     * covers any of these dates, see {@link #hasOverlappingDates()}.
+     */
+    private void deleteRecords(DBConnector connector, SourceFiles source) throws SQLException {
+        if (source.getFileName().endsWith("by-region-latest.json")) {
+            connector.executeSQLQuery("DELETE FROM " + LatestHealthRecords.TABLE_NAME + ";");
+            return;
+        }
+        if (source.getMinReferenceDate() == null || source.getFileName().endsWith("region-metadata.json")) {
+            return;
+        }
+        try (PreparedStatement statement = connector.getPreparedStatement("DELETE FROM "
+                + HistoricalHealthRecords.TABLE_NAME + " WHERE referenceDate BETWEEN ? AND ?;")) {
+            statement.setString(1, source.getMinReferenceDate());
+            statement.setString(2, source.getMaxReferenceDate());
+            connector.executePreparedStatement(statement);
+        }
+    }
+
+    /**
+     * Builds the same input from scratch in a temporary directory and compares every table with the
+     * incremental result.
+     */
+    private void verifyIncrementalBuild() {
+        File verificationDirectory;
+        try {
+            verificationDirectory = Files.createTempDirectory(DBUtils.DB_NAME + "-verify-").toFile();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        verificationDirectory.deleteOnExit();
+        log.info("Verifying incremental build against a full build in {}", verificationDirectory);
+
+        DatabaseBuilder fullBuilder = newFullBuilder(verificationDirectory, false);
+        fullBuilder.build();
+
+        try (DBConnector incremental = newDBConnector(); DBConnector full = fullBuilder.newDBConnector()) {
+            for (Map.Entry<String, String> table : TABLE_KEYS.entrySet()) {
+                String sql = "SELECT * FROM " + table.getKey() + " ORDER BY " + table.getValue() + ";";
+                try (PreparedStatement incrementalStatement = incremental.getPreparedStatement(sql);
+                     PreparedStatement fullStatement = full.getPreparedStatement(sql);
+                     ResultSet incrementalRows = incrementalStatement.executeQuery();
+                     ResultSet fullRows = fullStatement.executeQuery()) {
+                    compareRows(table.getKey(), incrementalRows, fullRows);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        log.info("Incremental build matches the full build.");
+    }
+
+    private static void compareRows(String tableName, ResultSet incrementalRows, ResultSet fullRows)
+            throws SQLException {
+        int columnCount = fullRows.getMetaData().getColumnCount();
+        long row = 0;
+        while (true) {
+            boolean hasIncremental = incrementalRows.next();
+            boolean hasFull = fullRows.next();
+            if (!hasIncremental && !hasFull) {
+                return;
+            }
+            row += 1;
+            if (hasIncremental != hasFull) {
+                throw new IllegalStateException(String.format(
+                        "Incremental build of %s has %s rows than the full build", tableName,
+                        hasIncremental ? "more" : "fewer"));
+            }
+            for (int column = 1; column <= columnCount; column++) {
+                Object incrementalValue = incrementalRows.getObject(column);
+                Object fullValue = fullRows.getObject(column);
+                if (incrementalValue == null ? fullValue != null : !incrementalValue.equals(fullValue)) {
+                    throw new IllegalStateException(String.format(
+                            "Incremental build of %s differs from the full build at row %d, column %s: %s != %s",
+                            tableName, row, fullRows.getMetaData().getColumnName(column),
+                            incrementalValue, fullValue));
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolves the foreign keys from the places read so far, writes the places and replays any spooled files.
+     * After this call every health record is inserted as soon as it is parsed.
+     */
+    private void loadPlaces() throws IOException {
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        buildForeignKeyValidatorMap();
+
+        try {
+            streamingConnector = newDBConnector();
+            createTables(streamingConnector);
+            writeStartTime = System.currentTimeMillis();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+
+        List<Insertable> places = insertables;
+        insertables = new ArrayList<>();
+        places.forEach(this::insertStreaming);
+
+        for (SpooledFile spooledFile : spooledFiles) {
+            log.info("Processing Spooled Data File: {}", spooledFile.fileName);
+            try (InputStream inputStream = new FileInputStream(spooledFile.file)) {
+                if (parsePool != null) {
+                    submitParse(spooledFile.tableType, inputStream, spooledFile.source);
+                } else {
+                    processInsertable(spooledFile.tableType, new BufferedReader(new InputStreamReader(inputStream)),
+                            spooledFile.source);
+                }
+            }
+            spooledFile.file.delete();
+        }
+        spooledFiles.clear();
+        drainParsedFiles();
+    }
+
+    private void insertStreaming(Insertable insertable) {
+        if (!isInsertable(insertable, streamedIds)) {
+            return;
+        }
+        insertable.getForiegnKeyFields(foreignKeyMap);
+        try {
+            insertRecord(streamingConnector, insertable);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void finishStreaming(Metadata metadata) {
+        try {
+            if (foreignKeyMap == null) {
+                // region-metadata.json never arrived, so the spooled records are all dangling.
+                loadPlaces();
+            }
+            insertStreaming(metadata);
+            sourceFiles.values().forEach(this::insertStreaming);
+            streamingConnector.executeBatches();
+            logWriteRate(streamingConnector);
+            if (bulkLoad) {
+                createIndexes(streamingConnector);
+            }
+            buildRollups(streamingConnector);
+            buildAncestors(streamingConnector);
+            writeSeries(streamingConnector);
+        } catch (IOException | SQLException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            if (streamingConnector != null) {
+                streamingConnector.close();
+                streamingConnector = null;
+            }
+        }
+    }
+
+    /**
+     * Creates the tables. In bulk-load mode the secondary indexes are left to {@link #createIndexes}.
+     */
     public void createTables(DBConnector connector) throws SQLException {
         connector.executeSQLQuery(CREATE_PLACE);
         connector.executeSQLQuery(CREATE_RELATIONSHIPS);
         connector.executeSQLQuery(CREATE_HEALTH_RECORDS);
         connector.executeSQLQuery(CREATE_LATEST_HEALTH_RECORDS);
         connector.executeSQLQuery(CREATE_METADATA);
+        connector.executeSQLQuery(CREATE_SOURCE_FILES);
+        connector.executeSQLQuery(HealthRollups.CREATE_HEALTH_ROLLUPS);
+        connector.executeSQLQuery(PlaceAncestors.CREATE_PLACE_ANCESTORS);
+        if (bulkLoad) {
+            // Index builds sort through the page cache. CACHE_SIZE is persistent, so createIndexes resets it.
+            connector.executeSQLQuery("SET CACHE_SIZE " + BULK_LOAD_CACHE_SIZE_KB + ";");
+        }
+        if (!bulkLoad) {
+            connector.executeSQLQuery(CREATE_PLACE_INDEXES);
+            connector.executeSQLQuery(CREATE_HEALTH_RECORDS_INDEXES);
+            connector.executeSQLQuery(CREATE_LATEST_HEALTH_RECORDS_INDEXES);
+            connector.executeSQLQuery(HealthRollups.CREATE_HEALTH_ROLLUPS_INDEXES);
+            connector.executeSQLQuery(PlaceAncestors.CREATE_PLACE_ANCESTORS_INDEXES);
+        }
+    }
+
+    /**
+     * Computes the per parent, per day totals from the health records written so far.
+     */
+    public void buildRollups(DBConnector connector) throws SQLException {
+        long start = System.currentTimeMillis();
+        long rows = new HealthRollups(connector).build();
+        connector.commit();
+        phaseTimes.put("rollup", System.currentTimeMillis() - start);
+        log.info("Wrote {} health rollups", rows);
+    }
+
+    /**
+     * Computes the ancestors of every place at any depth from the relationships written so far.
+     */
+    public void buildAncestors(DBConnector connector) throws SQLException {
+        long start = System.currentTimeMillis();
+        long rows = new PlaceAncestors(connector).build();
+        connector.commit();
+        phaseTimes.put("ancestors", System.currentTimeMillis() - start);
+        log.info("Wrote {} place ancestors", rows);
+    }
+
+    /**
+     * Writes the health records of every region to the series file next to the database.
+     */
+    public void writeSeries(DBConnector connector) throws SQLException {
+        long start = System.currentTimeMillis();
+        File seriesFile = new File(outputDirectory, DBUtils.SERIES_FILE_NAME);
+        long records;
+        try {
+            records = new HealthSeriesFile(connector).write(seriesFile);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        phaseTimes.put("series", System.currentTimeMillis() - start);
+        log.info("Wrote {} health records to {} ({} bytes)", records, seriesFile, seriesFile.length());
+    }
+
+    /**
+     * Builds the secondary indexes of a bulk-loaded database in one pass each and refreshes the
+     * optimizer statistics.
+     */
+    public void createIndexes(DBConnector connector) throws SQLException {
+        long start = System.currentTimeMillis();
+        connector.executeSQLQuery(CREATE_PLACE_INDEXES);
+        connector.executeSQLQuery(CREATE_HEALTH_RECORDS_INDEXES);
+        connector.executeSQLQuery(CREATE_LATEST_HEALTH_RECORDS_INDEXES);
+        connector.executeSQLQuery(HealthRollups.CREATE_HEALTH_ROLLUPS_INDEXES);
+        connector.executeSQLQuery(PlaceAncestors.CREATE_PLACE_ANCESTORS_INDEXES);
+        phaseTimes.put("index", System.currentTimeMillis() - start);
+
+        start = System.currentTimeMillis();
+        connector.executeSQLQuery("ANALYZE;");
+        connector.executeSQLQuery("SET CACHE_SIZE " + DEFAULT_CACHE_SIZE_KB + ";");
+        phaseTimes.put("analyze", System.currentTimeMillis() - start);
     }
 
     public DBConnector newDBConnector() throws SQLException{
@@ -306,39 +1333,24 @@ public class DatabaseBuilder {
                 .filter(insertable -> insertable.getTableName().equals(Places.TABLE_NAME)
                         && insertable.getId() != null)
                 .collect(Collectors.toMap(
-                        insertable -> insertable.getId().toString(),
+                        // The same instances as the health record region ids, so lookups match on identity.
+                        insertable -> regionIds.canonical(insertable.getId().toString()),
                         insertable -> insertable,
                         (insertable1, insertable2) -> {
                             log.error("found duplicate key: {}", insertable1.getId());
                             return insertable1;
                         }
                 ));
+        PlaceHierarchy.resolveAll(foreignKeyMap);
     }
 
     public void processInsertables() {
         buildForeignKeyValidatorMap();
 
         try (DBConnector connector = newDBConnector()){
-            HashSet<Object> idSet = new HashSet<>();
+            RecordKeys idSet = new RecordKeys();
             List<Insertable> filteredInsertables = insertables.stream()
-                    .filter(insertable -> {
-                        boolean isValid = insertable.isValid(foreignKeyMap);
-                        if (!isValid) {
-                            invalidInsertables.add(insertable);
-                            log.error("Invalid insert: {}", insertable.toString());
-                            return false;
-                        }
-
-                        // don't allow duplicate insertable ids for a table
-                        boolean wasAdded = idSet.add(insertable.getId() + insertable.getTableName());
-                        if (!wasAdded) {
-                            totalDuplicateRecords += 1;
-                            log.error("Duplicate insertable key was found: {}", insertable.getId());
-                            return false;
-                        }
-
-                        return true;
-                    })
+                    .filter(insertable -> isInsertable(insertable, idSet))
                     .map(insertable -> {
                         insertable.getForiegnKeyFields(foreignKeyMap);
                         return insertable;
@@ -347,18 +1359,61 @@ public class DatabaseBuilder {
 
             createTables(connector);
 
+            writeStartTime = System.currentTimeMillis();
             for (Insertable toInsert : filteredInsertables) {
-                for (PreparedStatement insertStatement : toInsert.getStatements(connector)) {
-                    try(PreparedStatement closableStatement = insertStatement) {
-                        connector.executePreparedStatement(closableStatement);
-                    }
-                }
+                insertRecord(connector, toInsert);
+            }
+            connector.executeBatches();
+            logWriteRate(connector);
+            if (bulkLoad) {
+                createIndexes(connector);
             }
+            buildRollups(connector);
+            buildAncestors(connector);
+            writeSeries(connector);
         } catch (Exception e) {
             throw new IllegalStateException(e);
         }
     }
 
+    private boolean isInsertable(Insertable insertable, RecordKeys idSet) {
+        boolean isValid = insertable.isValid(foreignKeyMap);
+        if (!isValid) {
+            invalidRecordCounts.merge(insertable.getErrorCode(), 1, Integer::sum);
+            log.error("Invalid insert: {}", insertable.toString());
+            return false;
+        }
+
+        // don't allow duplicate insertable ids for a table
+        boolean wasAdded = idSet.add(insertable.getId(), insertable.getTableName());
+        if (!wasAdded) {
+            totalDuplicateRecords += 1;
+            log.error("Duplicate insertable key was found: {}", insertable.getId());
+            return false;
+        }
+
+        return true;
+    }
+
+    private void insertRecord(DBConnector connector, Insertable toInsert) throws SQLException {
+        if (batchSize > 0) {
+            toInsert.addBatch(connector);
+            return;
+        }
+        for (PreparedStatement insertStatement : toInsert.getStatements(connector)) {
+            try(PreparedStatement closableStatement = insertStatement) {
+                connector.executeInsert(closableStatement);
+            }
+        }
+    }
+
+    private void logWriteRate(DBConnector connector) {
+        long elapsed = Math.max(1, System.currentTimeMillis() - writeStartTime);
+        phaseTimes.put("write", elapsed);
+        log.info("Wrote {} rows in {} ms ({} rows/sec, batch size {})",
+                connector.getRowsWritten(), elapsed, connector.getRowsWritten() * 1000 / elapsed, batchSize);
+    }
+
     public void validateDbRecordCount() {
         double totalDbRecords = 0;
         double invalid_perc = 100;
@@ -383,12 +1438,8 @@ public class DatabaseBuilder {
             invalid_perc = 100 - (totalDbRecords / totalInputRecords * 100);
         }
 
-        invalidInsertables.stream()
-                .collect(Collectors.groupingBy(
-                        Insertable::getErrorCode,
-                        Collectors.summingInt((ignored) -> new Integer(1))))
-                .entrySet().stream().forEach((entry) -> {
-            log.error(String.format("Invalid Record Reason: %s, Count: %d", entry.getKey(), entry.getValue()));
+        invalidRecordCounts.forEach((errorCode, count) -> {
+            log.error(String.format("Invalid Record Reason: %s, Count: %d", errorCode, count));
         });
 
         log.debug(String.format("Total input records read = %d", totalInputRecords));
@@ -429,6 +1480,20 @@ public class DatabaseBuilder {
                     "Precentage of invalid rows allowed in input");
             options.addOption("f", "fail-on-threshold-error", true,
                     "Flag to enable build failure on threshold error.");
+            options.addOption("s", "streaming", true,
+                    "Flag to insert records as they are read instead of holding them all in memory.");
+            options.addOption("j", "parse-threads", true,
+                    "Number of threads used to parse the daily data files.");
+            options.addOption("b", "batch-size", true,
+                    "Number of rows per JDBC batch and commit. 0 disables batching.");
+            options.addOption("g", "reflective-decoding", true,
+                    "Flag to decode records with Gson reflection instead of the streaming decoders.");
+            options.addOption("l", "bulk-load", true,
+                    "Flag to create the secondary indexes after all rows are loaded.");
+            options.addOption("d", "previous-db", true,
+                    "Directory of the previous database. Only changed data files are applied on top of it.");
+            options.addOption("c", "verify-incremental", true,
+                    "Flag to rebuild from scratch after an incremental build and fail if the results differ.");
             CommandLineParser parser = new DefaultParser();
             CommandLine commandLine = parser.parse(options, args);
 
@@ -451,6 +1516,21 @@ public class DatabaseBuilder {
             log.info("Processing data from {} and writing to {}", githubTarballDownloadUrl, outputDirectory);
 
             DatabaseBuilder databaseBuilder = new DatabaseBuilder(new File(outputDirectory), invalidThreshold, failOnThresholdError);
+            databaseBuilder.setStreaming(Boolean.parseBoolean(commandLine.getOptionValue("streaming")));
+            if (commandLine.hasOption("parse-threads")) {
+                databaseBuilder.setParseThreads(Integer.parseInt(commandLine.getOptionValue("parse-threads")));
+            }
+            if (commandLine.hasOption("batch-size")) {
+                databaseBuilder.setBatchSize(Integer.parseInt(commandLine.getOptionValue("batch-size")));
+            }
+            databaseBuilder.setReflectiveDecoding(
+                    Boolean.parseBoolean(commandLine.getOptionValue("reflective-decoding")));
+            databaseBuilder.setBulkLoad(Boolean.parseBoolean(commandLine.getOptionValue("bulk-load")));
+            if (commandLine.hasOption("previous-db")) {
+                databaseBuilder.setPreviousDatabase(new File(commandLine.getOptionValue("previous-db")));
+            }
+            databaseBuilder.setVerifyIncremental(
+                    Boolean.parseBoolean(commandLine.getOptionValue("verify-incremental")));
             DataFetcher dataFetcher;
             if ("true".equals(downloadDataFromRepo)) {
                 log.info("Using data from github: {}", githubTarballDownloadUrl);
@@ -458,9 +1538,9 @@ public class DatabaseBuilder {
                         githubUsername, githubAccessToken);
             } else {
                 log.info("Using data from resource file: {}", DATA_RESOURCE_FILE);
-                InputStream tarballFileStream = DatabaseBuilder.class.getClassLoader()
-                        .getResourceAsStream(DATA_RESOURCE_FILE);
-                dataFetcher = new DataFetcher(tarballFileStream, databaseBuilder);
+                dataFetcher = new DataFetcher(
+                        () -> DatabaseBuilder.class.getClassLoader().getResourceAsStream(DATA_RESOURCE_FILE),
+                        databaseBuilder);
             }
             dataFetcher.fetchDataAndProcess();
             log.info("Finished building.");
@@ -14,5 +14,6 @@ public enum ErrorCodes {
     INVALID_DATE,
     MISSING_FOREIGN_KEY,
     DANGLING_FOREIGN_KEY,
-    MISMATCH_FOREIGN_KEY
+    MISMATCH_FOREIGN_KEY,
+    CYCLIC_FOREIGN_KEY
 }
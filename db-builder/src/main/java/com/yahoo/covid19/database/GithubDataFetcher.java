@@ -26,7 +26,7 @@ public class GithubDataFetcher extends DataFetcher {
     public GithubDataFetcher(String githubTarballUrl, DatabaseBuilder databaseBuilder,
                              String githubUsername, String githubAccessToken)
             throws IOException {
-        super(getArchiveInputStream(githubTarballUrl, githubUsername, githubAccessToken), databaseBuilder);
+        super(() -> getArchiveInputStream(githubTarballUrl, githubUsername, githubAccessToken), databaseBuilder);
     }
 
     private static InputStream getArchiveInputStream(String githubTarballUrl, String githubUsername, String githubAccessToken)
@@ -15,32 +15,32 @@ import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
 
 import java.lang.reflect.Type;
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Date;
 import java.util.Locale;
-import java.util.TimeZone;
 
 //The code was copied from the below link in stack overflow
 // https://stackoverflow.com/questions/26044881/java-date-to-utc-using-gson
+// DateTimeFormatter is immutable, so the adapter can be shared by parse threads without locking.
 public class GsonUTCDateAdapter implements JsonSerializer<Date>,JsonDeserializer<Date> {
 
-    private final DateFormat dateFormat;
+    private final DateTimeFormatter dateFormat;
 
     public GsonUTCDateAdapter() {
-        dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.US);
-        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        dateFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss", Locale.US).withZone(ZoneOffset.UTC);
     }
 
-    @Override public synchronized JsonElement serialize(Date date,Type type,JsonSerializationContext jsonSerializationContext) {
-        return new JsonPrimitive(dateFormat.format(date));
+    @Override public JsonElement serialize(Date date,Type type,JsonSerializationContext jsonSerializationContext) {
+        return new JsonPrimitive(dateFormat.format(date.toInstant()));
     }
 
-    @Override public synchronized Date deserialize(JsonElement jsonElement,Type type,JsonDeserializationContext jsonDeserializationContext) {
+    @Override public Date deserialize(JsonElement jsonElement,Type type,JsonDeserializationContext jsonDeserializationContext) {
         try {
-            return dateFormat.parse(jsonElement.getAsString());
-        } catch (ParseException e) {
+            return Date.from(LocalDateTime.parse(jsonElement.getAsString(), dateFormat).toInstant(ZoneOffset.UTC));
+        } catch (DateTimeParseException e) {
             throw new JsonParseException(e);
         }
     }
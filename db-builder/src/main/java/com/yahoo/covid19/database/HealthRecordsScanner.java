@@ -0,0 +1,315 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19.database;
+
+import com.yahoo.covid19.database.models.HistoricalHealthRecords;
+import com.yahoo.covid19.database.models.LatestHealthRecords;
+
+import java.util.function.Supplier;
+
+/**
+ * Decodes a by-region line straight from the String, without a JsonReader. Field names are matched in place
+ * and integers are accumulated digit by digit, so the only Strings created are the text fields that are kept.
+ * <p>
+ * It only handles the flat objects the data files contain: string, number and null values, without escape
+ * sequences. Anything else makes {@link #scan} return null, and the caller decodes the line with Gson instead.
+ */
+public class HealthRecordsScanner {
+    private static final String[] FIELDS = {
+            "regionId", "label", "referenceDate", "dataSource",
+            "totalDeaths", "totalConfirmedCases", "totalRecoveredCases", "totalTestedCases",
+            "numPositiveTests", "numDeaths", "numRecoveredCases", "diffNumPositiveTests", "diffNumDeaths",
+            "avgWeeklyDeaths", "avgWeeklyConfirmedCases", "avgWeeklyRecoveredCases"
+    };
+    private static final int FIRST_LONG_FIELD = 4;
+    private static final int FIRST_HISTORICAL_FIELD = 8;
+    private static final int FIRST_DOUBLE_FIELD = 13;
+    private static final int UNKNOWN_FIELD = -1;
+
+    /**
+     * Thrown internally when the line needs the full JSON parser.
+     */
+    private static class UnsupportedLineException extends Exception {
+        UnsupportedLineException() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final UnsupportedLineException UNSUPPORTED = new UnsupportedLineException();
+
+    private final String line;
+    private int position = 0;
+    private int valueStart;
+    private int valueEnd;
+    private long longValue;
+
+    private HealthRecordsScanner(String line) {
+        this.line = line;
+    }
+
+    /**
+     * @param line One line of a by-region file.
+     * @param recordFactory Creates the record to fill.
+     * @return The decoded record, or null if the line has to be decoded by Gson.
+     */
+    public static <T extends LatestHealthRecords> T scan(String line, Supplier<T> recordFactory) {
+        if (line == null) {
+            return null;
+        }
+        T record = recordFactory.get();
+        try {
+            new HealthRecordsScanner(line).scanObject(record);
+        } catch (UnsupportedLineException e) {
+            return null;
+        }
+        return record;
+    }
+
+    private void scanObject(LatestHealthRecords record) throws UnsupportedLineException {
+        HistoricalHealthRecords historicalRecord = record instanceof HistoricalHealthRecords
+                ? (HistoricalHealthRecords) record
+                : null;
+        expect('{');
+        if (peek() == '}') {
+            position++;
+        } else {
+            do {
+                int field = scanFieldName();
+                expect(':');
+                if (field >= FIRST_HISTORICAL_FIELD && historicalRecord == null) {
+                    field = UNKNOWN_FIELD;
+                }
+                scanValue(field, record, historicalRecord);
+            } while (next() == ',');
+            position--;
+            expect('}');
+        }
+        skipWhitespace();
+        if (position != line.length()) {
+            throw UNSUPPORTED;
+        }
+    }
+
+    private int scanFieldName() throws UnsupportedLineException {
+        expect('"');
+        int start = position;
+        int end = scanStringEnd();
+        int length = end - start;
+        for (int field = 0; field < FIELDS.length; field++) {
+            if (FIELDS[field].length() == length && line.regionMatches(start, FIELDS[field], 0, length)) {
+                return field;
+            }
+        }
+        return UNKNOWN_FIELD;
+    }
+
+    private void scanValue(int field, LatestHealthRecords record, HistoricalHealthRecords historicalRecord)
+            throws UnsupportedLineException {
+        char first = peek();
+        if (first == 'n') {
+            expectLiteral("null");
+            // Gson assigns the null, which matters when a field repeats.
+            if (field >= FIRST_DOUBLE_FIELD) {
+                setDouble(field, historicalRecord, null);
+            } else if (field >= FIRST_LONG_FIELD) {
+                setLong(field, record, historicalRecord, null);
+            } else if (field != UNKNOWN_FIELD) {
+                setString(field, record, null);
+            }
+            return;
+        }
+        if (first == '"') {
+            position++;
+            valueStart = position;
+            valueEnd = scanStringEnd();
+            if (field == UNKNOWN_FIELD) {
+                return;
+            }
+            if (field >= FIRST_LONG_FIELD) {
+                // A quoted number. Gson accepts it, this scanner does not.
+                throw UNSUPPORTED;
+            }
+            setString(field, record, line.substring(valueStart, valueEnd));
+            return;
+        }
+        if (first == '-' || (first >= '0' && first <= '9')) {
+            boolean integral = scanNumber();
+            if (field == UNKNOWN_FIELD) {
+                return;
+            }
+            if (field < FIRST_LONG_FIELD) {
+                // Gson turns a number into a String for String fields, which needs the original text.
+                throw UNSUPPORTED;
+            }
+            if (field >= FIRST_DOUBLE_FIELD) {
+                double value = integral ? longValue : parseDouble();
+                setDouble(field, historicalRecord, value);
+                return;
+            }
+            if (!integral) {
+                throw UNSUPPORTED;
+            }
+            setLong(field, record, historicalRecord, longValue);
+            return;
+        }
+        // true, false, objects and arrays
+        throw UNSUPPORTED;
+    }
+
+    private static void setString(int field, LatestHealthRecords record, String value) {
+        switch (field) {
+            case 0:
+                record.setRegionId(value);
+                break;
+            case 1:
+                record.setLabel(value);
+                break;
+            case 2:
+                record.setReferenceDate(value);
+                break;
+            default:
+                record.setDataSource(value);
+        }
+    }
+
+    private static void setLong(int field, LatestHealthRecords record, HistoricalHealthRecords historicalRecord,
+                                Long value) {
+        switch (field) {
+            case 4:
+                record.setTotalDeaths(value);
+                break;
+            case 5:
+                record.setTotalConfirmedCases(value);
+                break;
+            case 6:
+                record.setTotalRecoveredCases(value);
+                break;
+            case 7:
+                record.setTotalTestedCases(value);
+                break;
+            case 8:
+                historicalRecord.setNumPositiveTests(value);
+                break;
+            case 9:
+                historicalRecord.setNumDeaths(value);
+                break;
+            case 10:
+                historicalRecord.setNumRecoveredCases(value);
+                break;
+            case 11:
+                historicalRecord.setDiffNumPositiveTests(value);
+                break;
+            default:
+                historicalRecord.setDiffNumDeaths(value);
+        }
+    }
+
+    private static void setDouble(int field, HistoricalHealthRecords historicalRecord, Double value) {
+        switch (field) {
+            case 13:
+                historicalRecord.setAvgWeeklyDeaths(value);
+                break;
+            case 14:
+                historicalRecord.setAvgWeeklyConfirmedCases(value);
+                break;
+            default:
+                historicalRecord.setAvgWeeklyRecoveredCases(value);
+        }
+    }
+
+    /**
+     * Scans a JSON number. Integers that fit into a long are left in {@link #longValue}.
+     * @return true if the number is an integer that fits into a long.
+     */
+    private boolean scanNumber() {
+        valueStart = position;
+        boolean negative = line.charAt(position) == '-';
+        if (negative) {
+            position++;
+        }
+        boolean integral = true;
+        long value = 0;
+        int digits = 0;
+        while (position < line.length()) {
+            char c = line.charAt(position);
+            if (c >= '0' && c <= '9') {
+                digits++;
+                // Stay clear of overflow, 18 digits always fit.
+                if (digits > 18) {
+                    integral = false;
+                }
+                value = value * 10 - (c - '0');
+            } else if (c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                integral = false;
+            } else {
+                break;
+            }
+            position++;
+        }
+        valueEnd = position;
+        longValue = negative ? value : -value;
+        return integral && digits > 0;
+    }
+
+    private double parseDouble() throws UnsupportedLineException {
+        try {
+            return Double.parseDouble(line.substring(valueStart, valueEnd));
+        } catch (NumberFormatException e) {
+            throw UNSUPPORTED;
+        }
+    }
+
+    /**
+     * Advances past the closing quote of a string that starts at the current position.
+     * @return The position of the closing quote.
+     */
+    private int scanStringEnd() throws UnsupportedLineException {
+        for (int end = position; end < line.length(); end++) {
+            char c = line.charAt(end);
+            if (c == '"') {
+                position = end + 1;
+                return end;
+            }
+            if (c == '\\') {
+                throw UNSUPPORTED;
+            }
+        }
+        throw UNSUPPORTED;
+    }
+
+    private void skipWhitespace() {
+        while (position < line.length() && Character.isWhitespace(line.charAt(position))) {
+            position++;
+        }
+    }
+
+    private char peek() throws UnsupportedLineException {
+        skipWhitespace();
+        if (position >= line.length()) {
+            throw UNSUPPORTED;
+        }
+        return line.charAt(position);
+    }
+
+    private char next() throws UnsupportedLineException {
+        char c = peek();
+        position++;
+        return c;
+    }
+
+    private void expect(char expected) throws UnsupportedLineException {
+        if (next() != expected) {
+            throw UNSUPPORTED;
+        }
+    }
+
+    private void expectLiteral(String literal) throws UnsupportedLineException {
+        if (!line.startsWith(literal, position)) {
+            throw UNSUPPORTED;
+        }
+        position += literal.length();
+    }
+}
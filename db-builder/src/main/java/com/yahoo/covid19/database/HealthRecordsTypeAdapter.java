@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19.database;
+
+import com.yahoo.covid19.database.models.HistoricalHealthRecords;
+import com.yahoo.covid19.database.models.LatestHealthRecords;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.util.function.Supplier;
+
+/**
+ * Decodes a line of a by-region file into a {@link LatestHealthRecords} or {@link HistoricalHealthRecords}.
+ * Fields that the records do not store are skipped.
+ * @param <T> The record type.
+ */
+public class HealthRecordsTypeAdapter<T extends LatestHealthRecords> extends RecordTypeAdapter<T> {
+    private final Supplier<T> recordFactory;
+
+    public HealthRecordsTypeAdapter(Supplier<T> recordFactory) {
+        this.recordFactory = recordFactory;
+    }
+
+    @Override
+    public T read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        T record = recordFactory.get();
+        HistoricalHealthRecords historicalRecord = record instanceof HistoricalHealthRecords
+                ? (HistoricalHealthRecords) record
+                : null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            switch (name) {
+                case "regionId":
+                    record.setRegionId(nextString(in));
+                    break;
+                case "label":
+                    record.setLabel(nextString(in));
+                    break;
+                case "referenceDate":
+                    record.setReferenceDate(nextString(in));
+                    break;
+                case "dataSource":
+                    record.setDataSource(nextString(in));
+                    break;
+                case "totalDeaths":
+                    record.setTotalDeaths(nextLong(in));
+                    break;
+                case "totalConfirmedCases":
+                    record.setTotalConfirmedCases(nextLong(in));
+                    break;
+                case "totalRecoveredCases":
+                    record.setTotalRecoveredCases(nextLong(in));
+                    break;
+                case "totalTestedCases":
+                    record.setTotalTestedCases(nextLong(in));
+                    break;
+                default:
+                    if (historicalRecord == null || !readHistoricalField(name, in, historicalRecord)) {
+                        in.skipValue();
+                    }
+            }
+        }
+        in.endObject();
+        return record;
+    }
+
+    private static boolean readHistoricalField(String name, JsonReader in, HistoricalHealthRecords record)
+            throws IOException {
+        switch (name) {
+            case "numPositiveTests":
+                record.setNumPositiveTests(nextLong(in));
+                return true;
+            case "numDeaths":
+                record.setNumDeaths(nextLong(in));
+                return true;
+            case "numRecoveredCases":
+                record.setNumRecoveredCases(nextLong(in));
+                return true;
+            case "diffNumPositiveTests":
+                record.setDiffNumPositiveTests(nextLong(in));
+                return true;
+            case "diffNumDeaths":
+                record.setDiffNumDeaths(nextLong(in));
+                return true;
+            case "avgWeeklyDeaths":
+                record.setAvgWeeklyDeaths(nextDouble(in));
+                return true;
+            case "avgWeeklyConfirmedCases":
+                record.setAvgWeeklyConfirmedCases(nextDouble(in));
+                return true;
+            case "avgWeeklyRecoveredCases":
+                record.setAvgWeeklyRecoveredCases(nextDouble(in));
+                return true;
+            default:
+                return false;
+        }
+    }
+}
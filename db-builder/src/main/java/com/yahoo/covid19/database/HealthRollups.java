@@ -0,0 +1,229 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19.database;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Computes the health_rollups table: per parent region and day, the totals of its child regions.
+ * <p>
+ * The rollup of a parent adds up, for each direct child, the child's own health record for the day, or the
+ * child's rollup if it has no record of its own. Parents are summed in descending rank, so children are always
+ * done before their parents, and a region counted at one level is not counted again through its descendants.
+ * Health records are read once, a day at a time, so the referenceDate index must exist.
+ */
+@Slf4j
+public class HealthRollups {
+    public static final String TABLE_NAME = "health_rollups";
+
+    public static final String CREATE_HEALTH_ROLLUPS = "CREATE TABLE IF NOT EXISTS health_rollups\n" +
+            "(\n" +
+            "    id UUID NOT NULL,\n" +
+            "    regionId VARCHAR(255) NOT NULL,\n" +
+            "    label VARCHAR(255) DEFAULT NULL,\n" +
+            "    wikiId VARCHAR(255) DEFAULT NULL,\n" +
+            "    referenceDate TIMESTAMP NOT NULL,\n" +
+            "    totalDeaths BIGINT DEFAULT NULL,\n" +
+            "    totalConfirmedCases BIGINT DEFAULT NULL,\n" +
+            "    totalRecoveredCases BIGINT DEFAULT NULL,\n" +
+            "    totalTestedCases BIGINT DEFAULT NULL,\n" +
+            "    childCount INT NOT NULL,\n" +
+            "    PRIMARY KEY (id)\n" +
+            ");\n";
+
+    public static final String CREATE_HEALTH_ROLLUPS_INDEXES =
+            "CREATE INDEX IF NOT EXISTS healthRollupsRegionDateIdx ON health_rollups (regionId, referenceDate);";
+
+    private static final String SELECT_PARENTS = "SELECT id, label, wikiId FROM place "
+            + "WHERE id IN (SELECT parentId FROM relationship_hierarchy) ORDER BY rank DESC, id;";
+
+    private static final String SELECT_RELATIONSHIPS = "SELECT parentId, childId FROM relationship_hierarchy;";
+
+    private static final String SELECT_DATES = "SELECT DISTINCT referenceDate FROM health_records "
+            + "ORDER BY referenceDate;";
+
+    // Reads a day through the referenceDate index. Sorting the whole table instead spills to disk.
+    private static final String SELECT_HEALTH_RECORDS = "SELECT regionId, "
+            + "totalDeaths, totalConfirmedCases, totalRecoveredCases, totalTestedCases "
+            + "FROM health_records WHERE referenceDate = ?;";
+
+    private static final String INSERT_ROLLUP = "INSERT INTO health_rollups ("
+            + "id, regionId, label, wikiId, referenceDate, "
+            + "totalDeaths, totalConfirmedCases, totalRecoveredCases, totalTestedCases, childCount) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?);";
+
+    private static final int TOTALS = 4;
+    private static final int INSERT_BATCH_SIZE = 1000;
+
+    /**
+     * A parent region and its direct children.
+     */
+    private static class Parent {
+        private final String id;
+        private final String label;
+        private final String wikiId;
+        private final List<String> childIds = new ArrayList<>();
+
+        Parent(String id, String label, String wikiId) {
+            this.id = id;
+            this.label = label;
+            this.wikiId = wikiId;
+        }
+    }
+
+    /**
+     * The totals of one region on one day. A total stays null if no record had it.
+     */
+    private static class Totals {
+        private final Long[] values = new Long[TOTALS];
+        private int childCount = 0;
+
+        void add(Totals other) {
+            for (int i = 0; i < TOTALS; i++) {
+                if (other.values[i] != null) {
+                    values[i] = values[i] == null ? other.values[i] : values[i] + other.values[i];
+                }
+            }
+            childCount += 1;
+        }
+    }
+
+    private final DatabaseBuilder.DBConnector connector;
+    // Parents in descending rank.
+    private final List<Parent> parents = new ArrayList<>();
+    private PreparedStatement insertStatement;
+    private int pendingRows = 0;
+    private long rowsWritten = 0;
+
+    public HealthRollups(DatabaseBuilder.DBConnector connector) {
+        this.connector = connector;
+    }
+
+    /**
+     * Replaces the content of the health_rollups table, which must exist.
+     * @return The number of rollup rows written.
+     */
+    public long build() throws SQLException {
+        connector.executeSQLQuery("DELETE FROM " + TABLE_NAME + ";");
+        readHierarchy();
+
+        List<Timestamp> referenceDates = new ArrayList<>();
+        try (PreparedStatement statement = connector.getPreparedStatement(SELECT_DATES);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                referenceDates.add(resultSet.getTimestamp(1));
+            }
+        }
+
+        try (PreparedStatement insert = connector.getPreparedStatement(INSERT_ROLLUP);
+             PreparedStatement select = connector.getPreparedStatement(SELECT_HEALTH_RECORDS)) {
+            insertStatement = insert;
+            for (Timestamp referenceDate : referenceDates) {
+                writeDay(referenceDate, readDay(select, referenceDate));
+            }
+            if (pendingRows > 0) {
+                insertStatement.executeBatch();
+            }
+        }
+        return rowsWritten;
+    }
+
+    /**
+     * @return The health records of the day by region id.
+     */
+    private static Map<String, Totals> readDay(PreparedStatement select, Timestamp referenceDate)
+            throws SQLException {
+        Map<String, Totals> records = new HashMap<>();
+        select.setTimestamp(1, referenceDate);
+        try (ResultSet resultSet = select.executeQuery()) {
+            while (resultSet.next()) {
+                Totals totals = new Totals();
+                for (int i = 0; i < TOTALS; i++) {
+                    long value = resultSet.getLong(2 + i);
+                    totals.values[i] = resultSet.wasNull() ? null : value;
+                }
+                records.put(resultSet.getString(1), totals);
+            }
+        }
+        return records;
+    }
+
+    private void readHierarchy() throws SQLException {
+        Map<String, Parent> parentsById = new HashMap<>();
+        try (PreparedStatement statement = connector.getPreparedStatement(SELECT_PARENTS);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                Parent parent = new Parent(resultSet.getString(1), resultSet.getString(2), resultSet.getString(3));
+                parents.add(parent);
+                parentsById.put(parent.id, parent);
+            }
+        }
+        try (PreparedStatement statement = connector.getPreparedStatement(SELECT_RELATIONSHIPS);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                Parent parent = parentsById.get(resultSet.getString(1));
+                if (parent != null) {
+                    parent.childIds.add(resultSet.getString(2));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param records The health records of the day by region id.
+     */
+    private void writeDay(Timestamp referenceDate, Map<String, Totals> records) throws SQLException {
+        Map<String, Totals> rollups = new HashMap<>();
+        String day = DatabaseBuilder.REFERENCE_DATE_FORMAT.get().format(referenceDate);
+        for (Parent parent : parents) {
+            Totals rollup = new Totals();
+            for (String childId : parent.childIds) {
+                Totals child = records.get(childId);
+                if (child == null) {
+                    child = rollups.get(childId);
+                }
+                if (child != null) {
+                    rollup.add(child);
+                }
+            }
+            if (rollup.childCount == 0) {
+                continue;
+            }
+            rollups.put(parent.id, rollup);
+            insert(parent, day, referenceDate, rollup);
+        }
+    }
+
+    private void insert(Parent parent, String day, Timestamp referenceDate, Totals rollup) throws SQLException {
+        // The same scheme as the health record ids.
+        insertStatement.setObject(1, UUID.nameUUIDFromBytes((parent.id + day).getBytes()));
+        insertStatement.setString(2, parent.id);
+        insertStatement.setString(3, parent.label);
+        insertStatement.setString(4, parent.wikiId);
+        insertStatement.setTimestamp(5, referenceDate);
+        for (int i = 0; i < TOTALS; i++) {
+            insertStatement.setObject(6 + i, rollup.values[i]);
+        }
+        insertStatement.setInt(10, rollup.childCount);
+        insertStatement.addBatch();
+        rowsWritten += 1;
+        pendingRows += 1;
+        if (pendingRows >= INSERT_BATCH_SIZE) {
+            insertStatement.executeBatch();
+            pendingRows = 0;
+        }
+    }
+}
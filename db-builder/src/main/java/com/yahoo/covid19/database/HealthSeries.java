@@ -0,0 +1,121 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19.database;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The health records of one region, in ascending reference date, held column by column as read from the
+ * series file. Immutable.
+ */
+public class HealthSeries {
+    public static final List<String> LONG_METRICS = Collections.unmodifiableList(Arrays.asList(
+            "totalDeaths", "totalConfirmedCases", "totalRecoveredCases", "totalTestedCases",
+            "numPositiveTests", "numDeaths", "numRecoveredCases", "diffNumPositiveTests", "diffNumDeaths"));
+
+    public static final List<String> DOUBLE_METRICS = Collections.unmodifiableList(Arrays.asList(
+            "avgWeeklyDeaths", "avgWeeklyConfirmedCases", "avgWeeklyRecoveredCases"));
+
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private final String regionId;
+    private final int[] epochDays;
+    // Null when the ids follow the health record scheme.
+    private final UUID[] ids;
+    private final String[] labels;
+    private final String[] wikiIds;
+    private final String[] dataSources;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final long[][] longValues;
+    private final BitSet[] longNulls;
+    private final double[][] doubleValues;
+    private final BitSet[] doubleNulls;
+
+    HealthSeries(String regionId, int[] epochDays, UUID[] ids, String[] labels, String[] wikiIds,
+                 String[] dataSources, double[] latitudes, double[] longitudes, long[][] longValues,
+                 BitSet[] longNulls, double[][] doubleValues, BitSet[] doubleNulls) {
+        this.regionId = regionId;
+        this.epochDays = epochDays;
+        this.ids = ids;
+        this.labels = labels;
+        this.wikiIds = wikiIds;
+        this.dataSources = dataSources;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.longValues = longValues;
+        this.longNulls = longNulls;
+        this.doubleValues = doubleValues;
+        this.doubleNulls = doubleNulls;
+    }
+
+    /**
+     * @return The id a health record of the region gets for the day.
+     */
+    public static UUID recordId(String regionId, int epochDay) {
+        return UUID.nameUUIDFromBytes((regionId + LocalDate.ofEpochDay(epochDay)).getBytes());
+    }
+
+    public String getRegionId() {
+        return regionId;
+    }
+
+    public int size() {
+        return epochDays.length;
+    }
+
+    public UUID getId(int record) {
+        return ids == null ? recordId(regionId, epochDays[record]) : ids[record];
+    }
+
+    public int getEpochDay(int record) {
+        return epochDays[record];
+    }
+
+    public Date getReferenceDate(int record) {
+        return new Date(epochDays[record] * DAY_MILLIS);
+    }
+
+    public String getLabel(int record) {
+        return labels[record];
+    }
+
+    public String getWikiId(int record) {
+        return wikiIds[record];
+    }
+
+    public String getDataSource(int record) {
+        return dataSources[record];
+    }
+
+    public double getLatitude(int record) {
+        return latitudes[record];
+    }
+
+    public double getLongitude(int record) {
+        return longitudes[record];
+    }
+
+    /**
+     * @param metric An index into {@link #LONG_METRICS}.
+     */
+    public Long getLong(int metric, int record) {
+        return longNulls[metric].get(record) ? null : longValues[metric][record];
+    }
+
+    /**
+     * @param metric An index into {@link #DOUBLE_METRICS}.
+     */
+    public Double getDouble(int metric, int record) {
+        return doubleNulls[metric].get(record) ? null : doubleValues[metric][record];
+    }
+}
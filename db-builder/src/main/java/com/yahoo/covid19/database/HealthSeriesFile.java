@@ -0,0 +1,315 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19.database;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Writes the health records as a columnar series file, read back by {@link HealthSeriesReader}.
+ * <p>
+ * The file starts with a header, a string table and a directory of regions sorted by region id, followed by
+ * one block per region. A block holds the region's records in ascending reference date, column by column:
+ * <pre>
+ * varint flags             FLAG_IDS when the ids do not follow the health record scheme
+ * varint record count
+ * days                     zigzag first epoch day, then the varint gaps
+ * ids                      16 bytes per record, only with FLAG_IDS
+ * label, wikiId, dataSource   long columns of string codes plus one, 0 for null
+ * latitude, longitude         double columns
+ * LONG_METRICS             long columns
+ * DOUBLE_METRICS           double columns
+ * </pre>
+ * A column starts with its mode. Long values are zigzag varints of the difference from the previous present
+ * value, so cumulative counts take a byte or two per day. Double values are stored as is. Nulls are a bitmap
+ * of the present records, only written when some but not all records are present.
+ */
+@Slf4j
+public class HealthSeriesFile {
+    static final int MAGIC = 0x43313953;
+    static final int VERSION = 1;
+    static final int FLAG_IDS = 1;
+
+    static final byte ALL_NULL = 0;
+    static final byte DENSE = 1;
+    static final byte SPARSE = 2;
+    static final byte CONSTANT = 3;
+
+    private static final String SELECT_REGION_IDS = "SELECT DISTINCT regionId FROM health_records;";
+
+    // Reads a region through the regionId index; its records are few enough to sort in memory.
+    private static final String SELECT_SERIES = "SELECT id, referenceDate, label, wikiId, dataSource, "
+            + "latitude, longitude, "
+            + String.join(", ", HealthSeries.LONG_METRICS) + ", "
+            + String.join(", ", HealthSeries.DOUBLE_METRICS) + " "
+            + "FROM health_records WHERE regionId = ? ORDER BY referenceDate;";
+
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    /**
+     * A growable byte array with the encodings of the format.
+     */
+    static class Encoder {
+        private byte[] bytes = new byte[1 << 16];
+        private int size = 0;
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                if (bytes.length >= Integer.MAX_VALUE / 2) {
+                    throw new IllegalStateException("Series file is too large");
+                }
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+
+        void writeVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void writeZigzag(long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeDouble(double value) {
+            writeLong(Double.doubleToRawLongBits(value));
+        }
+
+        private void writePresence(Object[] values) {
+            byte[] bitmap = new byte[(values.length + 7) / 8];
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    bitmap[i >> 3] |= 1 << (i & 7);
+                }
+            }
+            ensure(bitmap.length);
+            System.arraycopy(bitmap, 0, bytes, size, bitmap.length);
+            size += bitmap.length;
+        }
+
+        private static byte mode(Object[] values) {
+            int present = 0;
+            boolean constant = true;
+            for (Object value : values) {
+                if (value != null) {
+                    present += 1;
+                    constant &= value.equals(values[0]);
+                }
+            }
+            if (present == 0) {
+                return ALL_NULL;
+            }
+            if (present < values.length) {
+                return SPARSE;
+            }
+            return constant && values.length > 1 ? CONSTANT : DENSE;
+        }
+
+        void writeLongColumn(Long[] values) {
+            byte mode = mode(values);
+            writeByte(mode);
+            if (mode == CONSTANT) {
+                writeZigzag(values[0]);
+                return;
+            }
+            if (mode == SPARSE) {
+                writePresence(values);
+            }
+            long previous = 0;
+            for (Long value : values) {
+                if (value != null) {
+                    writeZigzag(value - previous);
+                    previous = value;
+                }
+            }
+        }
+
+        void writeDoubleColumn(Double[] values) {
+            byte mode = mode(values);
+            writeByte(mode);
+            if (mode == CONSTANT) {
+                writeDouble(values[0]);
+                return;
+            }
+            if (mode == SPARSE) {
+                writePresence(values);
+            }
+            for (Double value : values) {
+                if (value != null) {
+                    writeDouble(value);
+                }
+            }
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    private final DatabaseBuilder.DBConnector connector;
+    private final StringDictionary strings = new StringDictionary();
+    private long recordsWritten = 0;
+
+    public HealthSeriesFile(DatabaseBuilder.DBConnector connector) {
+        this.connector = connector;
+    }
+
+    /**
+     * Writes the series of every region of the health_records table, replacing the file.
+     * @return The number of records written.
+     */
+    public long write(File file) throws SQLException, IOException {
+        List<String> regionIds = new ArrayList<>();
+        try (PreparedStatement statement = connector.getPreparedStatement(SELECT_REGION_IDS);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                regionIds.add(resultSet.getString(1));
+            }
+        }
+        Collections.sort(regionIds);
+
+        int[] regionCodes = new int[regionIds.size()];
+        int[] offsets = new int[regionIds.size()];
+        Encoder blocks = new Encoder();
+        try (PreparedStatement select = connector.getPreparedStatement(SELECT_SERIES)) {
+            for (int i = 0; i < regionIds.size(); i++) {
+                regionCodes[i] = strings.intern(regionIds.get(i));
+                offsets[i] = blocks.size();
+                writeRegion(select, regionIds.get(i), blocks);
+            }
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(strings.size());
+            for (int code = 0; code < strings.size(); code++) {
+                byte[] value = strings.get(code).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(value.length);
+                out.write(value);
+            }
+            out.writeInt(regionIds.size());
+            for (int i = 0; i < regionIds.size(); i++) {
+                out.writeInt(regionCodes[i]);
+                out.writeInt(offsets[i]);
+            }
+            out.write(blocks.bytes, 0, blocks.size());
+        }
+        return recordsWritten;
+    }
+
+    private void writeRegion(PreparedStatement select, String regionId, Encoder block) throws SQLException {
+        List<UUID> ids = new ArrayList<>();
+        List<Integer> days = new ArrayList<>();
+        List<Long> labels = new ArrayList<>();
+        List<Long> wikiIds = new ArrayList<>();
+        List<Long> dataSources = new ArrayList<>();
+        List<Double> latitudes = new ArrayList<>();
+        List<Double> longitudes = new ArrayList<>();
+        List<List<Long>> longMetrics = HealthSeries.LONG_METRICS.stream()
+                .map(metric -> new ArrayList<Long>())
+                .collect(Collectors.toList());
+        List<List<Double>> doubleMetrics = HealthSeries.DOUBLE_METRICS.stream()
+                .map(metric -> new ArrayList<Double>())
+                .collect(Collectors.toList());
+
+        boolean derivedIds = true;
+        select.setString(1, regionId);
+        try (ResultSet resultSet = select.executeQuery()) {
+            while (resultSet.next()) {
+                UUID id = (UUID) resultSet.getObject(1);
+                Timestamp referenceDate = resultSet.getTimestamp(2);
+                if (referenceDate.getTime() % DAY_MILLIS != 0) {
+                    throw new IllegalStateException("Reference date is not a day: " + referenceDate);
+                }
+                int day = (int) Math.floorDiv(referenceDate.getTime(), DAY_MILLIS);
+                derivedIds &= id.equals(HealthSeries.recordId(regionId, day));
+                ids.add(id);
+                days.add(day);
+                labels.add(stringCode(resultSet.getString(3)));
+                wikiIds.add(stringCode(resultSet.getString(4)));
+                dataSources.add(stringCode(resultSet.getString(5)));
+                latitudes.add(resultSet.getDouble(6));
+                longitudes.add(resultSet.getDouble(7));
+                int column = 8;
+                for (List<Long> values : longMetrics) {
+                    long value = resultSet.getLong(column++);
+                    values.add(resultSet.wasNull() ? null : value);
+                }
+                for (List<Double> values : doubleMetrics) {
+                    double value = resultSet.getDouble(column++);
+                    values.add(resultSet.wasNull() ? null : value);
+                }
+            }
+        }
+
+        block.writeVarint(derivedIds ? 0 : FLAG_IDS);
+        block.writeVarint(days.size());
+        int previousDay = 0;
+        for (int i = 0; i < days.size(); i++) {
+            if (i == 0) {
+                block.writeZigzag(days.get(i));
+            } else {
+                block.writeVarint(days.get(i) - previousDay);
+            }
+            previousDay = days.get(i);
+        }
+        if (!derivedIds) {
+            for (UUID id : ids) {
+                block.writeLong(id.getMostSignificantBits());
+                block.writeLong(id.getLeastSignificantBits());
+            }
+        }
+        block.writeLongColumn(labels.toArray(new Long[0]));
+        block.writeLongColumn(wikiIds.toArray(new Long[0]));
+        block.writeLongColumn(dataSources.toArray(new Long[0]));
+        block.writeDoubleColumn(latitudes.toArray(new Double[0]));
+        block.writeDoubleColumn(longitudes.toArray(new Double[0]));
+        for (List<Long> values : longMetrics) {
+            block.writeLongColumn(values.toArray(new Long[0]));
+        }
+        for (List<Double> values : doubleMetrics) {
+            block.writeDoubleColumn(values.toArray(new Double[0]));
+        }
+        recordsWritten += days.size();
+    }
+
+    private long stringCode(String value) {
+        return value == null ? 0 : strings.intern(value) + 1;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.yahoo.covid19.database.HealthSeriesFile.ALL_NULL;
+import static com.yahoo.covid19.database.HealthSeriesFile.CONSTANT;
+import static com.yahoo.covid19.database.HealthSeriesFile.DENSE;
+import static com.yahoo.covid19.database.HealthSeriesFile.FLAG_IDS;
+import static com.yahoo.covid19.database.HealthSeriesFile.SPARSE;
+
+/**
+ * Reads the series of a region from a memory mapped file written by {@link HealthSeriesFile}. The string table
+ * and the region directory are loaded when the file is opened; blocks are decoded on each {@link #get}.
+ * Thread safe.
+ */
+public class HealthSeriesReader {
+    private final ByteBuffer buffer;
+    private final String[] strings;
+    // Block offsets by region id, relative to blocksStart.
+    private final Map<String, Integer> offsets = new HashMap<>();
+    private final int blocksStart;
+
+    public HealthSeriesReader(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // The mapping stays valid once the channel is closed.
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt() != HealthSeriesFile.MAGIC) {
+            throw new IllegalStateException("Not a series file: " + file);
+        }
+        int version = buffer.getInt();
+        if (version != HealthSeriesFile.VERSION) {
+            throw new IllegalStateException("Unsupported series file version " + version + ": " + file);
+        }
+        strings = new String[buffer.getInt()];
+        for (int code = 0; code < strings.length; code++) {
+            byte[] value = new byte[buffer.getInt()];
+            buffer.get(value);
+            strings[code] = new String(value, StandardCharsets.UTF_8);
+        }
+        int regionCount = buffer.getInt();
+        for (int i = 0; i < regionCount; i++) {
+            String regionId = strings[buffer.getInt()];
+            offsets.put(regionId, buffer.getInt());
+        }
+        blocksStart = buffer.position();
+    }
+
+    public int getRegionCount() {
+        return offsets.size();
+    }
+
+    /**
+     * @return The series of the region, or null if it has no health records.
+     */
+    public HealthSeries get(String regionId) {
+        Integer offset = offsets.get(regionId);
+        if (offset == null) {
+            return null;
+        }
+        ByteBuffer block = buffer.duplicate();
+        block.position(blocksStart + offset);
+
+        int flags = (int) readVarint(block);
+        int size = (int) readVarint(block);
+        int[] epochDays = new int[size];
+        for (int i = 0; i < size; i++) {
+            epochDays[i] = i == 0 ? (int) readZigzag(block) : epochDays[i - 1] + (int) readVarint(block);
+        }
+        UUID[] ids = null;
+        if ((flags & FLAG_IDS) != 0) {
+            ids = new UUID[size];
+            for (int i = 0; i < size; i++) {
+                ids[i] = new UUID(block.getLong(), block.getLong());
+            }
+        }
+        String[] labels = readStringColumn(block, size);
+        String[] wikiIds = readStringColumn(block, size);
+        String[] dataSources = readStringColumn(block, size);
+        double[] latitudes = new double[size];
+        readDoubleColumn(block, latitudes, new BitSet());
+        double[] longitudes = new double[size];
+        readDoubleColumn(block, longitudes, new BitSet());
+
+        long[][] longValues = new long[HealthSeries.LONG_METRICS.size()][size];
+        BitSet[] longNulls = new BitSet[longValues.length];
+        for (int metric = 0; metric < longValues.length; metric++) {
+            longNulls[metric] = new BitSet(size);
+            readLongColumn(block, longValues[metric], longNulls[metric]);
+        }
+        double[][] doubleValues = new double[HealthSeries.DOUBLE_METRICS.size()][size];
+        BitSet[] doubleNulls = new BitSet[doubleValues.length];
+        for (int metric = 0; metric < doubleValues.length; metric++) {
+            doubleNulls[metric] = new BitSet(size);
+            readDoubleColumn(block, doubleValues[metric], doubleNulls[metric]);
+        }
+        return new HealthSeries(regionId, epochDays, ids, labels, wikiIds, dataSources, latitudes, longitudes,
+                longValues, longNulls, doubleValues, doubleNulls);
+    }
+
+    private static long readVarint(ByteBuffer block) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = block.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static long readZigzag(ByteBuffer block) {
+        long value = readVarint(block);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads the column mode and, for a sparse column, marks the absent records as null.
+     * @return The mode.
+     */
+    private static byte readNulls(ByteBuffer block, int size, BitSet nulls) {
+        byte mode = block.get();
+        if (mode == ALL_NULL) {
+            nulls.set(0, size);
+        } else if (mode == SPARSE) {
+            byte[] bitmap = new byte[(size + 7) / 8];
+            block.get(bitmap);
+            for (int i = 0; i < size; i++) {
+                if ((bitmap[i >> 3] & (1 << (i & 7))) == 0) {
+                    nulls.set(i);
+                }
+            }
+        } else if (mode != DENSE && mode != CONSTANT) {
+            throw new IllegalStateException("Unknown column mode " + mode);
+        }
+        return mode;
+    }
+
+    private static void readLongColumn(ByteBuffer block, long[] values, BitSet nulls) {
+        byte mode = readNulls(block, values.length, nulls);
+        if (mode == CONSTANT) {
+            long value = readZigzag(block);
+            for (int i = 0; i < values.length; i++) {
+                values[i] = value;
+            }
+            return;
+        }
+        long previous = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (mode != ALL_NULL && !nulls.get(i)) {
+                previous += readZigzag(block);
+                values[i] = previous;
+            }
+        }
+    }
+
+    private static void readDoubleColumn(ByteBuffer block, double[] values, BitSet nulls) {
+        byte mode = readNulls(block, values.length, nulls);
+        if (mode == CONSTANT) {
+            double value = block.getDouble();
+            for (int i = 0; i < values.length; i++) {
+                values[i] = value;
+            }
+            return;
+        }
+        for (int i = 0; i < values.length; i++) {
+            if (mode != ALL_NULL && !nulls.get(i)) {
+                values[i] = block.getDouble();
+            }
+        }
+    }
+
+    private String[] readStringColumn(ByteBuffer block, int size) {
+        long[] codes = new long[size];
+        readLongColumn(block, codes, new BitSet());
+        String[] values = new String[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = codes[i] == 0 ? null : strings[(int) codes[i] - 1];
+        }
+        return values;
+    }
+}
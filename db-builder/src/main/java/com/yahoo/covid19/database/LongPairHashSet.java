@@ -0,0 +1,109 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19.database;
+
+/**
+ * A set of 128-bit keys, such as UUIDs, held as pairs of longs in one open addressed array. An entry costs
+ * 16 bytes of the array, which is kept at most half full, instead of a boxed key and a HashMap node.
+ * Not thread safe.
+ */
+public class LongPairHashSet {
+    // Entry i is at keys[2 * i] and keys[2 * i + 1]. The all zero pair marks a free entry.
+    private long[] keys;
+    private boolean containsZero = false;
+    private int size = 0;
+
+    public LongPairHashSet() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize The number of keys to make room for.
+     */
+    public LongPairHashSet(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2) {
+            capacity *= 2;
+        }
+        keys = new long[capacity * 2];
+    }
+
+    private static int hash(long high, long low) {
+        long hash = (high * 0x9E3779B97F4A7C15L) ^ low;
+        hash ^= hash >>> 32;
+        hash *= 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32);
+    }
+
+    /**
+     * @return true if the key was not in the set.
+     */
+    public boolean add(long high, long low) {
+        if (high == 0 && low == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+
+        int mask = keys.length / 2 - 1;
+        int entry = hash(high, low) & mask;
+        while (keys[2 * entry] != 0 || keys[2 * entry + 1] != 0) {
+            if (keys[2 * entry] == high && keys[2 * entry + 1] == low) {
+                return false;
+            }
+            entry = (entry + 1) & mask;
+        }
+        keys[2 * entry] = high;
+        keys[2 * entry + 1] = low;
+        size++;
+        if (size * 4 > keys.length) {
+            rehash();
+        }
+        return true;
+    }
+
+    public boolean contains(long high, long low) {
+        if (high == 0 && low == 0) {
+            return containsZero;
+        }
+
+        int mask = keys.length / 2 - 1;
+        int entry = hash(high, low) & mask;
+        while (keys[2 * entry] != 0 || keys[2 * entry + 1] != 0) {
+            if (keys[2 * entry] == high && keys[2 * entry + 1] == low) {
+                return true;
+            }
+            entry = (entry + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        keys = new long[oldKeys.length * 2];
+        int mask = keys.length / 2 - 1;
+        for (int i = 0; i < oldKeys.length; i += 2) {
+            long high = oldKeys[i];
+            long low = oldKeys[i + 1];
+            if (high == 0 && low == 0) {
+                continue;
+            }
+            int entry = hash(high, low) & mask;
+            while (keys[2 * entry] != 0 || keys[2 * entry + 1] != 0) {
+                entry = (entry + 1) & mask;
+            }
+            keys[2 * entry] = high;
+            keys[2 * entry + 1] = low;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19.database;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the place_ancestors table, the transitive closure of relationship_hierarchy: a row per place and
+ * each of its ancestors, at any depth, with the depth of the shortest path between them (1 for a parent).
+ * <p>
+ * The primary key covers the ancestors of a place, and the ancestor index covers its descendants, so either
+ * is a single index range whatever the depth of the hierarchy.
+ */
+public class PlaceAncestors {
+    public static final String TABLE_NAME = "place_ancestors";
+
+    public static final String CREATE_PLACE_ANCESTORS = "CREATE TABLE IF NOT EXISTS place_ancestors\n" +
+            "(\n" +
+            "    placeId VARCHAR(255) NOT NULL,\n" +
+            "    ancestorId VARCHAR(255) NOT NULL,\n" +
+            "    depth INT NOT NULL,\n" +
+            "    PRIMARY KEY (placeId, ancestorId)\n" +
+            ");\n";
+
+    public static final String CREATE_PLACE_ANCESTORS_INDEXES =
+            "CREATE INDEX IF NOT EXISTS placeAncestorsAncestorIdx ON place_ancestors (ancestorId, depth, placeId);";
+
+    private static final String SELECT_RELATIONSHIPS = "SELECT childId, parentId FROM relationship_hierarchy "
+            + "WHERE parentId IS NOT NULL ORDER BY childId, parentId;";
+
+    private static final String INSERT_ANCESTOR = "INSERT INTO place_ancestors (placeId, ancestorId, depth) "
+            + "VALUES (?, ?, ?);";
+
+    private static final int INSERT_BATCH_SIZE = 1000;
+
+    private final DatabaseBuilder.DBConnector connector;
+    // Parent ids by child id.
+    private final Map<String, List<String>> parents = new LinkedHashMap<>();
+
+    public PlaceAncestors(DatabaseBuilder.DBConnector connector) {
+        this.connector = connector;
+    }
+
+    /**
+     * Replaces the content of the place_ancestors table, which must exist.
+     * @return The number of rows written.
+     */
+    public long build() throws SQLException {
+        connector.executeSQLQuery("DELETE FROM " + TABLE_NAME + ";");
+        try (PreparedStatement statement = connector.getPreparedStatement(SELECT_RELATIONSHIPS);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                parents.computeIfAbsent(resultSet.getString(1), id -> new ArrayList<>()).add(resultSet.getString(2));
+            }
+        }
+
+        long rowsWritten = 0;
+        int pendingRows = 0;
+        try (PreparedStatement insert = connector.getPreparedStatement(INSERT_ANCESTOR)) {
+            for (String placeId : parents.keySet()) {
+                for (Map.Entry<String, Integer> ancestor : ancestors(placeId).entrySet()) {
+                    insert.setString(1, placeId);
+                    insert.setString(2, ancestor.getKey());
+                    insert.setInt(3, ancestor.getValue());
+                    insert.addBatch();
+                    rowsWritten += 1;
+                    pendingRows += 1;
+                    if (pendingRows >= INSERT_BATCH_SIZE) {
+                        insert.executeBatch();
+                        pendingRows = 0;
+                    }
+                }
+            }
+            if (pendingRows > 0) {
+                insert.executeBatch();
+            }
+        }
+        return rowsWritten;
+    }
+
+    /**
+     * Walks up the hierarchy breadth first, so each ancestor is first reached at its smallest depth.
+     * @return The depth of each ancestor of the place, by ancestor id.
+     */
+    private Map<String, Integer> ancestors(String placeId) {
+        Map<String, Integer> depths = new LinkedHashMap<>();
+        Deque<String> queue = new ArrayDeque<>();
+        Map<String, Integer> queued = new HashMap<>();
+        queue.add(placeId);
+        queued.put(placeId, 0);
+        while (!queue.isEmpty()) {
+            String id = queue.poll();
+            int depth = queued.get(id) + 1;
+            for (String parentId : parents.getOrDefault(id, Collections.emptyList())) {
+                // A cycle back to the place is not an ancestor of its own.
+                if (!queued.containsKey(parentId)) {
+                    queued.put(parentId, depth);
+                    depths.put(parentId, depth);
+                    queue.add(parentId);
+                }
+            }
+        }
+        return depths;
+    }
+}
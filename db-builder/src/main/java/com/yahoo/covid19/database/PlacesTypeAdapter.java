@@ -0,0 +1,80 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19.database;
+
+import com.yahoo.covid19.database.models.Places;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Decodes a line of region-metadata.json into a {@link Places}. Coordinates and population stay Strings
+ * because {@link Places#isValid} reports unparseable coordinates as {@link ErrorCodes#INVALID_COORDINATE}.
+ */
+public class PlacesTypeAdapter extends RecordTypeAdapter<Places> {
+
+    @Override
+    public Places read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        String id = null;
+        List<String> type = null;
+        String label = null;
+        String wikiId = null;
+        String longitude = null;
+        String latitude = null;
+        String population = null;
+        List<String> parentIds = null;
+        Integer rank = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id":
+                    id = nextString(in);
+                    break;
+                case "type":
+                    type = nextStringList(in);
+                    break;
+                case "label":
+                    label = nextString(in);
+                    break;
+                case "wikiId":
+                    wikiId = nextString(in);
+                    break;
+                case "longitude":
+                    longitude = nextString(in);
+                    break;
+                case "latitude":
+                    latitude = nextString(in);
+                    break;
+                case "population":
+                    population = nextString(in);
+                    break;
+                case "parentId":
+                    parentIds = nextStringList(in);
+                    break;
+                case "rank":
+                    Long value = nextLong(in);
+                    rank = value == null ? null : value.intValue();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        Places place = new Places(id, type, label, wikiId, longitude, latitude, population, parentIds);
+        place.setRank(rank);
+        return place;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19.database;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base class for the hand written decoders of the input records. They read the fields straight off Gson's
+ * streaming reader instead of binding them through reflection. Null and type handling follows what Gson's
+ * reflective binding does for the same field types, so both decoders produce the same records.
+ * @param <T> The record type.
+ */
+public abstract class RecordTypeAdapter<T> extends TypeAdapter<T> {
+
+    @Override
+    public final void write(JsonWriter out, T value) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " only decodes records");
+    }
+
+    protected static String nextString(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        if (token == JsonToken.BOOLEAN) {
+            return Boolean.toString(in.nextBoolean());
+        }
+        return in.nextString();
+    }
+
+    /**
+     * Reads an integral number. Integers that fit into a long are parsed from the reader's buffer without
+     * creating a String first.
+     */
+    protected static Long nextLong(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        try {
+            return in.nextLong();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    protected static Double nextDouble(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        try {
+            return in.nextDouble();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    protected static List<String> nextStringList(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            values.add(nextString(in));
+        }
+        in.endArray();
+        return values;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19.database;
+
+import java.util.Arrays;
+
+/**
+ * Gives every distinct string a dense int code, in the order the strings are first seen, and keeps one shared
+ * instance of each. The table is open addressed over int codes, so an entry costs an int slot on top of the
+ * string itself. Not thread safe.
+ */
+public class StringDictionary {
+    private static final int EMPTY = -1;
+
+    private String[] values = new String[16];
+    // Codes by hash, EMPTY for a free slot. Kept at most half full.
+    private int[] slots = newSlots(32);
+    private int size = 0;
+
+    private static int[] newSlots(int capacity) {
+        int[] slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        return slots;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * @param value A non null string.
+     * @return The code of the string, adding it if it is new.
+     */
+    public int intern(String value) {
+        int mask = slots.length - 1;
+        int slot = mix(value.hashCode()) & mask;
+        while (slots[slot] != EMPTY) {
+            String existing = values[slots[slot]];
+            if (existing.equals(value)) {
+                return slots[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int code = size++;
+        if (code == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        values[code] = value;
+        slots[slot] = code;
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return code;
+    }
+
+    /**
+     * @param value A string or null.
+     * @return The shared instance equal to the string, or null.
+     */
+    public String canonical(String value) {
+        if (value == null) {
+            return null;
+        }
+        int code = intern(value);
+        return values[code];
+    }
+
+    /**
+     * @param code A code returned by {@link #intern}.
+     * @return The string with that code.
+     */
+    public String get(int code) {
+        if (code < 0 || code >= size) {
+            throw new IndexOutOfBoundsException("Unknown code " + code);
+        }
+        return values[code];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void rehash(int capacity) {
+        int[] newSlots = newSlots(capacity);
+        int mask = capacity - 1;
+        for (int code = 0; code < size; code++) {
+            int slot = mix(values[code].hashCode()) & mask;
+            while (newSlots[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            newSlots[slot] = code;
+        }
+        slots = newSlots;
+    }
+}
@@ -22,14 +22,14 @@ import java.util.List;
 @Slf4j
 public class HistoricalHealthRecords extends LatestHealthRecords {
     public static final String TABLE_NAME = "health_records";
-    private String numPositiveTests;
-    private String numDeaths;
-    private String numRecoveredCases;
-    private String diffNumPositiveTests;
-    private String diffNumDeaths;
-    private String avgWeeklyDeaths;
-    private String avgWeeklyConfirmedCases;
-    private String avgWeeklyRecoveredCases;
+    private Long numPositiveTests;
+    private Long numDeaths;
+    private Long numRecoveredCases;
+    private Long diffNumPositiveTests;
+    private Long diffNumDeaths;
+    private Double avgWeeklyDeaths;
+    private Double avgWeeklyConfirmedCases;
+    private Double avgWeeklyRecoveredCases;
 
     @Override
     protected String getInsertStatement() {
@@ -44,17 +44,16 @@ public class HistoricalHealthRecords extends LatestHealthRecords {
     }
 
     @Override
-    protected PreparedStatement getStatement(DatabaseBuilder.DBConnector connector) throws SQLException {
-        PreparedStatement preparedStatement = super.getStatement(connector);
-        preparedStatement.setObject(13, numPositiveTests == null ? null : Long.valueOf(numPositiveTests));
-        preparedStatement.setObject(14, numDeaths == null ? null : Long.valueOf(numDeaths));
-        preparedStatement.setObject(15, numRecoveredCases == null ? null : Long.valueOf(numRecoveredCases));
-        preparedStatement.setObject(16, diffNumPositiveTests == null ? null : Long.valueOf(diffNumPositiveTests));
-        preparedStatement.setObject(17, diffNumDeaths == null ? null : Long.valueOf(diffNumDeaths));
-        preparedStatement.setObject(18, avgWeeklyDeaths == null ? null : Double.valueOf(avgWeeklyDeaths));
-        preparedStatement.setObject(19, avgWeeklyConfirmedCases == null ? null : Double.valueOf(avgWeeklyConfirmedCases));
-        preparedStatement.setObject(20, avgWeeklyRecoveredCases == null ? null : Double.valueOf(avgWeeklyRecoveredCases));
-        return preparedStatement;
+    protected void setParameters(PreparedStatement preparedStatement) throws SQLException {
+        super.setParameters(preparedStatement);
+        preparedStatement.setObject(13, numPositiveTests);
+        preparedStatement.setObject(14, numDeaths);
+        preparedStatement.setObject(15, numRecoveredCases);
+        preparedStatement.setObject(16, diffNumPositiveTests);
+        preparedStatement.setObject(17, diffNumDeaths);
+        preparedStatement.setObject(18, avgWeeklyDeaths);
+        preparedStatement.setObject(19, avgWeeklyConfirmedCases);
+        preparedStatement.setObject(20, avgWeeklyRecoveredCases);
     }
 
     @Override
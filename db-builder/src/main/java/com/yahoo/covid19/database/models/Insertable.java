@@ -27,6 +27,13 @@ public interface Insertable {
      */
     List<PreparedStatement> getStatements(DatabaseBuilder.DBConnector connector) throws SQLException;
 
+    /**
+     * Adds this record to the connector's cached insert statements as part of the current batch.
+     * @param connector The database connection.
+     * @throws SQLException
+     */
+    void addBatch(DatabaseBuilder.DBConnector connector) throws SQLException;
+
     /**
      * Validates the input record prior to DB insertion.
      * @return true if the record is valid.
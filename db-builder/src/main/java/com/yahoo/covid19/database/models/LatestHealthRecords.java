@@ -36,10 +36,10 @@ public class LatestHealthRecords implements Insertable {
     private String regionId;
     private String label;
     private String referenceDate;
-    private String totalDeaths;
-    private String totalConfirmedCases;
-    private String totalRecoveredCases;
-    private String totalTestedCases;
+    private Long totalDeaths;
+    private Long totalConfirmedCases;
+    private Long totalRecoveredCases;
+    private Long totalTestedCases;
     private String dataSource;
 
     // Fields from foreign table
@@ -64,27 +64,30 @@ public class LatestHealthRecords implements Insertable {
     }
 
     protected PreparedStatement getStatement(DatabaseBuilder.DBConnector connector) throws SQLException {
+        PreparedStatement statement = connector.getPreparedStatement(getInsertStatement());
+        setParameters(statement);
+        return statement;
+    }
+
+    protected void setParameters(PreparedStatement statement) throws SQLException {
         Date parsedReferenceDate = null;
         try {
-            parsedReferenceDate = DatabaseBuilder.REFERENCE_DATE_FORMAT.parse(referenceDate);
+            parsedReferenceDate = DatabaseBuilder.REFERENCE_DATE_FORMAT.get().parse(referenceDate);
         } catch (ParseException e) {
             // handled in is valid
         }
-        PreparedStatement statement = connector.getPreparedStatement(getInsertStatement());
         statement.setObject(1, getId());
         statement.setString(2, label);
-        statement.setString(3, DatabaseBuilder.DB_DATE_FORMAT.format(parsedReferenceDate));
+        statement.setString(3, DatabaseBuilder.DB_DATE_FORMAT.get().format(parsedReferenceDate));
         statement.setString(4, regionId);
         statement.setDouble(5, longitude);
         statement.setDouble(6, latitude);
         statement.setString(7, wikiId);
         statement.setString(8, dataSource);
-        statement.setObject(9, totalDeaths == null ? null : Long.valueOf(totalDeaths));
-        statement.setObject(10, totalConfirmedCases == null ? null : Long.valueOf(totalConfirmedCases));
-        statement.setObject(11, totalRecoveredCases == null ? null : Long.valueOf(totalRecoveredCases));
-        statement.setObject(12, totalTestedCases == null ? null : Long.valueOf(totalTestedCases));
-
-        return statement;
+        statement.setObject(9, totalDeaths);
+        statement.setObject(10, totalConfirmedCases);
+        statement.setObject(11, totalRecoveredCases);
+        statement.setObject(12, totalTestedCases);
     }
 
     @Override
@@ -92,6 +95,13 @@ public class LatestHealthRecords implements Insertable {
         return Arrays.asList(getStatement(connector));
     }
 
+    @Override
+    public void addBatch(DatabaseBuilder.DBConnector connector) throws SQLException {
+        PreparedStatement statement = connector.getBatchStatement(getInsertStatement());
+        setParameters(statement);
+        connector.addBatch(statement);
+    }
+
     private Places lookUpPlace(Map<String, Insertable> foreignKeyMap) {
         return (Places) foreignKeyMap.get(regionId);
     }
@@ -99,7 +109,7 @@ public class LatestHealthRecords implements Insertable {
     @Override
     public boolean isValid(Map<String, Insertable> foreignKeyMap) {
         try {
-            DatabaseBuilder.REFERENCE_DATE_FORMAT.parse(referenceDate);
+            DatabaseBuilder.REFERENCE_DATE_FORMAT.get().parse(referenceDate);
         } catch (ParseException e) {
             errorCode = INVALID_DATE;
             return false;
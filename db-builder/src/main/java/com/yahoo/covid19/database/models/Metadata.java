@@ -64,22 +64,45 @@ public class Metadata implements Insertable {
         publishedDate = new Timestamp(lastModifiedDate.getTime());
     }
 
+    /**
+     * Builds the metadata from a date range that was accumulated while the records were read.
+     * @param healthRecordsStartDate The earliest reference date seen (yyyy-MM-dd), or null if none.
+     * @param healthRecordsEndDate The latest reference date seen (yyyy-MM-dd), or null if none.
+     * @param lastModifiedDate The date the data was published.
+     */
+    public Metadata(String healthRecordsStartDate, String healthRecordsEndDate, Date lastModifiedDate) {
+        this.healthRecordsStartDate = healthRecordsStartDate;
+        this.healthRecordsEndDate = healthRecordsEndDate;
+        this.publishedDate = new Timestamp(lastModifiedDate.getTime());
+    }
+
     @Override
     public List<PreparedStatement> getStatements(DatabaseBuilder.DBConnector connector) throws SQLException {
+        PreparedStatement statement = connector.getPreparedStatement(METADATA_INSERT_STATEMENT);
+        setParameters(statement);
+        return Arrays.asList(statement);
+    }
+
+    @Override
+    public void addBatch(DatabaseBuilder.DBConnector connector) throws SQLException {
+        PreparedStatement statement = connector.getBatchStatement(METADATA_INSERT_STATEMENT);
+        setParameters(statement);
+        connector.addBatch(statement);
+    }
+
+    private void setParameters(PreparedStatement statement) throws SQLException {
         java.util.Date startDate = null;
         java.util.Date endDate = null;
         try {
-            startDate = DatabaseBuilder.REFERENCE_DATE_FORMAT.parse(healthRecordsStartDate);
-            endDate = DatabaseBuilder.REFERENCE_DATE_FORMAT.parse(healthRecordsEndDate);
+            startDate = DatabaseBuilder.REFERENCE_DATE_FORMAT.get().parse(healthRecordsStartDate);
+            endDate = DatabaseBuilder.REFERENCE_DATE_FORMAT.get().parse(healthRecordsEndDate);
         } catch (ParseException e) {
             // Should be handled in isValid
         }
-        PreparedStatement statement = connector.getPreparedStatement(METADATA_INSERT_STATEMENT);
         statement.setString(1, id);
-        statement.setString(2, DatabaseBuilder.DB_DATE_FORMAT.format(startDate));
-        statement.setString(3, DatabaseBuilder.DB_DATE_FORMAT.format(endDate));
+        statement.setString(2, DatabaseBuilder.DB_DATE_FORMAT.get().format(startDate));
+        statement.setString(3, DatabaseBuilder.DB_DATE_FORMAT.get().format(endDate));
         statement.setTimestamp(4, publishedDate);
-        return Arrays.asList(statement);
     }
 
     @Override
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19.database.models;
+
+import com.yahoo.covid19.database.ErrorCodes;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import static com.yahoo.covid19.database.ErrorCodes.CYCLIC_FOREIGN_KEY;
+import static com.yahoo.covid19.database.ErrorCodes.DANGLING_FOREIGN_KEY;
+import static com.yahoo.covid19.database.ErrorCodes.OK;
+
+/**
+ * Works out the validity and rank of every place in one pass over the parent links. Each place is visited once,
+ * parents before children, and the result is stored on the place. Health records then check their region with a
+ * field read instead of walking up to Earth for every record.
+ * <p>
+ * The walk uses an explicit stack, so deep hierarchies cannot overflow the thread stack, and a place that is
+ * its own ancestor is reported as {@link ErrorCodes#CYCLIC_FOREIGN_KEY} rather than recursing forever.
+ */
+public final class PlaceHierarchy {
+
+    private PlaceHierarchy() {
+    }
+
+    /**
+     * Resolves every place in the map.
+     * @param foreignKeyMap Places by id.
+     */
+    public static void resolveAll(Map<String, Insertable> foreignKeyMap) {
+        for (Insertable insertable : foreignKeyMap.values()) {
+            if (insertable instanceof Places && !((Places) insertable).isResolved()) {
+                resolve((Places) insertable, foreignKeyMap);
+            }
+        }
+    }
+
+    /**
+     * Resolves a place and every unresolved ancestor of it.
+     * @param start The place to resolve.
+     * @param foreignKeyMap Places by id.
+     */
+    static void resolve(Places start, Map<String, Insertable> foreignKeyMap) {
+        Deque<Visit> stack = new ArrayDeque<>();
+        Set<Places> onStack = Collections.newSetFromMap(new IdentityHashMap<>());
+        push(start, stack, onStack);
+
+        while (!stack.isEmpty()) {
+            Visit visit = stack.peek();
+            if (visit.place.isResolved()) {
+                pop(stack, onStack);
+                continue;
+            }
+
+            Places parent = nextUnresolvedParent(visit, foreignKeyMap);
+            if (parent == null) {
+                finish(visit.place, foreignKeyMap);
+                pop(stack, onStack);
+            } else if (onStack.contains(parent)) {
+                markCycle(stack, parent);
+            } else {
+                push(parent, stack, onStack);
+            }
+        }
+    }
+
+    /**
+     * A place on the walk, with how far through its parents the walk has got.
+     */
+    private static class Visit {
+        private final Places place;
+        private final Iterator<String> parentIds;
+
+        Visit(Places place) {
+            this.place = place;
+            this.parentIds = place.getParentIds().iterator();
+        }
+    }
+
+    private static void push(Places place, Deque<Visit> stack, Set<Places> onStack) {
+        ErrorCodes fieldError = place.checkFields();
+        if (fieldError != OK) {
+            place.resolve(fieldError, null);
+        } else if (place.isRoot()) {
+            place.resolve(OK, 1);
+        } else {
+            stack.push(new Visit(place));
+            onStack.add(place);
+        }
+    }
+
+    private static void pop(Deque<Visit> stack, Set<Places> onStack) {
+        onStack.remove(stack.pop().place);
+    }
+
+    private static Places nextUnresolvedParent(Visit visit, Map<String, Insertable> foreignKeyMap) {
+        while (visit.parentIds.hasNext()) {
+            Insertable parent = foreignKeyMap.get(visit.parentIds.next());
+            if (parent instanceof Places && !((Places) parent).isResolved()) {
+                return (Places) parent;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Called once all parents of the place are resolved.
+     */
+    private static void finish(Places place, Map<String, Insertable> foreignKeyMap) {
+        int parentRank = 0;
+        for (String parentId : place.getParentIds()) {
+            Insertable parent = foreignKeyMap.get(parentId);
+            if (!(parent instanceof Places) || parent.getErrorCode() != OK) {
+                place.resolve(DANGLING_FOREIGN_KEY, null);
+                return;
+            }
+            parentRank = Math.max(parentRank, ((Places) parent).getRank());
+        }
+        place.resolve(OK, parentRank + 1);
+    }
+
+    /**
+     * Every place from the top of the stack down to the repeated one is part of the cycle.
+     * They are resolved here and popped on the next turns of the walk.
+     */
+    private static void markCycle(Deque<Visit> stack, Places repeated) {
+        for (Visit visit : stack) {
+            visit.place.resolve(CYCLIC_FOREIGN_KEY, null);
+            if (visit.place == repeated) {
+                return;
+            }
+        }
+    }
+}
@@ -21,7 +21,6 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
-import static com.yahoo.covid19.database.ErrorCodes.DANGLING_FOREIGN_KEY;
 import static com.yahoo.covid19.database.ErrorCodes.INVALID_COORDINATE;
 import static com.yahoo.covid19.database.ErrorCodes.INVALID_ID;
 import static com.yahoo.covid19.database.ErrorCodes.INVALID_TYPE;
@@ -64,10 +63,16 @@ public class Places implements Insertable {
     private Integer rank = null;
 
     private transient ErrorCodes errorCode = OK;
+    private transient boolean resolved = false;
 
 
     private PreparedStatement getCommonStatement(DatabaseBuilder.DBConnector connector) throws SQLException {
+        PreparedStatement statement = connector.getPreparedStatement(PLACE_INSERT_STATEMENT);
+        setCommonParameters(statement);
+        return statement;
+    }
 
+    private void setCommonParameters(PreparedStatement statement) throws SQLException {
         Collections.sort(type, (String str1, String str2) -> {
             int index1 = PLACE_TYPE_ORDER.indexOf(str1);
             int index2 = PLACE_TYPE_ORDER.indexOf(str2);
@@ -81,7 +86,6 @@ public class Places implements Insertable {
             return index1 - index2;
         });
 
-        PreparedStatement statement = connector.getPreparedStatement(PLACE_INSERT_STATEMENT);
         statement.setString(1, id);
         statement.setString(2, String.join(",", type));
         statement.setString(3, label);
@@ -90,7 +94,6 @@ public class Places implements Insertable {
         statement.setDouble(6, (longitude == null) ? 0 : Double.valueOf(longitude));
         statement.setDouble(7, (latitude == null) ? 0 : Double.valueOf(latitude));
         statement.setObject(8, population == null ? null : Long.valueOf(population));
-        return statement;
     }
 
     private PreparedStatement getRelationshipStatement(DatabaseBuilder.DBConnector connector, String parentId) throws SQLException {
@@ -114,58 +117,90 @@ public class Places implements Insertable {
         return statements;
     }
 
+    @Override
+    public void addBatch(DatabaseBuilder.DBConnector connector) throws SQLException {
+        PreparedStatement statement = connector.getBatchStatement(PLACE_INSERT_STATEMENT);
+        setCommonParameters(statement);
+        connector.addBatch(statement);
+
+        for (String parentId : parentIds) {
+            PreparedStatement relationshipStatement = connector.getBatchStatement(RELATIONSHIP_INSERT_STATEMENT);
+            relationshipStatement.setString(1, id);
+            relationshipStatement.setString(2, parentId);
+            connector.addBatch(relationshipStatement);
+        }
+    }
+
+    /**
+     * A place is valid if its own fields are and all of its ancestors are valid places. The result is worked
+     * out once by {@link PlaceHierarchy} and cached, so later calls are a field read.
+     */
     @Override
     public boolean isValid(Map<String, Insertable> foreignKeyMap) {
+        if (!resolved) {
+            PlaceHierarchy.resolve(this, foreignKeyMap);
+        }
+        return errorCode == OK;
+    }
+
+    /**
+     * Checks the fields of this place alone, without looking at its parents.
+     */
+    ErrorCodes checkFields() {
         if (id == null || id.isEmpty()) {
-            errorCode = INVALID_ID;
-            return false;
+            return INVALID_ID;
         }
 
         if (this.type == null || this.type.isEmpty()) {
-            errorCode = INVALID_TYPE;
-            return false;
+            return INVALID_TYPE;
         }
 
-        if (this.type.contains(EARTH_TYPE)) {
-            return true;
+        if (isRoot()) {
+            return OK;
         }
 
         if (! isValidCoordinate(latitude) || ! isValidCoordinate(longitude)) {
-            errorCode = INVALID_COORDINATE;
-            return false;
+            return INVALID_COORDINATE;
         }
 
         if (parentIds == null || parentIds.isEmpty()) {
-            errorCode = MISSING_FOREIGN_KEY;
-            return false;
+            return MISSING_FOREIGN_KEY;
         }
-        boolean isParentValid =  parentIds.stream()
-                .map(parentId -> foreignKeyMap.get(parentId))
-                .allMatch(
-                        insertable -> {
-                            if (insertable == null || !insertable.isValid(foreignKeyMap)) {
-                                return false;
-                            }
-                            return true;
-                        }
-                );
-        if (!isParentValid) {
-            this.errorCode = DANGLING_FOREIGN_KEY;
-            return false;
+        return OK;
+    }
+
+    /**
+     * Earth is the root of the hierarchy and is valid without parents.
+     */
+    boolean isRoot() {
+        return this.type.contains(EARTH_TYPE);
+    }
+
+    boolean isResolved() {
+        return resolved;
+    }
+
+    /**
+     * Records the outcome of the hierarchy pass.
+     * @param errorCode OK if this place and all its ancestors are valid.
+     * @param rank The depth of this place below the root, starting at 1. Ignored if a rank is already set.
+     */
+    void resolve(ErrorCodes errorCode, Integer rank) {
+        this.errorCode = errorCode;
+        if (this.rank == null) {
+            this.rank = rank;
         }
-        return true;
+        this.resolved = true;
     }
 
     private boolean isValidCoordinate(String coordinate) {
         if (coordinate == null) {
-            errorCode = INVALID_COORDINATE;
             return false;
         }
 
         try {
             Double.valueOf(coordinate);
         } catch (NumberFormatException e) {
-            errorCode = INVALID_COORDINATE;
             return false;
         }
         return true;
@@ -184,21 +219,7 @@ public class Places implements Insertable {
 
     @Override
     public void getForiegnKeyFields(Map<String, Insertable> foreignKeyMap) {
-        computeRank(foreignKeyMap);
-    }
-
-    private Integer computeRank(Map<String, Insertable> foreignKeyMap) {
-        if (rank != null) {
-            return rank;
-        }
-        if (parentIds == null || parentIds.isEmpty()) {
-            rank = 1;
-        } else {
-            rank = 1 + parentIds.stream()
-                    .mapToInt(parentId -> ((Places) foreignKeyMap.get(parentId)).computeRank(foreignKeyMap))
-                    .max()
-                    .orElse(0);
-        }
-        return rank;
+        // The rank is set when the hierarchy is resolved.
+        isValid(foreignKeyMap);
     }
 }
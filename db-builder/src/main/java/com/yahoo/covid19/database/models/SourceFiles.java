@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19.database.models;
+
+import com.yahoo.covid19.database.DatabaseBuilder;
+import com.yahoo.covid19.database.ErrorCodes;
+
+import lombok.Data;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records which data file went into the DB, so that the next build can skip files that did not change.
+ */
+@Data
+public class SourceFiles implements Insertable {
+    public static final String TABLE_NAME = "source_files";
+    private static final String SOURCE_FILES_INSERT_STATEMENT = "INSERT INTO source_files ("
+            + "fileName, contentHash, totalRecords, minReferenceDate, maxReferenceDate) "
+            + "VALUES (?, ?, ?, ?, ?);";
+
+    private final String fileName;
+    private String contentHash;
+    private long totalRecords = 0;
+    private String minReferenceDate;
+    private String maxReferenceDate;
+
+    /**
+     * Widens the reference date range of this file.
+     * @param referenceDate A reference date (yyyy-MM-dd) read from this file.
+     */
+    public void trackReferenceDate(String referenceDate) {
+        if (referenceDate == null) {
+            return;
+        }
+        if (minReferenceDate == null || minReferenceDate.compareTo(referenceDate) > 0) {
+            minReferenceDate = referenceDate;
+        }
+        if (maxReferenceDate == null || maxReferenceDate.compareTo(referenceDate) < 0) {
+            maxReferenceDate = referenceDate;
+        }
+    }
+
+    @Override
+    public List<PreparedStatement> getStatements(DatabaseBuilder.DBConnector connector) throws SQLException {
+        PreparedStatement statement = connector.getPreparedStatement(SOURCE_FILES_INSERT_STATEMENT);
+        setParameters(statement);
+        return Arrays.asList(statement);
+    }
+
+    @Override
+    public void addBatch(DatabaseBuilder.DBConnector connector) throws SQLException {
+        PreparedStatement statement = connector.getBatchStatement(SOURCE_FILES_INSERT_STATEMENT);
+        setParameters(statement);
+        connector.addBatch(statement);
+    }
+
+    private void setParameters(PreparedStatement statement) throws SQLException {
+        statement.setString(1, fileName);
+        statement.setString(2, contentHash);
+        statement.setLong(3, totalRecords);
+        statement.setString(4, minReferenceDate);
+        statement.setString(5, maxReferenceDate);
+    }
+
+    @Override
+    public boolean isValid(Map<String, Insertable> foreignKeyMap) {
+        return fileName != null && contentHash != null;
+    }
+
+    @Override
+    public ErrorCodes getErrorCode() {
+        return ErrorCodes.OK;
+    }
+
+    @Override
+    public Object getId() {
+        return fileName;
+    }
+
+    @Override
+    public String getTableName() {
+        return TABLE_NAME;
+    }
+
+    @Override
+    public void getForiegnKeyFields(Map<String, Insertable> foreignKeyMap) {
+    }
+}
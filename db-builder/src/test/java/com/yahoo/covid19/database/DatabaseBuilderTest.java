@@ -12,18 +12,26 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 public class DatabaseBuilderTest {
     private DatabaseBuilder builder;
+    private File outputDirectory;
 
     private void countCheck(DatabaseBuilder.DBConnector connector, String table, Integer expected) throws SQLException {
         countCheck(connector, table, null, null, expected);
@@ -51,9 +59,15 @@ public class DatabaseBuilderTest {
         builder.processInputStream(filename, new FileInputStream(file));
     }
 
+    private void addDayFile(String date, String contents, DatabaseBuilder builder) {
+        builder.processInputStream("/data/by-region-" + date + ".json",
+                new ByteArrayInputStream(contents.replace("\"2020-04-24\"", "\"" + date + "\"")
+                        .getBytes(StandardCharsets.UTF_8)));
+    }
+
     @BeforeAll
     public void setup() throws FileNotFoundException, URISyntaxException {
-        File outputDirectory = Files.createTempDir();
+        outputDirectory = Files.createTempDir();
         outputDirectory.deleteOnExit();
         builder = new DatabaseBuilder(outputDirectory, 10.0, true);
         addInputStrem("/data/metadata/region-metadata.json", builder);
@@ -80,6 +94,252 @@ public class DatabaseBuilderTest {
     }
 
 
+    @Test
+    public void testStreaming() throws Exception {
+        File outputDirectory = Files.createTempDir();
+        outputDirectory.deleteOnExit();
+        DatabaseBuilder streamingBuilder = new DatabaseBuilder(outputDirectory, 10.0, true);
+        streamingBuilder.setStreaming(true);
+
+        // Health records arrive before the places, as they do in the github tarball.
+        addInputStrem("/data/by-region-2020-04-24.json", streamingBuilder);
+        addInputStrem("/data/metadata/region-metadata.json", streamingBuilder);
+        streamingBuilder.build();
+
+        try (DatabaseBuilder.DBConnector connector = streamingBuilder.newDBConnector()) {
+            countCheck(connector, "health_records", null, 3489);
+            countCheck(connector, "place", null, 3801);
+            countCheck(connector, "metadata",
+                    "healthRecordsStartDate = '2020-04-24 00:00:00' AND healthRecordsEndDate = '2020-04-24 00:00:00'", 1);
+        }
+    }
+
+    @Test
+    public void testBatched() throws Exception {
+        File outputDirectory = Files.createTempDir();
+        outputDirectory.deleteOnExit();
+        DatabaseBuilder batchedBuilder = new DatabaseBuilder(outputDirectory, 10.0, true);
+        batchedBuilder.setBatchSize(1000);
+        addInputStrem("/data/metadata/region-metadata.json", batchedBuilder);
+        addInputStrem("/data/by-region-2020-04-24.json", batchedBuilder);
+        batchedBuilder.build();
+
+        try (DatabaseBuilder.DBConnector connector = batchedBuilder.newDBConnector()) {
+            countCheck(connector, "health_records", null, 3489);
+            countCheck(connector, "place", null, 3801);
+            countCheck(connector, "relationship_hierarchy", null, 3802);
+        }
+    }
+
+    @Test
+    public void testBulkLoad() throws Exception {
+        File outputDirectory = Files.createTempDir();
+        outputDirectory.deleteOnExit();
+        DatabaseBuilder bulkBuilder = new DatabaseBuilder(outputDirectory, 10.0, true);
+        bulkBuilder.setBulkLoad(true);
+        addInputStrem("/data/metadata/region-metadata.json", bulkBuilder);
+        addInputStrem("/data/by-region-2020-04-24.json", bulkBuilder);
+        bulkBuilder.build();
+
+        try (DatabaseBuilder.DBConnector connector = bulkBuilder.newDBConnector()) {
+            countCheck(connector, "health_records", null, 3489);
+            countCheck(connector, "place", null, 3801);
+            // The deferred indexes exist once the build is done.
+            countCheck(connector, "INFORMATION_SCHEMA.INDEXES", null, 19);
+        }
+    }
+
+    @Test
+    public void testParallelParsing() throws Exception {
+        File outputDirectory = Files.createTempDir();
+        outputDirectory.deleteOnExit();
+        DatabaseBuilder parallelBuilder = new DatabaseBuilder(outputDirectory, 10.0, true);
+        parallelBuilder.setParseThreads(4);
+        addInputStrem("/data/metadata/region-metadata.json", parallelBuilder);
+        addInputStrem("/data/by-region-2020-04-24.json", parallelBuilder);
+        parallelBuilder.build();
+
+        try (DatabaseBuilder.DBConnector connector = parallelBuilder.newDBConnector()) {
+            countCheck(connector, "health_records", null, 3489);
+            countCheck(connector, "place", null, 3801);
+        }
+    }
+
+    @Test
+    public void testIncremental() throws Exception {
+        String dayFile = Files.asCharSource(
+                new File(this.getClass().getResource("/data/by-region-2020-04-24.json").toURI()),
+                StandardCharsets.UTF_8).read();
+
+        File previousDirectory = Files.createTempDir();
+        previousDirectory.deleteOnExit();
+        DatabaseBuilder previousBuilder = new DatabaseBuilder(previousDirectory, 10.0, true);
+        addInputStrem("/data/metadata/region-metadata.json", previousBuilder);
+        addInputStrem("/data/by-region-2020-04-24.json", previousBuilder);
+        addDayFile("2020-04-25", dayFile, previousBuilder);
+        previousBuilder.build();
+
+        // 04-24 is unchanged, 04-25 is revised and 04-26 is new.
+        File outputDirectory = Files.createTempDir();
+        outputDirectory.deleteOnExit();
+        DatabaseBuilder incrementalBuilder = new DatabaseBuilder(outputDirectory, 10.0, true);
+        incrementalBuilder.setPreviousDatabase(previousDirectory);
+        incrementalBuilder.setVerifyIncremental(true);
+        addInputStrem("/data/by-region-2020-04-24.json", incrementalBuilder);
+        addDayFile("2020-04-25", dayFile.replaceFirst("\"totalConfirmedCases\": 24,",
+                "\"totalConfirmedCases\": 25,"), incrementalBuilder);
+        addDayFile("2020-04-26", dayFile, incrementalBuilder);
+        addInputStrem("/data/metadata/region-metadata.json", incrementalBuilder);
+        incrementalBuilder.build();
+
+        try (DatabaseBuilder.DBConnector connector = incrementalBuilder.newDBConnector()) {
+            countCheck(connector, "health_records", null, 3489 * 3);
+            countCheck(connector, "health_records",
+                    "label = 'Abbeville County, South Carolina' AND totalConfirmedCases = 25", 1);
+            countCheck(connector, "place", null, 3801);
+            countCheck(connector, "source_files", null, 4);
+            countCheck(connector, "metadata",
+                    "healthRecordsStartDate = '2020-04-24 00:00:00' AND healthRecordsEndDate = '2020-04-26 00:00:00'", 1);
+        }
+
+        HealthSeries series = new HealthSeriesReader(new File(outputDirectory, DBUtils.SERIES_FILE_NAME))
+                .get("b19d76b4");
+        assertEquals(3, series.size());
+        int totalConfirmedCases = HealthSeries.LONG_METRICS.indexOf("totalConfirmedCases");
+        for (int record = 0; record < 3; record++) {
+            assertEquals(LocalDate.parse("2020-04-24").toEpochDay() + record, series.getEpochDay(record));
+            assertEquals("Abbeville County, South Carolina", series.getLabel(record));
+            assertEquals(Long.valueOf(record == 1 ? 25 : 24), series.getLong(totalConfirmedCases, record));
+            assertNull(series.getLong(HealthSeries.LONG_METRICS.indexOf("totalTestedCases"), record));
+        }
+    }
+
+    @Test
+    public void testIncrementalWithOverlappingDates() throws Exception {
+        String dayFile = Files.asCharSource(
+                new File(this.getClass().getResource("/data/by-region-2020-04-24.json").toURI()),
+                StandardCharsets.UTF_8).read();
+
+        File previousDirectory = Files.createTempDir();
+        previousDirectory.deleteOnExit();
+        DatabaseBuilder previousBuilder = new DatabaseBuilder(previousDirectory, 10.0, true);
+        addInputStrem("/data/metadata/region-metadata.json", previousBuilder);
+        addInputStrem("/data/by-region-2020-04-24.json", previousBuilder);
+        addDayFile("2020-04-25", dayFile, previousBuilder);
+        previousBuilder.build();
+
+        // The revised 04-25 file repeats the records of the unchanged 04-24 file, which come first. The full build
+        // reads the input again, as from an archive, instead of keeping the files on disk.
+        File outputDirectory = Files.createTempDir();
+        outputDirectory.deleteOnExit();
+        DatabaseBuilder incrementalBuilder = new DatabaseBuilder(outputDirectory, 10.0, false);
+        incrementalBuilder.setPreviousDatabase(previousDirectory);
+        AtomicInteger reads = new AtomicInteger();
+        DatabaseBuilder.InputReplay input = target -> {
+            reads.incrementAndGet();
+            for (String resource : Arrays.asList("/data/metadata/region-metadata.json",
+                    "/data/by-region-2020-04-24.json")) {
+                target.processInputStream(resource, getClass().getResourceAsStream(resource));
+            }
+            target.processInputStream("/data/by-region-2020-04-25.json", new ByteArrayInputStream(
+                    dayFile.replaceFirst("\"totalConfirmedCases\": 24,", "\"totalConfirmedCases\": 25,")
+                            .getBytes(StandardCharsets.UTF_8)));
+        };
+        incrementalBuilder.setInputReplay(input);
+        input.replay(incrementalBuilder);
+        incrementalBuilder.build();
+        assertEquals(2, reads.get());
+
+        try (DatabaseBuilder.DBConnector connector = incrementalBuilder.newDBConnector()) {
+            countCheck(connector, "health_records", null, 3489);
+            countCheck(connector, "health_records",
+                    "label = 'Abbeville County, South Carolina' AND totalConfirmedCases = 24", 1);
+            countCheck(connector, "source_files", null, 3);
+        }
+    }
+
+    @Test
+    public void testRollups() throws Exception {
+        String childSum = "(SELECT SUM(child.totalConfirmedCases) FROM relationship_hierarchy"
+                + " JOIN health_records child ON child.regionId = relationship_hierarchy.childId"
+                + " AND child.referenceDate = health_rollups.referenceDate"
+                + " WHERE relationship_hierarchy.parentId = health_rollups.regionId)";
+        String allChildrenReported = "NOT EXISTS (SELECT 1 FROM relationship_hierarchy"
+                + " WHERE relationship_hierarchy.parentId = health_rollups.regionId AND NOT EXISTS ("
+                + " SELECT 1 FROM health_records child WHERE child.regionId = relationship_hierarchy.childId"
+                + " AND child.referenceDate = health_rollups.referenceDate))";
+        try (DatabaseBuilder.DBConnector connector = builder.newDBConnector()) {
+            countCheck(connector, "health_rollups", null, 88);
+            countCheck(connector, "health_rollups", "referenceDate != '2020-04-24 00:00:00'", 0);
+            // Where every child has a record of its own, the rollup is the sum of those records.
+            countCheck(connector, "health_rollups", allChildrenReported, 52);
+            countCheck(connector, "health_rollups",
+                    allChildrenReported + " AND totalConfirmedCases != " + childSum, 0);
+            // Every rollup has at least one child behind it.
+            countCheck(connector, "health_rollups", "childCount < 1", 0);
+        }
+    }
+
+    @Test
+    public void testAncestors() throws Exception {
+        try (DatabaseBuilder.DBConnector connector = builder.newDBConnector()) {
+            // Every place below Earth has Earth as an ancestor, and every relationship is a depth 1 ancestor.
+            countCheck(connector, "place_ancestors", "ancestorId = (SELECT id FROM place WHERE label = 'Earth')",
+                    3800);
+            countCheck(connector, "place_ancestors", "depth = 1",
+                    (int) connector.executeSQLQuery("SELECT COUNT(*) FROM relationship_hierarchy;",
+                            resultSet -> {
+                                try {
+                                    return resultSet.last() ? resultSet.getInt(1) : -1;
+                                } catch (Exception e) {
+                                    return -1;
+                                }
+                            }));
+            countCheck(connector, "place_ancestors", "placeId = ancestorId OR depth < 1", 0);
+            // The grandparents are the ancestors at depth 2.
+            countCheck(connector, "place_ancestors",
+                    "JOIN relationship_hierarchy parent ON parent.childId = place_ancestors.placeId"
+                            + " JOIN relationship_hierarchy grandparent ON grandparent.childId = parent.parentId"
+                            + " AND grandparent.parentId = place_ancestors.ancestorId",
+                    "place_ancestors.depth != 2 AND NOT EXISTS (SELECT 1 FROM relationship_hierarchy direct"
+                            + " WHERE direct.childId = place_ancestors.placeId"
+                            + " AND direct.parentId = place_ancestors.ancestorId)", 0);
+        }
+    }
+
+    @Test
+    public void testSeriesFile() throws Exception {
+        HealthSeriesReader reader = new HealthSeriesReader(new File(outputDirectory, DBUtils.SERIES_FILE_NAME));
+        assertNull(reader.get("unknown"));
+        int records = 0;
+        try (DatabaseBuilder.DBConnector connector = builder.newDBConnector();
+             PreparedStatement statement = connector.getPreparedStatement("SELECT * FROM health_records;");
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                HealthSeries series = reader.get(resultSet.getString("regionId"));
+                assertEquals(1, series.size());
+                assertEquals(resultSet.getObject("id"), series.getId(0));
+                assertEquals(resultSet.getTimestamp("referenceDate").getTime(),
+                        series.getReferenceDate(0).getTime());
+                assertEquals(resultSet.getString("label"), series.getLabel(0));
+                assertEquals(resultSet.getString("wikiId"), series.getWikiId(0));
+                assertEquals(resultSet.getString("dataSource"), series.getDataSource(0));
+                assertEquals(resultSet.getDouble("latitude"), series.getLatitude(0));
+                assertEquals(resultSet.getDouble("longitude"), series.getLongitude(0));
+                for (int metric = 0; metric < HealthSeries.LONG_METRICS.size(); metric++) {
+                    assertEquals(resultSet.getObject(HealthSeries.LONG_METRICS.get(metric)),
+                            series.getLong(metric, 0));
+                }
+                for (int metric = 0; metric < HealthSeries.DOUBLE_METRICS.size(); metric++) {
+                    assertEquals(resultSet.getObject(HealthSeries.DOUBLE_METRICS.get(metric)),
+                            series.getDouble(metric, 0));
+                }
+                records += 1;
+            }
+        }
+        assertEquals(records, reader.getRegionCount());
+    }
+
     @Test
     public void testInvalidEntries() throws Exception {
         try (DatabaseBuilder.DBConnector connector = builder.newDBConnector()) {
@@ -106,11 +366,16 @@ public class DatabaseBuilderTest {
                     }
             );
             // 5 configured indexes
+            // 2 for the health_rollups (regionId, referenceDate) index
+            // 3 for the place_ancestors (ancestorId, depth, placeId) index
             // 1 primary key index for healthRecords
             // 1 primary key index for latestHealthRecords
             // 1 primary key index for places
             // 2 primary key index for relationship_hierarchy
-            assertEquals(10, rowCount);
+            // 1 primary key index for source_files
+            // 1 primary key index for health_rollups
+            // 2 primary key index for place_ancestors
+            assertEquals(19, rowCount);
         }
     }
 }
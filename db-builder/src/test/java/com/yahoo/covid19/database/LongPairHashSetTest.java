@@ -0,0 +1,51 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19.database;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LongPairHashSetTest {
+
+    @Test
+    public void testSameAsHashSet() {
+        LongPairHashSet set = new LongPairHashSet();
+        Set<UUID> expected = new HashSet<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 50000; i++) {
+            // Few distinct values, so that most adds are duplicates.
+            UUID uuid = UUID.nameUUIDFromBytes(String.valueOf(random.nextInt(20000)).getBytes());
+            assertEquals(expected.add(uuid), set.add(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()));
+        }
+        assertEquals(expected.size(), set.size());
+        for (UUID uuid : expected) {
+            assertTrue(set.contains(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()));
+        }
+    }
+
+    @Test
+    public void testZeroAndHalves() {
+        LongPairHashSet set = new LongPairHashSet(1);
+        assertFalse(set.contains(0, 0));
+        assertTrue(set.add(0, 0));
+        assertFalse(set.add(0, 0));
+        assertTrue(set.add(0, 1));
+        assertTrue(set.add(1, 0));
+        assertFalse(set.add(1, 0));
+        assertTrue(set.contains(0, 0));
+        assertFalse(set.contains(1, 1));
+        assertEquals(3, set.size());
+    }
+}
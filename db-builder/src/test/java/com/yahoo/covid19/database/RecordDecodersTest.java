@@ -0,0 +1,102 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19.database;
+
+import com.yahoo.covid19.database.models.HistoricalHealthRecords;
+import com.yahoo.covid19.database.models.Insertable;
+import com.yahoo.covid19.database.models.LatestHealthRecords;
+import com.yahoo.covid19.database.models.Places;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RecordDecodersTest {
+    private final Gson streaming = DatabaseBuilder.createGson(false);
+    private final Gson reflective = DatabaseBuilder.createGson(true);
+
+    private List<String> readLines(String resource) throws Exception {
+        return Files.readAllLines(new File(getClass().getResource(resource).toURI()).toPath(),
+                StandardCharsets.UTF_8);
+    }
+
+    private void checkSameRecords(String resource, Class<? extends Insertable> tableType) throws Exception {
+        for (String line : readLines(resource)) {
+            assertEquals(reflective.fromJson(line, tableType), streaming.fromJson(line, tableType), line);
+        }
+    }
+
+    @Test
+    public void testSameRecordsAsReflection() throws Exception {
+        checkSameRecords("/data/by-region-2020-04-24.json", HistoricalHealthRecords.class);
+        checkSameRecords("/data/by-region-2020-04-24.json", LatestHealthRecords.class);
+        checkSameRecords("/data/metadata/region-metadata.json", Places.class);
+    }
+
+    @Test
+    public void testScannerSameRecordsAsReflection() throws Exception {
+        for (String line : readLines("/data/by-region-2020-04-24.json")) {
+            HistoricalHealthRecords record = HealthRecordsScanner.scan(line, HistoricalHealthRecords::new);
+            assertNotNull(record, line);
+            assertEquals(reflective.fromJson(line, HistoricalHealthRecords.class), record, line);
+            assertEquals(reflective.fromJson(line, LatestHealthRecords.class),
+                    HealthRecordsScanner.scan(line, LatestHealthRecords::new), line);
+        }
+    }
+
+    @Test
+    public void testHistoricalFields() {
+        String line = "{\"regionId\": \"b19d76b4\", \"numDeaths\": -3, \"avgWeeklyDeaths\": 1.5, "
+                + "\"avgWeeklyConfirmedCases\": 2, \"totalDeaths\": 7, \"totalDeaths\": null, \"numTests\": 1e3}";
+        for (HistoricalHealthRecords record : new HistoricalHealthRecords[] {
+                streaming.fromJson(line, HistoricalHealthRecords.class),
+                HealthRecordsScanner.scan(line, HistoricalHealthRecords::new)}) {
+            assertEquals("b19d76b4", record.getRegionId());
+            assertEquals(Long.valueOf(-3), record.getNumDeaths());
+            assertEquals(Double.valueOf(1.5), record.getAvgWeeklyDeaths());
+            assertEquals(Double.valueOf(2), record.getAvgWeeklyConfirmedCases());
+            assertNull(record.getTotalDeaths());
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "{\"label\": \"Escaped \\\" quote\"}",
+            "{\"totalDeaths\": \"12\"}",
+            "{\"totalDeaths\": 1.5}",
+            "{\"regionId\": 12}",
+            "{\"numTests\": {\"nested\": [1, 2]}}",
+            "{\"numTests\": true}",
+            "{\"regionId\": \"b19d76b4\"",
+            "{\"regionId\": \"b19d76b4\"} trailing",
+            ""
+    })
+    public void testScannerFallsBack(String line) {
+        assertNull(HealthRecordsScanner.scan(line, HistoricalHealthRecords::new));
+    }
+
+    @Test
+    public void testInvalidNumber() {
+        assertThrows(JsonSyntaxException.class,
+                () -> streaming.fromJson("{\"totalDeaths\": 1.5}", LatestHealthRecords.class));
+        assertThrows(JsonSyntaxException.class,
+                () -> reflective.fromJson("{\"totalDeaths\": 1.5}", LatestHealthRecords.class));
+    }
+}
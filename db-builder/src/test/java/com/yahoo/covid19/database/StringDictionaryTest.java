@@ -0,0 +1,41 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19.database;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class StringDictionaryTest {
+
+    @Test
+    public void testDenseCodes() {
+        StringDictionary dictionary = new StringDictionary();
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, dictionary.intern("region-" + i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, dictionary.intern(new String("region-" + i)));
+            assertEquals("region-" + i, dictionary.get(i));
+        }
+        assertEquals(1000, dictionary.size());
+        assertThrows(IndexOutOfBoundsException.class, () -> dictionary.get(1000));
+    }
+
+    @Test
+    public void testCanonical() {
+        StringDictionary dictionary = new StringDictionary();
+        String first = new String("b19d76b4");
+        assertSame(first, dictionary.canonical(first));
+        assertSame(first, dictionary.canonical(new String("b19d76b4")));
+        assertNull(dictionary.canonical(null));
+        assertEquals(1, dictionary.size());
+    }
+}
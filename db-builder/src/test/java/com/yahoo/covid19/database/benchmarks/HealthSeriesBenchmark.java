@@ -0,0 +1,136 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19.database.benchmarks;
+
+import com.yahoo.covid19.database.DBUtils;
+import com.yahoo.covid19.database.DatabaseBuilder;
+import com.yahoo.covid19.database.HealthSeries;
+import com.yahoo.covid19.database.HealthSeriesReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads every health record of a random region: {@code h2} queries the read only database through the
+ * regionId index, the way the webservice does, and {@code series} decodes the region's block of the series
+ * file. The database holds {@code days} copies of the test day file. Both read all the columns.
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main HealthSeriesBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class HealthSeriesBenchmark {
+    @Param({"120"})
+    private int days;
+
+    private Connection connection;
+    private PreparedStatement select;
+    private HealthSeriesReader reader;
+    private String[] regionIds;
+    private final Random random = new Random(42);
+
+    @Setup
+    public void setup() throws Exception {
+        File directory = Files.createTempDirectory("series-benchmark").toFile();
+        DatabaseBuilder builder = new DatabaseBuilder(directory, 10.0, false);
+        builder.setBulkLoad(true);
+        File metadata = new File(getClass().getResource("/data/metadata/region-metadata.json").toURI());
+        builder.processInputStream("/data/metadata/region-metadata.json", new FileInputStream(metadata));
+        String dayFile = new String(Files.readAllBytes(new File(getClass()
+                .getResource("/data/by-region-2020-04-24.json").toURI()).toPath()), StandardCharsets.UTF_8);
+        LocalDate first = LocalDate.parse("2020-03-01");
+        for (int day = 0; day < days; day++) {
+            String date = first.plusDays(day).toString();
+            builder.processInputStream("/data/by-region-" + date + ".json", new ByteArrayInputStream(
+                    dayFile.replace("\"2020-04-24\"", "\"" + date + "\"").getBytes(StandardCharsets.UTF_8)));
+        }
+        builder.build();
+
+        connection = DriverManager.getConnection("jdbc:h2:" + directory + File.separator + DBUtils.DB_NAME
+                + ";ACCESS_MODE_DATA=r");
+        select = connection.prepareStatement("SELECT * FROM health_records WHERE regionId = ?;");
+        List<String> ids = new ArrayList<>();
+        try (ResultSet resultSet = connection.createStatement()
+                .executeQuery("SELECT DISTINCT regionId FROM health_records;")) {
+            while (resultSet.next()) {
+                ids.add(resultSet.getString(1));
+            }
+        }
+        regionIds = ids.toArray(new String[0]);
+        reader = new HealthSeriesReader(new File(directory, DBUtils.SERIES_FILE_NAME));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        connection.close();
+    }
+
+    @Benchmark
+    public void h2(Blackhole blackhole) throws Exception {
+        select.setString(1, regionIds[random.nextInt(regionIds.length)]);
+        try (ResultSet resultSet = select.executeQuery()) {
+            int columns = resultSet.getMetaData().getColumnCount();
+            while (resultSet.next()) {
+                for (int column = 1; column <= columns; column++) {
+                    blackhole.consume(resultSet.getObject(column));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void series(Blackhole blackhole) {
+        HealthSeries series = reader.get(regionIds[random.nextInt(regionIds.length)]);
+        for (int record = 0; record < series.size(); record++) {
+            blackhole.consume(series.getId(record));
+            blackhole.consume(series.getReferenceDate(record));
+            blackhole.consume(series.getLabel(record));
+            blackhole.consume(series.getWikiId(record));
+            blackhole.consume(series.getDataSource(record));
+            blackhole.consume(series.getLatitude(record));
+            blackhole.consume(series.getLongitude(record));
+            for (int metric = 0; metric < HealthSeries.LONG_METRICS.size(); metric++) {
+                blackhole.consume(series.getLong(metric, record));
+            }
+            for (int metric = 0; metric < HealthSeries.DOUBLE_METRICS.size(); metric++) {
+                blackhole.consume(series.getDouble(metric, record));
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19.database.benchmarks;
+
+import com.yahoo.covid19.database.DBUtils;
+import com.yahoo.covid19.database.DatabaseBuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the health records of the counties of a random country, the places two levels below it, the way
+ * Hibernate translates the filters of the webservice. {@code parents} is the chain of self-joins of
+ * {@code filter=place.parents.parents.id==X}: each level joins relationship_hierarchy and place once more.
+ * {@code ancestors} is {@code filter=place.ancestors.id==X} with the depth of the place_ancestors closure
+ * table, and {@code anyDepth} the same lookup for the descendants of the country at any depth.
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main PlaceAncestorsBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PlaceAncestorsBenchmark {
+    private static final String SELECT_BY_PARENTS = "SELECT records.* FROM health_records records"
+            + " JOIN place ON place.id = records.regionId"
+            + " JOIN relationship_hierarchy r1 ON r1.childId = place.id"
+            + " JOIN place p1 ON p1.id = r1.parentId"
+            + " JOIN relationship_hierarchy r2 ON r2.childId = p1.id"
+            + " JOIN place p2 ON p2.id = r2.parentId"
+            + " WHERE p2.id = ?;";
+
+    private static final String SELECT_BY_ANCESTORS = "SELECT records.* FROM health_records records"
+            + " JOIN place ON place.id = records.regionId"
+            + " JOIN place_ancestors a ON a.placeId = place.id"
+            + " JOIN place ancestor ON ancestor.id = a.ancestorId"
+            + " WHERE ancestor.id = ? AND a.depth = 2;";
+
+    private static final String SELECT_BY_ANY_DEPTH = "SELECT records.* FROM health_records records"
+            + " JOIN place ON place.id = records.regionId"
+            + " JOIN place_ancestors a ON a.placeId = place.id"
+            + " JOIN place ancestor ON ancestor.id = a.ancestorId"
+            + " WHERE ancestor.id = ?;";
+
+    // Countries with counties, the places that have grandchildren two levels below Earth.
+    private static final String SELECT_COUNTRIES = "SELECT DISTINCT ancestorId FROM place_ancestors"
+            + " WHERE depth = 2 AND ancestorId IN (SELECT placeId FROM place_ancestors a"
+            + " JOIN place earth ON earth.id = a.ancestorId WHERE earth.label = 'Earth' AND a.depth = 1);";
+
+    @Param({"16384"})
+    private int cacheSize;
+
+    private Connection connection;
+    private PreparedStatement byParents;
+    private PreparedStatement byAncestors;
+    private PreparedStatement byAnyDepth;
+    private String[] countryIds;
+    private final Random random = new Random(42);
+
+    @Setup
+    public void setup() throws Exception {
+        File directory = Files.createTempDirectory("place-ancestors-benchmark").toFile();
+        DatabaseBuilder builder = new DatabaseBuilder(directory, 10.0, false);
+        for (String resource : new String[] {"/data/metadata/region-metadata.json",
+                "/data/by-region-2020-04-24.json"}) {
+            builder.processInputStream(resource, new FileInputStream(new File(getClass().getResource(resource)
+                    .toURI())));
+        }
+        builder.build();
+
+        connection = DriverManager.getConnection("jdbc:h2:" + directory + File.separator + DBUtils.DB_NAME
+                + ";ACCESS_MODE_DATA=r;CACHE_SIZE=" + cacheSize);
+        byParents = connection.prepareStatement(SELECT_BY_PARENTS);
+        byAncestors = connection.prepareStatement(SELECT_BY_ANCESTORS);
+        byAnyDepth = connection.prepareStatement(SELECT_BY_ANY_DEPTH);
+        List<String> ids = new ArrayList<>();
+        try (ResultSet resultSet = connection.createStatement().executeQuery(SELECT_COUNTRIES)) {
+            while (resultSet.next()) {
+                ids.add(resultSet.getString(1));
+            }
+        }
+        countryIds = ids.toArray(new String[0]);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        connection.close();
+    }
+
+    @Benchmark
+    public void parents(Blackhole blackhole) throws Exception {
+        consume(byParents, blackhole);
+    }
+
+    @Benchmark
+    public void ancestors(Blackhole blackhole) throws Exception {
+        consume(byAncestors, blackhole);
+    }
+
+    @Benchmark
+    public void anyDepth(Blackhole blackhole) throws Exception {
+        consume(byAnyDepth, blackhole);
+    }
+
+    private void consume(PreparedStatement select, Blackhole blackhole) throws Exception {
+        select.setString(1, countryIds[random.nextInt(countryIds.length)]);
+        try (ResultSet resultSet = select.executeQuery()) {
+            int columns = resultSet.getMetaData().getColumnCount();
+            while (resultSet.next()) {
+                for (int column = 1; column <= columns; column++) {
+                    blackhole.consume(resultSet.getObject(column));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19.database.benchmarks;
+
+import com.yahoo.covid19.database.DatabaseBuilder;
+import com.yahoo.covid19.database.models.HistoricalHealthRecords;
+import com.yahoo.covid19.database.models.Insertable;
+import com.yahoo.covid19.database.models.PlaceHierarchy;
+import com.yahoo.covid19.database.models.Places;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validates the health records of a synthetic hierarchy: {@link #BRANCHES} chains of {@code depth} places below
+ * Earth, with {@link #RECORDS} records spread over all of them. Each invocation starts from fresh places, so the
+ * one-off hierarchy pass is part of the score.
+ * <p>
+ * {@code memoized} is the builder's path. {@code recursive} is the previous algorithm, which walked up to Earth
+ * for every record and computed ranks with a second recursion.
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main PlaceHierarchyBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xss16m")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PlaceHierarchyBenchmark {
+    static final int BRANCHES = 100;
+    static final int RECORDS = 100000;
+
+    @Param({"4", "16", "256", "1024"})
+    private int depth;
+
+    private String[] recordRegionIds;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        recordRegionIds = new String[RECORDS];
+        for (int i = 0; i < RECORDS; i++) {
+            recordRegionIds[i] = placeId(random.nextInt(BRANCHES), random.nextInt(depth));
+        }
+    }
+
+    private static String placeId(int branch, int level) {
+        return branch + "-" + level;
+    }
+
+    private Map<String, Insertable> createPlaces() {
+        Map<String, Insertable> foreignKeyMap = new HashMap<>();
+        foreignKeyMap.put("earth", new Places("earth", Arrays.asList("AstronomicalObject"), "", "", null, null,
+                "0", null));
+        for (int branch = 0; branch < BRANCHES; branch++) {
+            String parentId = "earth";
+            for (int level = 0; level < depth; level++) {
+                String id = placeId(branch, level);
+                foreignKeyMap.put(id, new Places(id, Arrays.asList("Place"), "", "", "1.0", "2.0", "0",
+                        Collections.singletonList(parentId)));
+                parentId = id;
+            }
+        }
+        return foreignKeyMap;
+    }
+
+    private HistoricalHealthRecords record(String regionId) {
+        HistoricalHealthRecords record = new HistoricalHealthRecords();
+        record.setRegionId(regionId);
+        record.setReferenceDate("2020-04-24");
+        return record;
+    }
+
+    @Benchmark
+    public void memoized(Blackhole blackhole) {
+        Map<String, Insertable> foreignKeyMap = createPlaces();
+        PlaceHierarchy.resolveAll(foreignKeyMap);
+        for (Insertable place : foreignKeyMap.values()) {
+            place.getForiegnKeyFields(foreignKeyMap);
+        }
+        for (String regionId : recordRegionIds) {
+            blackhole.consume(record(regionId).isValid(foreignKeyMap));
+        }
+    }
+
+    @Benchmark
+    public void recursive(Blackhole blackhole) throws ParseException {
+        Map<String, Insertable> foreignKeyMap = createPlaces();
+        Map<Places, Integer> ranks = new IdentityHashMap<>();
+        for (Insertable place : foreignKeyMap.values()) {
+            blackhole.consume(recursiveIsValid((Places) place, foreignKeyMap));
+            blackhole.consume(recursiveRank((Places) place, foreignKeyMap, ranks));
+        }
+        for (String regionId : recordRegionIds) {
+            HistoricalHealthRecords record = record(regionId);
+            blackhole.consume(DatabaseBuilder.REFERENCE_DATE_FORMAT.get().parse(record.getReferenceDate()));
+            Places place = (Places) foreignKeyMap.get(record.getRegionId());
+            blackhole.consume(place != null && recursiveIsValid(place, foreignKeyMap));
+        }
+    }
+
+    private static boolean recursiveIsValid(Places place, Map<String, Insertable> foreignKeyMap) {
+        if (place.getType().contains("AstronomicalObject")) {
+            return true;
+        }
+        Double.valueOf(place.getLatitude());
+        Double.valueOf(place.getLongitude());
+        List<String> parentIds = place.getParentIds();
+        if (parentIds == null || parentIds.isEmpty()) {
+            return false;
+        }
+        return parentIds.stream()
+                .map(foreignKeyMap::get)
+                .allMatch(parent -> parent != null && recursiveIsValid((Places) parent, foreignKeyMap));
+    }
+
+    private static int recursiveRank(Places place, Map<String, Insertable> foreignKeyMap,
+                                     Map<Places, Integer> ranks) {
+        Integer rank = ranks.get(place);
+        if (rank != null) {
+            return rank;
+        }
+        List<String> parentIds = place.getParentIds();
+        if (parentIds == null || parentIds.isEmpty()) {
+            rank = 1;
+        } else {
+            rank = 1 + parentIds.stream()
+                    .mapToInt(parentId -> recursiveRank((Places) foreignKeyMap.get(parentId), foreignKeyMap, ranks))
+                    .max()
+                    .orElse(0);
+        }
+        ranks.put(place, rank);
+        return rank;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19.database.benchmarks;
+
+import com.yahoo.covid19.database.DatabaseBuilder;
+import com.yahoo.covid19.database.HealthRecordsScanner;
+import com.yahoo.covid19.database.models.HistoricalHealthRecords;
+
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Compares the health record decoders on a real day file: the line scanner, the streaming Gson adapter,
+ * Gson's reflective binding, and the previous String typed record that was converted with
+ * Long.valueOf/Double.valueOf at insert time.
+ * Scores are records per second. Run with the gc profiler to see the bytes allocated per record:
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main RecordDecodingBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OperationsPerInvocation(RecordDecodingBenchmark.RECORDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RecordDecodingBenchmark {
+    // Lines of by-region-2020-04-24.json
+    static final int RECORDS = 3550;
+
+    private String[] lines;
+    private Gson streaming;
+    private Gson reflective;
+
+    /**
+     * The health record as it was bound before the streaming decoders: every number is a String.
+     */
+    private static class StringHealthRecord {
+        private String regionId;
+        private String label;
+        private String referenceDate;
+        private String totalDeaths;
+        private String totalConfirmedCases;
+        private String totalRecoveredCases;
+        private String totalTestedCases;
+        private String dataSource;
+        private String numPositiveTests;
+        private String numDeaths;
+        private String numRecoveredCases;
+        private String diffNumPositiveTests;
+        private String diffNumDeaths;
+        private String avgWeeklyDeaths;
+        private String avgWeeklyConfirmedCases;
+        private String avgWeeklyRecoveredCases;
+
+        private static Long toLong(String value) {
+            return value == null ? null : Long.valueOf(value);
+        }
+
+        private static Double toDouble(String value) {
+            return value == null ? null : Double.valueOf(value);
+        }
+
+        // The conversions the insert statement used to do.
+        private void consumeNumbers(Blackhole blackhole) {
+            blackhole.consume(toLong(totalDeaths));
+            blackhole.consume(toLong(totalConfirmedCases));
+            blackhole.consume(toLong(totalRecoveredCases));
+            blackhole.consume(toLong(totalTestedCases));
+            blackhole.consume(toLong(numPositiveTests));
+            blackhole.consume(toLong(numDeaths));
+            blackhole.consume(toLong(numRecoveredCases));
+            blackhole.consume(toLong(diffNumPositiveTests));
+            blackhole.consume(toLong(diffNumDeaths));
+            blackhole.consume(toDouble(avgWeeklyDeaths));
+            blackhole.consume(toDouble(avgWeeklyConfirmedCases));
+            blackhole.consume(toDouble(avgWeeklyRecoveredCases));
+        }
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        List<String> fileLines = Files.readAllLines(new File(RecordDecodingBenchmark.class
+                .getResource("/data/by-region-2020-04-24.json").toURI()).toPath(), StandardCharsets.UTF_8);
+        if (fileLines.size() != RECORDS) {
+            throw new IllegalStateException("Expected " + RECORDS + " records, found " + fileLines.size());
+        }
+        lines = fileLines.toArray(new String[0]);
+        streaming = DatabaseBuilder.createGson(false);
+        reflective = DatabaseBuilder.createGson(true);
+    }
+
+    @Benchmark
+    public void scanner(Blackhole blackhole) {
+        for (String line : lines) {
+            blackhole.consume(HealthRecordsScanner.scan(line, HistoricalHealthRecords::new));
+        }
+    }
+
+    @Benchmark
+    public void streaming(Blackhole blackhole) {
+        for (String line : lines) {
+            blackhole.consume(streaming.fromJson(line, HistoricalHealthRecords.class));
+        }
+    }
+
+    @Benchmark
+    public void reflective(Blackhole blackhole) {
+        for (String line : lines) {
+            blackhole.consume(reflective.fromJson(line, HistoricalHealthRecords.class));
+        }
+    }
+
+    @Benchmark
+    public void reflectiveStrings(Blackhole blackhole) {
+        for (String line : lines) {
+            StringHealthRecord record = reflective.fromJson(line, StringHealthRecord.class);
+            record.consumeNumbers(blackhole);
+            blackhole.consume(record);
+        }
+    }
+}
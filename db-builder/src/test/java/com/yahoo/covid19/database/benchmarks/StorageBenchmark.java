@@ -0,0 +1,155 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19.database.benchmarks;
+
+import com.yahoo.covid19.database.DBUtils;
+import com.yahoo.covid19.database.DatabaseBuilder;
+
+import org.h2.store.fs.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the read only database the way the webservice does, in each of its storage modes: {@code file} through
+ * the file channel, {@code nioMapped} memory mapped, and {@code nioMemFS} copied into H2's in-memory file system.
+ * {@code region} reads every health record of a random region through the regionId index, {@code day} every
+ * health record of a random day through the referenceDate index. {@code cacheSize} is the H2 page cache, 16 MB
+ * by default. The database holds {@code days} copies of the
+ * test day file and is in the page cache, so the file modes are measured warm.
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main StorageBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StorageBenchmark {
+    @Param({"120"})
+    private int days;
+
+    @Param({"file", "nioMapped", "nioMemFS"})
+    private String storage;
+
+    // H2 page cache, in KB.
+    @Param({"16384"})
+    private int cacheSize;
+
+    private Connection connection;
+    private PreparedStatement byRegion;
+    private PreparedStatement byDay;
+    private String[] regionIds;
+    private Timestamp[] dates;
+    private final Random random = new Random(42);
+
+    @Setup
+    public void setup() throws Exception {
+        File directory = Files.createTempDirectory("storage-benchmark").toFile();
+        DatabaseBuilder builder = new DatabaseBuilder(directory, 10.0, false);
+        builder.setBulkLoad(true);
+        File metadata = new File(getClass().getResource("/data/metadata/region-metadata.json").toURI());
+        builder.processInputStream("/data/metadata/region-metadata.json", new FileInputStream(metadata));
+        String dayFile = new String(Files.readAllBytes(new File(getClass()
+                .getResource("/data/by-region-2020-04-24.json").toURI()).toPath()), StandardCharsets.UTF_8);
+        LocalDate first = LocalDate.parse("2020-03-01");
+        dates = new Timestamp[days];
+        for (int day = 0; day < days; day++) {
+            String date = first.plusDays(day).toString();
+            dates[day] = Timestamp.valueOf(first.plusDays(day).atStartOfDay());
+            builder.processInputStream("/data/by-region-" + date + ".json", new ByteArrayInputStream(
+                    dayFile.replace("\"2020-04-24\"", "\"" + date + "\"").getBytes(StandardCharsets.UTF_8)));
+        }
+        builder.build();
+
+        String path = directory + File.separator + DBUtils.DB_NAME;
+        if (storage.equals("nioMemFS")) {
+            // The in-memory file system has no directories.
+            String memoryPath = "nioMemFS:/" + directory.getName();
+            try (InputStream in = new FileInputStream(path + ".mv.db");
+                 OutputStream out = FileUtils.newOutputStream(memoryPath + ".mv.db", false)) {
+                byte[] buffer = new byte[1 << 16];
+                for (int read = in.read(buffer); read > 0; read = in.read(buffer)) {
+                    out.write(buffer, 0, read);
+                }
+            }
+            path = memoryPath;
+        } else if (storage.equals("nioMapped")) {
+            path = "nioMapped:" + path;
+        }
+        connection = DriverManager.getConnection("jdbc:h2:" + path + ";ACCESS_MODE_DATA=r;CACHE_SIZE=" + cacheSize);
+        byRegion = connection.prepareStatement("SELECT * FROM health_records WHERE regionId = ?;");
+        byDay = connection.prepareStatement("SELECT * FROM health_records WHERE referenceDate = ?;");
+        List<String> ids = new ArrayList<>();
+        try (ResultSet resultSet = connection.createStatement()
+                .executeQuery("SELECT DISTINCT regionId FROM health_records;")) {
+            while (resultSet.next()) {
+                ids.add(resultSet.getString(1));
+            }
+        }
+        regionIds = ids.toArray(new String[0]);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        connection.close();
+    }
+
+    @Benchmark
+    public void region(Blackhole blackhole) throws Exception {
+        byRegion.setString(1, regionIds[random.nextInt(regionIds.length)]);
+        consume(byRegion, blackhole);
+    }
+
+    @Benchmark
+    public void day(Blackhole blackhole) throws Exception {
+        byDay.setTimestamp(1, dates[random.nextInt(dates.length)]);
+        consume(byDay, blackhole);
+    }
+
+    private static void consume(PreparedStatement select, Blackhole blackhole) throws Exception {
+        try (ResultSet resultSet = select.executeQuery()) {
+            int columns = resultSet.getMetaData().getColumnCount();
+            while (resultSet.next()) {
+                for (int column = 1; column <= columns; column++) {
+                    blackhole.consume(resultSet.getObject(column));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19.database.models;
+
+import com.yahoo.covid19.database.ErrorCodes;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PlaceHierarchyTest {
+    private final Map<String, Insertable> foreignKeyMap = new HashMap<>();
+
+    private Places addPlace(String id, String type, String... parentIds) {
+        Places place = new Places(id, Arrays.asList(type), id, "", "1.0", "2.0", "0",
+                parentIds.length == 0 ? null : Arrays.asList(parentIds));
+        foreignKeyMap.put(id, place);
+        return place;
+    }
+
+    @Test
+    public void testRank() {
+        addPlace("earth", "AstronomicalObject");
+        Places country = addPlace("country", "Country", "earth");
+        Places state = addPlace("state", "StateAdminArea", "country");
+        Places city = addPlace("city", "CityTown", "state", "country");
+
+        PlaceHierarchy.resolveAll(foreignKeyMap);
+
+        assertEquals(Integer.valueOf(1), ((Places) foreignKeyMap.get("earth")).getRank());
+        assertEquals(Integer.valueOf(2), country.getRank());
+        assertEquals(Integer.valueOf(3), state.getRank());
+        assertEquals(Integer.valueOf(4), city.getRank());
+        assertTrue(city.isValid(foreignKeyMap));
+    }
+
+    @Test
+    public void testDeepHierarchy() {
+        int depth = 100000;
+        addPlace("0", "AstronomicalObject");
+        for (int i = 1; i < depth; i++) {
+            addPlace(String.valueOf(i), "Place", String.valueOf(i - 1));
+        }
+
+        // Starting from the deepest place walks the whole chain at once.
+        Places deepest = (Places) foreignKeyMap.get(String.valueOf(depth - 1));
+        assertTrue(deepest.isValid(foreignKeyMap));
+        assertEquals(Integer.valueOf(depth), deepest.getRank());
+    }
+
+    @Test
+    public void testInvalidAncestor() {
+        addPlace("earth", "AstronomicalObject");
+        Places orphan = addPlace("orphan", "Country");
+        Places child = addPlace("child", "StateAdminArea", "orphan");
+        Places grandChild = addPlace("grandChild", "CityTown", "child");
+        Places missingParent = addPlace("missingParent", "CityTown", "earth", "unknown");
+
+        assertFalse(grandChild.isValid(foreignKeyMap));
+        assertEquals(ErrorCodes.DANGLING_FOREIGN_KEY, grandChild.getErrorCode());
+        assertEquals(ErrorCodes.DANGLING_FOREIGN_KEY, child.getErrorCode());
+        assertEquals(ErrorCodes.MISSING_FOREIGN_KEY, orphan.getErrorCode());
+        assertFalse(missingParent.isValid(foreignKeyMap));
+        assertEquals(ErrorCodes.DANGLING_FOREIGN_KEY, missingParent.getErrorCode());
+    }
+
+    @Test
+    public void testCycle() {
+        addPlace("earth", "AstronomicalObject");
+        Places a = addPlace("a", "Country", "c");
+        Places b = addPlace("b", "StateAdminArea", "a");
+        Places c = addPlace("c", "CountyAdminArea", "b");
+        Places self = addPlace("self", "Country", "self");
+        Places below = addPlace("below", "CityTown", "earth", "b");
+        Places valid = addPlace("valid", "Country", "earth");
+
+        PlaceHierarchy.resolveAll(foreignKeyMap);
+
+        for (Places place : Arrays.asList(a, b, c, self)) {
+            assertFalse(place.isValid(foreignKeyMap));
+            assertEquals(ErrorCodes.CYCLIC_FOREIGN_KEY, place.getErrorCode());
+            assertNull(place.getRank());
+        }
+        assertEquals(ErrorCodes.DANGLING_FOREIGN_KEY, below.getErrorCode());
+        assertTrue(valid.isValid(foreignKeyMap));
+        assertEquals(Integer.valueOf(2), valid.getRank());
+    }
+}
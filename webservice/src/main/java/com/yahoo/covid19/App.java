@@ -5,9 +5,15 @@
  */
 package com.yahoo.covid19;
 
-import com.google.common.collect.Sets;
-
+import com.yahoo.covid19.controllers.HealthSeriesResponder;
+import com.yahoo.covid19.controllers.RequestCoalescer;
+import com.yahoo.covid19.controllers.ResponseCache;
+import com.yahoo.covid19.database.HealthSeriesReader;
+import com.yahoo.covid19.datastore.InMemoryDataStore;
 import com.yahoo.covid19.models.HealthRecords;
+import com.yahoo.covid19.models.HealthRollups;
+import com.yahoo.covid19.models.LatestHealthRecords;
+import com.yahoo.covid19.models.Metadata;
 import com.yahoo.covid19.models.Place;
 import com.yahoo.elide.Elide;
 import com.yahoo.elide.ElideSettingsBuilder;
@@ -25,32 +31,35 @@ import com.yahoo.elide.security.executors.BypassPermissionExecutor;
 import com.yahoo.elide.spring.config.ElideConfigProperties;
 import org.hibernate.FlushMode;
 import org.hibernate.Session;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
-import org.springframework.util.FileCopyUtils;
 
 import javax.annotation.PostConstruct;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.attribute.PosixFilePermission;
 import java.util.HashMap;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ScheduledExecutorService;
 
 import static com.yahoo.covid19.database.DBUtils.DB_DIR_NAME;
 import static com.yahoo.covid19.database.DBUtils.DB_FILE_NAME;
+import static com.yahoo.covid19.database.DBUtils.SERIES_FILE_NAME;
 import static com.yahoo.covid19.database.DatabaseBuilder.PATH_SEPARATOR;
 
 /**
  * Elide API to serve Covid-19 API.
  */
 @SpringBootApplication
+@EnableConfigurationProperties({DatabaseProperties.class, ExecutorsProperties.class, StartupProperties.class,
+        WarmupProperties.class})
 public class App {
     private ScheduledExecutorService executor;
 
@@ -64,13 +73,17 @@ public class App {
     }
 
     @Bean(name = "databaseDirectory")
-    public File getDatabaseDirectory() throws IOException {
-        return new File(System.getProperty("java.io.tmpdir"));
+    public File getDatabaseDirectory(StartupProperties startup) throws IOException {
+        File directory = startup.getDirectory().isEmpty()
+                ? new File(System.getProperty("java.io.tmpdir"), "covid19-" + System.getProperty("user.name"))
+                : new File(startup.getDirectory());
+        return ClasspathCopy.privateDirectory(directory);
     }
 
     @Bean
     public Elide initializeElide(EntityDictionary dictionary,
-                                 DataStore dataStore, ElideConfigProperties settings) {
+                                 DataStore dataStore, ElideConfigProperties settings,
+                                 StartupTimeline timeline) {
 
         ElideSettingsBuilder builder = new ElideSettingsBuilder(dataStore)
                 .withEntityDictionary(dictionary)
@@ -90,13 +103,15 @@ public class App {
                         "%s IN (%s)",
                         CaseAwareJPQLGenerator.Case.NONE,
                         CaseAwareJPQLGenerator.ArgumentCount.MANY));
+        // Also serves place.ancestors.id, so the lookup of the descendants of a place stays on the
+        // place_ancestors index instead of comparing upper cased ids.
         FilterTranslator.registerJPQLGenerator(Operator.IN_INSENSITIVE, Place.class, "id",
                 new CaseAwareJPQLGenerator(
                         "%s IN (%s)",
                         CaseAwareJPQLGenerator.Case.NONE,
                         CaseAwareJPQLGenerator.ArgumentCount.MANY));
 
-        return new Elide(builder.build());
+        return timeline.time("build elide", () -> new Elide(builder.build()));
     }
 
     /**
@@ -126,24 +141,201 @@ public class App {
         return dictionary;
     }
 
+    /**
+     * The database file, copied out of the classpath by the entity manager supplier.
+     */
     @Bean(name = "databaseFile")
-    public File getDatabaseFile(@Qualifier("databaseDirectory") File databaseDirectory) throws IOException {
-        InputStream stream = getClass().getResourceAsStream(
-                PATH_SEPARATOR + DB_DIR_NAME + PATH_SEPARATOR + DB_FILE_NAME);
+    public File getDatabaseFile(@Qualifier("databaseDirectory") File databaseDirectory) {
+        return new File(databaseDirectory, DB_FILE_NAME);
+    }
 
-        File destinationFile = new File(databaseDirectory, DB_FILE_NAME);
-        destinationFile.delete();
+    @Bean
+    public StartupTimeline buildStartupTimeline() {
+        return new StartupTimeline();
+    }
 
-        FileCopyUtils.copy(stream, new FileOutputStream(destinationFile));
+    /**
+     * Serves the health records of a place from the series file, which is copied out of the classpath to be
+     * memory mapped. Without the file, or with series.enabled=false, every request goes to Elide.
+     */
+    @Bean
+    public HealthSeriesResponder buildHealthSeriesResponder(@Qualifier("databaseDirectory") File databaseDirectory,
+                                                            ElideConfigProperties settings,
+                                                            @Value("${series.enabled:true}") boolean enabled,
+                                                            StartupProperties startup,
+                                                            StartupTimeline timeline)
+            throws IOException {
+        if (!enabled) {
+            return new HealthSeriesResponder(null, settings);
+        }
+        File destinationFile = timeline.time("copy series", () -> ClasspathCopy.copy(
+                PATH_SEPARATOR + DB_DIR_NAME + PATH_SEPARATOR + SERIES_FILE_NAME,
+                new File(databaseDirectory, SERIES_FILE_NAME), startup.isReuseCopies()));
+        if (destinationFile == null) {
+            return new HealthSeriesResponder(null, settings);
+        }
+        return new HealthSeriesResponder(new HealthSeriesReader(destinationFile), settings);
+    }
 
-        Files.setPosixFilePermissions(destinationFile.toPath(), Sets.newHashSet(PosixFilePermission.OWNER_READ));
-        return new File(databaseDirectory, DB_FILE_NAME);
+    /**
+     * Copies the database out of the classpath, and opens it with the storage of database.storage. The database is
+     * loaded, or prefetched, before the application starts serving. With startup.parallel, the database is copied
+     * and opened in the background while the rest of the application is built.
+     */
+    @Bean
+    public EntityManagerSupplier buildEntityManagerSupplier(@Qualifier("databaseFile") File dbFile,
+                                                            DatabaseProperties properties,
+                                                            StartupProperties startup,
+                                                            StartupTimeline timeline,
+                                                            Monitoring monitoring) {
+        Callable<File> copy = () -> {
+            String resource = PATH_SEPARATOR + DB_DIR_NAME + PATH_SEPARATOR + DB_FILE_NAME;
+            File file = ClasspathCopy.copy(resource, dbFile, startup.isReuseCopies());
+            if (file == null) {
+                throw new IllegalStateException("No database " + resource + " in the classpath");
+            }
+            return file;
+        };
+        if (!startup.isParallel()) {
+            timeline.time("copy database", copy);
+            EntityManagerSupplier supplier = timeline.time("open database",
+                    () -> new EntityManagerSupplier(dbFile.getParentFile(), properties));
+            supplier.start(monitoring);
+            return supplier;
+        }
+
+        CompletableFuture<File> directory = CompletableFuture.supplyAsync(
+                () -> timeline.time("copy database", copy).getParentFile(), runnable -> {
+                    Thread thread = new Thread(runnable, "database-startup");
+                    thread.setDaemon(true);
+                    thread.start();
+                });
+        EntityManagerSupplier supplier = new EntityManagerSupplier(directory, properties, timeline);
+        supplier.start(monitoring);
+        return supplier;
+    }
+
+    /**
+     * Fails the startup if the database opened in the background cannot be opened, before the server listens.
+     * With database.inMemory, the database is then loaded into memory.
+     */
+    @Bean
+    public SmartInitializingSingleton awaitDatabase(EntityManagerSupplier supplier, DataStore dataStore,
+                                                    StartupTimeline timeline) {
+        return () -> {
+            timeline.time("wait for database", supplier::awaitOpen);
+            if (dataStore instanceof InMemoryDataStore) {
+                InMemoryDataStore inMemoryDataStore = (InMemoryDataStore) dataStore;
+                timeline.time("load database", inMemoryDataStore::load);
+            }
+        };
+    }
+
+
+    /**
+     * Logs the statistics of the components, until the application context is closed.
+     */
+    @Bean
+    public Monitoring buildMonitoring() {
+        return new Monitoring();
+    }
+
+    @Bean
+    public Bulkheads buildBulkheads(ExecutorsProperties properties, Monitoring monitoring) {
+        Bulkheads bulkheads = new Bulkheads(properties);
+        bulkheads.start(monitoring);
+        return bulkheads;
+    }
+
+    @Bean
+    public ConcurrencyLimiter buildConcurrencyLimiter(ExecutorsProperties properties, Monitoring monitoring) {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(properties.getLimiter());
+        if (limiter.isEnabled()) {
+            limiter.start(monitoring, properties.getLimiter().getStatsInterval());
+        }
+        return limiter;
+    }
+
+    @Bean
+    public ResponseCache buildResponseCache(SecurityConfigProperties properties, EntityManagerSupplier supplier,
+                                            Monitoring monitoring) {
+        ResponseCache cache = new ResponseCache(properties.getResponseCache(), supplier::getDataVersion);
+        cache.start(monitoring);
+        return cache;
+    }
+
+    @Bean
+    public RequestCoalescer buildRequestCoalescer(ExecutorsProperties properties, EntityManagerSupplier supplier,
+                                                  Monitoring monitoring) {
+        RequestCoalescer coalescer = new RequestCoalescer(properties.isCoalescing(), supplier::getDataVersion);
+        if (coalescer.isEnabled()) {
+            coalescer.start(monitoring, properties.getStatsInterval());
+        }
+        return coalescer;
     }
 
+    /**
+     * Replays the whitelisted queries once the server listens, see /api/ready.
+     */
     @Bean
-    public DataStore buildDataStore(@Qualifier("databaseFile") File dbFile) throws IOException {
-        EntityManagerSupplier supplier = new EntityManagerSupplier(dbFile.getParentFile());
+    public Warmup buildWarmup(WarmupProperties properties, SecurityConfigProperties securityProperties,
+                              EntityManagerSupplier supplier) {
+        return new Warmup(properties, securityProperties.getWhiteList().getUri(), supplier);
+    }
 
+    /**
+     * Swaps in the databases dropped in database.reload.directory. The series file and the in-memory data of a new
+     * database are opened before it is served, and replace those of the previous database once it is. The cached
+     * responses are dropped last.
+     */
+    @Bean
+    public DatabaseReloader buildDatabaseReloader(DatabaseProperties properties,
+                                                  @Qualifier("databaseDirectory") File databaseDirectory,
+                                                  EntityManagerSupplier supplier,
+                                                  HealthSeriesResponder seriesResponder,
+                                                  DataStore dataStore,
+                                                  ResponseCache responseCache,
+                                                  @Value("${series.enabled:true}") boolean seriesEnabled) {
+        supplier.addSwapListener(directory -> {
+            File seriesFile = new File(directory, SERIES_FILE_NAME);
+            HealthSeriesReader reader;
+            try {
+                reader = seriesEnabled && seriesFile.isFile() ? new HealthSeriesReader(seriesFile) : null;
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return () -> seriesResponder.setReader(reader);
+        });
+        if (dataStore instanceof InMemoryDataStore) {
+            InMemoryDataStore inMemoryDataStore = (InMemoryDataStore) dataStore;
+            supplier.addSwapListener(directory -> inMemoryDataStore.prepare(
+                    EntityManagerSupplier.jdbcUrl(directory, properties))::run);
+        }
+        supplier.addSwapListener(directory -> responseCache::invalidateAll);
+
+        DatabaseReloader reloader = new DatabaseReloader(properties.getReload(), databaseDirectory,
+                directory -> supplier.swap(directory, properties.getReload().getDrainTimeout()));
+        supplier.addCloseListener(reloader::delete);
+        reloader.start();
+        return reloader;
+    }
+
+    /**
+     * The JPA data store, or with database.inMemory the in-memory data store, which loads the database again when
+     * another one is swapped in, see buildDatabaseReloader.
+     */
+    @Bean
+    public DataStore buildDataStore(EntityManagerSupplier supplier, DatabaseProperties properties)
+            throws IOException {
+        if (properties.isInMemory()) {
+            InMemoryDataStore dataStore = new InMemoryDataStore(
+                    () -> EntityManagerSupplier.jdbcUrl(supplier.getDirectory(), properties),
+                    Place.class, HealthRecords.class, HealthRollups.class, LatestHealthRecords.class, Metadata.class)
+                    // As the JPQL generators registered in initializeElide.
+                    .caseSensitive(HealthRecords.class, "placeId")
+                    .caseSensitive(Place.class, "id");
+            return dataStore;
+        }
         return new JpaDataStore(
                 () -> {
                     return supplier.get();
@@ -154,7 +346,9 @@ public class App {
                     session.setDefaultReadOnly(true);
                     session.setHibernateFlushMode(FlushMode.MANUAL);
                     return new NonJtaTransaction(em);
-                }));
+                }),
+                // Bound without the metamodel, so that Elide is built while the database opens.
+                Place.class, HealthRecords.class, HealthRollups.class, LatestHealthRecords.class, Metadata.class);
 
     }
 }
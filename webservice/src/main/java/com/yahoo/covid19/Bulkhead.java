@@ -0,0 +1,266 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the requests of one kind of traffic, so that a spike of it cannot starve the others. At most threads
+ * requests are served at once and at most queueCapacity wait for their turn, the others are rejected. Requests
+ * either run on the threads of the bulkhead, or are served on a container thread once it is their turn. The
+ * requests waiting for their turn do not hold a thread in either case.
+ */
+@Slf4j
+public class Bulkhead implements BulkheadMXBean {
+
+    /**
+     * Seconds after which a rejected client may retry.
+     */
+    public static final int RETRY_AFTER = 1;
+
+    private final String name;
+    private final int threads;
+    private final int queueCapacity;
+    // Requests served or waiting.
+    private final Semaphore admitted;
+    // Requests served.
+    private final Semaphore running;
+    private final ExecutorService executor;
+    // Resumes the admitted requests waiting for their turn, see await.
+    private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+
+    /**
+     * @param virtualThreads Whether the requests submitted to the bulkhead run on virtual threads, if the JDK
+     *                       has them.
+     */
+    public Bulkhead(String name, BulkheadProperties properties, boolean virtualThreads) {
+        this.name = name;
+        this.threads = properties.getThreads();
+        this.queueCapacity = properties.getQueueCapacity();
+        this.admitted = new Semaphore(threads + queueCapacity);
+        this.running = new Semaphore(threads);
+
+        ExecutorService virtualThreadExecutor = virtualThreads ? virtualThreadExecutor() : null;
+        if (virtualThreads && virtualThreadExecutor == null) {
+            log.warn("Virtual threads are not supported by Java {}, {} runs on a thread pool",
+                    System.getProperty("java.version"), name);
+        }
+        this.executor = virtualThreadExecutor != null ? virtualThreadExecutor : threadPool(name, threads);
+    }
+
+    /**
+     * Runs the task on the threads of the bulkhead.
+     * @param rejectedResult The result if the bulkhead is full.
+     */
+    public <T> DeferredResult<T> submit(Callable<T> task, Supplier<T> rejectedResult) {
+        DeferredResult<T> result = new DeferredResult<>();
+        if (!admitted.tryAcquire()) {
+            rejected.increment();
+            result.setResult(rejectedResult.get());
+            return result;
+        }
+
+        // The task gives up its place once it returns, which may be after it is cancelled and interrupted. A task
+        // cancelled before it started gives it up right away, as it does not run anymore.
+        AtomicBoolean started = new AtomicBoolean();
+        FutureTask<Void> future = new FutureTask<Void>(() -> {
+            if (!started.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                running.acquire();
+                try {
+                    result.setResult(task.call());
+                } finally {
+                    running.release();
+                }
+            } catch (Exception e) {
+                result.setErrorResult(e);
+            } finally {
+                finish();
+            }
+        }, null) {
+            @Override
+            protected void done() {
+                if (started.compareAndSet(false, true)) {
+                    finish();
+                }
+            }
+        };
+        try {
+            executor.execute(future);
+        } catch (RejectedExecutionException e) {
+            admitted.release();
+            rejected.increment();
+            result.setResult(rejectedResult.get());
+            return result;
+        }
+        result.onTimeout(() -> future.cancel(true));
+        return result;
+    }
+
+    private void finish() {
+        admitted.release();
+        completed.increment();
+    }
+
+    /**
+     * Admits a request served on a container thread, which then starts at once or awaits its turn.
+     * @return false if the bulkhead is full and the request must not be served.
+     */
+    public boolean admit() {
+        if (!admitted.tryAcquire()) {
+            rejected.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Starts an admitted request if it does not have to wait. A request that started must exit.
+     * @return false if the request must await its turn.
+     */
+    public boolean tryStart() {
+        // The requests that wait already go first.
+        return waiting.isEmpty() && running.tryAcquire();
+    }
+
+    /**
+     * Queues an admitted request that could not start, without holding the current thread. The request has
+     * started once resume is called, and must exit.
+     * @param resume Called on the thread of the request that gives up its turn. Must not block.
+     */
+    public void await(Runnable resume) {
+        waiting.add(resume);
+        // A request may have exited since tryStart.
+        resumeWaiting();
+    }
+
+    /**
+     * Gives up the place of a request that awaits its turn, when it times out or fails.
+     * @param resume The callback the request awaits with.
+     * @return false if the request started meanwhile, and must exit instead.
+     */
+    public boolean cancel(Runnable resume) {
+        if (!waiting.remove(resume)) {
+            return false;
+        }
+        admitted.release();
+        rejected.increment();
+        return true;
+    }
+
+    /**
+     * Gives the turn of a request served on a container thread to the next one.
+     */
+    public void exit() {
+        running.release();
+        finish();
+        resumeWaiting();
+    }
+
+    private void resumeWaiting() {
+        while (!waiting.isEmpty() && running.tryAcquire()) {
+            Runnable next = waiting.poll();
+            if (next == null) {
+                running.release();
+            } else {
+                next.run();
+            }
+        }
+    }
+
+    /**
+     * Exports the statistics of the bulkhead through JMX.
+     */
+    public void register() {
+        Monitoring.register("type=Bulkhead,name=" + name, this);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getThreads() {
+        return threads;
+    }
+
+    @Override
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    @Override
+    public int getActiveThreads() {
+        return threads - running.availablePermits();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return Math.max(0, threads + queueCapacity - admitted.availablePermits() - getActiveThreads());
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d/%d active, %d/%d queued, %d completed, %d rejected", name, getActiveThreads(),
+                threads, getQueueDepth(), queueCapacity, getCompletedCount(), getRejectedCount());
+    }
+
+    private static ExecutorService threadPool(String name, int threads) {
+        AtomicInteger count = new AtomicInteger();
+        // The queue is bounded by the admitted requests.
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * @return A virtual thread per task executor, or null if the JDK does not have virtual threads.
+     */
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19;
+
+/**
+ * Statistics of a bulkhead, exported through JMX.
+ */
+public interface BulkheadMXBean {
+    int getThreads();
+
+    int getQueueCapacity();
+
+    int getActiveThreads();
+
+    int getQueueDepth();
+
+    long getRejectedCount();
+
+    long getCompletedCount();
+}
@@ -0,0 +1,24 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkheadProperties {
+    /**
+     * Number of requests served at once.
+     */
+    private int threads = 16;
+    /**
+     * Number of requests waiting to be served, beyond which they are rejected.
+     */
+    private int queueCapacity = 64;
+}
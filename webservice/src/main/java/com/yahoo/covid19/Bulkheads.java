@@ -0,0 +1,43 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The bulkheads of the JSON-API, GraphQL and documentation traffic. The JSON-API requests run on the threads
+ * of their bulkhead, the GraphQL and documentation ones on the container threads, and are suspended while they
+ * wait for their turn.
+ */
+@Slf4j
+@Getter
+public class Bulkheads {
+    private final Bulkhead jsonApi;
+    private final Bulkhead graphql;
+    private final Bulkhead docs;
+    private final long statsInterval;
+
+    public Bulkheads(ExecutorsProperties properties) {
+        jsonApi = new Bulkhead("json-api", properties.getJsonApi(), properties.isVirtualThreads());
+        graphql = new Bulkhead("graphql", properties.getGraphql(), false);
+        docs = new Bulkhead("docs", properties.getDocs(), false);
+        statsInterval = properties.getStatsInterval();
+    }
+
+    /**
+     * Exports the statistics of the bulkheads through JMX, and logs them every interval.
+     */
+    public void start(Monitoring monitoring) {
+        List<Bulkhead> bulkheads = Arrays.asList(jsonApi, graphql, docs);
+        bulkheads.forEach(Bulkhead::register);
+        monitoring.logEvery(statsInterval, () -> bulkheads.forEach(bulkhead -> log.info("Bulkhead {}", bulkhead)));
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19;
+
+import com.google.common.collect.Sets;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.FileCopyUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+import java.util.jar.JarEntry;
+
+/**
+ * Copies files out of the classpath, read only. A copy left by a previous start can be reused instead when it
+ * has the size and SHA-256 digest of the resource, and only from a private directory: the copy and its directory
+ * must be owned by the user of the process, and not writable by anyone else, so that nobody else could have
+ * replaced the copy since.
+ */
+@Slf4j
+public final class ClasspathCopy {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private ClasspathCopy() {
+    }
+
+    /**
+     * Creates the directory, if it does not exist, readable, writable and searchable by its owner only (0700), so
+     * that the copies in it can be reused.
+     * @return The directory.
+     */
+    public static File privateDirectory(File directory) throws IOException {
+        Path path = directory.toPath().toAbsolutePath();
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            try {
+                Files.createDirectories(path,
+                        PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+            } catch (UnsupportedOperationException e) {
+                Files.createDirectories(path);
+            }
+        } else if (!isPrivate(path)) {
+            log.warn("{} is not private to {}, copies in it will not be reused", directory,
+                    System.getProperty("user.name"));
+        }
+        return directory;
+    }
+
+    /**
+     * @param reuse Whether to keep the destination if it is a copy of the resource already.
+     * @return The destination, or null if there is no such resource.
+     */
+    public static File copy(String resource, File destination, boolean reuse) throws IOException {
+        URL url = ClasspathCopy.class.getResource(resource);
+        if (url == null) {
+            return null;
+        }
+
+        long start = System.currentTimeMillis();
+        if (reuse && destination.isFile() && isCopy(url, destination)) {
+            log.info("Reusing {}, checked in {} ms", destination, System.currentTimeMillis() - start);
+            return destination;
+        }
+
+        destination.delete();
+        FileCopyUtils.copy(url.openStream(), new FileOutputStream(destination));
+        Files.setPosixFilePermissions(destination.toPath(), Sets.newHashSet(PosixFilePermission.OWNER_READ));
+        log.info("Copied {} MB to {} in {} ms", destination.length() >> 20, destination,
+                System.currentTimeMillis() - start);
+        return destination;
+    }
+
+    /**
+     * @return true if the file has the size and SHA-256 digest of the resource.
+     */
+    private static boolean isCopy(URL url, File file) throws IOException {
+        Path path = file.toPath().toAbsolutePath();
+        if (!isPrivate(path.getParent()) || !isPrivate(path)) {
+            log.info("Not reusing {}, it is not private to {}", file, System.getProperty("user.name"));
+            return false;
+        }
+
+        URLConnection connection = url.openConnection();
+        JarEntry entry = connection instanceof JarURLConnection ? ((JarURLConnection) connection).getJarEntry() : null;
+        long size = entry != null ? entry.getSize() : connection.getContentLengthLong();
+        if (size >= 0 && size != file.length()) {
+            return false;
+        }
+        byte[] expected;
+        try (InputStream in = connection.getInputStream()) {
+            expected = digest(in);
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            return MessageDigest.isEqual(expected, digest(in));
+        }
+    }
+
+    /**
+     * @return true if the path is no link, is owned by the user of the process and is writable by nobody else.
+     */
+    private static boolean isPrivate(Path path) throws IOException {
+        PosixFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (UnsupportedOperationException e) {
+            return false;
+        }
+        UserPrincipal user = path.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        Set<PosixFilePermission> permissions = attributes.permissions();
+        return !attributes.isSymbolicLink()
+                && attributes.owner().equals(user)
+                && !permissions.contains(PosixFilePermission.GROUP_WRITE)
+                && !permissions.contains(PosixFilePermission.OTHERS_WRITE);
+    }
+
+    private static byte[] digest(InputStream in) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+            digest.update(buffer, 0, read);
+        }
+        return digest.digest();
+    }
+}
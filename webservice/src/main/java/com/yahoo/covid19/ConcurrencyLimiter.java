@@ -0,0 +1,156 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the API requests served at once to a limit that follows their latency, and sheds the others. While the
+ * latency stays close to its long term average, the limit grows by about its square root. When the latency rises,
+ * the limit shrinks in proportion, down to half of it per sample, and it backs off when requests are dropped.
+ * Requests that are shed fail right away instead of waiting for the database along with the others.
+ */
+@Slf4j
+public class ConcurrencyLimiter implements ConcurrencyLimiterMXBean {
+    // Weight of a new limit.
+    private static final double SMOOTHING = 0.2;
+    // Latency increase tolerated before the limit shrinks.
+    private static final double TOLERANCE = 1.5;
+    // Samples averaged in the long term latency.
+    private static final int LONG_WINDOW = 600;
+    // Limit kept when a request is dropped.
+    private static final double BACKOFF = 0.9;
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+
+    private volatile double limit;
+    // Guarded by this.
+    private double longLatency = 0;
+    private long samples = 0;
+
+    public ConcurrencyLimiter(LimiterProperties properties) {
+        this.enabled = properties.isEnabled();
+        this.minLimit = properties.getMinLimit();
+        this.maxLimit = properties.getMaxLimit();
+        this.limit = properties.getInitialLimit();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return false if the request must be shed. A request that was acquired must be released by one of
+     * {@link #onSuccess}, {@link #onDropped} or {@link #onIgnore}.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                shed.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                accepted.increment();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases a request that was served, and adapts the limit to its latency.
+     */
+    public void onSuccess(long latencyNanos) {
+        int current = inFlight.getAndDecrement();
+        synchronized (this) {
+            samples += 1;
+            double alpha = 2.0 / (Math.min(samples, LONG_WINDOW) + 1);
+            longLatency = longLatency == 0 ? latencyNanos : longLatency * (1 - alpha) + latencyNanos * alpha;
+            if (longLatency > 2 * latencyNanos) {
+                // Recover the long term latency after a slow period.
+                longLatency *= 0.95;
+            }
+
+            // The latency says nothing about a limit that is not reached.
+            if (current * 2 < limit) {
+                return;
+            }
+            double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longLatency / Math.max(latencyNanos, 1)));
+            double newLimit = limit * gradient + Math.sqrt(limit);
+            setLimit(limit * (1 - SMOOTHING) + newLimit * SMOOTHING);
+        }
+    }
+
+    /**
+     * Releases a request that timed out or was rejected further down, and backs off.
+     */
+    public void onDropped() {
+        inFlight.decrementAndGet();
+        synchronized (this) {
+            setLimit(limit * BACKOFF);
+        }
+    }
+
+    /**
+     * Releases a request that says nothing about the load, such as one that failed.
+     */
+    public void onIgnore() {
+        inFlight.decrementAndGet();
+    }
+
+    private void setLimit(double newLimit) {
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    /**
+     * Exports the statistics through JMX, and logs them with the shed rate every interval.
+     */
+    public void start(Monitoring monitoring, long statsInterval) {
+        Monitoring.register("type=ConcurrencyLimiter", this);
+
+        AtomicLong lastAccepted = new AtomicLong();
+        AtomicLong lastShed = new AtomicLong();
+        monitoring.logEvery(statsInterval, () -> {
+            long acceptedTotal = getAcceptedCount();
+            long shedTotal = getShedCount();
+            long acceptedCount = acceptedTotal - lastAccepted.getAndSet(acceptedTotal);
+            long shedCount = shedTotal - lastShed.getAndSet(shedTotal);
+            double shedRate = acceptedCount + shedCount == 0 ? 0 : (double) shedCount / (acceptedCount + shedCount);
+            log.info("Concurrency limit {}, {} in flight, {} accepted, {} shed ({} shed rate)", getLimit(),
+                    getInFlight(), acceptedCount, shedCount, String.format("%.3f", shedRate));
+        });
+    }
+
+    @Override
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    @Override
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public long getAcceptedCount() {
+        return accepted.sum();
+    }
+
+    @Override
+    public long getShedCount() {
+        return shed.sum();
+    }
+}
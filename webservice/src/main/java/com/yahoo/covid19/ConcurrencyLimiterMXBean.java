@@ -0,0 +1,19 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19;
+
+/**
+ * Statistics of the concurrency limiter, exported through JMX.
+ */
+public interface ConcurrencyLimiterMXBean {
+    int getLimit();
+
+    int getInFlight();
+
+    long getAcceptedCount();
+
+    long getShedCount();
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+@Data
+@ConfigurationProperties(prefix = "database")
+public class DatabaseProperties {
+    private DatabaseStorage storage = DatabaseStorage.FILE;
+    /**
+     * H2 page cache, in kilobytes. 0 keeps the H2 default.
+     */
+    private long cacheSize = 0;
+    /**
+     * Whether to read the database file ahead when it is opened.
+     */
+    private boolean prefetch = true;
+    /**
+     * Number of entities or collections Hibernate loads with one statement when a page reads the relationships
+     * of its rows, such as the places of the health records and their parents.
+     */
+    private int batchFetchSize = 1000;
+    /**
+     * Whether to serve the API from a copy of the whole database loaded in memory, rather than through Hibernate.
+     */
+    private boolean inMemory = false;
+    private EntityCacheProperties entityCache = new EntityCacheProperties();
+    private DatabaseReloadProperties reload = new DatabaseReloadProperties();
+}
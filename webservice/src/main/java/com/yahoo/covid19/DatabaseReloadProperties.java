@@ -0,0 +1,24 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19;
+
+import lombok.Data;
+
+@Data
+public class DatabaseReloadProperties {
+    /**
+     * Directory watched for a new database, none if empty.
+     */
+    private String directory = "";
+    /**
+     * Interval at which the directory is checked, in seconds.
+     */
+    private long pollInterval = 30;
+    /**
+     * Time after which the previous database is closed even if requests still use it, in seconds.
+     */
+    private long drainTimeout = 120;
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19;
+
+import com.google.common.collect.Sets;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static com.yahoo.covid19.database.DBUtils.DB_FILE_NAME;
+import static com.yahoo.covid19.database.DBUtils.SERIES_FILE_NAME;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Watches a drop directory for a new database, along with its series file if there is one. Once the files have
+ * not changed for a poll interval, they are moved to a directory of their own next to the current database and
+ * handed to the loader. The directory of a database is deleted when it is rejected, or once it is closed after
+ * it was drained, see {@link #delete}.
+ */
+@Slf4j
+public class DatabaseReloader {
+    private static final String GENERATION_PREFIX = "covid19-";
+
+    private final File dropDirectory;
+    private final File databaseDirectory;
+    private final long pollInterval;
+    private final Predicate<File> loader;
+
+    // Size and modification time of the dropped files at the previous poll.
+    private String pendingSignature;
+    // The directories created for the dropped databases, until they are deleted.
+    private final Set<File> generations = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param databaseDirectory The directory the new databases are moved under.
+     * @param loader Serves the database of a directory. Returns false if it was not swapped in, or throws if the
+     *               database is not valid.
+     */
+    public DatabaseReloader(DatabaseReloadProperties properties, File databaseDirectory, Predicate<File> loader) {
+        this.dropDirectory = properties.getDirectory().isEmpty() ? null : new File(properties.getDirectory());
+        this.databaseDirectory = databaseDirectory;
+        this.pollInterval = properties.getPollInterval();
+        this.loader = loader;
+    }
+
+    /**
+     * Polls the drop directory in the background, if there is one.
+     */
+    public void start() {
+        if (dropDirectory == null) {
+            return;
+        }
+        log.info("Watching {} for a new database", dropDirectory);
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "database-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                poll();
+            } catch (RuntimeException e) {
+                log.error("Failed to reload the database from {}", dropDirectory, e);
+            }
+        }, pollInterval, pollInterval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return true if a new database was swapped in.
+     */
+    public synchronized boolean poll() {
+        File database = new File(dropDirectory, DB_FILE_NAME);
+        File series = new File(dropDirectory, SERIES_FILE_NAME);
+        if (!database.isFile()) {
+            pendingSignature = null;
+            return false;
+        }
+
+        // Wait until the files are completely written.
+        String signature = signature(database) + (series.isFile() ? " " + signature(series) : "");
+        if (!signature.equals(pendingSignature)) {
+            pendingSignature = signature;
+            return false;
+        }
+        pendingSignature = null;
+
+        File generation = null;
+        try {
+            generation = Files.createTempDirectory(databaseDirectory.toPath(), GENERATION_PREFIX).toFile();
+            generations.add(generation);
+            moveReadOnly(database, generation);
+            if (series.isFile()) {
+                moveReadOnly(series, generation);
+            }
+        } catch (IOException e) {
+            if (generation != null) {
+                delete(generation);
+            }
+            throw new IllegalStateException(e);
+        }
+
+        boolean swapped;
+        try {
+            swapped = loader.test(generation);
+        } catch (RuntimeException e) {
+            log.error("Rejected the database dropped in {}", dropDirectory, e);
+            swapped = false;
+        }
+        if (!swapped) {
+            delete(generation);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Deletes the directory of a database that is closed, if this reloader created it. The database the
+     * application started with is left alone.
+     */
+    public void delete(File directory) {
+        if (generations.remove(directory)) {
+            log.info("Deleting the database directory {}", directory);
+            FileUtils.deleteQuietly(directory);
+        }
+    }
+
+    private static String signature(File file) {
+        return file.length() + ":" + file.lastModified();
+    }
+
+    private static void moveReadOnly(File file, File directory) throws IOException {
+        File destination = new File(directory, file.getName());
+        FileUtils.moveFile(file, destination);
+        Files.setPosixFilePermissions(destination.toPath(), Sets.newHashSet(PosixFilePermission.OWNER_READ));
+    }
+}
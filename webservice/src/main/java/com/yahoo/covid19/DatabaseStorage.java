@@ -0,0 +1,112 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19;
+
+import com.yahoo.covid19.database.DBUtils;
+
+import org.h2.store.fs.FileUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Where H2 reads the read only database from.
+ */
+@Slf4j
+public enum DatabaseStorage {
+    /**
+     * The database file, read through its file channel.
+     */
+    FILE {
+        @Override
+        String path(File directory) {
+            return directory + File.separator + DBUtils.DB_NAME;
+        }
+    },
+
+    /**
+     * The database file, memory mapped.
+     */
+    NIO_MAPPED {
+        @Override
+        String path(File directory) {
+            return "nioMapped:" + directory + File.separator + DBUtils.DB_NAME;
+        }
+    },
+
+    /**
+     * A copy of the database in H2's off heap in-memory file system. H2 in-memory databases cannot be opened
+     * from a file, so the file itself is loaded instead.
+     */
+    MEMORY {
+        @Override
+        String path(File directory) {
+            // The in-memory file system has no directories.
+            return "nioMemFS:/" + directory.getPath().replace(File.separatorChar, '_') + "_" + DBUtils.DB_NAME;
+        }
+
+        @Override
+        void load(File directory, boolean prefetch) throws IOException {
+            long start = System.currentTimeMillis();
+            File file = new File(directory, DBUtils.DB_FILE_NAME);
+            try (InputStream in = new FileInputStream(file);
+                 OutputStream out = FileUtils.newOutputStream(path(directory) + MV_EXTENSION, false)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                for (int read = in.read(buffer); read > 0; read = in.read(buffer)) {
+                    out.write(buffer, 0, read);
+                }
+            }
+            log.info("Loaded {} MB of {} in memory in {} ms", file.length() >> 20, file,
+                    System.currentTimeMillis() - start);
+        }
+
+        @Override
+        void release(File directory) {
+            FileUtils.delete(path(directory) + MV_EXTENSION);
+        }
+    };
+
+    private static final String MV_EXTENSION = ".mv.db";
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * @return The H2 database path of the database in the directory.
+     */
+    abstract String path(File directory);
+
+    /**
+     * Prepares the database of the directory before it is opened.
+     * @param prefetch Whether to read the whole file ahead, so that the first requests do not wait for the disk.
+     */
+    void load(File directory, boolean prefetch) throws IOException {
+        if (!prefetch) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        File file = new File(directory, DBUtils.DB_FILE_NAME);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.clear();
+            }
+        }
+        log.info("Prefetched {} MB of {} in {} ms", file.length() >> 20, file, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Frees the database of the directory once it is closed.
+     */
+    void release(File directory) {
+    }
+}
@@ -36,10 +36,15 @@ public class ElideConfig {
      * Creates a singular swagger document for JSON-API.
      * @param elide Fully initialized elide instance.
      * @param settings Elide configuration settings.
+     * @param timeline The startup timeline.
      * @return An instance of a Swagger object
      */
     @Bean
-    public Swagger buildSwagger(Elide elide, ElideConfigProperties settings) {
+    public Swagger buildSwagger(Elide elide, ElideConfigProperties settings, StartupTimeline timeline) {
+        return timeline.time("build swagger", () -> buildSwagger(elide, settings));
+    }
+
+    private static Swagger buildSwagger(Elide elide, ElideConfigProperties settings) {
         Info info = new Info()
                 .title(settings.getSwagger().getName())
                 .version(settings.getSwagger().getVersion());
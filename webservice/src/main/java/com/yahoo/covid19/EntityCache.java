@@ -0,0 +1,147 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.SharedCacheMode;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hibernate second level cache of the entities, which never change while a database is served. Each database
+ * gets a cache manager of its own, closed by Hibernate along with the entity manager factory, so the entities
+ * of a database are never served after it is swapped out.
+ */
+@Slf4j
+public final class EntityCache {
+    private static final String QUERY_REGION = RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME;
+    private static final String TIMESTAMPS_REGION = RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME;
+
+    // Entries serialized to estimate the memory of a region.
+    private static final int MEMORY_SAMPLE_SIZE = 100;
+
+    private static final AtomicLong CACHE_MANAGERS = new AtomicLong();
+
+    private EntityCache() {
+    }
+
+    /**
+     * Adds the cache settings to the options of an entity manager factory.
+     * @param regions The cache regions of the entities and collections.
+     * @return The cache manager of the entity manager factory, or null if the cache is disabled.
+     */
+    static CacheManager configure(Properties options, EntityCacheProperties properties, Collection<String> regions) {
+        if (!properties.isEnabled()) {
+            options.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, "false");
+            return null;
+        }
+
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("covid19:entity-cache-" + CACHE_MANAGERS.incrementAndGet()),
+                        EntityCache.class.getClassLoader());
+        List<String> names = new ArrayList<>(regions);
+        if (properties.isQueryCache()) {
+            names.add(QUERY_REGION);
+            names.add(TIMESTAMPS_REGION);
+        }
+        for (String name : names) {
+            CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+            configuration.setStoreByValue(false);
+            configuration.setMaximumSize(OptionalLong.of(properties.getMaxEntries()));
+            cacheManager.createCache(name, configuration);
+        }
+
+        options.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, "true");
+        options.put(AvailableSettings.USE_QUERY_CACHE, String.valueOf(properties.isQueryCache()));
+        options.put(AvailableSettings.USE_REFERENCE_CACHE_ENTRIES, "true");
+        options.put(AvailableSettings.JPA_SHARED_CACHE_MODE, SharedCacheMode.ENABLE_SELECTIVE.name());
+        options.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+        options.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+        options.put(AvailableSettings.GENERATE_STATISTICS, "true");
+        return cacheManager;
+    }
+
+    /**
+     * Logs the entries, estimated memory and hit rate of each cache region of an entity manager factory.
+     */
+    static void logStats(EntityManagerFactory emf) {
+        Object setting = emf.getProperties().get(ConfigSettings.CACHE_MANAGER);
+        if (!(setting instanceof CacheManager) || ((CacheManager) setting).isClosed()) {
+            return;
+        }
+        CacheManager cacheManager = (CacheManager) setting;
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        List<String> regions = Arrays.asList(statistics.getSecondLevelCacheRegionNames());
+        for (String name : cacheManager.getCacheNames()) {
+            Cache<Object, Object> cache = cacheManager.getCache(name);
+            if (name.equals(QUERY_REGION)) {
+                logStats(name, cache, statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount());
+            } else if (regions.contains(name) && !name.equals(TIMESTAMPS_REGION)) {
+                CacheRegionStatistics region = statistics.getDomainDataRegionStatistics(name);
+                logStats(name, cache, region.getHitCount(), region.getMissCount());
+            }
+        }
+    }
+
+    private static void logStats(String name, Cache<Object, Object> cache, long hits, long misses) {
+        long entries = 0;
+        long sampled = 0;
+        long sampledBytes = 0;
+        for (Cache.Entry<Object, Object> entry : cache) {
+            entries += 1;
+            if (sampled < MEMORY_SAMPLE_SIZE) {
+                long bytes = serializedSize(entry.getKey(), entry.getValue());
+                if (bytes > 0) {
+                    sampled += 1;
+                    sampledBytes += bytes;
+                }
+            }
+        }
+        long memory = sampled == 0 ? 0 : sampledBytes * entries / sampled;
+        double hitRate = hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+        log.info("Entity cache {}: {} entries, ~{} KB, {} hits, {} misses ({} hit rate)", name, entries,
+                memory / 1024, hits, misses, String.format("%.3f", hitRate));
+    }
+
+    /**
+     * @return The serialized size of the objects, as an estimate of their memory, or 0 if they are not serializable.
+     */
+    private static long serializedSize(Object... objects) {
+        CountingOutputStream counter = new CountingOutputStream(NullOutputStream.NULL_OUTPUT_STREAM);
+        try (ObjectOutputStream out = new ObjectOutputStream(counter)) {
+            for (Object object : objects) {
+                out.writeObject(object);
+            }
+        } catch (IOException e) {
+            return 0;
+        }
+        return counter.getByteCount();
+    }
+}
@@ -0,0 +1,25 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19;
+
+import lombok.Data;
+
+@Data
+public class EntityCacheProperties implements StatsProperties {
+    /**
+     * Whether Hibernate keeps the entities read from the database in a second level cache.
+     */
+    private boolean enabled = true;
+    /**
+     * Whether the results of the queries are cached as well.
+     */
+    private boolean queryCache = true;
+    /**
+     * Maximum number of entries of each cache region.
+     */
+    private long maxEntries = 50000;
+    private long statsInterval = 300;
+}
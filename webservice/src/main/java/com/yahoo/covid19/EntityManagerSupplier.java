@@ -6,44 +6,226 @@
 
 package com.yahoo.covid19;
 
-import com.yahoo.covid19.database.DBUtils;
 import com.yahoo.covid19.models.HealthRecords;
+import com.yahoo.covid19.models.HealthRollups;
 import com.yahoo.covid19.models.LatestHealthRecords;
 import com.yahoo.covid19.models.Metadata;
 import com.yahoo.covid19.models.Place;
 import com.yahoo.elide.standalone.PersistenceUnitInfoImpl;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.annotations.QueryHints;
 import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
 import org.hibernate.jpa.boot.internal.PersistenceUnitInfoDescriptor;
 
+import javax.cache.CacheManager;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
+import javax.persistence.Query;
 import javax.persistence.spi.PersistenceUnitInfo;
 import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
-import static com.yahoo.covid19.database.DatabaseBuilder.PATH_SEPARATOR;
-
 /**
- * Entity manager supplier that rebuilds the Entity manager factory on a periodic basis.
+ * Entity manager supplier that can swap the database it serves while running. A new database is opened and
+ * validated next to the current one, then replaces it for the entity managers created from then on. The entity
+ * manager factory of the previous database is closed once the entity managers created from it are closed, or
+ * after the drain timeout.
  */
 @Slf4j
 public class EntityManagerSupplier implements Supplier<EntityManager>  {
 
-    private EntityManagerFactory emf;
+    /**
+     * Prepares what is served along with a new database, such as its series file.
+     */
+    public interface SwapListener {
+        /**
+         * Runs before the new database is served, and throws to cancel the swap. Nothing of the new database may
+         * be served yet, as the data version still identifies the current one.
+         * @param directory The directory of the new database.
+         * @return Serves what was prepared once the new database is served.
+         */
+        PreparedSwap prepare(File directory);
+    }
+
+    /**
+     * What a {@link SwapListener} prepared for a new database.
+     */
+    public interface PreparedSwap {
+        /**
+         * Serves what was prepared, right after the new database. Must not throw.
+         */
+        void publish();
+
+        /**
+         * Releases what was prepared, when the swap is cancelled.
+         */
+        default void discard() {
+        }
+    }
+
+    /**
+     * An open database.
+     */
+    private class Generation {
+        private final File directory;
+        private final EntityManagerFactory emf;
+        private final Date publishedDate;
+        private final AtomicInteger open = new AtomicInteger();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean retired = false;
+
+        Generation(File directory, EntityManagerFactory emf) {
+            this.directory = directory;
+            this.emf = emf;
+            this.publishedDate = readPublishedDate(emf);
+        }
+
+        void release() {
+            if (open.decrementAndGet() == 0 && retired) {
+                close();
+            }
+        }
+
+        void retire() {
+            retired = true;
+            if (open.get() == 0) {
+                close();
+            }
+        }
+
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                log.info("Closing the database in {}, {} entity managers open", directory, open.get());
+                emf.close();
+                onClose.accept(directory);
+                closeListeners.forEach(listener -> listener.accept(directory));
+            }
+        }
+    }
+
+    private final Function<File, EntityManagerFactory> factoryBuilder;
+    private final Consumer<File> onClose;
+    private final AtomicReference<Generation> current = new AtomicReference<>();
+    // Completes once the first database is open.
+    private final CompletableFuture<Void> opening;
+    private final List<SwapListener> swapListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<File>> closeListeners = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService drainExecutor;
+    private boolean cacheQueries = false;
+    private EntityCacheProperties entityCache;
 
     public EntityManagerSupplier(File baseDbDirectory) {
-        emf = buildEntityManagerFactory(baseDbDirectory);
+        this(baseDbDirectory, new DatabaseProperties());
+    }
+
+    public EntityManagerSupplier(File baseDbDirectory, DatabaseProperties properties) {
+        this(baseDbDirectory, factoryBuilder(properties), properties.getStorage()::release);
+        configureEntityCache(properties.getEntityCache());
+    }
+
+    /**
+     * Opens the database once its directory is in place, on the thread that completes the directory, while the
+     * application starts. The entity managers wait for the database to be open.
+     * @param baseDbDirectory Completes with the directory of the database once it is copied.
+     */
+    public EntityManagerSupplier(CompletableFuture<File> baseDbDirectory, DatabaseProperties properties,
+                                 StartupTimeline timeline) {
+        this.factoryBuilder = factoryBuilder(properties);
+        this.onClose = properties.getStorage()::release;
+        this.opening = baseDbDirectory.thenAccept(directory -> timeline.time("open database",
+                () -> current.set(new Generation(directory, factoryBuilder.apply(directory)))));
+        configureEntityCache(properties.getEntityCache());
+    }
+
+    /**
+     * @param factoryBuilder Opens the database of a directory.
+     */
+    public EntityManagerSupplier(File baseDbDirectory, Function<File, EntityManagerFactory> factoryBuilder) {
+        this(baseDbDirectory, factoryBuilder, directory -> { });
+    }
+
+    /**
+     * @param factoryBuilder Opens the database of a directory.
+     * @param onClose Called with the directory of a database after it is closed.
+     */
+    public EntityManagerSupplier(File baseDbDirectory, Function<File, EntityManagerFactory> factoryBuilder,
+                                 Consumer<File> onClose) {
+        this.factoryBuilder = factoryBuilder;
+        this.onClose = onClose;
+        current.set(new Generation(baseDbDirectory, factoryBuilder.apply(baseDbDirectory)));
+        this.opening = CompletableFuture.completedFuture(null);
+    }
+
+    private static Function<File, EntityManagerFactory> factoryBuilder(DatabaseProperties properties) {
+        return directory -> {
+            try {
+                properties.getStorage().load(directory, properties.isPrefetch());
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            try {
+                return buildEntityManagerFactory(jdbcUrl(directory, properties), properties);
+            } catch (RuntimeException e) {
+                properties.getStorage().release(directory);
+                throw e;
+            }
+        };
+    }
+
+    private void configureEntityCache(EntityCacheProperties cache) {
+        entityCache = cache;
+        cacheQueries = cache.isEnabled() && cache.isQueryCache();
+    }
+
+    /**
+     * Logs the statistics of the second level cache every interval, when it is enabled.
+     */
+    public void start(Monitoring monitoring) {
+        if (entityCache != null && entityCache.isEnabled()) {
+            monitoring.logEvery(entityCache.getStatsInterval(), () -> EntityCache.logStats(generation().emf));
+        }
+    }
+
+    public static String jdbcUrl(File dbLocation, DatabaseProperties properties) {
+        return "jdbc:h2:"
+                + properties.getStorage().path(dbLocation)
+                + ";ACCESS_MODE_DATA=r"
+                + (properties.getCacheSize() > 0 ? ";CACHE_SIZE=" + properties.getCacheSize() : "");
     }
 
     public static EntityManagerFactory buildEntityManagerFactory(File dbLocation) {
+        return buildEntityManagerFactory(jdbcUrl(dbLocation, new DatabaseProperties()));
+    }
+
+    public static EntityManagerFactory buildEntityManagerFactory(String jdbcUrl) {
+        return buildEntityManagerFactory(jdbcUrl, new DatabaseProperties());
+    }
+
+    public static EntityManagerFactory buildEntityManagerFactory(String jdbcUrl, DatabaseProperties properties) {
         List<String> classNames = new ArrayList<>();
         classNames.add(Place.class.getName());
         classNames.add(HealthRecords.class.getName());
+        classNames.add(HealthRollups.class.getName());
         classNames.add(LatestHealthRecords.class.getName());
         classNames.add(Metadata.class.getName());
 
@@ -58,7 +240,10 @@ public class EntityManagerSupplier implements Supplier<EntityManager>  {
         // Collection Proxy & JDBC Batching
         options.put("hibernate.jdbc.batch_size", "50");
         options.put("hibernate.jdbc.fetch_size", "50");
-        options.put("hibernate.default_batch_fetch_size", "100");
+        // The lazy relationships of a page, such as the places of its rows and their parents, load in batches of
+        // exactly the pending ids rather than one statement per entity or collection.
+        options.put("hibernate.default_batch_fetch_size", String.valueOf(properties.getBatchFetchSize()));
+        options.put("hibernate.batch_fetch_style", "DYNAMIC");
 
         // Hikari Connection Pool Settings
         options.put("hibernate.connection.provider_class", "com.zaxxer.hikari.hibernate.HikariConnectionProvider");
@@ -70,25 +255,203 @@ public class EntityManagerSupplier implements Supplier<EntityManager>  {
 
         options.put("javax.persistence.jdbc.driver", "org.h2.Driver");
 
-        options.put("javax.persistence.jdbc.url",
-                "jdbc:h2:"
-                        + dbLocation
-                        + PATH_SEPARATOR
-                        + DBUtils.DB_NAME
-                        + ";ACCESS_MODE_DATA=r");
+        options.put("javax.persistence.jdbc.url", jdbcUrl);
 
         options.put("javax.persistence.jdbc.user", "");
         options.put("javax.persistence.jdbc.password", "");
 
+        // Second Level & Query Cache
+        List<String> cacheRegions = new ArrayList<>(classNames);
+        cacheRegions.add(Place.class.getName() + ".parents");
+        cacheRegions.add(Place.class.getName() + ".children");
+        cacheRegions.add(Place.class.getName() + ".ancestors");
+        CacheManager cacheManager = EntityCache.configure(options, properties.getEntityCache(), cacheRegions);
+
         PersistenceUnitInfo persistenceUnitInfo = new PersistenceUnitInfoImpl("elide-covid19",
                         classNames, options);
 
-        return new EntityManagerFactoryBuilderImpl(
-                    new PersistenceUnitInfoDescriptor(persistenceUnitInfo), new HashMap<>()).build();
+        try {
+            return new EntityManagerFactoryBuilderImpl(
+                        new PersistenceUnitInfoDescriptor(persistenceUnitInfo), new HashMap<>()).build();
+        } catch (RuntimeException e) {
+            if (cacheManager != null) {
+                cacheManager.close();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for the first database to be open.
+     * @throws IllegalStateException if it could not be opened.
+     */
+    public void awaitOpen() {
+        try {
+            opening.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * @return The database being served, once it is open.
+     */
+    private Generation generation() {
+        if (!opening.isDone()) {
+            awaitOpen();
+        }
+        return current.get();
     }
 
     @Override
     public EntityManager get() {
-        return emf.createEntityManager();
+        while (true) {
+            Generation generation = generation();
+            generation.open.incrementAndGet();
+            if (generation.retired) {
+                // Swapped out meanwhile, and possibly closed already.
+                generation.release();
+                continue;
+            }
+            EntityManager entityManager;
+            try {
+                entityManager = generation.emf.createEntityManager();
+            } catch (RuntimeException e) {
+                generation.release();
+                throw e;
+            }
+            return track(entityManager, generation);
+        }
+    }
+
+    /**
+     * @return The entity manager, which releases its database when it is closed, and whose queries are cached
+     * if the query cache is enabled.
+     */
+    private EntityManager track(EntityManager entityManager, Generation generation) {
+        AtomicBoolean closed = new AtomicBoolean();
+        return (EntityManager) Proxy.newProxyInstance(EntityManager.class.getClassLoader(),
+                new Class<?>[] {EntityManager.class}, (proxy, method, args) -> {
+                    try {
+                        Object result = method.invoke(entityManager, args);
+                        if (cacheQueries && result instanceof Query) {
+                            ((Query) result).setHint(QueryHints.CACHEABLE, true);
+                        }
+                        return result;
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        if (method.getName().equals("close") && closed.compareAndSet(false, true)) {
+                            generation.release();
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Opens the database of a directory and serves it instead of the current one.
+     * @param directory The directory of the new database.
+     * @param drainTimeout Seconds after which the previous database is closed even if it is still in use.
+     * @return false if the database has the same published date as the current one, and was not swapped in.
+     */
+    public synchronized boolean swap(File directory, long drainTimeout) {
+        awaitOpen();
+        EntityManagerFactory emf = factoryBuilder.apply(directory);
+        Generation generation;
+        try {
+            generation = new Generation(directory, emf);
+        } catch (RuntimeException e) {
+            // Releases the storage too, such as the in-memory copy of the database.
+            emf.close();
+            onClose.accept(directory);
+            throw e;
+        }
+        Generation previous = current.get();
+        if (Objects.equals(generation.publishedDate, previous.publishedDate)) {
+            log.info("The database in {} has the published date of the current one, ignoring it", directory);
+            generation.close();
+            return false;
+        }
+
+        // Everything is prepared before anything is served, so that a listener that throws leaves the current
+        // database served as a whole.
+        List<PreparedSwap> prepared = new ArrayList<>();
+        try {
+            for (SwapListener listener : swapListeners) {
+                prepared.add(listener.prepare(directory));
+            }
+        } catch (RuntimeException e) {
+            prepared.forEach(PreparedSwap::discard);
+            generation.close();
+            throw e;
+        }
+        current.set(generation);
+        prepared.forEach(PreparedSwap::publish);
+        log.info("Swapped in the database in {}, published {}", directory, generation.publishedDate);
+
+        previous.retire();
+        if (!previous.closed.get()) {
+            if (drainExecutor == null) {
+                drainExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "database-drain");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            drainExecutor.schedule(previous::close, drainTimeout, TimeUnit.SECONDS);
+        }
+        return true;
+    }
+
+    /**
+     * @param listener Prepared with the directory of each new database before it is served, and published in the
+     * order the listeners were added once it is.
+     */
+    public void addSwapListener(SwapListener listener) {
+        swapListeners.add(listener);
+    }
+
+    /**
+     * @param listener Called with the directory of each database once it is closed.
+     */
+    public void addCloseListener(Consumer<File> listener) {
+        closeListeners.add(listener);
+    }
+
+    /**
+     * @return The directory of the database being served.
+     */
+    public File getDirectory() {
+        return generation().directory;
+    }
+
+    /**
+     * @return The published date of the database, or null if it has no metadata.
+     */
+    public Date getPublishedDate() {
+        return generation().publishedDate;
+    }
+
+    /**
+     * @return The published date of the database, in milliseconds, which identifies its content.
+     */
+    public String getDataVersion() {
+        Date date = getPublishedDate();
+        return date == null ? "" : String.valueOf(date.getTime());
+    }
+
+    private static Date readPublishedDate(EntityManagerFactory emf) {
+        EntityManager entityManager = emf.createEntityManager();
+        try {
+            List<Date> publishedDates = entityManager
+                    .createQuery("SELECT m.publishedDate FROM Metadata m", Date.class)
+                    .getResultList();
+            return publishedDates.isEmpty() ? null : publishedDates.get(0);
+        } finally {
+            entityManager.close();
+        }
     }
 }
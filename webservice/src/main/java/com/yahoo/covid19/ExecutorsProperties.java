@@ -0,0 +1,28 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+@Data
+@ConfigurationProperties(prefix = "executors")
+public class ExecutorsProperties implements StatsProperties {
+    /**
+     * Whether the JSON-API requests run on virtual threads, on the JDKs that have them.
+     */
+    private boolean virtualThreads = false;
+    private long statsInterval = 300;
+    private BulkheadProperties jsonApi = new BulkheadProperties(64, 512);
+    private BulkheadProperties graphql = new BulkheadProperties(16, 64);
+    private BulkheadProperties docs = new BulkheadProperties(8, 64);
+    /**
+     * Whether identical JSON-API requests served at the same time are executed once.
+     */
+    private boolean coalescing = true;
+    private LimiterProperties limiter = new LimiterProperties();
+}
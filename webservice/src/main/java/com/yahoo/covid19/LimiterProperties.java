@@ -0,0 +1,20 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19;
+
+import lombok.Data;
+
+@Data
+public class LimiterProperties implements StatsProperties {
+    private boolean enabled = true;
+    /**
+     * Number of API requests served at once before the limit adapts to the latency.
+     */
+    private int initialLimit = 32;
+    private int minLimit = 8;
+    private int maxLimit = 200;
+    private long statsInterval = 300;
+}
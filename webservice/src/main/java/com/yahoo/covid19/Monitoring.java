@@ -0,0 +1,61 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exports the statistics of the components through JMX, and logs them every interval on a single daemon thread,
+ * which stops when the application context is closed.
+ */
+public class Monitoring implements AutoCloseable {
+    private static final String DOMAIN = "com.yahoo.covid19";
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "stats");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Registers an MXBean with the platform MBean server, in place of the one registered under the same name.
+     * @param keys The key properties of the name, such as type=Bulkhead,name=graphql.
+     */
+    public static void register(String keys, Object mxBean) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(DOMAIN + ":" + keys);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(mxBean, objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Logs statistics every interval.
+     * @param interval The interval, in seconds. The statistics are not logged when it is 0 or less.
+     */
+    public void logEvery(long interval, Runnable logStats) {
+        if (interval > 0) {
+            scheduler.scheduleAtFixedRate(logStats, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19;
+
+import lombok.Data;
+
+@Data
+public class ResponseCacheProperties implements StatsProperties {
+    private boolean enabled = false;
+    /**
+     * Total size of the cached responses, in megabytes.
+     */
+    private long maxSize = 64;
+    /**
+     * Responses larger than this, in kilobytes, are not cached.
+     */
+    private long maxEntrySize = 1024;
+    private long statsInterval = 300;
+    /**
+     * Whether to keep a gzipped copy of the cached responses for the clients that accept it.
+     */
+    private boolean gzip = true;
+    /**
+     * Responses smaller than this, in bytes, are not compressed.
+     */
+    private int gzipMinSize = 1024;
+}
@@ -20,5 +20,6 @@ public class SecurityConfigProperties {
     private boolean indexPageEnabled = true;
     private boolean cspEnabled = false;
     private CacheProperties cache;
+    private ResponseCacheProperties responseCache = new ResponseCacheProperties();
     private WhiteListProperties whiteList;
 }
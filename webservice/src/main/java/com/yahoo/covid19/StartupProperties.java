@@ -0,0 +1,30 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+@Data
+@ConfigurationProperties(prefix = "startup")
+public class StartupProperties {
+    /**
+     * The directory the database and series files are copied to. By default covid19-${user.name} under
+     * java.io.tmpdir. It is created readable, writable and searchable by its owner only.
+     */
+    private String directory = "";
+    /**
+     * Whether the database and series files copied out of the classpath by a previous start are reused when
+     * their SHA-256 digest matches, instead of being copied again. Copies are only reused from a private
+     * directory, owned by the user of the process and writable by nobody else.
+     */
+    private boolean reuseCopies = false;
+    /**
+     * Whether the database is copied and opened in the background, while Elide and the Swagger model are built.
+     */
+    private boolean parallel = false;
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Records how long each phase of the startup takes, and on which thread, relative to the start of the JVM. The
+ * timeline is logged once the application is ready, and exported through JMX.
+ */
+@Slf4j
+public class StartupTimeline implements StartupTimelineMXBean, ApplicationListener<ApplicationReadyEvent> {
+
+    /**
+     * A phase of the startup.
+     */
+    private static class Phase {
+        private final String name;
+        private final String thread;
+        private final long start;
+        private final long end;
+
+        Phase(String name, String thread, long start, long end) {
+            this.name = name;
+            this.thread = thread;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private final long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+    // Guarded by this.
+    private final List<Phase> phases = new ArrayList<>();
+    private volatile long readyMillis = 0;
+
+    /**
+     * Runs a phase of the startup on the current thread.
+     */
+    public <T> T time(String phase, Callable<T> task) {
+        long start = System.currentTimeMillis();
+        try {
+            return task.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        } finally {
+            record(phase, start, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Runs a phase of the startup on the current thread.
+     */
+    public void time(String phase, Runnable task) {
+        time(phase, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    private synchronized void record(String phase, long start, long end) {
+        phases.add(new Phase(phase, Thread.currentThread().getName(), start, end));
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        readyMillis = System.currentTimeMillis() - jvmStart;
+        StringBuilder timeline = new StringBuilder();
+        synchronized (this) {
+            phases.sort(Comparator.comparingLong(phase -> phase.start));
+            for (Phase phase : phases) {
+                timeline.append(String.format("%n  %-20s +%6d ms %6d ms  [%s]", phase.name, phase.start - jvmStart,
+                        phase.end - phase.start, phase.thread));
+            }
+        }
+        log.info("Ready {} ms after the JVM started:{}", readyMillis, timeline);
+        Monitoring.register("type=StartupTimeline", this);
+    }
+
+    @Override
+    public synchronized Map<String, Long> getPhaseMillis() {
+        Map<String, Long> durations = new LinkedHashMap<>();
+        for (Phase phase : phases) {
+            durations.merge(phase.name, phase.end - phase.start, Long::sum);
+        }
+        return durations;
+    }
+
+    @Override
+    public long getReadyMillis() {
+        return readyMillis;
+    }
+}
@@ -0,0 +1,25 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19;
+
+import java.util.Map;
+
+/**
+ * Startup timeline, exported through JMX.
+ */
+public interface StartupTimelineMXBean {
+    /**
+     * @return The duration of each startup phase, in milliseconds.
+     */
+    Map<String, Long> getPhaseMillis();
+
+    /**
+     * @return The time from the start of the JVM until the application was ready, in milliseconds, or 0 if it is
+     * not ready yet.
+     */
+    long getReadyMillis();
+}
@@ -0,0 +1,16 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19;
+
+/**
+ * Properties of a component whose statistics are logged.
+ */
+public interface StatsProperties {
+    /**
+     * @return Interval at which the statistics are logged, in seconds.
+     */
+    long getStatsInterval();
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
+import org.springframework.context.ApplicationListener;
+
+import javax.persistence.EntityManager;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Replays the whitelisted query shapes once the server listens, so that the JIT, the H2 pages, the Hibernate
+ * query plans and the caches are warm before the service takes traffic. The templates of security.whiteList.uri
+ * are expanded with the place ids of the database, different ones every round, along with a sample of the access
+ * log. The requests go through the local port, so the whole stack of filters and controllers is warmed. The
+ * service is ready once the 99th percentile latency of a round meets the target, or after the maximum duration,
+ * provided the share of failed requests of that round is within the maximum error rate. It is never ready if the
+ * database cannot be queried, or if the rounds keep failing until the maximum duration.
+ */
+@Slf4j
+public class Warmup implements ApplicationListener<WebServerInitializedEvent> {
+
+    /**
+     * Sends a request to the service.
+     */
+    @FunctionalInterface
+    interface Requester {
+        /**
+         * @return The status of the response.
+         */
+        int get(String uri) throws IOException;
+    }
+
+    private static final Pattern PARAMETER_PATTERN = Pattern.compile("\\{\\{(.+?)\\}\\}(?!\\})");
+    private static final Pattern ACCESS_LOG_PATTERN = Pattern.compile("\"GET (/api/\\S+) HTTP/[\\d.]+\"");
+    // Attributes every model has, for the sparse fieldsets.
+    private static final String FIELD_ATTRIBUTES = "label,";
+    private static final int PERCENTILE = 99;
+    private static final int CONNECT_TIMEOUT = 1000;
+    private static final int READ_TIMEOUT = 30000;
+
+    private final WarmupProperties properties;
+    private final List<String> templates;
+    private final Supplier<EntityManager> entityManagers;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean ready;
+    private volatile String status = "Warmup not started";
+
+    /**
+     * @param templates The whitelisted URIs.
+     */
+    public Warmup(WarmupProperties properties, List<String> templates, Supplier<EntityManager> entityManagers) {
+        this.properties = properties;
+        this.templates = templates;
+        this.entityManagers = entityManagers;
+        this.ready = !properties.isEnabled();
+        if (ready) {
+            status = "Warmup disabled";
+        }
+    }
+
+    @Override
+    public void onApplicationEvent(WebServerInitializedEvent event) {
+        if (ready || !started.compareAndSet(false, true)) {
+            return;
+        }
+        int port = event.getWebServer().getPort();
+        Thread thread = new Thread(() -> run(uri -> request(port, uri)), "warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Replays rounds of requests until the latency target is met or the maximum duration elapsed.
+     */
+    void run(Requester requester) {
+        long start = System.currentTimeMillis();
+        long deadline = start + TimeUnit.SECONDS.toMillis(properties.getMaxDuration());
+        boolean warm = false;
+        try {
+            List<String> placeIds = new ArrayList<>();
+            String date = readPlaces(placeIds);
+            List<String> accessLog = readAccessLog();
+            if (placeIds.isEmpty()) {
+                placeIds.add("Earth");
+            }
+
+            for (int round = 1; !ready; round++) {
+                List<String> uris = new ArrayList<>(accessLog);
+                for (int i = 0; i < properties.getPlacesPerRound(); i++) {
+                    String placeId = placeIds.get(((round - 1) * properties.getPlacesPerRound() + i)
+                            % placeIds.size());
+                    for (String template : templates) {
+                        String uri = expand(template, placeId, date);
+                        if (uri != null) {
+                            uris.add(uri);
+                        }
+                    }
+                }
+                if (uris.isEmpty()) {
+                    status = "Ready, no warmup requests";
+                    warm = true;
+                    break;
+                }
+                Collections.shuffle(uris, new Random(round));
+
+                long[] latencies = new long[uris.size()];
+                int errors = 0;
+                for (int i = 0; i < uris.size(); i++) {
+                    long requestStart = System.nanoTime();
+                    int responseStatus;
+                    try {
+                        responseStatus = requester.get(uris.get(i));
+                    } catch (IOException e) {
+                        responseStatus = 0;
+                    }
+                    latencies[i] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - requestStart);
+                    if (responseStatus < 200 || responseStatus >= 400) {
+                        errors += 1;
+                    }
+                }
+                long percentile = percentile(latencies, PERCENTILE);
+                boolean healthy = errors <= properties.getMaxErrorRate() * uris.size();
+                status = String.format("Warmup round %d: %d requests, %d errors, p%d %d ms, target %d ms", round,
+                        uris.size(), errors, PERCENTILE, percentile, properties.getLatencyTarget());
+                log.info(status);
+
+                if (healthy && percentile <= properties.getLatencyTarget()) {
+                    status = String.format("Ready after %d warmup rounds in %d ms, p%d %d ms", round,
+                            System.currentTimeMillis() - start, PERCENTILE, percentile);
+                    log.info(status);
+                    warm = true;
+                    break;
+                }
+                if (System.currentTimeMillis() > deadline) {
+                    if (healthy) {
+                        status = String.format("Ready after %d warmup rounds in %d ms, p%d %d ms above the %d ms "
+                                + "target", round, System.currentTimeMillis() - start, PERCENTILE, percentile,
+                                properties.getLatencyTarget());
+                        log.warn(status);
+                        warm = true;
+                    } else {
+                        status = String.format("Not ready after %d warmup rounds in %d ms, %d errors of %d requests",
+                                round, System.currentTimeMillis() - start, errors, uris.size());
+                        log.error(status);
+                    }
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Warmup failed", e);
+            status = "Not ready, warmup failed: " + e.getMessage();
+        }
+        ready = warm;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * Reads the ids of the places with the most children, which are the most requested.
+     * @return The date the date parameters are expanded with, a week before the latest records.
+     */
+    private String readPlaces(List<String> placeIds) {
+        EntityManager entityManager = entityManagers.get();
+        try {
+            placeIds.addAll(entityManager
+                    .createQuery("SELECT p.id FROM Place p ORDER BY SIZE(p.children) DESC, p.id", String.class)
+                    .setMaxResults(properties.getPlaces())
+                    .getResultList());
+            Date latest = entityManager.createQuery("SELECT MAX(h.referenceDate) FROM HealthRecords h", Date.class)
+                    .getSingleResult();
+            return formatDate(latest == null ? new Date() : new Date(latest.getTime() - TimeUnit.DAYS.toMillis(7)));
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    /**
+     * @return A sample of the API requests of the access log.
+     */
+    private List<String> readAccessLog() {
+        if (properties.getAccessLog().isEmpty()) {
+            return Collections.emptyList();
+        }
+        try (BufferedReader reader = Files.newBufferedReader(new File(properties.getAccessLog()).toPath(),
+                StandardCharsets.UTF_8)) {
+            List<String> sample = sampleAccessLog(reader, properties.getAccessLogSample());
+            log.info("Replaying {} requests of {}", sample.size(), properties.getAccessLog());
+            return sample;
+        } catch (IOException e) {
+            log.warn("Cannot read access log {}: {}", properties.getAccessLog(), e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * @return A uniform sample of the API requests of the log, at most size of them.
+     */
+    static List<String> sampleAccessLog(BufferedReader reader, int size) throws IOException {
+        List<String> sample = new ArrayList<>();
+        Random random = new Random(size);
+        int seen = 0;
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            Matcher matcher = ACCESS_LOG_PATTERN.matcher(line);
+            if (!matcher.find()) {
+                continue;
+            }
+            seen += 1;
+            if (sample.size() < size) {
+                sample.add(matcher.group(1));
+            } else {
+                int index = random.nextInt(seen);
+                if (index < size) {
+                    sample.set(index, matcher.group(1));
+                }
+            }
+        }
+        return sample;
+    }
+
+    /**
+     * Expands a whitelist template into an encoded request URI.
+     * @return The URI, or null if the template has a parameter that cannot be expanded.
+     */
+    static String expand(String template, String placeId, String date) {
+        StringBuffer uri = new StringBuffer();
+        Matcher matcher = PARAMETER_PATTERN.matcher(template.trim());
+        while (matcher.find()) {
+            String value;
+            switch (matcher.group(1)) {
+                case "TYPE_AHEAD_CHARACTERS":
+                case "ALPHA_NUMERIC":
+                    value = "'" + placeId + "'";
+                    break;
+                case "DATE":
+                case "DATE_LIST":
+                    value = "'" + date + "'";
+                    break;
+                case "NUMBER":
+                    value = "1";
+                    break;
+                case "FIELD_ATTRIBUTES":
+                    value = FIELD_ATTRIBUTES;
+                    break;
+                case "PAGINATION":
+                case "ALL":
+                    value = "";
+                    break;
+                default:
+                    return null;
+            }
+            matcher.appendReplacement(uri, Matcher.quoteReplacement(value));
+        }
+        matcher.appendTail(uri);
+
+        int query = uri.indexOf("?");
+        if (query < 0) {
+            return uri.toString();
+        }
+        StringBuilder encoded = new StringBuilder(uri.substring(0, query + 1));
+        for (String pair : uri.substring(query + 1).split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            // The attributes are expanded for the relationships that may follow them.
+            if (value.endsWith(",")) {
+                value = value.substring(0, value.length() - 1);
+            }
+            if (encoded.charAt(encoded.length() - 1) != '?') {
+                encoded.append('&');
+            }
+            encoded.append(encode(name)).append('=').append(encode(value));
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * @return The percentile of the latencies, which are sorted.
+     */
+    static long percentile(long[] latencies, int percentile) {
+        Arrays.sort(latencies);
+        int index = (int) Math.ceil(latencies.length * percentile / 100.0) - 1;
+        return latencies[Math.max(0, Math.min(latencies.length - 1, index))];
+    }
+
+    static String formatDate(Date date) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(date);
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int request(int port, String uri) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http", "localhost", port, uri).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        connection.setRequestProperty("Accept", "application/vnd.api+json");
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        try {
+            int status = connection.getResponseCode();
+            InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (body != null) {
+                try (InputStream in = body) {
+                    byte[] buffer = new byte[8192];
+                    while (in.read(buffer) >= 0) {
+                        // Read the whole response, like a client.
+                    }
+                }
+            }
+            return status;
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+@Data
+@ConfigurationProperties(prefix = "warmup")
+public class WarmupProperties {
+    /**
+     * Whether the whitelisted queries are replayed at startup. When disabled, the service is ready right away.
+     */
+    private boolean enabled = false;
+    /**
+     * Number of place ids, the ones with the most children first, the templates are expanded with.
+     */
+    private int places = 200;
+    /**
+     * Number of place ids each template is expanded with in a round.
+     */
+    private int placesPerRound = 10;
+    /**
+     * The service is ready once the 99th percentile latency of a round is below this, in milliseconds.
+     */
+    private long latencyTarget = 100;
+    /**
+     * The service is ready after this, in seconds, even if the latency target is not met.
+     */
+    private long maxDuration = 300;
+    /**
+     * Share of the requests of a round that may fail, with no response or an error status, for the service to be
+     * ready after it.
+     */
+    private double maxErrorRate = 0.01;
+    /**
+     * Access log whose API requests are replayed along with the templates, none if empty.
+     */
+    private String accessLog = "";
+    /**
+     * Number of access log requests replayed.
+     */
+    private int accessLogSample = 500;
+}
@@ -5,6 +5,8 @@
  */
 package com.yahoo.covid19;
 
+import com.yahoo.covid19.filters.URIQueryValidator;
+
 import lombok.Data;
 
 import java.util.Arrays;
@@ -14,6 +16,7 @@ import java.util.List;
 public class WhiteListProperties {
     private RuleState ruleState = RuleState.WARN;
     private List<String> uri = Arrays.asList();  //block all the query by default.
+    private long cacheSize = URIQueryValidator.DEFAULT_CACHE_SIZE;  //number of URI decisions kept in memory, 0 to disable.
 
     public enum RuleState{
         ON,
@@ -7,6 +7,9 @@
 
 package com.yahoo.covid19.controllers;
 
+import com.yahoo.covid19.Bulkhead;
+import com.yahoo.covid19.Bulkheads;
+import com.yahoo.covid19.EntityManagerSupplier;
 import com.yahoo.covid19.SecurityConfigProperties;
 import com.yahoo.covid19.WhiteListProperties;
 import com.yahoo.covid19.filters.URIQueryValidator;
@@ -18,11 +21,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.SpringApplication;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import javax.persistence.PersistenceException;
 import javax.servlet.http.HttpServletRequest;
@@ -33,6 +38,8 @@ import java.nio.charset.StandardCharsets;
 import java.security.Principal;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 
@@ -43,6 +50,9 @@ import lombok.extern.slf4j.Slf4j;
 
 /**
  * Overrides default Elide JSON-API controller to disable GET, PATCH, and DELETE and also enable request timeouts.
+ * Requests are served on the threads of the JSON-API bulkhead, and rejected with a 503 when it is full. Identical
+ * requests that miss the response cache at the same time are executed once. Whitelisted requests are answered
+ * with a 304 when the client has the current response.
  */
 @Configuration
 @RequestMapping(value = "/api/json/v1")
@@ -52,6 +62,11 @@ public class AsyncJsonApiController {
     JsonApiController controller;
     SecurityConfigProperties securityProperties;
     URIQueryValidator queryValidator;
+    ConditionalGet conditionalGet;
+    HealthSeriesResponder seriesResponder;
+    ResponseCache responseCache;
+    RequestCoalescer coalescer;
+    Bulkhead bulkhead;
     ApplicationContext context;
 
 
@@ -59,20 +74,31 @@ public class AsyncJsonApiController {
     public AsyncJsonApiController(Elide elide,
                                   ElideConfigProperties settings,
                                   SecurityConfigProperties properties,
+                                  HealthSeriesResponder seriesResponder,
+                                  ResponseCache responseCache,
+                                  RequestCoalescer coalescer,
+                                  Bulkheads bulkheads,
+                                  EntityManagerSupplier supplier,
                                   ApplicationContext context
                                   ) {
         controller = new JsonApiController(elide, settings);
         this.securityProperties = properties;
-        this.queryValidator = new URIQueryValidator(properties.getWhiteList().getUri());
+        this.queryValidator = new URIQueryValidator(properties.getWhiteList().getUri(),
+                properties.getWhiteList().getCacheSize());
+        this.conditionalGet = new ConditionalGet(supplier::getPublishedDate);
+        this.seriesResponder = seriesResponder;
+        this.responseCache = responseCache;
+        this.coalescer = coalescer;
+        this.bulkhead = bulkheads.getJsonApi();
         this.context = context;
     }
 
     @GetMapping(value = "/**", produces = JSON_API_CONTENT_TYPE)
-    public Callable<ResponseEntity<String>> elideGet(@RequestParam Map<String, String> allRequestParams,
-                                                     HttpServletRequest request, Principal authentication) {
-        return new Callable<ResponseEntity<String>>() {
+    public DeferredResult<ResponseEntity<?>> elideGet(@RequestParam Map<String, String> allRequestParams,
+                                                      HttpServletRequest request, Principal authentication) {
+        return bulkhead.submit(new Callable<ResponseEntity<?>>() {
             @Override
-            public ResponseEntity<String> call() {
+            public ResponseEntity<?> call() {
                 try {
                     // Skip validation if whitelist property is set to 'OFF'
                     if (!securityProperties.getWhiteList().isRuleState(WhiteListProperties.RuleState.OFF)) {
@@ -82,7 +108,10 @@ public class AsyncJsonApiController {
                                 : queryURI + "?" + URLDecoder.decode(request.getQueryString(), StandardCharsets.UTF_8.name());
 
                         // Error log if the query is not whitelisted. Log if rule is in ON or WARN state;
-                        if (!queryValidator.validate(queryURI)) {
+                        OptionalInt rule = queryValidator.match(queryURI);
+                        if (rule.isPresent()) {
+                            log.debug("Query {} matches whitelist rule {}", queryURI, rule.getAsInt());
+                        } else {
                             log.error(String.format("Query %s is not Whitelisted in API", queryURI));
                             if (securityProperties.getWhiteList().isRuleState(WhiteListProperties.RuleState.ON)) {
                                 return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
@@ -92,7 +121,15 @@ public class AsyncJsonApiController {
                         }
                     }
 
-                    return controller.elideGet(allRequestParams, request, authentication);
+                    return conditionalGet.get(request, () -> responseCache.get(request,
+                            () -> coalescer.execute(request, () -> {
+                                Optional<ResponseEntity<String>> seriesResponse = seriesResponder.respond(request);
+                                if (seriesResponse.isPresent()) {
+                                    return seriesResponse.get();
+                                }
+
+                                return controller.elideGet(allRequestParams, request, authentication);
+                            })));
 
                 } catch (UnsupportedEncodingException ex) {
 
@@ -118,7 +155,9 @@ public class AsyncJsonApiController {
                     return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Server error.");
                 }
             }
-        };
+        }, () -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Bulkhead.RETRY_AFTER))
+                .body("Server busy"));
     }
 
     private boolean checkExceptionMsg(Throwable th, String regex) {
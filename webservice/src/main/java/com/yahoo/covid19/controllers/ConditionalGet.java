@@ -0,0 +1,112 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19.controllers;
+
+import com.yahoo.covid19.filters.CanonicalRequest;
+import com.yahoo.covid19.filters.ContentEncoding;
+
+import com.google.common.hash.Hashing;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import javax.servlet.http.HttpServletRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+/**
+ * Adds a strong ETag and a Last-Modified header to the successful API responses, and answers a matching
+ * If-None-Match or If-Modified-Since with a 304 instead of computing the response. The database does not change
+ * while it is served, so the response to a request is fully determined by the published date of the data and the
+ * request. The controller only answers conditional requests that passed the whitelist, and error responses never
+ * get validators, so they are not revalidated for as long as the data is served.
+ */
+public class ConditionalGet {
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    private final Supplier<Date> publishedDate;
+
+    /**
+     * @param publishedDate The published date of the data being served, null while there is none.
+     */
+    public ConditionalGet(Supplier<Date> publishedDate) {
+        this.publishedDate = publishedDate;
+    }
+
+    /**
+     * @param loader Computes the response, unless the client has it already.
+     * @return A 304, or the response of the loader, with the validators when it succeeded.
+     */
+    public ResponseEntity<?> get(HttpServletRequest request, Callable<ResponseEntity<?>> loader) throws Exception {
+        Date published = publishedDate.get();
+        if (published == null) {
+            return loader.call();
+        }
+
+        String etag = etag(published, request);
+        // HTTP dates have a precision of seconds.
+        long lastModified = published.getTime() / 1000 * 1000;
+        if (isNotModified(request, etag, lastModified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .lastModified(lastModified)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+
+        ResponseEntity<?> response = loader.call();
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            return response;
+        }
+        return ResponseEntity.status(response.getStatusCode())
+                .headers(response.getHeaders())
+                .eTag(etag)
+                .lastModified(lastModified)
+                .body(response.getBody());
+    }
+
+    /**
+     * The gzipped and the plain responses are different representations, so they get different tags.
+     */
+    private static String etag(Date published, HttpServletRequest request) {
+        String version = published.getTime() + " " + CanonicalRequest.of(request)
+                + (ContentEncoding.acceptsGzip(request) ? " " + ContentEncoding.GZIP : "");
+        return "\"" + Hashing.sha256().hashString(version, StandardCharsets.UTF_8).toString().substring(0, 32) + "\"";
+    }
+
+    /**
+     * If-None-Match takes precedence over If-Modified-Since, as RFC 7232 requires.
+     */
+    private static boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = request.getDateHeader(IF_MODIFIED_SINCE);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return ifModifiedSince >= 0 && lastModified <= ifModifiedSince;
+    }
+}
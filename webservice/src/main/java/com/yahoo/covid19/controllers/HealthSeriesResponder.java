@@ -0,0 +1,344 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19.controllers;
+
+import com.yahoo.covid19.database.HealthSeries;
+import com.yahoo.covid19.database.HealthSeriesReader;
+import com.yahoo.elide.spring.config.ElideConfigProperties;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import javax.servlet.http.HttpServletRequest;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.LongPredicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Answers the health records of a single place from the series file instead of the database:
+ * <pre>
+ * /healthRecords?filter=placeId=='X'[;referenceDate=ge='DATE']&amp;sort=referenceDate[&amp;fields[healthRecords]=...]
+ *     [&amp;page[...]=N]
+ * </pre>
+ * Records come in ascending reference date, so only requests sorted that way are answered: Elide leaves the order
+ * of unsorted requests to the database. Any other request, including one Elide would reject, is left to Elide.
+ */
+@Slf4j
+public class HealthSeriesResponder {
+    private static final String TYPE = "healthRecords";
+    private static final String PATH = "/api/json/v1/" + TYPE;
+    private static final String PLACE = "place";
+    private static final String SORT = "referenceDate";
+
+    // Place ids with RSQL wildcards or escapes are left to Elide.
+    private static final Pattern PLACE_FILTER = Pattern.compile("(?:placeId|place\\.id)==('?)([^'*\\\\;,()]+)\\1");
+    private static final Pattern DATE_FILTER = Pattern.compile("referenceDate(==|=ge=|=gt=|=le=|=lt=)('?)([^';,()]+)\\2");
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm'Z'");
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    // Elide writes the attributes by name.
+    private static final Set<String> ATTRIBUTES = new TreeSet<>(Arrays.asList(
+            "placeId", "label", "wikiId", "referenceDate", "longitude", "latitude", "dataSource"));
+
+    static {
+        ATTRIBUTES.addAll(HealthSeries.LONG_METRICS);
+        ATTRIBUTES.addAll(HealthSeries.DOUBLE_METRICS);
+    }
+
+    private volatile HealthSeriesReader reader;
+    private final int pageSize;
+    private final int maxPageSize;
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * @param reader The series file, or null to leave every request to Elide.
+     */
+    public HealthSeriesResponder(HealthSeriesReader reader, ElideConfigProperties settings) {
+        this.reader = reader;
+        this.pageSize = settings.getPageSize();
+        this.maxPageSize = settings.getMaxPageSize();
+    }
+
+    /**
+     * A parsed request.
+     */
+    private static class Query {
+        private String placeId;
+        private boolean sorted = false;
+        private final List<LongPredicate> dateFilters = new ArrayList<>();
+        private Set<String> fields = null;
+        private Integer size;
+        private Integer number;
+        private Integer limit;
+        private Integer offset;
+    }
+
+    /**
+     * @param reader The series file of a new database, or null to leave every request to Elide.
+     */
+    public void setReader(HealthSeriesReader reader) {
+        this.reader = reader;
+    }
+
+    public HealthSeriesReader getReader() {
+        return reader;
+    }
+
+    /**
+     * @return The response, or empty if Elide should answer the request.
+     */
+    public Optional<ResponseEntity<String>> respond(HttpServletRequest request) {
+        HealthSeriesReader reader = this.reader;
+        if (reader == null || !request.getRequestURI().equals(request.getContextPath() + PATH)) {
+            return Optional.empty();
+        }
+        Query query = parse(request.getParameterMap());
+        if (query == null) {
+            return Optional.empty();
+        }
+        int[] page = page(query);
+        if (page == null) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(ResponseEntity.status(HttpStatus.OK)
+                    .body(render(query, reader.get(query.placeId), page[0], page[1])));
+        } catch (IOException e) {
+            log.error("Failed to render health records of {}", query.placeId, e);
+            return Optional.empty();
+        }
+    }
+
+    private static Query parse(Map<String, String[]> parameters) {
+        Query query = new Query();
+        for (Map.Entry<String, String[]> parameter : parameters.entrySet()) {
+            if (parameter.getValue().length != 1) {
+                return null;
+            }
+            String value = parameter.getValue()[0];
+            switch (parameter.getKey()) {
+                case "filter":
+                case "filter[" + TYPE + "]":
+                    if (query.placeId != null || !parseFilter(value, query)) {
+                        return null;
+                    }
+                    break;
+                case "fields[" + TYPE + "]":
+                    query.fields = new TreeSet<>(Arrays.asList(value.split(",")));
+                    if (!query.fields.stream().allMatch(field -> field.equals(PLACE) || ATTRIBUTES.contains(field))
+                            || query.fields.stream().noneMatch(ATTRIBUTES::contains)) {
+                        return null;
+                    }
+                    break;
+                case "sort":
+                    if (!value.equals(SORT)) {
+                        return null;
+                    }
+                    query.sorted = true;
+                    break;
+                case "page[size]":
+                    query.size = parseInt(value);
+                    break;
+                case "page[number]":
+                    query.number = parseInt(value);
+                    break;
+                case "page[limit]":
+                    query.limit = parseInt(value);
+                    break;
+                case "page[offset]":
+                    query.offset = parseInt(value);
+                    break;
+                default:
+                    return null;
+            }
+        }
+        return query.placeId == null || !query.sorted ? null : query;
+    }
+
+    private static boolean parseFilter(String filter, Query query) {
+        for (String predicate : filter.split(";", -1)) {
+            Matcher place = PLACE_FILTER.matcher(predicate);
+            Matcher date = DATE_FILTER.matcher(predicate);
+            if (place.matches() && query.placeId == null) {
+                query.placeId = place.group(2);
+            } else if (date.matches()) {
+                long bound;
+                try {
+                    bound = LocalDateTime.parse(date.group(3), DATE_FORMAT).toInstant(ZoneOffset.UTC).toEpochMilli();
+                } catch (DateTimeParseException e) {
+                    return false;
+                }
+                query.dateFilters.add(dateFilter(date.group(1), bound));
+            } else {
+                return false;
+            }
+        }
+        return query.placeId != null;
+    }
+
+    private static LongPredicate dateFilter(String operator, long bound) {
+        switch (operator) {
+            case "=ge=":
+                return time -> time >= bound;
+            case "=gt=":
+                return time -> time > bound;
+            case "=le=":
+                return time -> time <= bound;
+            case "=lt=":
+                return time -> time < bound;
+            default:
+                return time -> time == bound;
+        }
+    }
+
+    private static Integer parseInt(String value) {
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return The offset and limit, or null for pagination Elide would reject.
+     */
+    private int[] page(Query query) {
+        boolean numbered = query.size != null || query.number != null;
+        boolean offsetted = query.limit != null || query.offset != null;
+        if (numbered && offsetted) {
+            return null;
+        }
+        int limit = numbered ? (query.size == null ? pageSize : query.size)
+                : (query.limit == null ? pageSize : query.limit);
+        int offset = numbered ? (query.number == null ? 0 : (query.number - 1) * limit)
+                : (query.offset == null ? 0 : query.offset);
+        if (limit <= 0 || limit > maxPageSize || offset < 0 || (query.number != null && query.number < 1)) {
+            return null;
+        }
+        return new int[] {offset, limit};
+    }
+
+    private String render(Query query, HealthSeries series, int offset, int limit) throws IOException {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator json = jsonFactory.createGenerator(writer)) {
+            json.writeStartObject();
+            json.writeArrayFieldStart("data");
+            int skipped = 0;
+            int written = 0;
+            for (int record = 0; series != null && record < series.size() && written < limit; record++) {
+                long time = series.getEpochDay(record) * DAY_MILLIS;
+                if (!query.dateFilters.stream().allMatch(filter -> filter.test(time))) {
+                    continue;
+                }
+                if (skipped < offset) {
+                    skipped += 1;
+                    continue;
+                }
+                writeRecord(json, query.fields, series, record);
+                written += 1;
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+        return writer.toString();
+    }
+
+    private static void writeRecord(JsonGenerator json, Set<String> fields, HealthSeries series, int record)
+            throws IOException {
+        json.writeStartObject();
+        json.writeStringField("type", TYPE);
+        json.writeStringField("id", series.getId(record).toString());
+        json.writeObjectFieldStart("attributes");
+        for (String attribute : fields == null ? ATTRIBUTES : fields) {
+            if (!attribute.equals(PLACE)) {
+                writeAttribute(json, attribute, series, record);
+            }
+        }
+        json.writeEndObject();
+        if (fields == null || fields.contains(PLACE)) {
+            json.writeObjectFieldStart("relationships");
+            json.writeObjectFieldStart(PLACE);
+            json.writeObjectFieldStart("data");
+            json.writeStringField("type", "places");
+            json.writeStringField("id", series.getRegionId());
+            json.writeEndObject();
+            json.writeEndObject();
+            json.writeEndObject();
+        }
+        json.writeEndObject();
+    }
+
+    private static void writeAttribute(JsonGenerator json, String attribute, HealthSeries series, int record)
+            throws IOException {
+        json.writeFieldName(attribute);
+        switch (attribute) {
+            case "placeId":
+                json.writeString(series.getRegionId());
+                return;
+            case "label":
+                json.writeString(series.getLabel(record));
+                return;
+            case "wikiId":
+                json.writeString(series.getWikiId(record));
+                return;
+            case "dataSource":
+                json.writeString(series.getDataSource(record));
+                return;
+            case "referenceDate":
+                json.writeString(DATE_FORMAT.format(
+                        LocalDateTime.ofInstant(Instant.ofEpochMilli(series.getEpochDay(record) * DAY_MILLIS),
+                                ZoneOffset.UTC)));
+                return;
+            case "latitude":
+                json.writeNumber(series.getLatitude(record));
+                return;
+            case "longitude":
+                json.writeNumber(series.getLongitude(record));
+                return;
+            default:
+                break;
+        }
+        int metric = HealthSeries.LONG_METRICS.indexOf(attribute);
+        if (metric >= 0) {
+            Long value = series.getLong(metric, record);
+            if (value == null) {
+                json.writeNull();
+            } else {
+                json.writeNumber(value);
+            }
+            return;
+        }
+        Double value = series.getDouble(HealthSeries.DOUBLE_METRICS.indexOf(attribute), record);
+        if (value == null) {
+            json.writeNull();
+        } else {
+            json.writeNumber(value);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19.controllers;
+
+import com.yahoo.covid19.Warmup;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Readiness probe: 503 until the startup warmup is done, 200 after.
+ */
+@Configuration
+@RequestMapping(value = "/api/ready")
+public class ReadinessController {
+
+    Warmup warmup;
+
+    @Autowired
+    public ReadinessController(Warmup warmup) {
+        this.warmup = warmup;
+    }
+
+    @GetMapping(value = "", produces = "text/plain")
+    public ResponseEntity<String> getReadiness(HttpServletResponse response) {
+        // Replaces the caching headers of the API, the probe must reach the service.
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache, no-store");
+        return ResponseEntity.status(warmup.isReady() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE)
+                .body(warmup.getStatus());
+    }
+}
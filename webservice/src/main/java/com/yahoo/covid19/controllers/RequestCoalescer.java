@@ -0,0 +1,147 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19.controllers;
+
+import com.yahoo.covid19.Monitoring;
+import com.yahoo.covid19.filters.CanonicalRequest;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import javax.servlet.http.HttpServletRequest;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Executes identical JSON-API requests that arrive at the same time once. The first request executes, and the
+ * ones that arrive while it runs wait for its response, or its exception. A waiting request that times out is
+ * interrupted like any other. When the executing request itself times out, its response is not shared and the
+ * next waiting request executes instead. Like in the response cache, the key carries the data version so that
+ * requests on two databases are never coalesced.
+ */
+@Slf4j
+public class RequestCoalescer implements RequestCoalescerMXBean {
+
+    /**
+     * Completes the waiting requests when the executing request timed out.
+     */
+    private static class AbandonedException extends Exception {
+        AbandonedException() {
+            super("Request abandoned", null, false, false);
+        }
+    }
+
+    private static final AbandonedException ABANDONED = new AbandonedException();
+
+    private final boolean enabled;
+    private final Supplier<String> dataVersion;
+    private final ConcurrentMap<String, CompletableFuture<ResponseEntity<String>>> inFlight =
+            new ConcurrentHashMap<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * @param dataVersion The version of the data being served.
+     */
+    public RequestCoalescer(boolean enabled, Supplier<String> dataVersion) {
+        this.enabled = enabled;
+        this.dataVersion = dataVersion;
+    }
+
+    /**
+     * @param loader Computes the response, if no identical request is executing.
+     * @return The response of the loader, or the one of the identical request.
+     */
+    public ResponseEntity<String> execute(HttpServletRequest request, Callable<ResponseEntity<String>> loader)
+            throws Exception {
+        if (!enabled) {
+            return loader.call();
+        }
+
+        String key = dataVersion.get() + ' ' + CanonicalRequest.of(request);
+        while (true) {
+            CompletableFuture<ResponseEntity<String>> execution = new CompletableFuture<>();
+            CompletableFuture<ResponseEntity<String>> running = inFlight.putIfAbsent(key, execution);
+            if (running == null) {
+                return executeLoader(key, execution, loader);
+            }
+
+            try {
+                ResponseEntity<String> response = running.get();
+                coalesced.increment();
+                return response;
+            } catch (ExecutionException e) {
+                if (e.getCause() == ABANDONED) {
+                    continue;
+                }
+                coalesced.increment();
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw (Error) e.getCause();
+            }
+        }
+    }
+
+    private ResponseEntity<String> executeLoader(String key, CompletableFuture<ResponseEntity<String>> execution,
+                                                 Callable<ResponseEntity<String>> loader) throws Exception {
+        executed.increment();
+        try {
+            ResponseEntity<String> response = loader.call();
+            if (response.getStatusCode() == HttpStatus.REQUEST_TIMEOUT || Thread.currentThread().isInterrupted()) {
+                execution.completeExceptionally(ABANDONED);
+            } else {
+                execution.complete(response);
+            }
+            return response;
+        } catch (Exception e) {
+            boolean timedOut = e instanceof InterruptedException || Thread.currentThread().isInterrupted();
+            execution.completeExceptionally(timedOut ? ABANDONED : e);
+            throw e;
+        } finally {
+            inFlight.remove(key, execution);
+            // Errors leave the waiting requests to execute on their own.
+            execution.completeExceptionally(ABANDONED);
+        }
+    }
+
+    /**
+     * Exports the statistics through JMX, and logs them every interval.
+     */
+    public void start(Monitoring monitoring, long statsInterval) {
+        Monitoring.register("type=RequestCoalescer", this);
+        monitoring.logEvery(statsInterval, () -> log.info("Request coalescing: {} executed, {} coalesced, {} in flight",
+                getExecutedCount(), getCoalescedCount(), getInFlight()));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public long getExecutedCount() {
+        return executed.sum();
+    }
+
+    @Override
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    @Override
+    public int getInFlight() {
+        return inFlight.size();
+    }
+}
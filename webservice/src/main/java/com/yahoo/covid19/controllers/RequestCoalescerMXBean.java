@@ -0,0 +1,27 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19.controllers;
+
+/**
+ * Statistics of the request coalescer, exported through JMX.
+ */
+public interface RequestCoalescerMXBean {
+    /**
+     * @return The requests executed against the database.
+     */
+    long getExecutedCount();
+
+    /**
+     * @return The requests served with the response of an identical request, the executions saved.
+     */
+    long getCoalescedCount();
+
+    /**
+     * @return The distinct requests being executed.
+     */
+    int getInFlight();
+}
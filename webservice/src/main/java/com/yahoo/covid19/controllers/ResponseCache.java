@@ -0,0 +1,214 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19.controllers;
+
+import com.yahoo.covid19.Monitoring;
+import com.yahoo.covid19.ResponseCacheProperties;
+import com.yahoo.covid19.filters.CanonicalRequest;
+import com.yahoo.covid19.filters.ContentEncoding;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import javax.servlet.http.HttpServletRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps the serialized JSON-API responses in memory, bounded by their total size. The database does not change
+ * while it is served, so entries never expire; the key carries the data version so that responses of another
+ * database are never returned. Server errors and timeouts are not cached.
+ * <p>
+ * Bodies are gzipped once when they are cached, and the compressed bytes are served as they are to the clients
+ * that accept gzip. The hit, miss and eviction counts are exported through JMX.
+ */
+@Slf4j
+public class ResponseCache implements ResponseCacheMXBean {
+    // Per entry bookkeeping on top of the key, the body characters and the compressed body.
+    private static final int ENTRY_OVERHEAD = 64;
+
+    /**
+     * A cached response.
+     */
+    private static class Entry {
+        private final int status;
+        private final String body;
+        // Null when the body is not worth compressing.
+        private final byte[] gzip;
+
+        Entry(int status, String body, byte[] gzip) {
+            this.status = status;
+            this.body = body;
+            this.gzip = gzip;
+        }
+
+        int weight(String key) {
+            return 2 * (key.length() + body.length()) + (gzip == null ? 0 : gzip.length) + ENTRY_OVERHEAD;
+        }
+    }
+
+    private final Cache<String, Entry> cache;
+    private final AtomicLong invalidations = new AtomicLong();
+    private final Supplier<String> dataVersion;
+    private final long maxEntryChars;
+    private final boolean gzip;
+    private final int gzipMinSize;
+    private final long statsInterval;
+
+    /**
+     * @param dataVersion The version of the data being served.
+     */
+    public ResponseCache(ResponseCacheProperties properties, Supplier<String> dataVersion) {
+        this.dataVersion = dataVersion;
+        this.maxEntryChars = properties.getMaxEntrySize() * 1024 / 2;
+        this.gzip = properties.isGzip();
+        this.gzipMinSize = properties.getGzipMinSize();
+        this.statsInterval = properties.getStatsInterval();
+        if (!properties.isEnabled()) {
+            cache = null;
+            return;
+        }
+
+        cache = CacheBuilder.newBuilder()
+                .maximumWeight(properties.getMaxSize() * 1024 * 1024)
+                .weigher((String key, Entry entry) -> entry.weight(key))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Exports the statistics through JMX, and logs them every interval, when the cache is enabled.
+     */
+    public void start(Monitoring monitoring) {
+        if (cache != null) {
+            Monitoring.register("type=ResponseCache", this);
+            monitoring.logEvery(statsInterval, this::logStats);
+        }
+    }
+
+    /**
+     * @param loader Computes the response on a miss.
+     * @return The cached response, or the one of the loader. The body is a String, or the gzipped bytes.
+     */
+    public ResponseEntity<?> get(HttpServletRequest request, Callable<ResponseEntity<String>> loader)
+            throws Exception {
+        if (cache == null) {
+            return loader.call();
+        }
+
+        String key = dataVersion.get() + ' ' + CanonicalRequest.of(request);
+        Entry entry = cache.getIfPresent(key);
+        if (entry == null) {
+            long invalidation = invalidations.get();
+            ResponseEntity<String> response = loader.call();
+            if (!isCacheable(response)) {
+                return response;
+            }
+            entry = new Entry(response.getStatusCodeValue(), response.getBody(), compress(response.getBody()));
+            if (invalidations.get() == invalidation) {
+                cache.put(key, entry);
+            }
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(entry.status);
+        if (!gzip) {
+            return response.body(entry.body);
+        }
+        response.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (entry.gzip != null && ContentEncoding.acceptsGzip(request)) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, ContentEncoding.GZIP).body(entry.gzip);
+        }
+        return response.body(entry.body);
+    }
+
+    /**
+     * @return true if the response to the request is cached. Does not count as a hit or a miss.
+     */
+    public boolean contains(HttpServletRequest request) {
+        return cache != null && cache.asMap().containsKey(dataVersion.get() + ' ' + CanonicalRequest.of(request));
+    }
+
+    /**
+     * Drops every response, when the database is swapped. The responses being computed meanwhile are not cached,
+     * as they may have been read from what was served along with the previous database.
+     */
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * @return The statistics, or null if the cache is disabled.
+     */
+    public CacheStats getStats() {
+        return cache == null ? null : cache.stats();
+    }
+
+    @Override
+    public long getSize() {
+        return cache == null ? 0 : cache.size();
+    }
+
+    @Override
+    public long getHitCount() {
+        return cache == null ? 0 : cache.stats().hitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return cache == null ? 0 : cache.stats().missCount();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return cache == null ? 0 : cache.stats().evictionCount();
+    }
+
+    /**
+     * @return The gzipped body, or null if it is too small to gain from it.
+     */
+    private byte[] compress(String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        if (!gzip || bytes.length < gzipMinSize) {
+            return null;
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(bytes);
+        }
+        return compressed.size() < bytes.length ? compressed.toByteArray() : null;
+    }
+
+    private boolean isCacheable(ResponseEntity<String> response) {
+        HttpStatus status = response.getStatusCode();
+        return response.getBody() != null
+                && response.getBody().length() <= maxEntryChars
+                && !status.is5xxServerError()
+                && status != HttpStatus.REQUEST_TIMEOUT;
+    }
+
+    private void logStats() {
+        CacheStats stats = cache.stats();
+        log.info("Response cache: {} entries, {} hits, {} misses ({} hit rate), {} evictions", cache.size(),
+                stats.hitCount(), stats.missCount(), String.format("%.3f", stats.hitRate()), stats.evictionCount());
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19.controllers;
+
+/**
+ * Statistics of the response cache, exported through JMX.
+ */
+public interface ResponseCacheMXBean {
+    /**
+     * @return The responses cached.
+     */
+    long getSize();
+
+    /**
+     * @return The requests served from the cache.
+     */
+    long getHitCount();
+
+    /**
+     * @return The requests whose response was computed.
+     */
+    long getMissCount();
+
+    /**
+     * @return The responses dropped to bound the size of the cache.
+     */
+    long getEvictionCount();
+}
@@ -0,0 +1,535 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19.datastore;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * The values of one attribute of a table, in a primitive array rather than one boxed value per row. The hash and
+ * sorted indexes of the column are built the first time a filter or a sort needs them.
+ */
+abstract class Column {
+    final String name;
+    final Class<?> type;
+    final int size;
+    final BitSet nulls = new BitSet();
+
+    // Rows by value, without the nulls.
+    private volatile Map<Object, int[]> hashIndex;
+    // Rows by upper cased value, for the string columns.
+    private volatile Map<String, int[]> insensitiveIndex;
+    // Rows in ascending order, nulls first as H2 sorts them.
+    private volatile int[] sortedIndex;
+
+    Column(String name, Class<?> type, int size) {
+        this.name = name;
+        this.type = type;
+        this.size = size;
+    }
+
+    /**
+     * @return The column for the values of a field of the given type.
+     */
+    static Column of(String name, Class<?> type, int size) {
+        if (type == String.class) {
+            return new StringColumn(name, size);
+        } else if (type == Long.class || type == Integer.class || type == Short.class) {
+            return new LongColumn(name, type, size);
+        } else if (type == Double.class || type == Float.class) {
+            return new DoubleColumn(name, type, size);
+        } else if (Date.class.isAssignableFrom(type)) {
+            return new DateColumn(name, type, size);
+        } else if (type == UUID.class) {
+            return new UuidColumn(name, size);
+        }
+        throw new IllegalStateException("Unsupported column type " + type.getName() + " of " + name);
+    }
+
+    /**
+     * Reads the value of a row from the current row of a result set.
+     */
+    void read(ResultSet resultSet, int columnIndex, int row) throws SQLException {
+        Object value = resultSet.getObject(columnIndex);
+        if (value == null) {
+            nulls.set(row);
+        } else {
+            set(row, value);
+        }
+    }
+
+    abstract void set(int row, Object value);
+
+    /**
+     * @return The value of a non-null row, of the type of the field.
+     */
+    abstract Object value(int row);
+
+    /**
+     * @return The key of a non-null row in the hash index.
+     */
+    abstract Object key(int row);
+
+    /**
+     * @return The key of a filter value in the hash index, or null if no row can have it.
+     */
+    abstract Object key(Object value);
+
+    /**
+     * Compares two non-null rows.
+     */
+    abstract int compare(int row, int other);
+
+    /**
+     * Compares a non-null row with a filter value.
+     */
+    abstract int compareTo(int row, Object key);
+
+    final Object get(int row) {
+        return nulls.get(row) ? null : value(row);
+    }
+
+    /**
+     * Compares two rows, nulls first.
+     */
+    final int compareRows(int row, int other) {
+        boolean rowNull = nulls.get(row);
+        boolean otherNull = nulls.get(other);
+        if (rowNull || otherNull) {
+            return Boolean.compare(!rowNull, !otherNull);
+        }
+        return compare(row, other);
+    }
+
+    /**
+     * @return The rows equal to any of the values.
+     */
+    BitSet in(Iterable<Object> values) {
+        BitSet rows = new BitSet(size);
+        Map<Object, int[]> index = hashIndex();
+        for (Object value : values) {
+            Object key = value == null ? null : key(value);
+            if (key != null) {
+                set(rows, index.get(key));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return The rows equal to any of the values, ignoring the case of the strings.
+     */
+    BitSet inInsensitive(Iterable<Object> values) {
+        if (!(this instanceof StringColumn)) {
+            return in(values);
+        }
+        BitSet rows = new BitSet(size);
+        Map<String, int[]> index = insensitiveIndex();
+        for (Object value : values) {
+            if (value != null) {
+                set(rows, index.get(String.valueOf(value).toUpperCase(Locale.ROOT)));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return The rows of which the string value matches, through the distinct values of the column.
+     */
+    BitSet matching(Predicate<String> predicate) {
+        BitSet rows = new BitSet(size);
+        for (Map.Entry<Object, int[]> entry : hashIndex().entrySet()) {
+            if (predicate.test(String.valueOf(entry.getKey()))) {
+                set(rows, entry.getValue());
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @param lower Whether the range is below the value, rather than above it.
+     * @param inclusive Whether the rows equal to the value are in the range.
+     * @return The non-null rows in the range, found by binary search in the sorted index.
+     */
+    BitSet range(Object value, boolean lower, boolean inclusive) {
+        BitSet rows = new BitSet(size);
+        Object key = value == null ? null : key(value);
+        if (key == null) {
+            return rows;
+        }
+        int[] sorted = sortedIndex();
+        int first = nulls.cardinality();
+        // Where the range below the value ends and the range above it starts.
+        int low = first;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compareTo(sorted[middle], key);
+            if (comparison < 0 || (comparison == 0 && (lower == inclusive))) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        int from = lower ? first : low;
+        int to = lower ? low : sorted.length;
+        for (int i = from; i < to; i++) {
+            rows.set(sorted[i]);
+        }
+        return rows;
+    }
+
+    Map<Object, int[]> hashIndex() {
+        Map<Object, int[]> index = hashIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = hashIndex;
+                if (index == null) {
+                    index = group(row -> key(row));
+                    hashIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    private Map<String, int[]> insensitiveIndex() {
+        Map<String, int[]> index = insensitiveIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = insensitiveIndex;
+                if (index == null) {
+                    index = group(row -> String.valueOf(key(row)).toUpperCase(Locale.ROOT));
+                    insensitiveIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    int[] sortedIndex() {
+        int[] index = sortedIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = sortedIndex;
+                if (index == null) {
+                    // Stable, so equal values stay in the order of the table.
+                    index = IntStream.range(0, size).boxed()
+                            .sorted(this::compareRows)
+                            .mapToInt(Integer::intValue)
+                            .toArray();
+                    sortedIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    private interface RowKey<K> {
+        K key(int row);
+    }
+
+    /**
+     * @return The non-null rows by key, in the order of the table.
+     */
+    private <K> Map<K, int[]> group(RowKey<K> rowKey) {
+        Map<K, Integer> counts = new HashMap<>();
+        for (int row = 0; row < size; row++) {
+            if (!nulls.get(row)) {
+                counts.merge(rowKey.key(row), 1, Integer::sum);
+            }
+        }
+        Map<K, int[]> rows = new HashMap<>(counts.size() * 2);
+        for (Map.Entry<K, Integer> entry : counts.entrySet()) {
+            rows.put(entry.getKey(), new int[entry.getValue()]);
+            entry.setValue(0);
+        }
+        for (int row = 0; row < size; row++) {
+            if (!nulls.get(row)) {
+                K key = rowKey.key(row);
+                int position = counts.merge(key, 1, Integer::sum) - 1;
+                rows.get(key)[position] = row;
+            }
+        }
+        return rows;
+    }
+
+    private static void set(BitSet rows, int[] indexed) {
+        if (indexed != null) {
+            for (int row : indexed) {
+                rows.set(row);
+            }
+        }
+    }
+
+    /**
+     * Strings, stored once per distinct value.
+     */
+    static final class StringColumn extends Column {
+        private final int[] codes;
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private String[] values = new String[16];
+
+        StringColumn(String name, int size) {
+            super(name, String.class, size);
+            this.codes = new int[size];
+        }
+
+        @Override
+        void set(int row, Object value) {
+            String string = String.valueOf(value);
+            Integer code = dictionary.get(string);
+            if (code == null) {
+                code = dictionary.size();
+                if (code == values.length) {
+                    values = Arrays.copyOf(values, values.length * 2);
+                }
+                values[code] = string;
+                dictionary.put(string, code);
+            }
+            codes[row] = code;
+        }
+
+        @Override
+        Object value(int row) {
+            return values[codes[row]];
+        }
+
+        @Override
+        Object key(int row) {
+            return values[codes[row]];
+        }
+
+        @Override
+        Object key(Object value) {
+            return String.valueOf(value);
+        }
+
+        @Override
+        int compare(int row, int other) {
+            return values[codes[row]].compareTo(values[codes[other]]);
+        }
+
+        @Override
+        int compareTo(int row, Object key) {
+            return values[codes[row]].compareTo((String) key);
+        }
+    }
+
+    /**
+     * Integral numbers.
+     */
+    static final class LongColumn extends Column {
+        private final long[] values;
+
+        LongColumn(String name, Class<?> type, int size) {
+            super(name, type, size);
+            this.values = new long[size];
+        }
+
+        @Override
+        void set(int row, Object value) {
+            values[row] = ((Number) value).longValue();
+        }
+
+        @Override
+        Object value(int row) {
+            if (type == Integer.class) {
+                return (int) values[row];
+            } else if (type == Short.class) {
+                return (short) values[row];
+            }
+            return values[row];
+        }
+
+        @Override
+        Object key(int row) {
+            return values[row];
+        }
+
+        @Override
+        Object key(Object value) {
+            if (value instanceof Number) {
+                return ((Number) value).longValue();
+            }
+            try {
+                return Long.valueOf(String.valueOf(value));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        int compare(int row, int other) {
+            return Long.compare(values[row], values[other]);
+        }
+
+        @Override
+        int compareTo(int row, Object key) {
+            return Long.compare(values[row], (Long) key);
+        }
+    }
+
+    /**
+     * Floating point numbers.
+     */
+    static final class DoubleColumn extends Column {
+        private final double[] values;
+
+        DoubleColumn(String name, Class<?> type, int size) {
+            super(name, type, size);
+            this.values = new double[size];
+        }
+
+        @Override
+        void set(int row, Object value) {
+            values[row] = ((Number) value).doubleValue();
+        }
+
+        @Override
+        Object value(int row) {
+            return type == Float.class ? (Object) (float) values[row] : (Object) values[row];
+        }
+
+        @Override
+        Object key(int row) {
+            return values[row];
+        }
+
+        @Override
+        Object key(Object value) {
+            if (value instanceof Number) {
+                return ((Number) value).doubleValue();
+            }
+            try {
+                return Double.valueOf(String.valueOf(value));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        int compare(int row, int other) {
+            return Double.compare(values[row], values[other]);
+        }
+
+        @Override
+        int compareTo(int row, Object key) {
+            return Double.compare(values[row], (Double) key);
+        }
+    }
+
+    /**
+     * Dates and timestamps, in milliseconds.
+     */
+    static final class DateColumn extends Column {
+        private final long[] values;
+
+        DateColumn(String name, Class<?> type, int size) {
+            super(name, type, size);
+            this.values = new long[size];
+        }
+
+        @Override
+        void set(int row, Object value) {
+            values[row] = ((Date) value).getTime();
+        }
+
+        @Override
+        Object value(int row) {
+            // Hibernate reads the timestamps of Date fields as Timestamps as well.
+            return new Timestamp(values[row]);
+        }
+
+        @Override
+        Object key(int row) {
+            return values[row];
+        }
+
+        @Override
+        Object key(Object value) {
+            if (value instanceof Date) {
+                return ((Date) value).getTime();
+            } else if (value instanceof Number) {
+                return ((Number) value).longValue();
+            }
+            return null;
+        }
+
+        @Override
+        int compare(int row, int other) {
+            return Long.compare(values[row], values[other]);
+        }
+
+        @Override
+        int compareTo(int row, Object key) {
+            return Long.compare(values[row], (Long) key);
+        }
+    }
+
+    /**
+     * UUIDs, as two longs.
+     */
+    static final class UuidColumn extends Column {
+        private final long[] mostSignificantBits;
+        private final long[] leastSignificantBits;
+
+        UuidColumn(String name, int size) {
+            super(name, UUID.class, size);
+            this.mostSignificantBits = new long[size];
+            this.leastSignificantBits = new long[size];
+        }
+
+        @Override
+        void set(int row, Object value) {
+            UUID uuid = value instanceof UUID ? (UUID) value : UUID.fromString(String.valueOf(value));
+            mostSignificantBits[row] = uuid.getMostSignificantBits();
+            leastSignificantBits[row] = uuid.getLeastSignificantBits();
+        }
+
+        @Override
+        Object value(int row) {
+            return new UUID(mostSignificantBits[row], leastSignificantBits[row]);
+        }
+
+        @Override
+        Object key(int row) {
+            return value(row);
+        }
+
+        @Override
+        Object key(Object value) {
+            if (value instanceof UUID) {
+                return value;
+            }
+            try {
+                return UUID.fromString(String.valueOf(value));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        @Override
+        int compare(int row, int other) {
+            return ((UUID) value(row)).compareTo((UUID) value(other));
+        }
+
+        @Override
+        int compareTo(int row, Object key) {
+            return ((UUID) value(row)).compareTo((UUID) key);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19.datastore;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A read only copy of every table of the models, loaded once from the database.
+ */
+@Slf4j
+final class Dataset {
+    private final Map<Class<?>, Table> tables;
+
+    private Dataset(Map<Class<?>, Table> tables) {
+        this.tables = tables;
+    }
+
+    /**
+     * Reads the tables of the models from a database.
+     */
+    static Dataset load(String jdbcUrl, Collection<Class<?>> models) {
+        long start = System.currentTimeMillis();
+        try (Connection connection = DriverManager.getConnection(jdbcUrl)) {
+            Dataset dataset = load(connection, models);
+            log.info("Loaded {} in {} ms", dataset.tables.values().stream()
+                    .map(table -> table.size + " " + table.name)
+                    .reduce((counts, count) -> counts + ", " + count).orElse("no tables"),
+                    System.currentTimeMillis() - start);
+            return dataset;
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static Dataset load(Connection connection, Collection<Class<?>> models) throws SQLException {
+        Map<Class<?>, Table> tables = new LinkedHashMap<>();
+        for (Class<?> model : models) {
+            tables.put(model, new Table(connection, model));
+        }
+        Set<Table> targets = new LinkedHashSet<>();
+        for (Table table : tables.values()) {
+            table.relate(connection, tables);
+            table.relationships().forEach(relationship -> targets.add(relationship.target));
+        }
+        // Every relationship to a target points to the same instances, so all of them exist before any is linked.
+        targets.forEach(Table::materialize);
+        targets.forEach(Table::link);
+        return new Dataset(tables);
+    }
+
+    /**
+     * @return The table of a model, or null if the model is not in the dataset.
+     */
+    Table table(Class<?> model) {
+        return tables.get(model);
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19.datastore;
+
+import com.yahoo.elide.core.Path;
+import com.yahoo.elide.core.exceptions.InvalidPredicateException;
+import com.yahoo.elide.core.filter.FilterPredicate;
+import com.yahoo.elide.core.filter.Operator;
+import com.yahoo.elide.core.filter.expression.AndFilterExpression;
+import com.yahoo.elide.core.filter.expression.FilterExpressionVisitor;
+import com.yahoo.elide.core.filter.expression.NotFilterExpression;
+import com.yahoo.elide.core.filter.expression.OrFilterExpression;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.BiPredicate;
+
+/**
+ * Evaluates a filter expression to the rows of a table that match it. A predicate is evaluated on the indexes of
+ * the column at the end of its path, and the matching rows are followed back through the relationships of the
+ * path: a row matches if any of the rows it relates to does, as the joins of the JPA data store.
+ */
+final class FilterEvaluator implements FilterExpressionVisitor<BitSet> {
+    private final Dataset dataset;
+    private final Table root;
+    // The fields compared with their case by the IN_INSENSITIVE operator, as "Model.field".
+    private final Set<String> caseSensitive;
+
+    FilterEvaluator(Dataset dataset, Table root, Set<String> caseSensitive) {
+        this.dataset = dataset;
+        this.root = root;
+        this.caseSensitive = caseSensitive;
+    }
+
+    @Override
+    public BitSet visitPredicate(FilterPredicate predicate) {
+        List<Path.PathElement> elements = predicate.getPath().getPathElements();
+        Table table = table(elements.get(0).getType());
+        Table.Relationship[] hops = new Table.Relationship[elements.size() - 1];
+        for (int i = 0; i < hops.length; i++) {
+            hops[i] = relationship(table, elements.get(i).getFieldName());
+            table = hops[i].target;
+        }
+
+        Path.PathElement last = elements.get(elements.size() - 1);
+        Column column = table.column(last.getFieldName());
+        BitSet rows;
+        if (column != null) {
+            rows = evaluate(predicate, column, caseSensitive.contains(
+                    last.getType().getSimpleName() + "." + last.getFieldName()));
+        } else {
+            rows = evaluate(predicate, relationship(table, last.getFieldName()));
+        }
+
+        boolean isNull = predicate.getOperator() == Operator.ISNULL;
+        for (int i = hops.length - 1; i >= 0; i--) {
+            BitSet sources = hops[i].sources(rows);
+            if (isNull) {
+                // Rows without the relationship have a null at the end of the path too.
+                sources.or(hops[i].empty());
+            }
+            rows = sources;
+        }
+        return rows;
+    }
+
+    @Override
+    public BitSet visitAndExpression(AndFilterExpression expression) {
+        BitSet rows = expression.getLeft().accept(this);
+        rows.and(expression.getRight().accept(this));
+        return rows;
+    }
+
+    @Override
+    public BitSet visitOrExpression(OrFilterExpression expression) {
+        BitSet rows = expression.getLeft().accept(this);
+        rows.or(expression.getRight().accept(this));
+        return rows;
+    }
+
+    /**
+     * The complement of the rows, including those SQL would leave out as unknown because of a null. The RSQL
+     * dialect never negates an expression: != and =out= are the NOT operator, which leaves out the nulls.
+     */
+    @Override
+    public BitSet visitNotExpression(NotFilterExpression expression) {
+        BitSet rows = expression.getNegated().accept(this);
+        rows.flip(0, root.size);
+        return rows;
+    }
+
+    private BitSet evaluate(FilterPredicate predicate, Column column, boolean caseSensitive) {
+        List<Object> values = predicate.getValues();
+        switch (predicate.getOperator()) {
+            case IN:
+                return column.in(values);
+            case IN_INSENSITIVE:
+                return caseSensitive ? column.in(values) : column.inInsensitive(values);
+            case NOT:
+                return notIn(column, column.in(values));
+            case NOT_INSENSITIVE:
+                return notIn(column, column.inInsensitive(values));
+            case PREFIX:
+                return matching(column, values, false, String::startsWith);
+            case PREFIX_CASE_INSENSITIVE:
+                return matching(column, values, true, String::startsWith);
+            case POSTFIX:
+                return matching(column, values, false, String::endsWith);
+            case POSTFIX_CASE_INSENSITIVE:
+                return matching(column, values, true, String::endsWith);
+            case INFIX:
+                return matching(column, values, false, String::contains);
+            case INFIX_CASE_INSENSITIVE:
+                return matching(column, values, true, String::contains);
+            case ISNULL:
+                return column.nulls.get(0, column.size);
+            case NOTNULL:
+                return notIn(column, new BitSet());
+            case LT:
+                return column.range(first(predicate), true, false);
+            case LE:
+                return column.range(first(predicate), true, true);
+            case GT:
+                return column.range(first(predicate), false, false);
+            case GE:
+                return column.range(first(predicate), false, true);
+            case TRUE:
+                return all(column.size);
+            case FALSE:
+                return new BitSet();
+            default:
+                throw new InvalidPredicateException("Operator " + predicate.getOperator() + " is not supported on "
+                        + predicate.getField());
+        }
+    }
+
+    private BitSet evaluate(FilterPredicate predicate, Table.Relationship relationship) {
+        switch (predicate.getOperator()) {
+            case ISEMPTY:
+                return relationship.empty();
+            case NOTEMPTY:
+                BitSet rows = relationship.empty();
+                rows.flip(0, relationship.source.size);
+                return rows;
+            default:
+                throw new InvalidPredicateException("Operator " + predicate.getOperator() + " is not supported on "
+                        + "the relationship " + predicate.getField());
+        }
+    }
+
+    /**
+     * @return The non-null rows that are not in the given rows, as SQL compares nulls.
+     */
+    private static BitSet notIn(Column column, BitSet rows) {
+        BitSet notIn = all(column.size);
+        notIn.andNot(column.nulls);
+        notIn.andNot(rows);
+        return notIn;
+    }
+
+    private static BitSet matching(Column column, List<Object> values, boolean insensitive,
+                                   BiPredicate<String, String> matches) {
+        if (values.isEmpty()) {
+            return new BitSet();
+        }
+        String value = insensitive ? String.valueOf(values.get(0)).toUpperCase(Locale.ROOT)
+                : String.valueOf(values.get(0));
+        return column.matching(string -> matches.test(insensitive ? string.toUpperCase(Locale.ROOT) : string,
+                value));
+    }
+
+    private static Object first(FilterPredicate predicate) {
+        if (predicate.getValues().isEmpty()) {
+            throw new InvalidPredicateException("No value for " + predicate.getField());
+        }
+        return predicate.getValues().get(0);
+    }
+
+    private static BitSet all(int size) {
+        BitSet rows = new BitSet(size);
+        rows.set(0, size);
+        return rows;
+    }
+
+    private Table table(Class<?> model) {
+        Table table = dataset.table(model);
+        if (table == null) {
+            throw new InvalidPredicateException("Cannot filter on " + model.getSimpleName());
+        }
+        return table;
+    }
+
+    private static Table.Relationship relationship(Table table, String field) {
+        Table.Relationship relationship = table.relationship(field);
+        if (relationship == null) {
+            throw new InvalidPredicateException("Cannot filter on " + table.type.getSimpleName() + "." + field);
+        }
+        return relationship;
+    }
+}
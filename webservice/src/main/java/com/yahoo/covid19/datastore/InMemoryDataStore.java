@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19.datastore;
+
+import com.yahoo.elide.core.DataStore;
+import com.yahoo.elide.core.DataStoreTransaction;
+import com.yahoo.elide.core.EntityDictionary;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Read only data store that serves the whole database from memory. Every table of the models is loaded into
+ * primitive columns, and filters, sorts and pages are computed against hash and sorted indexes of the columns
+ * instead of SQL. Only the rows of the pages served are materialized as models, apart from the models other
+ * models relate to, such as the places, which are materialized once.
+ * <p>
+ * The first database is loaded by {@link #load}, before the application serves, and the next ones by
+ * {@link #prepare} when another database is served.
+ */
+public class InMemoryDataStore implements DataStore {
+    private final Supplier<String> jdbcUrl;
+    private final List<Class<?>> models;
+    private final Set<String> caseSensitive = new HashSet<>();
+    private volatile Dataset dataset;
+
+    /**
+     * @param jdbcUrl The database to load first.
+     * @param models The models to serve, and the models they relate to.
+     */
+    public InMemoryDataStore(Supplier<String> jdbcUrl, Class<?>... models) {
+        this.jdbcUrl = jdbcUrl;
+        this.models = Arrays.asList(models);
+    }
+
+    /**
+     * Compares a string field with its case for the IN_INSENSITIVE operator, as the JPQL generators registered
+     * for it do in the JPA data store.
+     */
+    public InMemoryDataStore caseSensitive(Class<?> model, String field) {
+        caseSensitive.add(model.getSimpleName() + "." + field);
+        return this;
+    }
+
+    /**
+     * Loads another database, without serving it yet.
+     * @return Serves the database to the transactions that begin from then on.
+     */
+    public Runnable prepare(String jdbcUrl) {
+        Dataset loaded = Dataset.load(jdbcUrl, models);
+        return () -> {
+            synchronized (this) {
+                dataset = loaded;
+            }
+        };
+    }
+
+    /**
+     * Loads the first database, unless another one is served already.
+     */
+    public void load() {
+        if (dataset != null) {
+            return;
+        }
+        Dataset loaded = Dataset.load(jdbcUrl.get(), models);
+        synchronized (this) {
+            if (dataset == null) {
+                dataset = loaded;
+            }
+        }
+    }
+
+    @Override
+    public void populateEntityDictionary(EntityDictionary dictionary) {
+        models.forEach(dictionary::bindEntity);
+    }
+
+    @Override
+    public DataStoreTransaction beginTransaction() {
+        Dataset current = dataset;
+        if (current == null) {
+            throw new IllegalStateException("The database is not loaded");
+        }
+        return new InMemoryTransaction(current, caseSensitive);
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19.datastore;
+
+import com.yahoo.elide.core.DataStoreTransaction;
+import com.yahoo.elide.core.Path;
+import com.yahoo.elide.core.RequestScope;
+import com.yahoo.elide.core.exceptions.InvalidValueException;
+import com.yahoo.elide.core.filter.expression.FilterExpression;
+import com.yahoo.elide.core.pagination.Pagination;
+import com.yahoo.elide.core.sort.Sorting;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Reads one dataset for the whole request, even if another is loaded meanwhile. The dataset is read only, and so
+ * is the transaction.
+ */
+class InMemoryTransaction implements DataStoreTransaction {
+    // Below this share of the rows of a table, sorting the rows is cheaper than going through the sorted index.
+    private static final int SORTED_INDEX_SHARE = 16;
+
+    private final Dataset dataset;
+    private final Set<String> caseSensitive;
+
+    InMemoryTransaction(Dataset dataset, Set<String> caseSensitive) {
+        this.dataset = dataset;
+        this.caseSensitive = caseSensitive;
+    }
+
+    @Override
+    public Object loadObject(Class<?> entityClass, Serializable id, Optional<FilterExpression> filterExpression,
+                             RequestScope scope) {
+        Table table = table(entityClass);
+        Object key = id == null ? null : table.id.key(id);
+        int[] rows = key == null ? null : table.id.hashIndex().get(key);
+        if (rows == null) {
+            return null;
+        }
+        if (filterExpression.isPresent() && !filter(table, filterExpression.get()).get(rows[0])) {
+            return null;
+        }
+        return table.entity(rows[0]);
+    }
+
+    @Override
+    public Iterable<Object> loadObjects(Class<?> entityClass, Optional<FilterExpression> filterExpression,
+                                        Optional<Sorting> sorting, Optional<Pagination> pagination,
+                                        RequestScope scope) {
+        Table table = table(entityClass);
+        BitSet rows;
+        if (filterExpression.isPresent()) {
+            rows = filter(table, filterExpression.get());
+        } else {
+            rows = new BitSet(table.size);
+            rows.set(0, table.size);
+        }
+        return page(table, rows, sorting, pagination, scope);
+    }
+
+    @Override
+    public Object getRelation(DataStoreTransaction relationTx, Object entity, String relationName,
+                              Optional<FilterExpression> filterExpression, Optional<Sorting> sorting,
+                              Optional<Pagination> pagination, RequestScope scope) {
+        Table table = table(entity.getClass());
+        Table.Relationship relationship = table.relationship(relationName);
+        int row = table.row(entity);
+        if (relationship == null || row < 0) {
+            return DataStoreTransaction.super.getRelation(relationTx, entity, relationName, filterExpression,
+                    sorting, pagination, scope);
+        }
+        if (!relationship.toMany) {
+            int target = relationship.target(row);
+            return target < 0 ? null : relationship.target.entity(target);
+        }
+        BitSet rows = relationship.targets(row);
+        if (filterExpression.isPresent()) {
+            rows.and(filter(relationship.target, filterExpression.get()));
+        }
+        return page(relationship.target, rows, sorting, pagination, scope);
+    }
+
+    private BitSet filter(Table table, FilterExpression expression) {
+        return expression.accept(new FilterEvaluator(dataset, table, caseSensitive));
+    }
+
+    /**
+     * @return The entities of the page of the sorted rows.
+     */
+    private List<Object> page(Table table, BitSet rows, Optional<Sorting> sorting, Optional<Pagination> pagination,
+                              RequestScope scope) {
+        int offset = 0;
+        int limit = Integer.MAX_VALUE;
+        if (pagination.isPresent()) {
+            offset = pagination.get().getOffset();
+            limit = pagination.get().getLimit();
+            if (pagination.get().isGenerateTotals()) {
+                pagination.get().setPageTotals(rows.cardinality());
+            }
+        }
+
+        List<Object> page = new ArrayList<>(Math.min(limit, rows.cardinality()));
+        Map<Path, Sorting.SortOrder> rules = sorting.isPresent() && !sorting.get().isDefaultInstance()
+                ? sorting.get().getValidSortingRules(table.type, scope.getDictionary()) : null;
+        if (rules == null || rules.isEmpty()) {
+            for (int row = rows.nextSetBit(0); row >= 0 && page.size() < limit; row = rows.nextSetBit(row + 1)) {
+                if (offset > 0) {
+                    offset -= 1;
+                } else {
+                    page.add(table.entity(row));
+                }
+            }
+            return page;
+        }
+
+        Map.Entry<Path, Sorting.SortOrder> rule = rules.entrySet().iterator().next();
+        if (rules.size() == 1 && rule.getKey().getPathElements().size() == 1
+                && rows.cardinality() >= table.size / SORTED_INDEX_SHARE) {
+            // Sorted by an attribute of the table: the sorted index is read rather than the rows sorted.
+            int[] sorted = table.column(attribute(table, rule.getKey())).sortedIndex();
+            boolean ascending = rule.getValue() == Sorting.SortOrder.asc;
+            for (int i = 0; i < sorted.length && page.size() < limit; i++) {
+                int row = sorted[ascending ? i : sorted.length - 1 - i];
+                if (!rows.get(row)) {
+                    continue;
+                }
+                if (offset > 0) {
+                    offset -= 1;
+                } else {
+                    page.add(table.entity(row));
+                }
+            }
+            return page;
+        }
+
+        Comparator<Integer> comparator = null;
+        for (Map.Entry<Path, Sorting.SortOrder> sortRule : rules.entrySet()) {
+            Comparator<Integer> ruleComparator = comparator(table, sortRule.getKey());
+            if (sortRule.getValue() == Sorting.SortOrder.desc) {
+                ruleComparator = ruleComparator.reversed();
+            }
+            comparator = comparator == null ? ruleComparator : comparator.thenComparing(ruleComparator);
+        }
+        List<Integer> sorted = new ArrayList<>(rows.cardinality());
+        rows.stream().forEach(sorted::add);
+        sorted.sort(comparator);
+        for (int i = offset; i < sorted.size() && page.size() < limit; i++) {
+            page.add(table.entity(sorted.get(i)));
+        }
+        return page;
+    }
+
+    /**
+     * @return The order of the rows by the attribute at the end of a path of to one relationships, the rows
+     * without a related row first as for a null attribute.
+     */
+    private static Comparator<Integer> comparator(Table table, Path path) {
+        List<Path.PathElement> elements = path.getPathElements();
+        Table.Relationship[] hops = new Table.Relationship[elements.size() - 1];
+        Table target = table;
+        for (int i = 0; i < hops.length; i++) {
+            hops[i] = target.relationship(elements.get(i).getFieldName());
+            if (hops[i] == null || hops[i].toMany) {
+                throw new InvalidValueException("Cannot sort on " + path.getFieldPath());
+            }
+            target = hops[i].target;
+        }
+        Column column = target.column(attribute(target, path));
+        return (row, other) -> {
+            int targetRow = row;
+            int otherRow = other;
+            for (Table.Relationship hop : hops) {
+                targetRow = targetRow < 0 ? -1 : hop.target(targetRow);
+                otherRow = otherRow < 0 ? -1 : hop.target(otherRow);
+            }
+            if (targetRow < 0 || otherRow < 0) {
+                return Boolean.compare(targetRow >= 0, otherRow >= 0);
+            }
+            return column.compareRows(targetRow, otherRow);
+        };
+    }
+
+    /**
+     * @return The attribute at the end of a path.
+     */
+    private static String attribute(Table table, Path path) {
+        String field = path.getPathElements().get(path.getPathElements().size() - 1).getFieldName();
+        if (table.column(field) == null) {
+            throw new InvalidValueException("Cannot sort on " + path.getFieldPath());
+        }
+        return field;
+    }
+
+    private Table table(Class<?> entityClass) {
+        Table table = dataset.table(entityClass);
+        if (table == null) {
+            throw new IllegalStateException("No table for " + entityClass.getName());
+        }
+        return table;
+    }
+
+    @Override
+    public void save(Object entity, RequestScope scope) {
+        throw new UnsupportedOperationException("The in-memory data store is read only");
+    }
+
+    @Override
+    public void delete(Object entity, RequestScope scope) {
+        throw new UnsupportedOperationException("The in-memory data store is read only");
+    }
+
+    @Override
+    public void createObject(Object entity, RequestScope scope) {
+        throw new UnsupportedOperationException("The in-memory data store is read only");
+    }
+
+    @Override
+    public void flush(RequestScope scope) {
+    }
+
+    @Override
+    public void commit(RequestScope scope) {
+    }
+
+    @Override
+    public void close() {
+    }
+}
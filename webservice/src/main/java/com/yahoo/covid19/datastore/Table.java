@@ -0,0 +1,433 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19.datastore;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.JoinTable;
+import javax.persistence.ManyToMany;
+import javax.persistence.ManyToOne;
+import javax.persistence.OneToOne;
+import javax.persistence.Transient;
+
+/**
+ * The rows of one model, column by column, read through the JPA mapping of the model: one {@link Column} per
+ * attribute, and the rows each row relates to for each relationship. The rows are in the order of the table, as a
+ * query without a sort returns them.
+ * <p>
+ * The models other models relate to are materialized once, so that every relationship points to the same
+ * instances. The others are materialized row by row, for the pages that are served.
+ */
+final class Table {
+
+    /**
+     * A relationship of the model, as the rows of the target each row relates to.
+     */
+    static final class Relationship {
+        final String name;
+        final Table source;
+        final Table target;
+        final boolean toMany;
+        private final Field field;
+        // The targets of a row are targets[offsets[row]] to targets[offsets[row + 1] - 1].
+        private final int[] offsets;
+        private final int[] targets;
+        private volatile int[] reverseOffsets;
+        private volatile int[] reverseSources;
+
+        Relationship(String name, Field field, Table source, Table target, boolean toMany, int[] offsets,
+                     int[] targets) {
+            this.name = name;
+            this.field = field;
+            this.source = source;
+            this.target = target;
+            this.toMany = toMany;
+            this.offsets = offsets;
+            this.targets = targets;
+        }
+
+        /**
+         * @return The target rows of a row.
+         */
+        BitSet targets(int row) {
+            BitSet rows = new BitSet(target.size);
+            for (int i = offsets[row]; i < offsets[row + 1]; i++) {
+                rows.set(targets[i]);
+            }
+            return rows;
+        }
+
+        /**
+         * @return The target row of a row, or -1 if it has none.
+         */
+        int target(int row) {
+            return offsets[row] == offsets[row + 1] ? -1 : targets[offsets[row]];
+        }
+
+        /**
+         * @return The rows of the source related to any of the target rows.
+         */
+        BitSet sources(BitSet targetRows) {
+            buildReverse();
+            BitSet rows = new BitSet(source.size);
+            for (int row = targetRows.nextSetBit(0); row >= 0; row = targetRows.nextSetBit(row + 1)) {
+                for (int i = reverseOffsets[row]; i < reverseOffsets[row + 1]; i++) {
+                    rows.set(reverseSources[i]);
+                }
+            }
+            return rows;
+        }
+
+        /**
+         * @return The rows of the source related to no row at all.
+         */
+        BitSet empty() {
+            BitSet rows = new BitSet(source.size);
+            for (int row = 0; row < source.size; row++) {
+                if (offsets[row] == offsets[row + 1]) {
+                    rows.set(row);
+                }
+            }
+            return rows;
+        }
+
+        private void buildReverse() {
+            if (reverseSources != null) {
+                return;
+            }
+            synchronized (this) {
+                if (reverseSources != null) {
+                    return;
+                }
+                int[] counts = new int[target.size + 1];
+                for (int targetRow : targets) {
+                    counts[targetRow + 1] += 1;
+                }
+                for (int row = 0; row < target.size; row++) {
+                    counts[row + 1] += counts[row];
+                }
+                int[] positions = counts.clone();
+                int[] sources = new int[targets.length];
+                for (int row = 0; row < source.size; row++) {
+                    for (int i = offsets[row]; i < offsets[row + 1]; i++) {
+                        sources[positions[targets[i]]++] = row;
+                    }
+                }
+                reverseOffsets = counts;
+                reverseSources = sources;
+            }
+        }
+
+        private void set(Object entity, int row) throws IllegalAccessException {
+            if (!toMany) {
+                int targetRow = target(row);
+                field.set(entity, targetRow < 0 ? null : target.entity(targetRow));
+                return;
+            }
+            Set<Object> related = new LinkedHashSet<>();
+            for (int i = offsets[row]; i < offsets[row + 1]; i++) {
+                related.add(target.entity(targets[i]));
+            }
+            field.set(entity, related);
+        }
+    }
+
+    /**
+     * A relationship as it is mapped, before the target is read.
+     */
+    private static final class Mapping {
+        private final Field field;
+        private final Class<?> target;
+        // The foreign key of a to one relationship.
+        private Column foreignKey;
+        private JoinTable joinTable;
+
+        Mapping(Field field, Class<?> target) {
+            this.field = field;
+            this.target = target;
+        }
+    }
+
+    final Class<?> type;
+    final String name;
+    final int size;
+    final Column id;
+    private final Field idField;
+    private final Map<String, Column> columns = new LinkedHashMap<>();
+    private final Map<String, Field> columnFields = new LinkedHashMap<>();
+    private final Map<String, Mapping> mappings = new LinkedHashMap<>();
+    private final Map<String, Relationship> relationships = new LinkedHashMap<>();
+    private final Constructor<?> constructor;
+    // The instances of every row, if other models relate to this one.
+    private Object[] entities;
+
+    /**
+     * Reads the columns of a model. Its relationships are read by {@link #relate}, once every model is read.
+     */
+    Table(Connection connection, Class<?> type) throws SQLException {
+        this.type = type;
+        javax.persistence.Table table = type.getAnnotation(javax.persistence.Table.class);
+        this.name = table == null || table.name().isEmpty() ? type.getSimpleName() : table.name();
+        try {
+            this.constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) FROM " + name);
+             ResultSet resultSet = statement.executeQuery()) {
+            resultSet.next();
+            this.size = resultSet.getInt(1);
+        }
+
+        List<String> columnNames = new ArrayList<>();
+        List<Column> selected = new ArrayList<>();
+        Field idField = null;
+        Column id = null;
+        for (Field field : type.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers())
+                    || field.isSynthetic() || field.isAnnotationPresent(Transient.class)) {
+                continue;
+            }
+            field.setAccessible(true);
+            if (field.isAnnotationPresent(ManyToMany.class)) {
+                Mapping mapping = new Mapping(field, elementType(field));
+                mapping.joinTable = field.getAnnotation(JoinTable.class);
+                if (mapping.joinTable == null) {
+                    throw new IllegalStateException("No join table for " + type.getName() + "." + field.getName());
+                }
+                mappings.put(field.getName(), mapping);
+            } else if (field.isAnnotationPresent(ManyToOne.class) || field.isAnnotationPresent(OneToOne.class)) {
+                Mapping mapping = new Mapping(field, field.getType());
+                JoinColumn joinColumn = field.getAnnotation(JoinColumn.class);
+                columnNames.add(joinColumn == null ? field.getName() : joinColumn.name());
+                mapping.foreignKey = Column.of(field.getName(), idField(field.getType()).getType(), size);
+                selected.add(mapping.foreignKey);
+                mappings.put(field.getName(), mapping);
+            } else {
+                columnNames.add(columnName(field));
+                Column column = Column.of(field.getName(), field.getType(), size);
+                selected.add(column);
+                columns.put(field.getName(), column);
+                columnFields.put(field.getName(), field);
+                if (field.isAnnotationPresent(Id.class)) {
+                    idField = field;
+                    id = column;
+                }
+            }
+        }
+        if (id == null) {
+            throw new IllegalStateException("No id for " + type.getName());
+        }
+        this.idField = idField;
+        this.id = id;
+
+        String sql = "SELECT " + String.join(", ", columnNames) + " FROM " + name;
+        try (PreparedStatement statement = connection.prepareStatement(sql);
+             ResultSet resultSet = statement.executeQuery()) {
+            int row = 0;
+            while (resultSet.next() && row < size) {
+                for (int i = 0; i < selected.size(); i++) {
+                    selected.get(i).read(resultSet, i + 1, row);
+                }
+                row += 1;
+            }
+        }
+    }
+
+    /**
+     * Reads the relationships of the model, once the models it relates to are read.
+     */
+    void relate(Connection connection, Map<Class<?>, Table> tables) throws SQLException {
+        for (Mapping mapping : mappings.values()) {
+            Table target = tables.get(mapping.target);
+            if (target == null) {
+                throw new IllegalStateException("No table for " + mapping.target.getName());
+            }
+            int[] offsets = new int[size + 1];
+            int[] targets;
+            if (mapping.foreignKey != null) {
+                Map<Object, int[]> targetIds = target.id.hashIndex();
+                int[] byRow = new int[size];
+                int count = 0;
+                for (int row = 0; row < size; row++) {
+                    int[] targetRows = mapping.foreignKey.nulls.get(row)
+                            ? null : targetIds.get(mapping.foreignKey.key(row));
+                    byRow[row] = targetRows == null ? -1 : targetRows[0];
+                    count += targetRows == null ? 0 : 1;
+                    offsets[row + 1] = count;
+                }
+                targets = new int[count];
+                for (int row = 0; row < size; row++) {
+                    if (byRow[row] >= 0) {
+                        targets[offsets[row]] = byRow[row];
+                    }
+                }
+            } else {
+                targets = readJoinTable(connection, mapping.joinTable, target, offsets);
+            }
+            relationships.put(mapping.field.getName(), new Relationship(mapping.field.getName(), mapping.field,
+                    this, target, mapping.foreignKey == null, offsets, targets));
+        }
+    }
+
+    /**
+     * @param offsets Filled with the offsets of the targets of each row.
+     * @return The target rows, by source row.
+     */
+    private int[] readJoinTable(Connection connection, JoinTable joinTable, Table target, int[] offsets)
+            throws SQLException {
+        Map<Object, int[]> sourceIds = id.hashIndex();
+        Map<Object, int[]> targetIds = target.id.hashIndex();
+        List<int[]> pairs = new ArrayList<>();
+        String sql = "SELECT " + joinTable.joinColumns()[0].name() + ", "
+                + joinTable.inverseJoinColumns()[0].name() + " FROM " + joinTable.name();
+        try (PreparedStatement statement = connection.prepareStatement(sql);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                Object sourceKey = resultSet.getObject(1);
+                Object targetKey = resultSet.getObject(2);
+                int[] sourceRows = sourceKey == null ? null : sourceIds.get(id.key(sourceKey));
+                int[] targetRows = targetKey == null ? null : targetIds.get(target.id.key(targetKey));
+                if (sourceRows != null && targetRows != null) {
+                    pairs.add(new int[] {sourceRows[0], targetRows[0]});
+                }
+            }
+        }
+        // By source, then by the id of the target.
+        pairs.sort((pair, other) -> pair[0] != other[0]
+                ? Integer.compare(pair[0], other[0]) : target.id.compareRows(pair[1], other[1]));
+        int[] targets = new int[pairs.size()];
+        for (int i = 0; i < pairs.size(); i++) {
+            offsets[pairs.get(i)[0] + 1] += 1;
+            targets[i] = pairs.get(i)[1];
+        }
+        for (int row = 0; row < size; row++) {
+            offsets[row + 1] += offsets[row];
+        }
+        return targets;
+    }
+
+    /**
+     * Materializes every row once, for the models other models relate to. The relationships are set by
+     * {@link #link}, once the instances of every model exist.
+     */
+    void materialize() {
+        Object[] instances = new Object[size];
+        for (int row = 0; row < size; row++) {
+            instances[row] = newEntity(row);
+        }
+        entities = instances;
+    }
+
+    void link() {
+        try {
+            for (int row = 0; row < size; row++) {
+                for (Relationship relationship : relationships.values()) {
+                    relationship.set(entities[row], row);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return The instance of a row, which must not be modified.
+     */
+    Object entity(int row) {
+        if (entities != null) {
+            return entities[row];
+        }
+        Object entity = newEntity(row);
+        try {
+            for (Relationship relationship : relationships.values()) {
+                relationship.set(entity, row);
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        return entity;
+    }
+
+    private Object newEntity(int row) {
+        try {
+            Object entity = constructor.newInstance();
+            for (Map.Entry<String, Field> field : columnFields.entrySet()) {
+                field.getValue().set(entity, columns.get(field.getKey()).get(row));
+            }
+            return entity;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return The row of an instance of the model, or -1 if it is not in the table.
+     */
+    int row(Object entity) {
+        try {
+            Object value = idField.get(entity);
+            int[] rows = value == null ? null : id.hashIndex().get(id.key(value));
+            return rows == null ? -1 : rows[0];
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return The column of an attribute, or null if the model has no such attribute.
+     */
+    Column column(String field) {
+        return columns.get(field);
+    }
+
+    /**
+     * @return The relationship of a field, or null if the model has no such relationship.
+     */
+    Relationship relationship(String field) {
+        return relationships.get(field);
+    }
+
+    Collection<Relationship> relationships() {
+        return relationships.values();
+    }
+
+    private static String columnName(Field field) {
+        javax.persistence.Column annotation = field.getAnnotation(javax.persistence.Column.class);
+        return annotation == null || annotation.name().isEmpty() ? field.getName() : annotation.name();
+    }
+
+    private static Field idField(Class<?> type) {
+        for (Field field : type.getDeclaredFields()) {
+            if (field.isAnnotationPresent(Id.class)) {
+                return field;
+            }
+        }
+        throw new IllegalStateException("No id for " + type.getName());
+    }
+
+    private static Class<?> elementType(Field field) {
+        return (Class<?>) ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19.filters;
+
+import com.yahoo.covid19.Bulkhead;
+import com.yahoo.covid19.Bulkheads;
+import com.yahoo.elide.spring.config.ElideConfigProperties;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Serves the GraphQL and the documentation requests within their bulkhead, and rejects them with a 503 when it
+ * is full. A request that has to wait for its turn is suspended, so that it does not hold a container thread,
+ * and dispatched again once it has its turn. The dispatch goes straight to the servlet, as this filter only sees
+ * the original request. The JSON-API requests are bounded by their own bulkhead, in the controller.
+ */
+@Component
+@Order(4)
+@Slf4j
+public class BulkheadFilter implements Filter {
+
+    private final String jsonApiPath;
+    private final String graphqlPath;
+    private final Bulkheads bulkheads;
+    private final long timeout;
+
+    @Autowired
+    public BulkheadFilter(ElideConfigProperties settings, Bulkheads bulkheads,
+                          @Value("${spring.mvc.async.request-timeout:30000}") long timeout) {
+        this(settings.getJsonApi().getPath(), settings.getGraphql().getPath(), bulkheads, timeout);
+    }
+
+    /**
+     * @param timeout Milliseconds a request waits for its turn before it is rejected.
+     */
+    public BulkheadFilter(String jsonApiPath, String graphqlPath, Bulkheads bulkheads, long timeout) {
+        this.jsonApiPath = jsonApiPath;
+        this.graphqlPath = graphqlPath;
+        this.bulkheads = bulkheads;
+        this.timeout = timeout;
+    }
+
+    @Override public void doFilter(ServletRequest request,
+                                   ServletResponse response,
+                                   FilterChain chain) throws IOException, ServletException {
+
+        String path = ((HttpServletRequest) request).getRequestURI();
+        if (path.startsWith(jsonApiPath)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        Bulkhead bulkhead = path.startsWith(graphqlPath) ? bulkheads.getGraphql() : bulkheads.getDocs();
+        if (!bulkhead.admit()) {
+            log.warn("Rejected {}, bulkhead {} is full", path, bulkhead.getName());
+            reject((HttpServletResponse) response);
+            return;
+        }
+        if (bulkhead.tryStart()) {
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                bulkhead.exit();
+            }
+            return;
+        }
+
+        AsyncContext context = request.startAsync(request, response);
+        context.setTimeout(timeout);
+        Runnable resume = context::dispatch;
+        AtomicBoolean cancelled = new AtomicBoolean();
+        context.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                if (!cancelled.get()) {
+                    bulkhead.exit();
+                }
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) throws IOException {
+                if (bulkhead.cancel(resume)) {
+                    cancelled.set(true);
+                    log.warn("Rejected {}, timed out waiting for bulkhead {}", path, bulkhead.getName());
+                    reject((HttpServletResponse) event.getSuppliedResponse());
+                    context.complete();
+                }
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                if (bulkhead.cancel(resume)) {
+                    cancelled.set(true);
+                    context.complete();
+                }
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        bulkhead.await(resume);
+    }
+
+    private static void reject(HttpServletResponse response) throws IOException {
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Bulkhead.RETRY_AFTER));
+        response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    }
+}
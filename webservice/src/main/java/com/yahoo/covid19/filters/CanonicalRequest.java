@@ -0,0 +1,45 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19.filters;
+
+import javax.servlet.http.HttpServletRequest;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Identifies what a GET request asks for, independent of how it is encoded.
+ */
+public final class CanonicalRequest {
+    private CanonicalRequest() {
+    }
+
+    /**
+     * @return The request path and the query parameters sorted by name, re-encoded so that differently encoded
+     * requests for the same parameters are equal.
+     */
+    public static String of(HttpServletRequest request) {
+        StringBuilder canonical = new StringBuilder(request.getRequestURI());
+        char separator = '?';
+        try {
+            for (Map.Entry<String, String[]> parameter : new TreeMap<>(request.getParameterMap()).entrySet()) {
+                String name = URLEncoder.encode(parameter.getKey(), StandardCharsets.UTF_8.name());
+                for (String value : parameter.getValue()) {
+                    canonical.append(separator).append(name).append('=')
+                            .append(URLEncoder.encode(value, StandardCharsets.UTF_8.name()));
+                    separator = '&';
+                }
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        return canonical.toString();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19.filters;
+
+import com.yahoo.covid19.Bulkhead;
+import com.yahoo.covid19.ConcurrencyLimiter;
+import com.yahoo.covid19.controllers.ResponseCache;
+import com.yahoo.elide.spring.config.ElideConfigProperties;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Sheds the JSON-API and GraphQL requests beyond the limit of the concurrency limiter with a 503, rather than
+ * letting them all wait for a slow database until they time out. The requests answered from the response cache
+ * are not limited, nor are the ones answered with a 304 by the filters before this one. The latency of a request
+ * is measured until its response is complete, including the asynchronous ones.
+ */
+@Component
+@Order(3)
+@Slf4j
+public class ConcurrencyLimitFilter implements Filter {
+
+    private final List<String> paths;
+    private final ConcurrencyLimiter limiter;
+    private final Predicate<HttpServletRequest> cached;
+
+    @Autowired
+    public ConcurrencyLimitFilter(ElideConfigProperties settings, ConcurrencyLimiter limiter,
+                                  ResponseCache responseCache) {
+        this(Arrays.asList(settings.getJsonApi().getPath(), settings.getGraphql().getPath()), limiter,
+                responseCache::contains);
+    }
+
+    /**
+     * @param paths The path prefixes of the API.
+     * @param cached Whether the response to a request is cached.
+     */
+    public ConcurrencyLimitFilter(List<String> paths, ConcurrencyLimiter limiter,
+                                  Predicate<HttpServletRequest> cached) {
+        this.paths = paths;
+        this.limiter = limiter;
+        this.cached = cached;
+    }
+
+    @Override public void doFilter(ServletRequest request,
+                                   ServletResponse response,
+                                   FilterChain chain) throws IOException, ServletException {
+
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+        if (!limiter.isEnabled() || !isApi(httpRequest) || cached.test(httpRequest)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        if (!limiter.tryAcquire()) {
+            log.debug("Shed {}, concurrency limit {} reached", httpRequest.getRequestURI(), limiter.getLimit());
+            httpResponse.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Bulkhead.RETRY_AFTER));
+            httpResponse.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            limiter.onIgnore();
+            throw e;
+        }
+        if (request.isAsyncStarted()) {
+            request.getAsyncContext().addListener(new AsyncListener() {
+                @Override
+                public void onComplete(AsyncEvent event) {
+                    release(start, httpResponse.getStatus());
+                }
+
+                @Override
+                public void onTimeout(AsyncEvent event) {
+                }
+
+                @Override
+                public void onError(AsyncEvent event) {
+                }
+
+                @Override
+                public void onStartAsync(AsyncEvent event) {
+                }
+            });
+        } else {
+            release(start, httpResponse.getStatus());
+        }
+    }
+
+    private void release(long start, int status) {
+        if (status == HttpServletResponse.SC_SERVICE_UNAVAILABLE) {
+            // Timed out, or rejected by a bulkhead.
+            limiter.onDropped();
+        } else if (status >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR) {
+            limiter.onIgnore();
+        } else {
+            limiter.onSuccess(System.nanoTime() - start);
+        }
+    }
+
+    private boolean isApi(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return paths.stream().anyMatch(path::startsWith);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19.filters;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Content negotiation of the response encoding.
+ */
+public final class ContentEncoding {
+    public static final String GZIP = "gzip";
+
+    private ContentEncoding() {
+    }
+
+    /**
+     * @return true if the Accept-Encoding header of the request allows gzip. An explicit gzip coding takes
+     * precedence over the wildcard.
+     */
+    public static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (acceptEncoding == null) {
+            return false;
+        }
+        double gzip = -1;
+        double wildcard = -1;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            String name = parts[0].trim().toLowerCase();
+            if (name.equals(GZIP) || name.equals("x-gzip")) {
+                gzip = Math.max(gzip, quality(parts));
+            } else if (name.equals("*")) {
+                wildcard = quality(parts);
+            }
+        }
+        return gzip >= 0 ? gzip > 0 : wildcard > 0;
+    }
+
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
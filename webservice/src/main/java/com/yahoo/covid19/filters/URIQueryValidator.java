@@ -6,19 +6,57 @@
 
 package com.yahoo.covid19.filters;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
+/**
+ * Matches request URIs against the whitelisted rules. The rules are compiled once and grouped by the literal path
+ * they start with, so a URI is only matched against the rules of its path and the few rules that start with a
+ * parameter. The decisions are cached by URI.
+ */
 @Slf4j
 public class URIQueryValidator {
+    public static final long DEFAULT_CACHE_SIZE = 10000;
+
+    // Longer URIs are matched every time rather than held by the cache.
+    private static final int MAX_CACHED_URI_LENGTH = 2048;
+    private static final int NO_MATCH = -1;
+    // Character '}' is escaped to make it more readable. (not necessary to be escaped in abset of '{')
+    private static final Pattern RULE_PATTERN = Pattern.compile("((?:(?!\\{\\{).)*)(\\{\\{(?:(?!\\}\\}).)+\\}\\}+)?");
 
     private final List<String> regexRules;
 
+    /**
+     * A compiled rule.
+     */
+    private static class Rule {
+        // The index of the rule in the configured list.
+        private final int id;
+        private final Pattern pattern;
+
+        Rule(int id, Pattern pattern) {
+            this.id = id;
+            this.pattern = pattern;
+        }
+    }
+
+    // The candidate rules by path, in configuration order.
+    private final Map<String, List<Rule>> rulesByPath = new HashMap<>();
+    // The rules that do not start with a literal path, tried for every URI.
+    private final List<Rule> anyPathRules = new ArrayList<>();
+    private final Cache<String, Integer> decisions;
+
     public enum RegexVariable {
         DATE("'?\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}Z'?"),
         DATE_LIST("(?:'\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}Z',?)+"),
@@ -52,21 +90,29 @@ public class URIQueryValidator {
      *                  - It is important to include the demarker and remove that later. This allows to capture special case like {{\w{6}}}
      */
     public URIQueryValidator(List<String> strRules) {
-        // Character '}' is escaped to make it more readable. (not necessary to be escaped in abset of '{')
-        String pattern = "((?:(?!\\{\\{).)*)(\\{\\{(?:(?!\\}\\}).)+\\}\\}+)?";
+        this(strRules, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize The number of decisions to cache, 0 to disable the cache.
+     */
+    public URIQueryValidator(List<String> strRules, long cacheSize) {
         regexRules = new ArrayList<>();
-        for(String strRule: strRules) {
+        List<Rule> rules = new ArrayList<>();
+        List<String> paths = new ArrayList<>();
+        for (int id = 0; id < strRules.size(); id++) {
+            String strRule = strRules.get(id);
             StringBuilder regexRule = new StringBuilder();
-            Pattern p = Pattern.compile(pattern);
-            Matcher m = p.matcher(strRule.trim());
+            Matcher m = RULE_PATTERN.matcher(strRule.trim());
             while(m.find()) {
                 regexRule.append(getAsStringLiteral(m.group(1)));
                 regexRule.append(lookupParameter(m.group(2)));
             }
             String constructedRegex = regexRule.toString();
             try {
-                Pattern.compile(constructedRegex);
+                rules.add(new Rule(id, Pattern.compile(constructedRegex)));
                 regexRules.add(constructedRegex);
+                paths.add(literalPath(strRule.trim()));
             } catch (PatternSyntaxException e) {
                 log.error(String.format(
                         "Error generating Regex.\nConfigured Rule: %s.\nConstructed Regex: %s",
@@ -74,6 +120,37 @@ public class URIQueryValidator {
                         constructedRegex));
             }
         }
+
+        for (String path : paths) {
+            if (path != null) {
+                rulesByPath.put(path, new ArrayList<>());
+            }
+        }
+        for (int i = 0; i < rules.size(); i++) {
+            Rule rule = rules.get(i);
+            String path = paths.get(i);
+            if (path == null) {
+                anyPathRules.add(rule);
+                rulesByPath.values().forEach(candidates -> candidates.add(rule));
+            } else {
+                rulesByPath.get(path).add(rule);
+            }
+        }
+
+        decisions = cacheSize > 0 ? CacheBuilder.newBuilder().maximumSize(cacheSize).build() : null;
+    }
+
+    /**
+     * @return The path every URI matching the rule has, or null if the rule does not start with a literal path.
+     */
+    private static String literalPath(String strRule) {
+        int parameter = strRule.indexOf("{{");
+        String literal = parameter < 0 ? strRule : strRule.substring(0, parameter);
+        int query = literal.indexOf('?');
+        if (query >= 0) {
+            return literal.substring(0, query);
+        }
+        return parameter < 0 ? literal : null;
     }
 
     public List<String> getRegexRules() {
@@ -101,7 +178,36 @@ public class URIQueryValidator {
     }
 
     public boolean validate(String uri) {
-        return regexRules.stream()
-                .anyMatch(regexRule -> uri.matches(regexRule));
+        return match(uri).isPresent();
+    }
+
+    /**
+     * @param uri The decoded request URI, with its query string.
+     * @return The index in the configured list of the first rule matching the URI, or empty if none does.
+     */
+    public OptionalInt match(String uri) {
+        int id;
+        if (decisions == null || uri.length() > MAX_CACHED_URI_LENGTH) {
+            id = findRule(uri);
+        } else {
+            Integer decision = decisions.getIfPresent(uri);
+            if (decision == null) {
+                decision = findRule(uri);
+                decisions.put(uri, decision);
+            }
+            id = decision;
+        }
+        return id == NO_MATCH ? OptionalInt.empty() : OptionalInt.of(id);
+    }
+
+    private int findRule(String uri) {
+        int query = uri.indexOf('?');
+        String path = query < 0 ? uri : uri.substring(0, query);
+        for (Rule rule : rulesByPath.getOrDefault(path, anyPathRules)) {
+            if (rule.pattern.matcher(uri).matches()) {
+                return rule.id;
+            }
+        }
+        return NO_MATCH;
     }
 }
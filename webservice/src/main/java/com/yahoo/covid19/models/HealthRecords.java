@@ -7,6 +7,11 @@ package com.yahoo.covid19.models;
 
 import com.yahoo.elide.annotation.Include;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
@@ -18,6 +23,9 @@ import java.util.UUID;
 
 @Include(rootLevel = true, type = "healthRecords")
 @Entity
+@Immutable
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
 @Table(name = "health_records")
 public class HealthRecords {
     @Id
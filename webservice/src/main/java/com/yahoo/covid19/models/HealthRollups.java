@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19.models;
+
+import com.yahoo.elide.annotation.Include;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Totals of the child regions of a place for one day, computed when the database is built.
+ * childCount is the number of direct children that had a record or a rollup of their own that day.
+ */
+@Include(rootLevel = true, type = "healthRollups")
+@Entity
+@Immutable
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
+@Table(name = "health_rollups")
+public class HealthRollups {
+    @Id
+    private UUID id;
+
+    @JoinColumn(name = "regionId")
+    @ManyToOne
+    private Place place;
+
+    @Column(name = "regionId", insertable = false, updatable = false)
+    private String placeId;
+
+    private String label;
+    private String wikiId;
+    private Date referenceDate;
+    private Long totalDeaths;
+    private Long totalConfirmedCases;
+    private Long totalRecoveredCases;
+    private Long totalTestedCases;
+    private Integer childCount;
+}
@@ -7,9 +7,14 @@ package com.yahoo.covid19.models;
 
 import com.yahoo.elide.annotation.Include;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Immutable;
+
 import java.util.Date;
 import java.util.UUID;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
@@ -19,6 +24,9 @@ import javax.persistence.Table;
 
 @Include(rootLevel = true, type = "latestHealthRecords")
 @Entity
+@Immutable
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
 @Table(name = "latest_health_records")
 public class LatestHealthRecords {
     @Id
@@ -7,6 +7,11 @@ package com.yahoo.covid19.models;
 
 import com.yahoo.elide.annotation.Include;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.Table;
@@ -14,6 +19,9 @@ import java.util.Date;
 
 @Include(rootLevel = true, type = "metadata")
 @Entity
+@Immutable
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
 @Table(name = "metadata")
 public class Metadata {
     @Id
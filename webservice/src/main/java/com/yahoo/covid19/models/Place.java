@@ -8,17 +8,26 @@ package com.yahoo.covid19.models;
 
 import com.yahoo.elide.annotation.Include;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Immutable;
+
 import java.util.Set;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
+import javax.persistence.OrderBy;
 
 @Include(rootLevel = true, type = "places")
 @Entity
+@Immutable
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
 public class Place {
     @Id
     private String id;
@@ -33,6 +42,7 @@ public class Place {
     private Long population;
 
     @ManyToMany
+    @Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
     @JoinTable(
             name = "relationship_hierarchy",
             joinColumns = @JoinColumn(name = "childId"),
@@ -41,10 +51,24 @@ public class Place {
     private Set<Place> parents;
 
     @ManyToMany
+    @Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
     @JoinTable(
             name = "relationship_hierarchy",
             joinColumns = @JoinColumn(name = "parentId"),
             inverseJoinColumns = @JoinColumn(name = "childId")
     )
     private Set<Place> children;
+
+    // The ancestors at any depth, from the place_ancestors closure table: filtering on place.ancestors.id
+    // is a single index lookup, where place.parents.parents.id joins the hierarchy once per level. Ordered,
+    // so that the relationship always serializes the same way.
+    @ManyToMany
+    @OrderBy("id")
+    @Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
+    @JoinTable(
+            name = "place_ancestors",
+            joinColumns = @JoinColumn(name = "placeId"),
+            inverseJoinColumns = @JoinColumn(name = "ancestorId")
+    )
+    private Set<Place> ancestors;
 }
@@ -29,12 +29,23 @@ import static com.yahoo.elide.contrib.testhelpers.jsonapi.JsonApiDSL.relationshi
 import static com.yahoo.elide.contrib.testhelpers.jsonapi.JsonApiDSL.resource;
 import static com.yahoo.elide.contrib.testhelpers.jsonapi.JsonApiDSL.type;
 import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import com.yahoo.covid19.controllers.HealthSeriesResponder;
+import com.yahoo.covid19.controllers.ResponseCache;
+import com.yahoo.covid19.database.HealthSeriesReader;
 import com.yahoo.elide.contrib.testhelpers.graphql.GraphQLDSL;
 import com.yahoo.elide.core.HttpStatus;
 import com.yahoo.elide.spring.controllers.JsonApiController;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.restassured.path.json.JsonPath;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
 
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.ws.rs.core.MediaType;
 
@@ -43,6 +54,12 @@ import javax.ws.rs.core.MediaType;
  */
 public class ApiTest extends IntegrationTest {
 
+    @Autowired
+    private HealthSeriesResponder seriesResponder;
+
+    @Autowired
+    private ResponseCache responseCache;
+
     /**
      * This test demonstrates returning DB metadata.
      */
@@ -331,6 +348,10 @@ public class ApiTest extends IntegrationTest {
                                                 attr("wikiId", "Washington,_D.C.")
                                         ),
                                         relationships(
+                                                relation("ancestors", false,
+                                                        linkage(type("places"), id("Earth")),
+                                                        linkage(type("places"), id("United_States"))
+                                                ),
                                                 relation("children", false),
                                                 relation("parents", false,
                                                         linkage(type("places"), id("United_States"))
@@ -343,6 +364,68 @@ public class ApiTest extends IntegrationTest {
                 .statusCode(HttpStatus.SC_OK);
     }
 
+    /**
+     * The rollup of a country adds up the record of each of its states for the day, or the rollup of a state
+     * without a record of its own.
+     */
+    @Test
+    void healthRollupsTest() {
+        String day = "referenceDate=='2020-05-01T00:00Z'";
+        JsonPath rollup = when()
+                .get("/api/json/v1/healthRollups?fields[healthRollups]=label,referenceDate,totalConfirmedCases,childCount"
+                        + "&filter=placeId=='United_States';" + day)
+                .then()
+                .log().all()
+                .statusCode(HttpStatus.SC_OK)
+                .extract().jsonPath();
+
+        Map<String, Long> children = totalConfirmedCases("/api/json/v1/healthRollups?fields[healthRollups]="
+                + "placeId,totalConfirmedCases&filter=place.parents.id=='United_States';" + day + "&page[size]=4000");
+        children.putAll(totalConfirmedCases("/api/json/v1/healthRecords?fields[healthRecords]="
+                + "placeId,totalConfirmedCases&filter=place.parents.id=='United_States';" + day + "&page[size]=4000"));
+
+        assertEquals(1, rollup.getList("data").size());
+        assertEquals("United States", rollup.getString("data[0].attributes.label"));
+        assertEquals(children.size(), rollup.getInt("data[0].attributes.childCount"));
+        assertEquals(children.values().stream().mapToLong(Long::longValue).sum(),
+                rollup.getLong("data[0].attributes.totalConfirmedCases"));
+    }
+
+    private static Map<String, Long> totalConfirmedCases(String query) {
+        JsonPath page = when().get(query).then().statusCode(HttpStatus.SC_OK).extract().jsonPath();
+        Map<String, Long> totals = new HashMap<>();
+        for (int i = 0; i < page.getList("data").size(); i++) {
+            Number total = page.get("data[" + i + "].attributes.totalConfirmedCases");
+            totals.put(page.getString("data[" + i + "].attributes.placeId"), total == null ? 0L : total.longValue());
+        }
+        return totals;
+    }
+
+    /**
+     * The health records of a place sorted by date come from the series file. Without it, the same request goes
+     * through Elide.
+     */
+    @Test
+    void healthSeriesMatchesElide() throws Exception {
+        String query = "/api/json/v1/healthRecords?filter=placeId=='Amador_County,_California'"
+                + ";referenceDate=ge='2020-05-01T00:00Z'&sort=referenceDate&page[size]=20&page[number]=2";
+        String series = when().get(query).then().statusCode(HttpStatus.SC_OK).extract().asString();
+        HealthSeriesReader reader = seriesResponder.getReader();
+        String elide;
+        responseCache.invalidateAll();
+        seriesResponder.setReader(null);
+        try {
+            elide = when().get(query).then().statusCode(HttpStatus.SC_OK).extract().asString();
+        } finally {
+            seriesResponder.setReader(reader);
+            responseCache.invalidateAll();
+        }
+
+        ObjectMapper mapper = new ObjectMapper();
+        assertEquals(20, mapper.readTree(series).get("data").size());
+        assertEquals(mapper.readTree(elide), mapper.readTree(series));
+    }
+
     @Test
     void countyNonStaticRecords() {
         when()
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19;
+
+import static com.jayway.restassured.RestAssured.when;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.yahoo.elide.core.HttpStatus;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import javax.persistence.EntityManager;
+
+/**
+ * The relationships of the rows of a page load in batches, so the SQL statements of a request do not grow with
+ * the size of the page. The response and entity caches are disabled, so every request reaches the database.
+ */
+@TestPropertySource(properties = {"security.responseCache.enabled=false", "database.entityCache.enabled=false"})
+public class BatchFetchTest extends IntegrationTest {
+    // The page query, and a few batches for each of the places, their parents and their children.
+    private static final long MAX_STATEMENTS = 20;
+
+    @Autowired
+    private EntityManagerSupplier entityManagers;
+
+    /**
+     * @return The statistics of the database, cleared, after the second-level cache is emptied.
+     */
+    private Statistics statistics() {
+        EntityManager entityManager = entityManagers.get();
+        try {
+            entityManager.getEntityManagerFactory().getCache().evictAll();
+            Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class)
+                    .getStatistics();
+            statistics.setStatisticsEnabled(true);
+            statistics.clear();
+            return statistics;
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    /**
+     * @return The number of rows of the page.
+     */
+    private int get(String uri) {
+        return when()
+                .get(uri)
+                .then()
+                .statusCode(HttpStatus.SC_OK)
+                .extract().jsonPath().getList("data").size();
+    }
+
+    @Test
+    void testIncludedPlaceParents() {
+        Statistics statistics = statistics();
+        int rows = get("/api/json/v1/latestHealthRecords?fields[latestHealthRecords]=label,place"
+                + "&fields[places]=label,parents&filter=place.parents.parents.id=='United_States'"
+                + "&include=place&page[size]=4000");
+        long statements = statistics.getPrepareStatementCount();
+
+        assertTrue(rows > 100, "Only " + rows + " counties");
+        assertTrue(statements <= MAX_STATEMENTS, statements + " statements for " + rows + " rows");
+    }
+
+    @Test
+    void testPlaceRelationships() {
+        Statistics statistics = statistics();
+        int rows = get("/api/json/v1/places?fields[places]=label,parents,children"
+                + "&filter=parents.id=='United_States'&page[size]=4000");
+        long statements = statistics.getPrepareStatementCount();
+
+        assertTrue(rows > 10, "Only " + rows + " states");
+        assertTrue(statements <= MAX_STATEMENTS, statements + " statements for " + rows + " rows");
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class BulkheadTest {
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    public void testSubmit() throws Exception {
+        Bulkhead bulkhead = new Bulkhead("test", new BulkheadProperties(2, 1), false);
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        List<DeferredResult<String>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            String name = "task " + i;
+            results.add(bulkhead.submit(() -> {
+                started.countDown();
+                await(release);
+                return name;
+            }, () -> "rejected"));
+        }
+        await(started);
+
+        // Two tasks run, one waits, the last one is rejected.
+        assertEquals(2, bulkhead.getActiveThreads());
+        assertEquals(1, bulkhead.getQueueDepth());
+        assertEquals(1, bulkhead.getRejectedCount());
+        assertEquals("rejected", results.get(3).getResult());
+
+        release.countDown();
+        for (int i = 0; i < 100 && bulkhead.getCompletedCount() < 3; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(3, bulkhead.getCompletedCount());
+        assertEquals(0, bulkhead.getActiveThreads());
+        assertEquals(0, bulkhead.getQueueDepth());
+        for (int i = 0; i < 3; i++) {
+            assertEquals("task " + i, results.get(i).getResult());
+        }
+    }
+
+    @Test
+    public void testAwait() {
+        Bulkhead bulkhead = new Bulkhead("test", new BulkheadProperties(1, 1), false);
+        assertTrue(bulkhead.admit());
+        assertTrue(bulkhead.tryStart());
+        List<String> resumed = new ArrayList<>();
+        Runnable resume = () -> resumed.add("waiting");
+        assertTrue(bulkhead.admit());
+        assertFalse(bulkhead.tryStart());
+        bulkhead.await(resume);
+
+        // One request is served, one waits for its turn without a thread, the next one is rejected.
+        assertEquals(1, bulkhead.getActiveThreads());
+        assertEquals(1, bulkhead.getQueueDepth());
+        assertFalse(bulkhead.admit());
+        assertTrue(resumed.isEmpty());
+
+        bulkhead.exit();
+        assertEquals(Collections.singletonList("waiting"), resumed);
+        assertFalse(bulkhead.cancel(resume));
+        assertEquals(1, bulkhead.getActiveThreads());
+        assertEquals(0, bulkhead.getQueueDepth());
+        bulkhead.exit();
+        assertEquals(1, bulkhead.getRejectedCount());
+        assertEquals(2, bulkhead.getCompletedCount());
+        assertEquals(0, bulkhead.getActiveThreads());
+    }
+
+    @Test
+    public void testCancel() {
+        Bulkhead bulkhead = new Bulkhead("test", new BulkheadProperties(1, 1), false);
+        assertTrue(bulkhead.admit());
+        assertTrue(bulkhead.tryStart());
+        List<String> resumed = new ArrayList<>();
+        Runnable resume = () -> resumed.add("waiting");
+        assertTrue(bulkhead.admit());
+        bulkhead.await(resume);
+
+        // A request that timed out waiting gives up its place, and is not resumed.
+        assertTrue(bulkhead.cancel(resume));
+        assertEquals(0, bulkhead.getQueueDepth());
+        assertTrue(bulkhead.admit());
+        bulkhead.exit();
+        assertTrue(resumed.isEmpty());
+        assertTrue(bulkhead.tryStart());
+        bulkhead.exit();
+        assertEquals(0, bulkhead.getActiveThreads());
+        assertEquals(0, bulkhead.getQueueDepth());
+    }
+
+    @Test
+    public void testVirtualThreads() throws Exception {
+        // Falls back to a thread pool on the JDKs without virtual threads.
+        Bulkhead bulkhead = new Bulkhead("test", new BulkheadProperties(1, 1), true);
+        DeferredResult<String> result = bulkhead.submit(() -> "served", () -> "rejected");
+        for (int i = 0; i < 100 && !result.hasResult(); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals("served", result.getResult());
+    }
+}
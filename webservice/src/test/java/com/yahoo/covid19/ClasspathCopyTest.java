@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+public class ClasspathCopyTest {
+    private static final String RESOURCE = "/application.yaml";
+    private static final long OLD = 1000000000000L;
+
+    @TempDir
+    File directory;
+
+    @Test
+    public void testCopy() throws Exception {
+        byte[] expected = Files.readAllBytes(Paths.get(getClass().getResource(RESOURCE).toURI()));
+        File destination = new File(directory, "application.yaml");
+
+        assertEquals(destination, ClasspathCopy.copy(RESOURCE, destination, true));
+        assertArrayEquals(expected, Files.readAllBytes(destination.toPath()));
+        assertEquals(Collections.singleton(PosixFilePermission.OWNER_READ),
+                Files.getPosixFilePermissions(destination.toPath()));
+
+        // A copy with the checksum of the resource is reused.
+        destination.setLastModified(OLD);
+        ClasspathCopy.copy(RESOURCE, destination, true);
+        assertEquals(OLD, destination.lastModified());
+
+        // Unless told otherwise.
+        ClasspathCopy.copy(RESOURCE, destination, false);
+        assertFalse(destination.lastModified() == OLD);
+
+        // A copy of the same size but another content is replaced.
+        destination.setWritable(true);
+        byte[] other = expected.clone();
+        other[0] += 1;
+        Files.write(destination.toPath(), other);
+        destination.setLastModified(OLD);
+        ClasspathCopy.copy(RESOURCE, destination, true);
+        assertArrayEquals(expected, Files.readAllBytes(destination.toPath()));
+
+        // A copy writable by others is replaced.
+        Files.setPosixFilePermissions(destination.toPath(), EnumSet.of(PosixFilePermission.OWNER_READ,
+                PosixFilePermission.OTHERS_WRITE));
+        destination.setLastModified(OLD);
+        ClasspathCopy.copy(RESOURCE, destination, true);
+        assertFalse(destination.lastModified() == OLD);
+
+        // So is a copy in a directory writable by others.
+        Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(directory.toPath());
+        Files.setPosixFilePermissions(directory.toPath(), EnumSet.of(PosixFilePermission.OWNER_READ,
+                PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_EXECUTE, PosixFilePermission.GROUP_WRITE));
+        destination.setLastModified(OLD);
+        ClasspathCopy.copy(RESOURCE, destination, true);
+        assertFalse(destination.lastModified() == OLD);
+        Files.setPosixFilePermissions(directory.toPath(), permissions);
+
+        assertNull(ClasspathCopy.copy("/missing.yaml", new File(directory, "missing.yaml"), true));
+    }
+
+    @Test
+    public void testPrivateDirectory() throws Exception {
+        // The default directory, java.io.tmpdir, is writable by others: copies are reused from a directory under it.
+        Files.setPosixFilePermissions(directory.toPath(), EnumSet.allOf(PosixFilePermission.class));
+        File copies = new File(directory, "copies");
+
+        assertEquals(copies, ClasspathCopy.privateDirectory(copies));
+        assertTrue(copies.isDirectory());
+        assertEquals(EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE,
+                PosixFilePermission.OWNER_EXECUTE), Files.getPosixFilePermissions(copies.toPath()));
+
+        File destination = new File(copies, "application.yaml");
+        ClasspathCopy.copy(RESOURCE, destination, true);
+        destination.setLastModified(OLD);
+        ClasspathCopy.copy(RESOURCE, destination, true);
+        assertEquals(OLD, destination.lastModified());
+
+        // An existing directory is kept as is.
+        assertEquals(copies, ClasspathCopy.privateDirectory(copies));
+        assertTrue(destination.isFile());
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class ConcurrencyLimiterTest {
+    private static final long MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static ConcurrencyLimiter limiter(int initialLimit) {
+        LimiterProperties properties = new LimiterProperties();
+        properties.setInitialLimit(initialLimit);
+        properties.setMinLimit(4);
+        properties.setMaxLimit(100);
+        return new ConcurrencyLimiter(properties);
+    }
+
+    /**
+     * Serves as many requests as the limit allows, all with the same latency.
+     */
+    private static void serve(ConcurrencyLimiter limiter, long latency) {
+        int acquired = 0;
+        while (limiter.tryAcquire()) {
+            acquired += 1;
+        }
+        for (int i = 0; i < acquired; i++) {
+            limiter.onSuccess(latency);
+        }
+    }
+
+    @Test
+    public void testShed() {
+        ConcurrencyLimiter limiter = limiter(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        assertFalse(limiter.tryAcquire());
+        assertEquals(4, limiter.getInFlight());
+        assertEquals(4, limiter.getAcceptedCount());
+        assertEquals(1, limiter.getShedCount());
+
+        limiter.onIgnore();
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    public void testGradient() {
+        ConcurrencyLimiter limiter = limiter(10);
+        for (int i = 0; i < 20; i++) {
+            serve(limiter, 10 * MILLISECOND);
+        }
+        // Grows while the latency holds, up to the maximum.
+        int grown = limiter.getLimit();
+        assertTrue(grown > 10, "limit " + grown);
+        for (int i = 0; i < 100; i++) {
+            serve(limiter, 10 * MILLISECOND);
+        }
+        assertEquals(100, limiter.getLimit());
+
+        // Shrinks when the latency rises well beyond the tolerance.
+        for (int i = 0; i < 5; i++) {
+            serve(limiter, 100 * MILLISECOND);
+        }
+        assertTrue(limiter.getLimit() < 50, "limit " + limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testUnusedLimit() {
+        ConcurrencyLimiter limiter = limiter(10);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.onSuccess(MILLISECOND);
+        }
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    public void testBackoff() {
+        ConcurrencyLimiter limiter = limiter(10);
+        assertTrue(limiter.tryAcquire());
+        limiter.onDropped();
+        assertEquals(9, limiter.getLimit());
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.onDropped();
+        }
+        assertEquals(4, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19;
+
+import static com.yahoo.covid19.database.DBUtils.DB_FILE_NAME;
+import static com.yahoo.covid19.database.DBUtils.SERIES_FILE_NAME;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class DatabaseReloaderTest {
+    private File dropDirectory;
+    private File databaseDirectory;
+    private final List<File> loaded = new ArrayList<>();
+    private DatabaseReloader reloader;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        dropDirectory = Files.createTempDirectory("drop").toFile();
+        databaseDirectory = Files.createTempDirectory("database").toFile();
+        DatabaseReloadProperties properties = new DatabaseReloadProperties();
+        properties.setDirectory(dropDirectory.getPath());
+        reloader = new DatabaseReloader(properties, databaseDirectory, directory -> {
+            if (new File(directory, DB_FILE_NAME).length() == 0) {
+                throw new IllegalStateException("Empty database");
+            }
+            loaded.add(directory);
+            return true;
+        });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        FileUtils.deleteQuietly(dropDirectory);
+        FileUtils.deleteQuietly(databaseDirectory);
+    }
+
+    private void drop(String name, String content) throws Exception {
+        FileUtils.writeStringToFile(new File(dropDirectory, name), content, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testReload() throws Exception {
+        assertFalse(reloader.poll());
+
+        drop(DB_FILE_NAME, "database");
+        drop(SERIES_FILE_NAME, "series");
+        // The files must not change between two polls.
+        assertFalse(reloader.poll());
+        drop(SERIES_FILE_NAME, "series, complete");
+        assertFalse(reloader.poll());
+        assertTrue(reloader.poll());
+
+        assertEquals(1, loaded.size());
+        File generation = loaded.get(0);
+        assertEquals(databaseDirectory, generation.getParentFile());
+        assertEquals("series, complete", FileUtils.readFileToString(new File(generation, SERIES_FILE_NAME),
+                StandardCharsets.UTF_8));
+        assertEquals(Collections.singleton(PosixFilePermission.OWNER_READ),
+                Files.getPosixFilePermissions(new File(generation, DB_FILE_NAME).toPath()));
+        assertEquals(0, dropDirectory.list().length);
+        assertFalse(reloader.poll());
+    }
+
+    @Test
+    public void testRejected() throws Exception {
+        drop(DB_FILE_NAME, "");
+        assertFalse(reloader.poll());
+        assertFalse(reloader.poll());
+
+        assertTrue(loaded.isEmpty());
+        assertEquals(0, dropDirectory.list().length);
+        assertEquals(0, databaseDirectory.list().length);
+    }
+
+    @Test
+    public void testCleanup() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            drop(DB_FILE_NAME, "database " + i);
+            reloader.poll();
+            assertTrue(reloader.poll());
+        }
+        // A database is kept until it is closed, however long it drains.
+        assertEquals(3, databaseDirectory.list().length);
+        reloader.delete(loaded.get(0));
+        assertFalse(loaded.get(0).exists());
+        assertTrue(loaded.get(1).exists());
+        assertTrue(loaded.get(2).exists());
+
+        // Only the directories of the dropped databases are deleted.
+        reloader.delete(databaseDirectory);
+        assertTrue(databaseDirectory.exists());
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19;
+
+import static com.yahoo.covid19.database.DBUtils.DB_NAME;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+
+public class DatabaseStorageTest {
+    private File directory;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        directory = Files.createTempDirectory("storage").toFile();
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:" + new File(directory, DB_NAME))) {
+            connection.createStatement().execute("CREATE TABLE places (id VARCHAR(32));");
+            connection.createStatement().execute("INSERT INTO places VALUES ('Earth');");
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        FileUtils.deleteQuietly(directory);
+    }
+
+    private static String read(String url) throws Exception {
+        try (Connection connection = DriverManager.getConnection(url);
+             ResultSet resultSet = connection.createStatement().executeQuery("SELECT id FROM places;")) {
+            assertTrue(resultSet.next());
+            return resultSet.getString(1);
+        }
+    }
+
+    @Test
+    public void testJdbcUrl() {
+        DatabaseProperties properties = new DatabaseProperties();
+        assertEquals("jdbc:h2:" + directory + File.separator + DB_NAME + ";ACCESS_MODE_DATA=r",
+                EntityManagerSupplier.jdbcUrl(directory, properties));
+
+        properties.setStorage(DatabaseStorage.NIO_MAPPED);
+        properties.setCacheSize(65536);
+        assertEquals("jdbc:h2:nioMapped:" + directory + File.separator + DB_NAME + ";ACCESS_MODE_DATA=r;CACHE_SIZE=65536",
+                EntityManagerSupplier.jdbcUrl(directory, properties));
+    }
+
+    @Test
+    public void testStorage() throws Exception {
+        for (DatabaseStorage storage : DatabaseStorage.values()) {
+            DatabaseProperties properties = new DatabaseProperties();
+            properties.setStorage(storage);
+            storage.load(directory, true);
+            assertEquals("Earth", read(EntityManagerSupplier.jdbcUrl(directory, properties)), storage.name());
+            storage.release(directory);
+        }
+    }
+
+    @Test
+    public void testMemoryRelease() throws Exception {
+        DatabaseProperties properties = new DatabaseProperties();
+        properties.setStorage(DatabaseStorage.MEMORY);
+        DatabaseStorage.MEMORY.load(directory, false);
+        // The copy is read, not the file.
+        FileUtils.deleteQuietly(directory);
+        assertEquals("Earth", read(EntityManagerSupplier.jdbcUrl(directory, properties)));
+
+        DatabaseStorage.MEMORY.release(directory);
+        assertFalse(org.h2.store.fs.FileUtils.exists(DatabaseStorage.MEMORY.path(directory) + ".mv.db"));
+    }
+}
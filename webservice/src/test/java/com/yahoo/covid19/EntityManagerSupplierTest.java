@@ -0,0 +1,209 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.TypedQuery;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class EntityManagerSupplierTest {
+
+    /**
+     * An entity manager factory of a database published at a given date.
+     */
+    private static class Database {
+        private final Date publishedDate;
+        private boolean unreadable = false;
+        private boolean closed = false;
+        private int entityManagers = 0;
+
+        Database(Date publishedDate) {
+            this.publishedDate = publishedDate;
+        }
+
+        EntityManagerFactory factory() {
+            return proxy(EntityManagerFactory.class, (method, args) -> {
+                switch (method) {
+                    case "createEntityManager":
+                        assertFalse(closed);
+                        if (unreadable) {
+                            throw new IllegalStateException("Unreadable database");
+                        }
+                        entityManagers += 1;
+                        return entityManager();
+                    case "close":
+                        closed = true;
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method);
+                }
+            });
+        }
+
+        private EntityManager entityManager() {
+            TypedQuery<Date> query = proxy(TypedQuery.class, (method, args) -> publishedDate == null
+                    ? Collections.emptyList() : Collections.singletonList(publishedDate));
+            return proxy(EntityManager.class, (method, args) -> {
+                switch (method) {
+                    case "createQuery":
+                        return query;
+                    case "close":
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method);
+                }
+            });
+        }
+    }
+
+    private interface Handler {
+        Object invoke(String method, Object[] args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<?> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+                (proxy, method, args) -> handler.invoke(method.getName(), args));
+    }
+
+    private final Map<File, Database> databases = new HashMap<>();
+
+    private EntityManagerSupplier supplier(File directory, Database database) {
+        databases.put(directory, database);
+        return new EntityManagerSupplier(directory, dir -> databases.get(dir).factory());
+    }
+
+    @Test
+    public void testSwap() {
+        Database first = new Database(new Date(1000));
+        Database second = new Database(new Date(2000));
+        EntityManagerSupplier supplier = supplier(new File("first"), first);
+        List<File> prepared = new ArrayList<>();
+        List<String> published = new ArrayList<>();
+        supplier.addSwapListener(directory -> {
+            // The previous database is served until everything is prepared.
+            assertEquals("1000", supplier.getDataVersion());
+            prepared.add(directory);
+            return () -> published.add(supplier.getDataVersion());
+        });
+
+        List<File> closed = new ArrayList<>();
+        supplier.addCloseListener(closed::add);
+
+        EntityManager inFlight = supplier.get();
+        databases.put(new File("second"), second);
+        assertTrue(supplier.swap(new File("second"), 60));
+        assertEquals(Collections.singletonList(new File("second")), prepared);
+        assertEquals(Collections.singletonList("2000"), published);
+        assertEquals("2000", supplier.getDataVersion());
+        assertEquals(new File("second"), supplier.getDirectory());
+
+        // New entity managers come from the new database, the previous one waits for the open ones.
+        supplier.get().close();
+        assertEquals(2, second.entityManagers);
+        assertFalse(first.closed);
+        assertTrue(closed.isEmpty());
+        inFlight.close();
+        assertTrue(first.closed);
+        assertEquals(Collections.singletonList(new File("first")), closed);
+        inFlight.close();
+        assertFalse(second.closed);
+    }
+
+    @Test
+    public void testUnreadableSwap() {
+        Database first = new Database(new Date(1000));
+        Database unreadable = new Database(new Date(2000));
+        unreadable.unreadable = true;
+        databases.put(new File("first"), first);
+        databases.put(new File("unreadable"), unreadable);
+        List<File> released = new ArrayList<>();
+        EntityManagerSupplier supplier = new EntityManagerSupplier(new File("first"),
+                dir -> databases.get(dir).factory(), released::add);
+
+        // The storage of a database that cannot be read is released along with it.
+        assertThrows(IllegalStateException.class, () -> supplier.swap(new File("unreadable"), 60));
+        assertTrue(unreadable.closed);
+        assertEquals(Collections.singletonList(new File("unreadable")), released);
+        assertEquals("1000", supplier.getDataVersion());
+    }
+
+    @Test
+    public void testSameData() {
+        Database first = new Database(new Date(1000));
+        Database copy = new Database(new Date(1000));
+        EntityManagerSupplier supplier = supplier(new File("first"), first);
+        databases.put(new File("copy"), copy);
+
+        assertFalse(supplier.swap(new File("copy"), 60));
+        assertTrue(copy.closed);
+        assertFalse(first.closed);
+        assertEquals(new File("first"), supplier.getDirectory());
+    }
+
+    @Test
+    public void testRejectedSwap() {
+        Database first = new Database(null);
+        Database second = new Database(new Date(2000));
+        EntityManagerSupplier supplier = supplier(new File("first"), first);
+        assertNull(supplier.getPublishedDate());
+        assertEquals("", supplier.getDataVersion());
+        List<String> events = new ArrayList<>();
+        supplier.addSwapListener(directory -> new EntityManagerSupplier.PreparedSwap() {
+            @Override
+            public void publish() {
+                events.add("published");
+            }
+
+            @Override
+            public void discard() {
+                events.add("discarded");
+            }
+        });
+        supplier.addSwapListener(directory -> {
+            throw new IllegalStateException("Invalid series file");
+        });
+
+        databases.put(new File("second"), second);
+        assertThrows(IllegalStateException.class, () -> supplier.swap(new File("second"), 60));
+        assertTrue(second.closed);
+        assertFalse(first.closed);
+        assertEquals("", supplier.getDataVersion());
+        // What the first listener prepared is released, and never served.
+        assertEquals(Collections.singletonList("discarded"), events);
+    }
+
+    @Test
+    public void testDrainTimeout() throws Exception {
+        Database first = new Database(new Date(1000));
+        EntityManagerSupplier supplier = supplier(new File("first"), first);
+        supplier.get();
+
+        databases.put(new File("second"), new Database(new Date(2000)));
+        supplier.swap(new File("second"), 0);
+        for (int i = 0; i < 100 && !first.closed; i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(first.closed);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19;
+
+import static com.jayway.restassured.RestAssured.when;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.yahoo.elide.core.HttpStatus;
+
+import com.jayway.restassured.path.json.JsonPath;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TemporalType;
+
+/**
+ * Runs the API tests against the in-memory data store, and compares the filters, sorts and pages it computes
+ * with the same queries run by Hibernate on the database it was loaded from.
+ */
+@TestPropertySource(properties = "database.inMemory=true")
+public class InMemoryApiTest extends ApiTest {
+
+    @Autowired
+    private EntityManagerSupplier entityManagers;
+
+    private JsonPath get(String uri) {
+        return when()
+                .get(uri)
+                .then()
+                .statusCode(HttpStatus.SC_OK)
+                .extract().jsonPath();
+    }
+
+    @Test
+    void testAncestorsTotalMatchesDatabase() {
+        long total = get("/api/json/v1/healthRecords?fields[healthRecords]=label"
+                + "&filter=place.ancestors.id=='United_States';referenceDate=='2020-05-01T00:00Z'&page[totals]")
+                .getLong("meta.page.totalRecords");
+
+        EntityManager entityManager = entityManagers.get();
+        try {
+            long expected = entityManager.createQuery("SELECT COUNT(DISTINCT r) FROM HealthRecords r"
+                    + " JOIN r.place p JOIN p.ancestors a WHERE a.id = :id AND r.referenceDate = :date", Long.class)
+                    .setParameter("id", "United_States")
+                    .setParameter("date", Date.from(Instant.parse("2020-05-01T00:00:00Z")), TemporalType.TIMESTAMP)
+                    .getSingleResult();
+            assertTrue(expected > 0);
+            assertEquals(expected, total);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    @Test
+    void testSortedPageMatchesDatabase() {
+        List<String> ids = get("/api/json/v1/places?fields[places]=label"
+                + "&filter=parents.id=='United_States'&sort=-population&page[size]=5&page[number]=2")
+                .getList("data.id", String.class);
+
+        EntityManager entityManager = entityManagers.get();
+        try {
+            List<String> expected = entityManager.createQuery("SELECT p.id FROM Place p JOIN p.parents parent"
+                    + " WHERE parent.id = :id ORDER BY p.population DESC", String.class)
+                    .setParameter("id", "United_States")
+                    .setFirstResult(5)
+                    .setMaxResults(5)
+                    .getResultList();
+            assertEquals(5, expected.size());
+            assertEquals(expected, ids);
+        } finally {
+            entityManager.close();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+package com.yahoo.covid19;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.yahoo.covid19.filters.URIQueryValidator;
+
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import javax.persistence.TypedQuery;
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.lang.reflect.Proxy;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+public class WarmupTest {
+    private static final List<String> TEMPLATES = Arrays.asList(
+            "/api/json/v1/metadata?{{PAGINATION}}",
+            "/api/json/v1/healthRecords?fields[healthRecords]={{FIELD_ATTRIBUTES}}&filter=placeId=={{TYPE_AHEAD_CHARACTERS}};referenceDate=ge={{DATE}}{{PAGINATION}}",
+            "/api/json/v1/latestHealthRecords?fields[latestHealthRecords]={{FIELD_ATTRIBUTES}}place&fields[places]={{FIELD_ATTRIBUTES}}parents&filter=place.parents.parents.id=={{TYPE_AHEAD_CHARACTERS}}&include=place{{PAGINATION}}",
+            "/api/json/v1/places?fields[places]={{FIELD_ATTRIBUTES}}parents&filter=id=={{TYPE_AHEAD_CHARACTERS}}{{PAGINATION}}");
+
+    private static WarmupProperties properties() {
+        WarmupProperties properties = new WarmupProperties();
+        properties.setEnabled(true);
+        properties.setLatencyTarget(Long.MAX_VALUE);
+        properties.setMaxDuration(0);
+        return properties;
+    }
+
+    /**
+     * @return Entity managers of a database with a single place, and no health records.
+     */
+    private static Supplier<EntityManager> database() {
+        TypedQuery<?> query = (TypedQuery<?>) Proxy.newProxyInstance(TypedQuery.class.getClassLoader(),
+                new Class<?>[] {TypedQuery.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getResultList":
+                            return Collections.singletonList("United_States");
+                        case "getSingleResult":
+                            return null;
+                        default:
+                            return proxy;
+                    }
+                });
+        return () -> (EntityManager) Proxy.newProxyInstance(EntityManager.class.getClassLoader(),
+                new Class<?>[] {EntityManager.class},
+                (proxy, method, args) -> method.getName().equals("createQuery") ? query : null);
+    }
+
+    @Test
+    public void testRun() {
+        Warmup warmup = new Warmup(properties(), TEMPLATES, database());
+        assertFalse(warmup.isReady());
+        warmup.run(uri -> 200);
+        assertTrue(warmup.isReady(), warmup.getStatus());
+    }
+
+    @Test
+    public void testRunWithErrors() {
+        // A round with too many errors does not make the service ready, even past the maximum duration.
+        Warmup warmup = new Warmup(properties(), TEMPLATES, database());
+        warmup.run(uri -> 500);
+        assertFalse(warmup.isReady());
+        assertTrue(warmup.getStatus().startsWith("Not ready"), warmup.getStatus());
+
+        // A few errors are tolerated.
+        WarmupProperties properties = properties();
+        properties.setMaxErrorRate(0.5);
+        warmup = new Warmup(properties, TEMPLATES, database());
+        AtomicInteger requests = new AtomicInteger();
+        warmup.run(uri -> requests.incrementAndGet() == 1 ? 500 : 200);
+        assertTrue(warmup.isReady(), warmup.getStatus());
+    }
+
+    @Test
+    public void testRunWithoutDatabase() {
+        Warmup warmup = new Warmup(properties(), TEMPLATES, () -> {
+            throw new PersistenceException("No database");
+        });
+        warmup.run(uri -> 200);
+        assertFalse(warmup.isReady());
+        assertEquals("Not ready, warmup failed: No database", warmup.getStatus());
+    }
+
+    @Test
+    public void testExpand() throws Exception {
+        URIQueryValidator validator = new URIQueryValidator(TEMPLATES);
+        for (String template : TEMPLATES) {
+            String uri = Warmup.expand(template, "United_States", "2020-04-17T00:00Z");
+            // Matched the way the controller does, on the decoded query.
+            assertTrue(validator.validate(URLDecoder.decode(uri, StandardCharsets.UTF_8.name())), uri);
+        }
+
+        assertEquals("/api/json/v1/places?fields%5Bplaces%5D=label%2Cparents&filter=id%3D%3D%27United_States%27",
+                Warmup.expand(TEMPLATES.get(3), "United_States", "2020-04-17T00:00Z"));
+        assertEquals("/api/json/v1/healthRecords?fields%5BhealthRecords%5D=label"
+                        + "&filter=placeId%3D%3D%27Earth%27%3BreferenceDate%3Dge%3D%272020-04-17T00%3A00Z%27",
+                Warmup.expand(TEMPLATES.get(1), "Earth", "2020-04-17T00:00Z"));
+        assertNull(Warmup.expand("/api/json/v1/metadata?fields[metadata]={{\\w{6}}}", "Earth", "2020-04-17T00:00Z"));
+    }
+
+    @Test
+    public void testSampleAccessLog() throws Exception {
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            log.append("10.0.0.1 - - [24/Apr/2020:10:00:00 +0000] \"GET /api/json/v1/places?page%5Bnumber%5D=")
+                    .append(i).append(" HTTP/1.1\" 200 512\n");
+            log.append("10.0.0.1 - - [24/Apr/2020:10:00:00 +0000] \"GET /index.html HTTP/1.1\" 200 512\n");
+        }
+        List<String> sample = Warmup.sampleAccessLog(new BufferedReader(new StringReader(log.toString())), 10);
+        assertEquals(10, sample.size());
+        sample.forEach(uri -> assertTrue(uri.startsWith("/api/json/v1/places?page%5Bnumber%5D="), uri));
+
+        assertEquals(100, Warmup.sampleAccessLog(new BufferedReader(new StringReader(log.toString())), 500).size());
+    }
+
+    @Test
+    public void testPercentile() {
+        long[] latencies = new long[200];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = latencies.length - i;
+        }
+        assertEquals(198, Warmup.percentile(latencies, 99));
+        assertEquals(100, Warmup.percentile(latencies, 50));
+        assertEquals(7, Warmup.percentile(new long[] {7}, 99));
+    }
+}
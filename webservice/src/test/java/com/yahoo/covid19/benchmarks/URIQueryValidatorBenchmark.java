@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19.benchmarks;
+
+import com.yahoo.covid19.filters.URIQueryValidator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validates the URIs of URIQueryValidatorTest against its rules: {@code regex} matches every rule with
+ * {@code String.matches} the way the validator used to, {@code compiled} tries the precompiled candidate rules of
+ * the path, and {@code cached} also goes through the decision cache. Each invocation validates all the URIs.
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main URIQueryValidatorBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class URIQueryValidatorBenchmark {
+    private static final List<String> RULES = Arrays.asList(
+            "/api/json/v1/healthRecords?filter=referenceDate=={{DATE}}",
+            "/api/json/v1/healthRecords?filter=referenceDate=in=({{DATE_LIST}})&includes=place",
+            "/api/json/v1/places?filter=label=={{TYPE_AHEAD_CHARACTERS}}",
+            "/api/json/v1/places?filter=label1=={{TYPE_AHEAD_CHARACTERS}};id=={{ALPHA_NUMERIC}}",
+            "/api/json/v1/metadata?fields[metadata]={{ALPHA_NUMERIC}},{{ALPHA_NUMERIC}}",
+            "/api/json/v1/places",
+            "/api/json/v1/places?filter=wikiId=={{TYPE_AHEAD_CHARACTERS}}{{PAGINATION}}",
+            "/api/json/v1/places?{{PAGINATION}}",
+            "/api/json/v1/places?fields[places]={{FIELD_ATTRIBUTES}}{{PAGINATION}}");
+
+    private static final String[] URIS = {
+            "/api/json/v1/healthRecords?filter=referenceDate=='2020-04-03T00:00Z'",
+            "/api/json/v1/healthRecords?filter=referenceDate==2020-04-03T00:00Z",
+            "/api/json/v1/healthRecords?filter=referenceDate=='2020-4-3T00:00Z'",
+            "/api/json/v1/healthRecords?filter=referenceDate=='2020-04-03T00:00'",
+            "/api/json/v1/latestHealthRecords?filter=referenceDate=='2020-04-03T00:00'",
+            "/api/json/v1/healthRecords?filter=referenceDate=in=('2020-04-03T00:00Z','2020-04-05T00:00Z')&includes=place",
+            "/api/json/v1/healthRecords?filter=referenceDate=in=('2020-04-03T00:00Z','2020-04-05T00:00Z')",
+            "/api/json/v1/state?filter=referenceDate=in=('2020-04-03T00:00Z','2020-04-05T00:00Z')&includes=place",
+            "/api/json/v1/places?filter=label=='*In*'",
+            "/api/json/v1/places?filter=label=='wo\u0005rd'",
+            "/api/json/v1/places",
+            "/api/json/v1/places?filter=id==123",
+            "/api/json/v1/places?filter=wikiId=='New_York\\,_(state)'&page[offset]=32",
+            "/api/json/v1/places?filter=wikiId=='こんにちは'&page[offset]=32",
+            "/api/json/v1/places?page[number]=30&page[offset]=02",
+            "/api/json/v1/places?page[size]=ten",
+            "/api/json/v1/places?fields[places]=id,label,numCases,wikiId&page[limit]=20",
+            "/api/json/v1/places?fields[places]=id,wikiId,children&page[limit]=20",
+            "/api/json/v1/places?filter=label1=='Prince_George\\';s_C'o'unty';id=='op'';id=='id13ds'",
+            "/api/json/v1/places?filter=label1=='Prince_George'p;';;id=='id13ds'"
+    };
+
+    private List<String> regexRules;
+    private URIQueryValidator compiled;
+    private URIQueryValidator cached;
+
+    @Setup
+    public void setup() {
+        compiled = new URIQueryValidator(RULES, 0);
+        cached = new URIQueryValidator(RULES);
+        regexRules = compiled.getRegexRules();
+    }
+
+    @Benchmark
+    public void regex(Blackhole blackhole) {
+        for (String uri : URIS) {
+            blackhole.consume(regexRules.stream().anyMatch(uri::matches));
+        }
+    }
+
+    @Benchmark
+    public void compiled(Blackhole blackhole) {
+        for (String uri : URIS) {
+            blackhole.consume(compiled.validate(uri));
+        }
+    }
+
+    @Benchmark
+    public void cached(Blackhole blackhole) {
+        for (String uri : URIS) {
+            blackhole.consume(cached.validate(uri));
+        }
+    }
+}
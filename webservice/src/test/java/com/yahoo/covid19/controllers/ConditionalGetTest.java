@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19.controllers;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ConditionalGetTest {
+    private static final Date PUBLISHED = new Date(1600000000123L);
+
+    private final ConditionalGet conditionalGet = new ConditionalGet(() -> PUBLISHED);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private static MockHttpServletRequest request(String filter) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/json/v1/healthRecords");
+        request.addParameter("filter", filter);
+        return request;
+    }
+
+    private ResponseEntity<?> get(MockHttpServletRequest request, HttpStatus status) throws Exception {
+        return conditionalGet.get(request, () -> {
+            loads.incrementAndGet();
+            return ResponseEntity.status(status).body("body");
+        });
+    }
+
+    @Test
+    public void testETag() throws Exception {
+        ResponseEntity<?> response = get(request("placeId=='Earth'"), HttpStatus.OK);
+        String etag = response.getHeaders().getETag();
+
+        assertEquals(1, loads.get());
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("body", response.getBody());
+        assertEquals(34, etag.length());
+        assertEquals(1600000000000L, response.getHeaders().getLastModified());
+
+        assertNotEquals(etag, get(request("placeId=='Mars'"), HttpStatus.OK).getHeaders().getETag());
+
+        MockHttpServletRequest gzip = request("placeId=='Earth'");
+        gzip.addHeader("Accept-Encoding", "gzip, deflate");
+        assertNotEquals(etag, get(gzip, HttpStatus.OK).getHeaders().getETag());
+
+        MockHttpServletRequest revalidation = request("placeId=='Earth'");
+        revalidation.addHeader("If-None-Match", "\"other\", W/" + etag);
+        loads.set(0);
+        ResponseEntity<?> notModified = get(revalidation, HttpStatus.OK);
+        assertEquals(0, loads.get());
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+        assertEquals(etag, notModified.getHeaders().getETag());
+        assertEquals("Accept-Encoding", notModified.getHeaders().getFirst("Vary"));
+
+        MockHttpServletRequest stale = request("placeId=='Earth'");
+        stale.addHeader("If-None-Match", "\"other\"");
+        // If-None-Match wins over If-Modified-Since.
+        stale.addHeader("If-Modified-Since", new Date(1600000001000L));
+        assertEquals(HttpStatus.OK, get(stale, HttpStatus.OK).getStatusCode());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testIfModifiedSince() throws Exception {
+        MockHttpServletRequest current = request("placeId=='Earth'");
+        current.addHeader("If-Modified-Since", new Date(1600000000000L));
+        assertEquals(HttpStatus.NOT_MODIFIED, get(current, HttpStatus.OK).getStatusCode());
+
+        MockHttpServletRequest older = request("placeId=='Earth'");
+        older.addHeader("If-Modified-Since", new Date(1599999999000L));
+        assertEquals(HttpStatus.OK, get(older, HttpStatus.OK).getStatusCode());
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        // Errors and shed requests get no validators, so they are not revalidated.
+        ResponseEntity<?> response = get(request("placeId=='Earth'"), HttpStatus.BAD_REQUEST);
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertNull(response.getHeaders().getETag());
+        assertEquals(-1, response.getHeaders().getLastModified());
+        assertNull(get(request("placeId=='Earth'"), HttpStatus.SERVICE_UNAVAILABLE).getHeaders().getETag());
+    }
+
+    @Test
+    public void testWithoutData() throws Exception {
+        MockHttpServletRequest request = request("placeId=='Earth'");
+        request.addHeader("If-None-Match", "*");
+        ResponseEntity<?> response = new ConditionalGet(() -> null).get(request,
+                () -> ResponseEntity.ok("body"));
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNull(response.getHeaders().getETag());
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19.controllers;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RequestCoalescerTest {
+    private static final int REQUESTS = 8;
+
+    private final RequestCoalescer coalescer = new RequestCoalescer(true, () -> "1");
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static MockHttpServletRequest request(String filter) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/json/v1/latestHealthRecords");
+        request.addParameter("filter", filter);
+        return request;
+    }
+
+    /**
+     * Executes the request on REQUESTS threads, with a loader that waits to be released.
+     */
+    private List<Future<ResponseEntity<String>>> submit(Callable<ResponseEntity<String>> loader) throws Exception {
+        List<Future<ResponseEntity<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            responses.add(executor.submit(() -> coalescer.execute(request("place.parents.id=='Earth'"), () -> {
+                loads.incrementAndGet();
+                release.await();
+                return loader.call();
+            })));
+        }
+        // Give the others time to join the first one.
+        while (coalescer.getInFlight() == 0) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        return responses;
+    }
+
+    @Test
+    public void testCoalesce() throws Exception {
+        ResponseEntity<String> expected = ResponseEntity.ok("{\"data\":[]}");
+        List<Future<ResponseEntity<String>>> responses = submit(() -> expected);
+        release.countDown();
+        for (Future<ResponseEntity<String>> response : responses) {
+            assertSame(expected, response.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, coalescer.getExecutedCount());
+        assertEquals(REQUESTS - 1, coalescer.getCoalescedCount());
+        assertEquals(0, coalescer.getInFlight());
+
+        // Requests that come after are executed again, and other requests are not coalesced.
+        coalescer.execute(request("place.parents.id=='Earth'"), () -> expected);
+        coalescer.execute(request("place.parents.id=='Europe'"), () -> expected);
+        assertEquals(3, coalescer.getExecutedCount());
+    }
+
+    @Test
+    public void testError() throws Exception {
+        List<Future<ResponseEntity<String>>> responses = submit(() -> {
+            throw new IllegalStateException("Database closed");
+        });
+        release.countDown();
+        for (Future<ResponseEntity<String>> response : responses) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> response.get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(1, loads.get());
+        assertEquals(0, coalescer.getInFlight());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch retry = new CountDownLatch(1);
+        List<Future<ResponseEntity<String>>> responses = submit(() -> {
+            if (executions.incrementAndGet() == 1) {
+                return ResponseEntity.status(HttpStatus.REQUEST_TIMEOUT).body("Request Timeout");
+            }
+            retry.await();
+            return ResponseEntity.ok("{\"data\":[]}");
+        });
+        release.countDown();
+        // The timeout of the first request is not shared, one of the others executes instead.
+        while (executions.get() < 2) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        retry.countDown();
+        int timedOut = 0;
+        for (Future<ResponseEntity<String>> response : responses) {
+            if (response.get(5, TimeUnit.SECONDS).getStatusCode() == HttpStatus.REQUEST_TIMEOUT) {
+                timedOut += 1;
+            }
+        }
+        assertEquals(1, timedOut);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        RequestCoalescer disabled = new RequestCoalescer(false, () -> "1");
+        disabled.execute(request("place.parents.id=='Earth'"), () -> ResponseEntity.ok("{}"));
+        assertEquals(0, disabled.getExecutedCount());
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19.controllers;
+
+import com.yahoo.covid19.Monitoring;
+import com.yahoo.covid19.ResponseCacheProperties;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ResponseCacheTest {
+    private final ResponseCacheProperties properties = new ResponseCacheProperties();
+    private final AtomicReference<String> version = new AtomicReference<>("1");
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    public void setup() {
+        properties.setEnabled(true);
+    }
+
+    private static MockHttpServletRequest request(String... parameters) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/json/v1/healthRecords");
+        for (int i = 0; i < parameters.length; i += 2) {
+            request.addParameter(parameters[i], parameters[i + 1]);
+        }
+        return request;
+    }
+
+    private ResponseEntity<?> get(ResponseCache cache, MockHttpServletRequest request, HttpStatus status,
+                                       String body) throws Exception {
+        return cache.get(request, () -> {
+            loads.incrementAndGet();
+            return ResponseEntity.status(status).body(body);
+        });
+    }
+
+    @Test
+    public void testHit() throws Exception {
+        ResponseCache cache = new ResponseCache(properties, version::get);
+        get(cache, request("filter", "placeId=='Earth'", "page[size]", "10"), HttpStatus.OK, "{\"data\":[]}");
+        ResponseEntity<?> response = get(cache, request("page[size]", "10", "filter", "placeId=='Earth'"),
+                HttpStatus.OK, "other");
+
+        assertEquals(1, loads.get());
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("{\"data\":[]}", response.getBody());
+        assertEquals(1, cache.getStats().hitCount());
+        assertEquals(1, cache.getStats().missCount());
+
+        // The statistics are exported through JMX once the cache is started.
+        try (Monitoring monitoring = new Monitoring()) {
+            cache.start(monitoring);
+        }
+        ObjectName objectName = new ObjectName("com.yahoo.covid19:type=ResponseCache");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        assertEquals(1L, server.getAttribute(objectName, "HitCount"));
+        assertEquals(1L, server.getAttribute(objectName, "MissCount"));
+        assertEquals(0L, server.getAttribute(objectName, "EvictionCount"));
+
+        // Client errors are cached too.
+        get(cache, request("filter", "unknown==1"), HttpStatus.BAD_REQUEST, "error");
+        assertEquals(HttpStatus.BAD_REQUEST,
+                get(cache, request("filter", "unknown==1"), HttpStatus.OK, "").getStatusCode());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testKeys() throws Exception {
+        ResponseCache cache = new ResponseCache(properties, version::get);
+        get(cache, request("filter", "a&b=c"), HttpStatus.OK, "1");
+        get(cache, request("filter", "a", "b", "c"), HttpStatus.OK, "2");
+        get(cache, request("filter", "a,b"), HttpStatus.OK, "3");
+        MockHttpServletRequest repeated = request("filter", "a");
+        repeated.addParameter("filter", "b");
+        get(cache, repeated, HttpStatus.OK, "4");
+        assertEquals(4, loads.get());
+
+        version.set("2");
+        assertEquals("5", get(cache, request("filter", "a&b=c"), HttpStatus.OK, "5").getBody());
+        assertEquals(5, loads.get());
+    }
+
+    @Test
+    public void testInvalidatedWhileLoading() throws Exception {
+        ResponseCache cache = new ResponseCache(properties, version::get);
+        // The database is swapped while the response is read from the previous one.
+        cache.get(request("filter", "a"), () -> {
+            loads.incrementAndGet();
+            cache.invalidateAll();
+            return ResponseEntity.ok("previous");
+        });
+        assertEquals("current", get(cache, request("filter", "a"), HttpStatus.OK, "current").getBody());
+        assertEquals("current", get(cache, request("filter", "a"), HttpStatus.OK, "other").getBody());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testNotCached() throws Exception {
+        properties.setMaxEntrySize(1);
+        ResponseCache cache = new ResponseCache(properties, version::get);
+        for (int i = 0; i < 2; i++) {
+            get(cache, request("filter", "a"), HttpStatus.INTERNAL_SERVER_ERROR, "error");
+            get(cache, request("filter", "b"), HttpStatus.REQUEST_TIMEOUT, "timeout");
+            get(cache, request("filter", "c"), HttpStatus.OK, new String(new char[1024]));
+        }
+        assertEquals(6, loads.get());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        properties.setMaxSize(1);
+        properties.setMaxEntrySize(256);
+        ResponseCache cache = new ResponseCache(properties, version::get);
+        String body = new String(new char[50 * 1024]);
+        for (int i = 0; i < 40; i++) {
+            get(cache, request("page[number]", String.valueOf(i)), HttpStatus.OK, body);
+        }
+        // 40 entries of 100 KB do not fit in 1 MB.
+        assertTrue(cache.getStats().evictionCount() >= 30);
+    }
+
+    @Test
+    public void testGzip() throws Exception {
+        ResponseCache cache = new ResponseCache(properties, version::get);
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            body.append("{\"type\":\"healthRecords\",\"id\":\"").append(i).append("\"},");
+        }
+        MockHttpServletRequest plain = request("filter", "a");
+        MockHttpServletRequest gzip = request("filter", "a");
+        gzip.addHeader("Accept-Encoding", "deflate, gzip;q=0.5");
+
+        assertEquals(body.toString(), get(cache, plain, HttpStatus.OK, body.toString()).getBody());
+        ResponseEntity<?> response = get(cache, gzip, HttpStatus.OK, "");
+        assertEquals(1, loads.get());
+        assertEquals("gzip", response.getHeaders().getFirst("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.getHeaders().getFirst("Vary"));
+        byte[] compressed = (byte[]) response.getBody();
+        assertTrue(compressed.length < body.length() / 4);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            assertEquals(body.toString(), new String(IOUtils.toByteArray(in), StandardCharsets.UTF_8));
+        }
+
+        ResponseEntity<?> identity = get(cache, plain, HttpStatus.OK, "");
+        assertEquals(body.toString(), identity.getBody());
+        assertNull(identity.getHeaders().getFirst("Content-Encoding"));
+        assertEquals("Accept-Encoding", identity.getHeaders().getFirst("Vary"));
+
+        // Refused gzip and small bodies stay plain.
+        MockHttpServletRequest refused = request("filter", "a");
+        refused.addHeader("Accept-Encoding", "gzip;q=0, *");
+        assertEquals(body.toString(), get(cache, refused, HttpStatus.OK, "").getBody());
+        MockHttpServletRequest small = request("filter", "b");
+        small.addHeader("Accept-Encoding", "gzip");
+        assertEquals("{}", get(cache, small, HttpStatus.OK, "{}").getBody());
+        assertEquals("{}", get(cache, small, HttpStatus.OK, "").getBody());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        properties.setEnabled(false);
+        ResponseCache cache = new ResponseCache(properties, version::get);
+        get(cache, request(), HttpStatus.OK, "");
+        get(cache, request(), HttpStatus.OK, "");
+        assertEquals(2, loads.get());
+        assertNull(cache.getStats());
+    }
+}
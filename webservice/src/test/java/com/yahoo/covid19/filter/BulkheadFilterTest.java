@@ -0,0 +1,99 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19.filter;
+
+import com.yahoo.covid19.BulkheadProperties;
+import com.yahoo.covid19.Bulkheads;
+import com.yahoo.covid19.ExecutorsProperties;
+import com.yahoo.covid19.filters.BulkheadFilter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BulkheadFilterTest {
+    private final Bulkheads bulkheads;
+    private final BulkheadFilter filter;
+
+    public BulkheadFilterTest() {
+        ExecutorsProperties properties = new ExecutorsProperties();
+        properties.setGraphql(new BulkheadProperties(1, 1));
+        bulkheads = new Bulkheads(properties);
+        filter = new BulkheadFilter("/api/json/v1", "/api/graphql/v1", bulkheads, 1000);
+    }
+
+    private static MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/graphql/v1");
+        request.setAsyncSupported(true);
+        return request;
+    }
+
+    @Test
+    public void testWaitWithoutThread() throws Exception {
+        // The first request is served, and holds the only turn until it is done.
+        MockHttpServletRequest served = request();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(served, response, (request, resp) -> {
+            assertEquals(1, bulkheads.getGraphql().getActiveThreads());
+
+            // The second one waits for its turn without holding the thread, the third one is rejected.
+            MockHttpServletRequest waiting = request();
+            MockFilterChain waitingChain = new MockFilterChain();
+            filter.doFilter(waiting, new MockHttpServletResponse(), waitingChain);
+            assertTrue(waiting.isAsyncStarted());
+            assertNull(waitingChain.getRequest());
+            assertNull(((MockAsyncContext) waiting.getAsyncContext()).getDispatchedPath());
+            assertEquals(1, bulkheads.getGraphql().getQueueDepth());
+
+            MockHttpServletResponse rejected = new MockHttpServletResponse();
+            filter.doFilter(request(), rejected, new MockFilterChain());
+            assertEquals(503, rejected.getStatus());
+            assertEquals("1", rejected.getHeader("Retry-After"));
+
+            request.setAttribute("waiting", waiting);
+        });
+
+        // Once the first request is done, the second one is dispatched again with its turn.
+        MockHttpServletRequest waiting = (MockHttpServletRequest) served.getAttribute("waiting");
+        MockAsyncContext context = (MockAsyncContext) waiting.getAsyncContext();
+        assertEquals("/api/graphql/v1", context.getDispatchedPath());
+        assertEquals(1, bulkheads.getGraphql().getActiveThreads());
+        assertEquals(0, bulkheads.getGraphql().getQueueDepth());
+
+        context.complete();
+        assertEquals(0, bulkheads.getGraphql().getActiveThreads());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        filter.doFilter(request(), new MockHttpServletResponse(), (request, response) -> {
+            MockHttpServletRequest waiting = request();
+            MockHttpServletResponse waitingResponse = new MockHttpServletResponse();
+            filter.doFilter(waiting, waitingResponse, new MockFilterChain());
+            MockAsyncContext context = (MockAsyncContext) waiting.getAsyncContext();
+
+            // A request that waited too long is rejected, and is not dispatched once it would have its turn.
+            for (AsyncListener listener : context.getListeners()) {
+                listener.onTimeout(new AsyncEvent(context, waiting, waitingResponse));
+            }
+            assertEquals(503, waitingResponse.getStatus());
+            assertEquals(0, bulkheads.getGraphql().getQueueDepth());
+            assertNull(context.getDispatchedPath());
+        });
+        assertEquals(0, bulkheads.getGraphql().getActiveThreads());
+        assertEquals(1, bulkheads.getGraphql().getCompletedCount());
+    }
+}
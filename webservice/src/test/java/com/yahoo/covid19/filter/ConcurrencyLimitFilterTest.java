@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020, Verizon Media.
+ * Licensed under the Apache License, Version 2.0
+ * See LICENSE file in project root for terms.
+ */
+
+package com.yahoo.covid19.filter;
+
+import com.yahoo.covid19.ConcurrencyLimiter;
+import com.yahoo.covid19.LimiterProperties;
+import com.yahoo.covid19.filters.ConcurrencyLimitFilter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ConcurrencyLimitFilterTest {
+    private final ConcurrencyLimiter limiter;
+    private final ConcurrencyLimitFilter filter;
+
+    public ConcurrencyLimitFilterTest() {
+        LimiterProperties properties = new LimiterProperties();
+        properties.setInitialLimit(1);
+        properties.setMinLimit(1);
+        limiter = new ConcurrencyLimiter(properties);
+        filter = new ConcurrencyLimitFilter(Arrays.asList("/api/json/v1", "/api/graphql/v1"), limiter,
+                request -> "cached".equals(request.getParameter("filter")));
+    }
+
+    private static MockHttpServletRequest request(String path, String filter) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.setAsyncSupported(true);
+        if (filter != null) {
+            request.addParameter("filter", filter);
+        }
+        return request;
+    }
+
+    /**
+     * @return The chain, with the request recorded if it went through.
+     */
+    private MockFilterChain doFilter(MockHttpServletRequest request, MockHttpServletResponse response)
+            throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, response, chain);
+        return chain;
+    }
+
+    @Test
+    public void testShed() throws Exception {
+        // An asynchronous request holds the only slot until its response is complete.
+        MockHttpServletRequest async = request("/api/json/v1/healthRecords", null);
+        filter.doFilter(async, new MockHttpServletResponse(), (request, response) -> request.startAsync());
+        assertEquals(1, limiter.getInFlight());
+
+        MockHttpServletResponse shed = new MockHttpServletResponse();
+        assertNull(doFilter(request("/api/graphql/v1", null), shed).getRequest());
+        assertEquals(503, shed.getStatus());
+        assertEquals("1", shed.getHeader("Retry-After"));
+        assertEquals(1, limiter.getShedCount());
+
+        // Cached responses and other paths are not limited.
+        MockHttpServletResponse cached = new MockHttpServletResponse();
+        assertNotNull(doFilter(request("/api/json/v1/healthRecords", "cached"), cached).getRequest());
+        assertEquals(200, cached.getStatus());
+        assertNotNull(doFilter(request("/api/swagger/index.html", null), new MockHttpServletResponse())
+                .getRequest());
+
+        async.getAsyncContext().complete();
+        assertEquals(0, limiter.getInFlight());
+        MockHttpServletResponse served = new MockHttpServletResponse();
+        assertNotNull(doFilter(request("/api/graphql/v1", null), served).getRequest());
+        assertEquals(200, served.getStatus());
+        assertEquals(2, limiter.getAcceptedCount());
+    }
+
+    @Test
+    public void testDropped() throws Exception {
+        LimiterProperties properties = new LimiterProperties();
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(properties);
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(Arrays.asList("/api/json/v1"), limiter,
+                request -> false);
+        filter.doFilter(request("/api/json/v1/healthRecords", null), new MockHttpServletResponse(),
+                (request, response) -> ((MockHttpServletResponse) response).setStatus(503));
+        assertEquals(properties.getInitialLimit() * 9 / 10, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+}
@@ -15,6 +15,7 @@ import org.junit.jupiter.api.TestInstance;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.OptionalInt;
 
 
 /***
@@ -307,6 +308,42 @@ public class URIQueryValidatorTest {
         Assertions.assertFalse(queryValidator.validate(uri9));
     }
 
+    @Test
+    public void testMatchedRule() {
+        Assertions.assertEquals(OptionalInt.of(5), queryValidator.match("/api/json/v1/places"));
+        Assertions.assertEquals(OptionalInt.of(7), queryValidator.match("/api/json/v1/places?page[limit]=10"));
+        Assertions.assertEquals(OptionalInt.of(2), queryValidator.match("/api/json/v1/places?filter=label=='US'"));
+        Assertions.assertEquals(OptionalInt.empty(), queryValidator.match("/api/json/v1/places?filter=id==123"));
+        Assertions.assertEquals(OptionalInt.empty(), queryValidator.match("/api/json/v1/countries?page[limit]=10"));
+
+        // Rules that do not start with a literal path are tried for every path, in order.
+        URIQueryValidator validator = new URIQueryValidator(Arrays.asList(
+                "/api/json/v1/places?filter=label=={{TYPE_AHEAD_CHARACTERS}}",
+                "/api/json/v1/{{ALL}}",
+                "/api/json/v1/places?{{PAGINATION}}"));
+        Assertions.assertEquals(OptionalInt.of(0), validator.match("/api/json/v1/places?filter=label=='US'"));
+        Assertions.assertEquals(OptionalInt.of(1), validator.match("/api/json/v1/places?page[limit]=10"));
+        Assertions.assertEquals(OptionalInt.of(1), validator.match("/api/json/v1/countries"));
+        Assertions.assertEquals(OptionalInt.empty(), validator.match("/api/graphql/v1?"));
+    }
+
+    @Test
+    public void testCachedDecisions() {
+        URIQueryValidator cached = new URIQueryValidator(strRules, 2);
+        URIQueryValidator uncached = new URIQueryValidator(strRules, 0);
+        List<String> uris = Arrays.asList(
+                "/api/json/v1/places?fields[places]=id,label",
+                "/api/json/v1/places?fields[places]=id,wikiId,place",
+                "/api/json/v1/healthRecords?filter=referenceDate=='2020-04-03T00:00Z'",
+                "/api/json/v1/places?filter=label=='wo\u0005rd'");
+        for (int i = 0; i < 3; i++) {
+            for (String uri : uris) {
+                Assertions.assertEquals(uncached.match(uri), cached.match(uri));
+                Assertions.assertEquals(queryValidator.validate(uri), cached.validate(uri));
+            }
+        }
+    }
+
     @Test
     public void testSpecialCharacters() {
         String uri1 = "/api/json/v1/places?filter=label=='Prince_George%27s_County'";